@@ -39,6 +39,10 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
+import com.appia.metrics.MetricsSnapshot;
+import com.appia.metrics.SyncMetrics;
+import com.appia.metrics.SyncTrace;
+
 import no.nordicsemi.android.ble.BleManager;
 import no.nordicsemi.android.ble.BleManagerCallbacks;
 
@@ -89,6 +93,8 @@ public abstract class BleProfileService extends Service implements BleManagerCal
     private boolean activityIsChangingConfiguration;
     private BluetoothDevice bluetoothDevice;
     private String deviceName;
+    // Trace of the current connection, null when not connected or not traced
+    private SyncTrace syncTrace;
 
     private final BroadcastReceiver bluetoothStateBroadcastReceiver = new BroadcastReceiver() {
         @Override
@@ -195,6 +201,15 @@ public abstract class BleProfileService extends Service implements BleManagerCal
         public int getConnectionState() {
             return bleManager.getConnectionState();
         }
+
+        /**
+         * Returns the sync metrics of every model since the application started.
+         *
+         * @return a copy of the metrics, see {@link SyncMetrics#snapshot()}
+         */
+        public MetricsSnapshot getSyncMetrics() {
+            return SyncMetrics.getDefault().snapshot();
+        }
     }
 
     /**
@@ -305,6 +320,43 @@ public abstract class BleProfileService extends Service implements BleManagerCal
         return false;
     }
 
+    /**
+     * Returns the model the phases and counters of every connection are recorded under in
+     * {@link SyncMetrics#getDefault()}.
+     *
+     * @return the model name, or null (default) to not trace the connections
+     */
+    protected String getSyncModel() {
+        return null;
+    }
+
+    /**
+     * Called when a connection starts to be traced, before it is connected. The trace should be
+     * given to the manager, that marks the phases and counts the retries and errors.
+     *
+     * @param trace the trace of the new connection
+     */
+    protected void onSyncTraceStarted(@NonNull final SyncTrace trace) {
+        // empty default implementation
+    }
+
+    /* Starts tracing a connection, unless one is being traced already. */
+    private void startSyncTrace() {
+        final String model = getSyncModel();
+        if (model == null || syncTrace != null)
+            return;
+        syncTrace = SyncMetrics.getDefault().begin(model);
+        onSyncTraceStarted(syncTrace);
+    }
+
+    /* Adds the trace of the connection to the metrics, once. */
+    private void endSyncTrace() {
+        if (syncTrace == null)
+            return;
+        SyncMetrics.getDefault().end(syncTrace);
+        syncTrace = null;
+    }
+
     @Override
     public int onStartCommand(final Intent intent, final int flags, final int startId) {
         if (intent == null || !intent.hasExtra(EXTRA_DEVICE_ADDRESS))
@@ -352,6 +404,7 @@ public abstract class BleProfileService extends Service implements BleManagerCal
 
         // shutdown the manager
         bleManager.close();
+        endSyncTrace();
         Log.i(TAG,"Service destroyed");
         bleManager = null;
         bluetoothDevice = null;
@@ -377,6 +430,7 @@ public abstract class BleProfileService extends Service implements BleManagerCal
 
     @Override
     public void onDeviceConnecting(@NonNull final BluetoothDevice device) {
+        startSyncTrace();
         final Intent broadcast = new Intent(BROADCAST_CONNECTION_STATE);
         broadcast.putExtra(EXTRA_DEVICE, bluetoothDevice);
         broadcast.putExtra(EXTRA_CONNECTION_STATE, STATE_CONNECTING);
@@ -385,6 +439,8 @@ public abstract class BleProfileService extends Service implements BleManagerCal
 
     @Override
     public void onDeviceConnected(@NonNull final BluetoothDevice device) {
+        // With autoConnect a connection after a link loss may not report connecting first
+        startSyncTrace();
         final Intent broadcast = new Intent(BROADCAST_CONNECTION_STATE);
         broadcast.putExtra(EXTRA_CONNECTION_STATE, STATE_CONNECTED);
         broadcast.putExtra(EXTRA_DEVICE, bluetoothDevice);
@@ -418,6 +474,7 @@ public abstract class BleProfileService extends Service implements BleManagerCal
         // Note 2: if BleManager#shouldAutoConnect() for this device returned true, this callback will be
         // invoked ONLY when user requested disconnection (using Disconnect button). If the device
         // disconnects due to a link loss, the onLinkLossOccurred(BluetoothDevice) method will be called instead.
+        endSyncTrace();
 
         final Intent broadcast = new Intent(BROADCAST_CONNECTION_STATE);
         broadcast.putExtra(EXTRA_DEVICE, bluetoothDevice);
@@ -436,6 +493,7 @@ public abstract class BleProfileService extends Service implements BleManagerCal
 
     @Override
     public void onLinkLossOccurred(@NonNull final BluetoothDevice device) {
+        endSyncTrace();
         final Intent broadcast = new Intent(BROADCAST_CONNECTION_STATE);
         broadcast.putExtra(EXTRA_DEVICE, bluetoothDevice);
         broadcast.putExtra(EXTRA_CONNECTION_STATE, STATE_LINK_LOSS);
@@ -0,0 +1,131 @@
+package com.appia.Ble;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Decides which glucometers connect, when several are synced at once.
+ *
+ * At most maxConcurrent devices are started at the same time, in the order they were queued. A
+ * device whose attempt failed goes back to the end of the queue, so a meter that keeps failing
+ * takes turns with the others instead of holding a slot, until it runs out of attempts.
+ *
+ * The listener is called with the lock held, it must not block.
+ */
+public class ConnectionScheduler {
+
+    public interface Listener {
+        /**
+         * Called when a device should connect and sync.
+         * @param aDevice address of the device
+         * @param aAttempt starting at 1
+         */
+        void onStart(String aDevice, int aAttempt);
+
+        /**
+         * Called when a device failed maxAttempts times and was dropped.
+         * @param aDevice address of the device
+         */
+        void onGiveUp(String aDevice);
+    }
+
+    private final Listener listener;
+    private final int maxAttempts;
+    private int maxConcurrent;
+
+    private final ArrayDeque<String> queue = new ArrayDeque<>();
+    private final HashSet<String> running = new HashSet<>();
+    // Attempts started by every queued or running device
+    private final HashMap<String, Integer> attempts = new HashMap<>();
+
+    /**
+     * @param aMaxConcurrent devices connected at the same time, at least 1
+     * @param aMaxAttempts times a device is started before giving up, at least 1
+     * @param aListener
+     */
+    public ConnectionScheduler(int aMaxConcurrent, int aMaxAttempts, Listener aListener) {
+        maxConcurrent = Math.max(1, aMaxConcurrent);
+        maxAttempts = Math.max(1, aMaxAttempts);
+        listener = aListener;
+    }
+
+    /**
+     * Changes the number of devices connected at the same time. Lowering it doesn't stop the
+     * running ones, new ones wait until enough of them finish.
+     */
+    public synchronized void setMaxConcurrent(int aMaxConcurrent) {
+        maxConcurrent = Math.max(1, aMaxConcurrent);
+        startNext();
+    }
+
+    public synchronized int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Queues a device to be synced.
+     * @param aDevice address of the device
+     * @return false if it is already queued or running
+     */
+    public synchronized boolean enqueue(String aDevice) {
+        if (attempts.containsKey(aDevice))
+            return false;
+        attempts.put(aDevice, 0);
+        queue.addLast(aDevice);
+        startNext();
+        return true;
+    }
+
+    /**
+     * Called when a started device is done, its slot is given to the next one.
+     * @param aDevice address of the device
+     * @param aSucceeded false to try it again later
+     */
+    public synchronized void onFinished(String aDevice, boolean aSucceeded) {
+        if (!running.remove(aDevice))
+            return;
+        if (aSucceeded) {
+            attempts.remove(aDevice);
+        } else if (attempts.get(aDevice) >= maxAttempts) {
+            attempts.remove(aDevice);
+            listener.onGiveUp(aDevice);
+        } else {
+            queue.addLast(aDevice);
+        }
+        startNext();
+    }
+
+    /**
+     * Forgets a device. If it was running its slot is freed, the caller disconnects it.
+     * @param aDevice address of the device
+     */
+    public synchronized void cancel(String aDevice) {
+        attempts.remove(aDevice);
+        queue.remove(aDevice);
+        if (running.remove(aDevice))
+            startNext();
+    }
+
+    public synchronized int getRunningCount() {
+        return running.size();
+    }
+
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    public synchronized boolean isRunning(String aDevice) {
+        return running.contains(aDevice);
+    }
+
+    private void startNext() {
+        while (running.size() < maxConcurrent && !queue.isEmpty()) {
+            String device = queue.pollFirst();
+            int attempt = attempts.get(device) + 1;
+            attempts.put(device, attempt);
+            running.add(device);
+            listener.onStart(device, attempt);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.appia.Ble;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers the events of a glucometer service to its subscribers, with their payload, on the
+ * executor each subscriber chose.
+ *
+ * Events posted faster than a subscriber takes them are coalesced: only the latest countdown and
+ * information are delivered, and the measurement batches posted within the merge window are
+ * delivered together as one list. Errors are never dropped.
+ *
+ * @param <M> measurement of the glucometer
+ * @param <I> device information of the glucometer
+ */
+public class EventBus<M, I> {
+
+    /**
+     * Receives the events of the bus, always on the executor given when subscribing and never
+     * from two threads at once.
+     */
+    public interface Subscriber<M, I> {
+        void onCountdown(int aCount);
+
+        void onMeasurements(List<M> aMeasurements);
+
+        void onInformation(I aInfo);
+
+        void onError(String aMessage);
+    }
+
+    // Time during which measurement batches are merged, about a frame
+    public final static long DEFAULT_MERGE_WINDOW_MS = 16;
+
+    // Delays the delivery of the measurements of every bus until their window ends
+    private final static ScheduledExecutorService sTimer = createTimer();
+
+    private final CopyOnWriteArrayList<Subscription<M, I>> subscriptions = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService timer;
+    private final long mergeWindowMs;
+
+    public EventBus() {
+        this(sTimer, DEFAULT_MERGE_WINDOW_MS);
+    }
+
+    /**
+     * @param aTimer used to wait for the end of the merge window
+     * @param aMergeWindowMs 0 to deliver every batch as soon as possible
+     */
+    public EventBus(ScheduledExecutorService aTimer, long aMergeWindowMs) {
+        timer = aTimer;
+        mergeWindowMs = aMergeWindowMs;
+    }
+
+    private static ScheduledExecutorService createTimer() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = Executors.defaultThreadFactory().newThread(r);
+                thread.setName("EventBus");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Starts delivering the events posted from now on to aSubscriber.
+     * @param aSubscriber
+     * @param aExecutor where the events are delivered, e.g. the UI thread
+     */
+    public void subscribe(Subscriber<M, I> aSubscriber, Executor aExecutor) {
+        unsubscribe(aSubscriber);
+        subscriptions.add(new Subscription<>(this, aSubscriber, aExecutor));
+    }
+
+    /**
+     * Stops delivering events to aSubscriber, the ones not delivered yet are dropped, without
+     * running their delivery callbacks.
+     */
+    public void unsubscribe(Subscriber<M, I> aSubscriber) {
+        for (Subscription<M, I> subscription : subscriptions) {
+            if (subscription.subscriber == aSubscriber) {
+                subscription.cancel();
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public void postCountdown(int aCount) {
+        for (Subscription<M, I> subscription : subscriptions)
+            subscription.postCountdown(aCount);
+    }
+
+    /**
+     * Posts a batch of measurements. The list is copied, it may be reused after the call.
+     */
+    public void postMeasurements(List<M> aMeasurements) {
+        postMeasurements(aMeasurements, null);
+    }
+
+    /**
+     * Posts a batch of measurements and runs aOnDelivered once, on the executor of the first
+     * subscriber handed the batch, after its onMeasurements returns. It never runs if every
+     * subscriber unsubscribes before that.
+     * @param aMeasurements copied, it may be reused after the call
+     * @param aOnDelivered null if not needed
+     */
+    public void postMeasurements(List<M> aMeasurements, final Runnable aOnDelivered) {
+        if (aMeasurements.isEmpty())
+            return;
+        Runnable onDelivered = null;
+        if (aOnDelivered != null) {
+            final AtomicBoolean delivered = new AtomicBoolean();
+            onDelivered = () -> {
+                if (delivered.compareAndSet(false, true))
+                    aOnDelivered.run();
+            };
+        }
+        for (Subscription<M, I> subscription : subscriptions)
+            subscription.postMeasurements(aMeasurements, onDelivered);
+    }
+
+    public void postInformation(I aInfo) {
+        for (Subscription<M, I> subscription : subscriptions)
+            subscription.postInformation(aInfo);
+    }
+
+    public void postError(String aMessage) {
+        for (Subscription<M, I> subscription : subscriptions)
+            subscription.postError(aMessage);
+    }
+
+    /* Events pending for one subscriber, delivered together by drain(). */
+    private static class Subscription<M, I> implements Runnable {
+        private final EventBus<M, I> bus;
+        private final Subscriber<M, I> subscriber;
+        private final Executor executor;
+
+        private boolean cancelled;
+        // A drain is queued or running on the executor
+        private boolean draining;
+        // The end of the merge window is scheduled on the timer
+        private boolean waiting;
+        private boolean hasCountdown;
+        private int countdown;
+        private I info;
+        private ArrayList<M> measurements = new ArrayList<>();
+        // Run once the measurements are delivered
+        private ArrayList<Runnable> onDelivered = new ArrayList<>();
+        private ArrayList<String> errors = new ArrayList<>();
+
+        Subscription(EventBus<M, I> aBus, Subscriber<M, I> aSubscriber, Executor aExecutor) {
+            bus = aBus;
+            subscriber = aSubscriber;
+            executor = aExecutor;
+        }
+
+        synchronized void postCountdown(int aCount) {
+            hasCountdown = true;
+            countdown = aCount;
+            scheduleDrain();
+        }
+
+        synchronized void postInformation(I aInfo) {
+            info = aInfo;
+            scheduleDrain();
+        }
+
+        synchronized void postError(String aMessage) {
+            errors.add(aMessage);
+            scheduleDrain();
+        }
+
+        synchronized void postMeasurements(List<M> aMeasurements, Runnable aOnDelivered) {
+            measurements.addAll(aMeasurements);
+            if (aOnDelivered != null)
+                onDelivered.add(aOnDelivered);
+            if (bus.mergeWindowMs <= 0) {
+                scheduleDrain();
+            } else if (!waiting) {
+                waiting = true;
+                bus.timer.schedule(this, bus.mergeWindowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+        }
+
+        // End of the merge window
+        @Override
+        public synchronized void run() {
+            waiting = false;
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (cancelled || draining)
+                return;
+            draining = true;
+            executor.execute(this::drain);
+        }
+
+        // Delivers everything pending, on the executor of the subscriber, until nothing is left
+        private void drain() {
+            while (true) {
+                boolean deliverCountdown;
+                int count;
+                I newInfo;
+                ArrayList<M> newMeasurements = null;
+                ArrayList<Runnable> delivered = null;
+                ArrayList<String> newErrors = null;
+                synchronized (this) {
+                    // Measurements still in their window wait for it to end
+                    boolean measurementsReady = !waiting && !measurements.isEmpty();
+                    if (cancelled || (!hasCountdown && info == null && !measurementsReady && errors.isEmpty())) {
+                        draining = false;
+                        return;
+                    }
+                    deliverCountdown = hasCountdown;
+                    count = countdown;
+                    hasCountdown = false;
+                    newInfo = info;
+                    info = null;
+                    if (measurementsReady) {
+                        newMeasurements = measurements;
+                        measurements = new ArrayList<>();
+                        if (!onDelivered.isEmpty()) {
+                            delivered = onDelivered;
+                            onDelivered = new ArrayList<>();
+                        }
+                    }
+                    if (!errors.isEmpty()) {
+                        newErrors = errors;
+                        errors = new ArrayList<>();
+                    }
+                }
+                if (newInfo != null)
+                    subscriber.onInformation(newInfo);
+                if (newMeasurements != null)
+                    subscriber.onMeasurements(newMeasurements);
+                if (delivered != null) {
+                    for (Runnable callback : delivered)
+                        callback.run();
+                }
+                if (deliverCountdown)
+                    subscriber.onCountdown(count);
+                if (newErrors != null) {
+                    for (String error : newErrors)
+                        subscriber.onError(error);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.appia.Ble;
+
+import com.appia.storage.StoredMeasurement;
+
+import java.util.List;
+
+/**
+ * Receives the results of the MultiDeviceService, for every glucometer it syncs. Each call tells
+ * which device it is about by its Bluetooth address.
+ */
+public interface MultiDeviceCallbacks {
+    /**
+     * Called when a device sent measurements that were not stored yet. They are already in the
+     * MeasurementStore.
+     * @param aDevice address of the device
+     * @param aMeasurements the new measurements, each with mDevice set to aDevice
+     */
+    void onMeasurementsReceived(String aDevice, List<StoredMeasurement> aMeasurements);
+
+    /**
+     * Called when the state of a device changes.
+     * @param aDevice address of the device
+     * @param aProgress progress of every device, it keeps changing after the call
+     */
+    void onProgress(String aDevice, SyncProgress aProgress);
+
+    /**
+     * Called when a device is done or was given up.
+     * @param aDevice address of the device
+     * @param aSucceeded
+     */
+    void onSyncFinished(String aDevice, boolean aSucceeded);
+}
@@ -0,0 +1,402 @@
+package com.appia.Ble;
+
+import android.app.Service;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.content.Intent;
+import android.os.Binder;
+import android.os.Handler;
+import android.os.IBinder;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.appia.bioland.BiolandCallbacks;
+import com.appia.bioland.BiolandInfo;
+import com.appia.bioland.BiolandManager;
+import com.appia.bioland.BiolandMeasurement;
+import com.appia.metrics.SyncMetrics;
+import com.appia.metrics.SyncTrace;
+import com.appia.onetouch.OnetouchCallbacks;
+import com.appia.onetouch.OnetouchInfo;
+import com.appia.onetouch.OnetouchManager;
+import com.appia.onetouch.OnetouchMeasurement;
+import com.appia.storage.MeasurementStore;
+import com.appia.storage.StoredMeasurement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import no.nordicsemi.android.ble.BleManager;
+import no.nordicsemi.android.ble.BleManagerCallbacks;
+
+/**
+ * Syncs several glucometers at once, Bioland and Onetouch alike.
+ *
+ * Every device gets its own manager, and so its own protocol state. A ConnectionScheduler keeps
+ * at most a configurable number of them connected, the rest wait in turn. A device is done when
+ * its measurements arrive, or when it has nothing new to send for IDLE_TIMEOUT_MS after being
+ * ready; it is then disconnected to give its slot to the next one. Disconnections and protocol
+ * errors count as a failed attempt and the device is tried again later.
+ *
+ * Measurements are stored in the MeasurementStore and the new ones delivered through
+ * MultiDeviceCallbacks, on the executor given by the bound component.
+ */
+public class MultiDeviceService extends Service {
+    private static final String TAG = "MultiDeviceService";
+
+    public final static int TYPE_BIOLAND = 0;
+    public final static int TYPE_ONETOUCH = 1;
+
+    public final static int DEFAULT_MAX_CONCURRENT = 3;
+    private final static int MAX_ATTEMPTS = 3;
+    // Time a ready device may go without sending measurements before it is considered synced
+    private final static long IDLE_TIMEOUT_MS = 15000;
+
+    private final Handler mHandler = new Handler();
+    private final SyncProgress mProgress = new SyncProgress();
+    private final HashMap<String, Session> mSessions = new HashMap<>();
+    // Devices to sync, by address, with their type
+    private final HashMap<String, BluetoothDevice> mDevices = new HashMap<>();
+    private final HashMap<String, Integer> mTypes = new HashMap<>();
+    private ConnectionScheduler mScheduler;
+    private MeasurementStore mStore;
+
+    private MultiDeviceCallbacks mCallbacks;
+    private Executor mCallbacksExecutor;
+
+    public class MultiDeviceBinder extends Binder {
+        /**
+         * Queues a glucometer to be synced. Does nothing if it is already being synced.
+         * @param aDevice
+         * @param aType TYPE_BIOLAND or TYPE_ONETOUCH
+         */
+        public void sync(BluetoothDevice aDevice, int aType) {
+            final String address = aDevice.getAddress();
+            if (mScheduler.isRunning(address) || mTypes.containsKey(address))
+                return;
+            mDevices.put(address, aDevice);
+            mTypes.put(address, aType);
+            mProgress.add(address);
+            notifyProgress(address);
+            mScheduler.enqueue(address);
+        }
+
+        /**
+         * Stops syncing a glucometer, disconnecting it if it is connected.
+         */
+        public void cancel(String aAddress) {
+            mScheduler.cancel(aAddress);
+            closeSession(aAddress);
+            forget(aAddress);
+            mProgress.remove(aAddress);
+        }
+
+        // Sets how many glucometers are connected at the same time
+        public void setMaxConcurrent(int aMaxConcurrent) {
+            mScheduler.setMaxConcurrent(aMaxConcurrent);
+        }
+
+        public SyncProgress getProgress() {
+            return mProgress;
+        }
+
+        /**
+         * Sets who receives the results, null to stop receiving them.
+         * @param aCallbacks
+         * @param aExecutor where the callbacks are called, e.g. the UI thread
+         */
+        public void setCallbacks(MultiDeviceCallbacks aCallbacks, Executor aExecutor) {
+            mCallbacks = aCallbacks;
+            mCallbacksExecutor = aExecutor;
+        }
+    }
+
+    private final MultiDeviceBinder mBinder = new MultiDeviceBinder();
+
+    @Override
+    public IBinder onBind(final Intent intent) {
+        return mBinder;
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mStore = MeasurementStore.getInstance(this);
+        mScheduler = new ConnectionScheduler(DEFAULT_MAX_CONCURRENT, MAX_ATTEMPTS, new ConnectionScheduler.Listener() {
+            @Override
+            public void onStart(String aDevice, int aAttempt) {
+                // Started later, the scheduler may be called back from the session
+                mHandler.post(() -> startSession(aDevice, aAttempt));
+            }
+
+            @Override
+            public void onGiveUp(String aDevice) {
+                mHandler.post(() -> {
+                    forget(aDevice);
+                    mProgress.setState(aDevice, SyncProgress.State.FAILED);
+                    notifyProgress(aDevice);
+                    notifyFinished(aDevice, false);
+                });
+            }
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        for (String address : new ArrayList<>(mSessions.keySet()))
+            closeSession(address);
+        mHandler.removeCallbacksAndMessages(null);
+        super.onDestroy();
+    }
+
+    private void startSession(String aAddress, int aAttempt) {
+        final BluetoothDevice device = mDevices.get(aAddress);
+        final Integer type = mTypes.get(aAddress);
+        if (device == null || type == null || !mScheduler.isRunning(aAddress))
+            return; // Cancelled meanwhile
+        Log.d(TAG, "Connecting to " + aAddress + ", attempt " + aAttempt);
+
+        final Session session = type == TYPE_BIOLAND ? new BiolandSession(aAddress) : new OnetouchSession(aAddress);
+        mSessions.put(aAddress, session);
+        mProgress.setState(aAddress, SyncProgress.State.CONNECTING);
+        notifyProgress(aAddress);
+
+        session.manager.connect(device)
+                .useAutoConnect(false)
+                .retry(3, 100)
+                .fail((d, status) -> mHandler.post(() -> session.finish(false, "Connection failed: " + status)))
+                .enqueue();
+    }
+
+    private void closeSession(String aAddress) {
+        final Session session = mSessions.remove(aAddress);
+        if (session != null)
+            session.close();
+    }
+
+    private void forget(String aAddress) {
+        mDevices.remove(aAddress);
+        mTypes.remove(aAddress);
+    }
+
+    private void notifyProgress(final String aAddress) {
+        final MultiDeviceCallbacks callbacks = mCallbacks;
+        if (callbacks != null)
+            mCallbacksExecutor.execute(() -> callbacks.onProgress(aAddress, mProgress));
+    }
+
+    private void notifyFinished(final String aAddress, final boolean aSucceeded) {
+        final MultiDeviceCallbacks callbacks = mCallbacks;
+        if (callbacks != null)
+            mCallbacksExecutor.execute(() -> callbacks.onSyncFinished(aAddress, aSucceeded));
+    }
+
+    /**
+     * One connection to a glucometer, with its own manager. Nordic calls it back on the main
+     * thread, the protocol callbacks are moved there too.
+     */
+    private abstract class Session implements BleManagerCallbacks {
+        final String address;
+        final BleManager<?> manager;
+        // Phases and counters of this attempt, added to the metrics when it is closed
+        final SyncTrace trace;
+        private boolean finished;
+        private final Runnable idleTimeout = () -> finish(true, null);
+
+        Session(String aAddress, BleManager<?> aManager, String aModel) {
+            address = aAddress;
+            manager = aManager;
+            trace = SyncMetrics.getDefault().begin(aModel);
+        }
+
+        // Stores the measurements and delivers the new ones, then the device is done
+        void onMeasurements(List<StoredMeasurement> aMeasurements) {
+            mHandler.post(() -> {
+                // Stored even if the session was closed meanwhile, the sync cursor may follow
+                mStore.add(aMeasurements);
+                if (finished)
+                    return;
+                final List<StoredMeasurement> added = new ArrayList<>();
+                for (StoredMeasurement measurement : aMeasurements) {
+                    if (measurement.mRowId != 0)
+                        added.add(measurement);
+                }
+                mProgress.addMeasurements(address, added.size());
+                final MultiDeviceCallbacks callbacks = mCallbacks;
+                if (callbacks != null && added.size() > 0)
+                    mCallbacksExecutor.execute(() -> callbacks.onMeasurementsReceived(address, added));
+                finish(true, null);
+            });
+        }
+
+        void onError(final String aMessage) {
+            mHandler.post(() -> finish(false, aMessage));
+        }
+
+        /**
+         * Ends the attempt and frees the slot of the device.
+         * @param aSucceeded false to try it again later
+         * @param aError why it failed, null if it didn't
+         */
+        void finish(boolean aSucceeded, String aError) {
+            if (finished)
+                return;
+            finished = true;
+            mHandler.removeCallbacks(idleTimeout);
+            if (mSessions.get(address) == this)
+                mSessions.remove(address);
+            if (!aSucceeded)
+                trace.fail();
+            close();
+
+            mProgress.setError(address, aError);
+            if (aSucceeded) {
+                forget(address);
+                mProgress.setState(address, SyncProgress.State.DONE);
+                notifyProgress(address);
+                notifyFinished(address, true);
+            } else {
+                Log.w(TAG, address + " failed: " + aError);
+                mProgress.setState(address, SyncProgress.State.QUEUED);
+                notifyProgress(address);
+            }
+            // May start the next device, or this one again
+            mScheduler.onFinished(address, aSucceeded);
+        }
+
+        void close() {
+            finished = true;
+            mHandler.removeCallbacks(idleTimeout);
+            SyncMetrics.getDefault().end(trace);
+            manager.disconnect().done(d -> manager.close()).enqueue();
+        }
+
+        @Override
+        public void onDeviceConnecting(@NonNull final BluetoothDevice device) {
+        }
+
+        @Override
+        public void onDeviceConnected(@NonNull final BluetoothDevice device) {
+        }
+
+        @Override
+        public void onDeviceDisconnecting(@NonNull final BluetoothDevice device) {
+        }
+
+        @Override
+        public void onDeviceDisconnected(@NonNull final BluetoothDevice device) {
+            finish(false, "Disconnected");
+        }
+
+        @Override
+        public void onLinkLossOccurred(@NonNull final BluetoothDevice device) {
+            finish(false, "Link lost");
+        }
+
+        @Override
+        public void onServicesDiscovered(@NonNull final BluetoothDevice device, final boolean optionalServicesFound) {
+        }
+
+        @Override
+        public void onDeviceReady(@NonNull final BluetoothDevice device) {
+            if (finished)
+                return;
+            mProgress.setState(address, SyncProgress.State.SYNCING);
+            notifyProgress(address);
+            mHandler.postDelayed(idleTimeout, IDLE_TIMEOUT_MS);
+        }
+
+        @Override
+        public void onBondingRequired(@NonNull final BluetoothDevice device) {
+        }
+
+        @Override
+        public void onBonded(@NonNull final BluetoothDevice device) {
+        }
+
+        @Override
+        public void onBondingFailed(@NonNull final BluetoothDevice device) {
+            finish(false, "Bonding failed");
+        }
+
+        @Override
+        public void onError(@NonNull final BluetoothDevice device, @NonNull final String message, final int errorCode) {
+            finish(false, message + " (" + errorCode + ")");
+        }
+
+        @Override
+        public void onDeviceNotSupported(@NonNull final BluetoothDevice device) {
+            // Trying again won't help
+            mScheduler.cancel(address);
+            trace.fail();
+            close();
+            mSessions.remove(address);
+            forget(address);
+            mProgress.setError(address, "Device not supported");
+            mProgress.setState(address, SyncProgress.State.FAILED);
+            notifyProgress(address);
+            notifyFinished(address, false);
+        }
+    }
+
+    private class BiolandSession extends Session implements BiolandCallbacks {
+        BiolandSession(String aAddress) {
+            super(aAddress, new BiolandManager(MultiDeviceService.this), BiolandManager.MODEL);
+            ((BiolandManager) manager).setGattCallbacks(this);
+            ((BiolandManager) manager).setSyncTrace(trace);
+        }
+
+        @Override
+        public void onCountdownReceived(int aCount) {
+            // Counts down while the meter takes a measurement, nothing to sync yet
+        }
+
+        @Override
+        public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements) {
+            final List<StoredMeasurement> stored = new ArrayList<>(aMeasurements.size());
+            for (BiolandMeasurement measurement : aMeasurements) {
+                stored.add(new StoredMeasurement(address, measurement.mId, measurement.mDate.getTime(), measurement.mGlucose, 0));
+            }
+            onMeasurements(stored);
+        }
+
+        @Override
+        public void onDeviceInfoReceived(BiolandInfo aInfo) {
+        }
+
+        @Override
+        public void onProtocolError(String aMessage) {
+            onError(aMessage);
+        }
+    }
+
+    private class OnetouchSession extends Session implements OnetouchCallbacks {
+        OnetouchSession(String aAddress) {
+            // Measurements are stored on the handler, the sync cursor follows them there
+            super(aAddress, new OnetouchManager(MultiDeviceService.this, mHandler::post), OnetouchManager.MODEL);
+            ((OnetouchManager) manager).setGattCallbacks(this);
+            ((OnetouchManager) manager).setSyncTrace(trace);
+        }
+
+        @Override
+        public void onMeasurementsReceived(ArrayList<OnetouchMeasurement> aMeasurements) {
+            final List<StoredMeasurement> stored = new ArrayList<>(aMeasurements.size());
+            for (OnetouchMeasurement measurement : aMeasurements) {
+                stored.add(new StoredMeasurement(address, measurement.mId, measurement.mDate.getTime(), measurement.mGlucose, measurement.mErrorID));
+            }
+            onMeasurements(stored);
+        }
+
+        @Override
+        public void onDeviceInfoReceived(OnetouchInfo aInfo) {
+        }
+
+        @Override
+        public void onProtocolError(String aMessage) {
+            onError(aMessage);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.appia.Ble;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Progress of the glucometers synced at once, per device and in total. Safe to read from any
+ * thread while the service updates it.
+ */
+public class SyncProgress {
+
+    public enum State {
+        /** Waiting for a free connection slot */
+        QUEUED,
+        CONNECTING,
+        /** Connected, downloading its measurements */
+        SYNCING,
+        DONE,
+        /** Gave up after failing every attempt */
+        FAILED
+    }
+
+    private static class Device {
+        State state = State.QUEUED;
+        int attempts;
+        int measurements;
+        String error;
+    }
+
+    // In the order they were added
+    private final LinkedHashMap<String, Device> devices = new LinkedHashMap<>();
+
+    /**
+     * Adds a device, or queues it again if it already finished.
+     * @param aDevice address of the device
+     */
+    public synchronized void add(String aDevice) {
+        Device device = devices.get(aDevice);
+        if (device == null)
+            devices.put(aDevice, new Device());
+        else
+            device.state = State.QUEUED;
+    }
+
+    public synchronized void remove(String aDevice) {
+        devices.remove(aDevice);
+    }
+
+    public synchronized void setState(String aDevice, State aState) {
+        Device device = devices.get(aDevice);
+        if (device == null)
+            return;
+        if (aState == State.CONNECTING)
+            device.attempts++;
+        device.state = aState;
+    }
+
+    public synchronized void addMeasurements(String aDevice, int aCount) {
+        Device device = devices.get(aDevice);
+        if (device != null)
+            device.measurements += aCount;
+    }
+
+    // Keeps the last error of the device, null to clear it
+    public synchronized void setError(String aDevice, String aError) {
+        Device device = devices.get(aDevice);
+        if (device != null)
+            device.error = aError;
+    }
+
+    /**
+     * Returns the state of a device, null if it is not being synced.
+     */
+    public synchronized State getState(String aDevice) {
+        Device device = devices.get(aDevice);
+        return device == null ? null : device.state;
+    }
+
+    public synchronized int getAttempts(String aDevice) {
+        Device device = devices.get(aDevice);
+        return device == null ? 0 : device.attempts;
+    }
+
+    public synchronized int getMeasurements(String aDevice) {
+        Device device = devices.get(aDevice);
+        return device == null ? 0 : device.measurements;
+    }
+
+    public synchronized String getError(String aDevice) {
+        Device device = devices.get(aDevice);
+        return device == null ? null : device.error;
+    }
+
+    // Addresses of the devices, in the order they were added
+    public synchronized List<String> getDevices() {
+        return new ArrayList<>(devices.keySet());
+    }
+
+    // Number of devices in aState
+    public synchronized int count(State aState) {
+        int count = 0;
+        for (Device device : devices.values()) {
+            if (device.state == aState)
+                count++;
+        }
+        return count;
+    }
+
+    // New measurements downloaded from every device
+    public synchronized int getTotalMeasurements() {
+        int total = 0;
+        for (Device device : devices.values())
+            total += device.measurements;
+        return total;
+    }
+
+    public synchronized int size() {
+        return devices.size();
+    }
+
+    // True when every device is done or failed
+    public synchronized boolean isComplete() {
+        return count(State.DONE) + count(State.FAILED) == devices.size();
+    }
+}
@@ -22,16 +22,21 @@
 package com.appia.Ble.scanner;
 
 import android.bluetooth.BluetoothDevice;
+import android.os.SystemClock;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 import android.widget.ImageView;
+import android.widget.ListView;
 import android.widget.TextView;
 
 import com.appia.bioland.R;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -42,6 +47,12 @@ import no.nordicsemi.android.support.v18.scanner.ScanResult;
 
 /**
  * DeviceListAdapter class is list adapter for showing scanned Devices name, address and RSSI image based on RSSI values.
+ * Devices are found by address in a map, and a batch of results that only changes the name or the RSSI bars of
+ * known devices rebinds just the visible rows that changed.
+ * <p>
+ * While scanning, a sweep evicts the devices not seen for a while, a bounded number of rows at a time, and sorts
+ * the list by smoothed RSSI. A device only moves ahead of another one when its signal is clearly stronger, so rows
+ * don't swap places on every batch.
  */
 class DeviceListAdapter extends BaseAdapter {
 	private static final int TYPE_TITLE = 0;
@@ -50,8 +61,32 @@ class DeviceListAdapter extends BaseAdapter {
 
 	private final ArrayList<ExtendedBluetoothDevice> listBondedValues = new ArrayList<>();
 	private final ArrayList<ExtendedBluetoothDevice> listValues = new ArrayList<>();
+	private final HashMap<String, ExtendedBluetoothDevice> devicesByAddress = new HashMap<>();
+	// Devices updated by the last batch whose row shows something different
+	private final HashSet<ExtendedBluetoothDevice> changedDevices = new HashSet<>();
 
-	DeviceListAdapter() {
+	// Highest level of each bar of ic_rssi_bar, keep in sync with the drawable
+	private static final int[] RSSI_BAR_MAX_LEVELS = {10, 28, 45};
+
+	/** Devices not scanned for this long are removed, in milliseconds. */
+	static final long DEFAULT_STALE_AFTER = 5000;
+	private static final long SWEEP_INTERVAL = 1000;
+	// Rows checked for staleness on every sweep
+	private static final int MAX_SWEPT_ROWS = 64;
+	// How much stronger, in dBm, a device has to be to move ahead of another one
+	private static final int SORT_HYSTERESIS = 6;
+
+	private final Runnable sweep = this::sweep;
+	private long staleAfter = DEFAULT_STALE_AFTER;
+	private int sweepCursor;
+
+	private final ListView listView;
+
+	/**
+	 * @param listView the list showing the adapter, its visible rows are rebound when a device changes.
+	 */
+	DeviceListAdapter(@NonNull final ListView listView) {
+		this.listView = listView;
 	}
 
 	/**
@@ -60,7 +95,9 @@ class DeviceListAdapter extends BaseAdapter {
 	 */
 	void addBondedDevices(@NonNull final Set<BluetoothDevice> devices) {
 		for (BluetoothDevice device : devices) {
-			listBondedValues.add(new ExtendedBluetoothDevice(device));
+			final ExtendedBluetoothDevice bondedDevice = new ExtendedBluetoothDevice(device);
+			listBondedValues.add(bondedDevice);
+			devicesByAddress.put(device.getAddress(), bondedDevice);
 		}
 		notifyDataSetChanged();
 	}
@@ -70,30 +107,125 @@ class DeviceListAdapter extends BaseAdapter {
 	 * @param results list of results from the scanner
 	 */
 	public void update(@NonNull final List<ScanResult> results) {
+		boolean added = false;
 		for (final ScanResult result : results) {
-			final ExtendedBluetoothDevice device = findDevice(result);
+			final String address = result.getDevice().getAddress();
+			final ExtendedBluetoothDevice device = devicesByAddress.get(address);
 			if (device == null) {
-				listValues.add(new ExtendedBluetoothDevice(result));
+				final ExtendedBluetoothDevice newDevice = new ExtendedBluetoothDevice(result);
+				listValues.add(newDevice);
+				devicesByAddress.put(address, newDevice);
+				added = true;
 			} else {
-				device.name = result.getScanRecord() != null ? result.getScanRecord().getDeviceName() : null;
-				device.rssi = result.getRssi();
+				final String name = result.getScanRecord() != null ? result.getScanRecord().getDeviceName() : null;
+				final int previousRssi = device.rssi;
+				device.onScanned(result);
+				if (!TextUtils.equals(name, device.name) || previousRssi == ExtendedBluetoothDevice.NO_RSSI
+						|| rssiBars(previousRssi) != rssiBars(device.rssi))
+					changedDevices.add(device);
+				device.name = name;
 			}
 		}
-		notifyDataSetChanged();
+		if (added) {
+			// Rows moved, everything is rebound anyway
+			changedDevices.clear();
+			notifyDataSetChanged();
+		} else if (!changedDevices.isEmpty()) {
+			rebindChangedRows();
+		}
 	}
 
-	private ExtendedBluetoothDevice findDevice(@NonNull final ScanResult result) {
-		for (final ExtendedBluetoothDevice device : listBondedValues)
-			if (device.matches(result))
-				return device;
-		for (final ExtendedBluetoothDevice device : listValues)
-			if (device.matches(result))
-				return device;
-		return null;
+	// Binds again the visible rows of the devices that changed
+	private void rebindChangedRows() {
+		final int first = listView.getFirstVisiblePosition();
+		for (int i = 0; i < listView.getChildCount(); i++) {
+			final int position = first + i;
+			if (position < getCount() && getItemViewType(position) == TYPE_ITEM
+					&& changedDevices.contains(getItem(position)))
+				getView(position, listView.getChildAt(i), listView);
+		}
+		changedDevices.clear();
+	}
+
+	/**
+	 * Sets how long a device may go without being scanned before it is removed.
+	 * @param staleAfter milliseconds
+	 */
+	void setStaleAfter(final long staleAfter) {
+		this.staleAfter = staleAfter;
+	}
+
+	/** Starts evicting stale devices and sorting the list, call it when the scan starts. */
+	void startSweeping() {
+		listView.removeCallbacks(sweep);
+		listView.postDelayed(sweep, SWEEP_INTERVAL);
+	}
+
+	void stopSweeping() {
+		listView.removeCallbacks(sweep);
+	}
+
+	private void sweep() {
+		final long now = SystemClock.elapsedRealtime();
+		boolean changed = false;
+
+		// Only some rows each time, the sweep continues from where the previous one stopped
+		if (sweepCursor >= listValues.size())
+			sweepCursor = 0;
+		for (int checked = 0; checked < MAX_SWEPT_ROWS && sweepCursor < listValues.size(); checked++) {
+			final ExtendedBluetoothDevice device = listValues.get(sweepCursor);
+			if (now - device.lastSeen > staleAfter) {
+				listValues.remove(sweepCursor);
+				devicesByAddress.remove(device.device.getAddress());
+				changed = true;
+			} else {
+				sweepCursor++;
+			}
+		}
+		// Bonded devices stay, only their signal is hidden
+		for (final ExtendedBluetoothDevice device : listBondedValues) {
+			if (device.rssi != ExtendedBluetoothDevice.NO_RSSI && now - device.lastSeen > staleAfter) {
+				device.clearRssi();
+				changed = true;
+			}
+		}
+
+		changed |= sortBySignal(listBondedValues);
+		changed |= sortBySignal(listValues);
+		if (changed) {
+			changedDevices.clear();
+			notifyDataSetChanged();
+		}
+		listView.postDelayed(sweep, SWEEP_INTERVAL);
+	}
+
+	/**
+	 * Insertion sort by smoothed RSSI with hysteresis, a device moves ahead only of the ones it beats by
+	 * SORT_HYSTERESIS. The list is nearly sorted after the first sweep, so this is close to linear.
+	 * @return whether any device moved
+	 */
+	private static boolean sortBySignal(@NonNull final ArrayList<ExtendedBluetoothDevice> devices) {
+		boolean moved = false;
+		for (int i = 1; i < devices.size(); i++) {
+			final ExtendedBluetoothDevice device = devices.get(i);
+			int j = i;
+			while (j > 0 && device.rssi > devices.get(j - 1).rssi + SORT_HYSTERESIS) {
+				devices.set(j, devices.get(j - 1));
+				j--;
+			}
+			if (j != i) {
+				devices.set(j, device);
+				moved = true;
+			}
+		}
+		return moved;
 	}
 
 	void clearDevices() {
+		for (final ExtendedBluetoothDevice device : listValues)
+			devicesByAddress.remove(device.device.getAddress());
 		listValues.clear();
+		changedDevices.clear();
 		notifyDataSetChanged();
 	}
 
@@ -194,8 +326,7 @@ class DeviceListAdapter extends BaseAdapter {
 			holder.name.setText(name != null ? name : parent.getContext().getString(R.string.not_available));
 			holder.address.setText(device.device.getAddress());
 			if (!device.isBonded || device.rssi != ExtendedBluetoothDevice.NO_RSSI) {
-				final int rssiPercent = (int) (100.0f * (127.0f + device.rssi) / (127.0f + 20.0f));
-				holder.rssi.setImageLevel(rssiPercent);
+				holder.rssi.setImageLevel(rssiPercent(device.rssi));
 				holder.rssi.setVisibility(View.VISIBLE);
 			} else {
 				holder.rssi.setVisibility(View.GONE);
@@ -206,6 +337,19 @@ class DeviceListAdapter extends BaseAdapter {
 		return view;
 	}
 
+	private static int rssiPercent(final int rssi) {
+		return (int) (100.0f * (127.0f + rssi) / (127.0f + 20.0f));
+	}
+
+	// Number of bars ic_rssi_bar shows for the RSSI
+	private static int rssiBars(final int rssi) {
+		final int percent = rssiPercent(rssi);
+		int bars = 0;
+		while (bars < RSSI_BAR_MAX_LEVELS.length && percent > RSSI_BAR_MAX_LEVELS[bars])
+			bars++;
+		return bars;
+	}
+
 	private class ViewHolder {
 		private TextView name;
 		private TextView address;
@@ -23,23 +23,32 @@ package com.appia.Ble.scanner;
 
 import android.bluetooth.BluetoothDevice;
 
+import java.util.concurrent.TimeUnit;
+
 import androidx.annotation.NonNull;
 import no.nordicsemi.android.support.v18.scanner.ScanResult;
 
 @SuppressWarnings("WeakerAccess")
 public class ExtendedBluetoothDevice {
 	/* package */ static final int NO_RSSI = -1000;
+	/** Weight of a new reading in the smoothed RSSI. */
+	private static final float RSSI_SMOOTHING = 0.25f;
 	public final BluetoothDevice device;
 	/** The name is not parsed by some Android devices, f.e. Sony Xperia Z1 with Android 4.3 (C6903). It needs to be parsed manually. */
 	public String name;
+	/** Exponentially weighted average of the RSSI readings, rounded, or NO_RSSI if there are none. */
 	public int rssi;
 	public boolean isBonded;
+	/** When the device was last scanned, in {@link android.os.SystemClock#elapsedRealtime()} milliseconds. */
+	public long lastSeen;
+	private float smoothedRssi;
 
 	public ExtendedBluetoothDevice(@NonNull final ScanResult scanResult) {
 		this.device = scanResult.getDevice();
 		this.name = scanResult.getScanRecord() != null ? scanResult.getScanRecord().getDeviceName() : null;
-		this.rssi = scanResult.getRssi();
+		this.rssi = NO_RSSI;
 		this.isBonded = false;
+		onScanned(scanResult);
 	}
 
 	public ExtendedBluetoothDevice(@NonNull final BluetoothDevice device) {
@@ -49,6 +58,24 @@ public class ExtendedBluetoothDevice {
 		this.isBonded = true;
 	}
 
+	/**
+	 * Adds the RSSI of a new scan result of this device to the smoothed one.
+	 * @param scanResult result of this device
+	 */
+	public void onScanned(@NonNull final ScanResult scanResult) {
+		if (rssi == NO_RSSI)
+			smoothedRssi = scanResult.getRssi();
+		else
+			smoothedRssi += RSSI_SMOOTHING * (scanResult.getRssi() - smoothedRssi);
+		rssi = Math.round(smoothedRssi);
+		lastSeen = TimeUnit.NANOSECONDS.toMillis(scanResult.getTimestampNanos());
+	}
+
+	/** Forgets the RSSI, the device is no longer in range. */
+	public void clearRssi() {
+		rssi = NO_RSSI;
+	}
+
 	public boolean matches(@NonNull final ScanResult scanResult) {
 		return device.getAddress().equals(scanResult.getDevice().getAddress());
 	}
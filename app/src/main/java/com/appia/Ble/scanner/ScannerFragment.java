@@ -159,7 +159,7 @@ public class ScannerFragment extends DialogFragment {
 		final ListView listview = dialogView.findViewById(android.R.id.list);
 
 		listview.setEmptyView(dialogView.findViewById(android.R.id.empty));
-		listview.setAdapter(adapter = new DeviceListAdapter());
+		listview.setAdapter(adapter = new DeviceListAdapter(listview));
 
 		builder.setTitle(R.string.scanner_title);
 		final AlertDialog dialog = builder.setView(dialogView).create();
@@ -246,6 +246,7 @@ public class ScannerFragment extends DialogFragment {
 		final List<ScanFilter> filters = new ArrayList<>();
 		filters.add(new ScanFilter.Builder().setServiceUuid(uuid).build());
 		scanner.startScan(filters, settings, scanCallback);
+		adapter.startSweeping();
 
 		scanning = true;
 		handler.postDelayed(() -> {
@@ -264,6 +265,7 @@ public class ScannerFragment extends DialogFragment {
 
 			final BluetoothLeScannerCompat scanner = BluetoothLeScannerCompat.getScanner();
 			scanner.stopScan(scanCallback);
+			adapter.stopSweeping();
 
 			scanning = false;
 		}
@@ -8,9 +8,9 @@ import androidx.annotation.NonNull;
 
 import android.util.Log;
 
-import com.appia.bioland.protocols.Protocol;
-import com.appia.bioland.protocols.ProtocolV32;
 import com.appia.bioland.protocols.ProtocolCallbacks;
+import com.appia.bioland.protocols.ProtocolNegotiator;
+import com.appia.metrics.SyncTrace;
 
 import java.util.UUID;
 import java.lang.String;
@@ -37,18 +37,34 @@ public class BiolandManager extends BleManager<BiolandCallbacks> implements Prot
 	private final static UUID BIOLAND_UNKNOWN_CHARACTERISTIC_UUID = UUID.fromString("0000FF01-0000-1000-8000-00805f9b34fb");
 
 	private final static String TAG = "BiolandManager";
+	/** Model the sync metrics are kept under. */
+	public final static String MODEL = "Bioland G-500";
 
 	private BluetoothGattCharacteristic mRxCharacteristic;
 	private BluetoothGattCharacteristic mTxCharacteristic;
 	private BluetoothGattCharacteristic	mRegReadCharacteristic;
 	private BluetoothGattCharacteristic mRegCharacteristic;
 	private BluetoothGattCharacteristic mUnknownCharacteristic;
+	/* Phases and counters of the current sync. */
+	private volatile SyncTrace mTrace = SyncTrace.NONE;
 	/**
 	 * Bioland Manager constructor
 	 * @param context
 	 */
-	BiolandManager(final Context context) {
+	public BiolandManager(final Context context) {
 		super(context);
+		mProtocol = new ProtocolNegotiator(this, new BiolandVersionStore(context));
+		mProtocol.setPacingStore(new BiolandPacingStore(context));
+	}
+
+	/**
+	 * Sets where the phases and counters of the next sync are recorded, by this manager and by
+	 * the protocol.
+	 * @param aTrace SyncTrace.NONE to stop tracing
+	 */
+	public void setSyncTrace(@NonNull final SyncTrace aTrace) {
+		mTrace = aTrace;
+		mProtocol.setSyncTrace(aTrace);
 	}
 
 	/**
@@ -90,7 +106,10 @@ public class BiolandManager extends BleManager<BiolandCallbacks> implements Prot
 							mProtocol.onDataReceived(data.getValue());
 						});
 				enableNotifications(mTxCharacteristic)
-						.done(device -> Log.i(TAG, "Bioland TX characteristic  notifications enabled"))
+						.done(device -> {
+							Log.i(TAG, "Bioland TX characteristic  notifications enabled");
+							mTrace.mark(SyncTrace.Phase.NOTIFICATIONS_ENABLED);
+						})
 						.fail((device, status) -> {
 							Log.w(TAG, "Bioland TX characteristic  notifications not enabled");
 						})
@@ -131,18 +150,21 @@ public class BiolandManager extends BleManager<BiolandCallbacks> implements Prot
 				mUnknownCharacteristic = service2.getCharacteristic(BIOLAND_UNKNOWN_CHARACTERISTIC_UUID);
 			}
 
-			return mRxCharacteristic != null &&
+			final boolean supported = mRxCharacteristic != null &&
 					mTxCharacteristic != null &&
 					mRegCharacteristic != null &&
 					mRegReadCharacteristic != null &&
 					mUnknownCharacteristic != null &&
 					(writeRequest || writeCommand);
+			if (supported)
+				mTrace.mark(SyncTrace.Phase.SERVICES_DISCOVERED);
+			return supported;
 		}
 
 		@Override
 		protected void onDeviceReady() {
 			super.onDeviceReady();
-			mProtocol.connect();
+			mProtocol.connect(getBluetoothDevice().getAddress());
 		}
 
 		@Override
@@ -168,6 +190,7 @@ public class BiolandManager extends BleManager<BiolandCallbacks> implements Prot
 		mCallbacks.onDeviceInfoReceived(aInfo);
 	}
 	public void onProtocolError(String aMessage) {
+		mTrace.fail();
 		mCallbacks.onProtocolError(aMessage);
 	}
 	/**
@@ -190,5 +213,6 @@ public class BiolandManager extends BleManager<BiolandCallbacks> implements Prot
 		}
 	}
 
-	private Protocol mProtocol = new ProtocolV32(this);
+	/* Creates the protocol matching the version of the device. */
+	private final ProtocolNegotiator mProtocol;
 }
@@ -0,0 +1,43 @@
+package com.appia.bioland;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.appia.bioland.protocols.Pacer;
+import com.appia.bioland.protocols.PacingStore;
+
+/**
+ * Keeps the pacing learnt for every Bioland model in the shared preferences, as
+ * "gap,floor,latency" in milliseconds.
+ */
+public class BiolandPacingStore implements PacingStore {
+
+    private final static String PREFERENCES_NAME = "bioland_pacing";
+
+    private final SharedPreferences mPreferences;
+
+    public BiolandPacingStore(final Context context) {
+        mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public void load(String aModel, Pacer aPacer) {
+        String saved = mPreferences.getString(aModel, null);
+        if (saved == null)
+            return;
+        String[] values = saved.split(",");
+        if (values.length != 3)
+            return;
+        try {
+            aPacer.restore(Integer.parseInt(values[0]), Integer.parseInt(values[1]), Integer.parseInt(values[2]));
+        } catch (NumberFormatException e) {
+            // Not written by this store, start from the defaults
+        }
+    }
+
+    @Override
+    public void save(String aModel, Pacer aPacer) {
+        String values = aPacer.getGapMs() + "," + aPacer.getFloorMs() + "," + aPacer.getLatencyMs();
+        mPreferences.edit().putString(aModel, values).apply();
+    }
+}
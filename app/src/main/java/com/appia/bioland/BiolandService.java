@@ -21,14 +21,25 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.core.app.NotificationCompat;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import no.nordicsemi.android.ble.BleManager;
 
 import com.appia.Ble.BleProfileService;
+import com.appia.Ble.EventBus;
 import com.appia.main.BiolandActivity;
+import com.appia.metrics.SyncTrace;
+import com.appia.storage.DeliveredRowStore;
+import com.appia.storage.MeasurementStore;
+import com.appia.storage.StoredMeasurement;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class BiolandService extends BleProfileService implements BiolandCallbacks {
 
@@ -37,23 +48,6 @@ public class BiolandService extends BleProfileService implements BiolandCallback
     /* Notifications channel. */
     private static final String CHANNEL_ID = "channel_id";
 
-    /**
-     *  Measurement Broadcast!
-     */
-    public static final String BROADCAST_COUNTDOWN = "com.appia.bioland.BROADCAST_COUNTDOWN";
-    public static final String EXTRA_COUNTDOWN = "com.appia.bioland.EXTRA_COUNTDOWN";
-
-    public static final String BROADCAST_MEASUREMENT = "com.appia.bioland.BROADCAST_MEASUREMENT";
-    public static final String EXTRA_GLUCOSE_LEVEL = "com.appia.bioland.EXTRA_GLUCOSE_LEVEL";
-
-    public static final String BROADCAST_INFORMATION = "com.appia.bioland.BROADCAST_INFORMATION";
-    public static final String EXTRA_BATTERY_CAPACITY = "com.appia.bioland.EXTRA_BATTERY_CAPACITY";
-    public static final String EXTRA_SERIAL_NUMBER = "com.appia.bioland.EXTRA_SERIAL_NUMBER";
-
-
-    public static final String BROADCAST_COMM_FAILED = "com.appia.bioland.BROADCAST_COMM_FAILED";
-    public static final String EXTRA_ERROR_MSG = "com.appia.bioland.EXTRA_ERROR_MSG";
-
     /**
      * Action send when user press the DISCONNECT button on the notification.
      */
@@ -66,18 +60,62 @@ public class BiolandService extends BleProfileService implements BiolandCallback
 
     /* Bioland manager. */
     private BiolandManager mManager;
-    ArrayList<BiolandMeasurement> mMeasurements = new ArrayList<>();
+    /* Measurements are kept in the store, the binder returns the ones after the last row
+     * delivered of the device, which outlives the process. */
+    private MeasurementStore mStore;
+    private DeliveredRowStore mDeliveredRows;
+    private int mUndelivered;
+    /* Last row posted to the subscribers of each device, saved as delivered once one gets it. */
+    private final Map<String, Long> mPostedRows = new HashMap<>();
+    /* Guards the delivered and posted rows and mUndelivered, measurements are stored on another thread. */
+    private final Object mDeliveryLock = new Object();
+    /* Writes to the store, off the Bluetooth callback thread and in the order they arrive. */
+    private ExecutorService mStoreExecutor;
+    /* Events for the bound activity. */
+    private final EventBus<BiolandMeasurement, BiolandInfo> mEvents = new EventBus<>();
     BiolandInfo mInfo;
 
     /* This binder is an interface for the binded activity to operate with the device. */
     public class BiolandBinder extends LocalBinder {
         /**
-         * Returns the measurements stored in the manager.
+         * Returns the measurements of the device stored since the last call.
          */
         public ArrayList<BiolandMeasurement> getMeasurements() {
-            ArrayList<BiolandMeasurement> ret = new ArrayList<>(mMeasurements);
-            mMeasurements.clear();
-            return ret;
+            synchronized (mDeliveryLock) {
+                String device = getDeviceAddress();
+                List<StoredMeasurement> stored = mStore.getMeasurementsAfter(device, mDeliveredRows.load(device));
+                if(stored.size()>0)
+                    mDeliveredRows.save(device, stored.get(stored.size()-1).mRowId);
+                mPostedRows.remove(device);
+                mUndelivered = 0;
+                return toBiolandMeasurements(stored);
+            }
+        }
+
+        /**
+         * Delivers the countdown, the new measurements, the device information and the errors to
+         * aSubscriber on aExecutor, from now on. Measurements received before subscribing are
+         * read with getMeasurements().
+         */
+        public void subscribe(EventBus.Subscriber<BiolandMeasurement, BiolandInfo> aSubscriber, Executor aExecutor) {
+            mEvents.subscribe(aSubscriber, aExecutor);
+        }
+
+        public void unsubscribe(EventBus.Subscriber<BiolandMeasurement, BiolandInfo> aSubscriber) {
+            mEvents.unsubscribe(aSubscriber);
+            /* The batches it did not get are dropped, getMeasurements() returns them */
+            synchronized (mDeliveryLock) {
+                if(!mEvents.hasSubscribers())
+                    mPostedRows.clear();
+            }
+        }
+
+        /**
+         * Returns the measurements of the device taken between aFrom and aTo, in milliseconds
+         * since the epoch.
+         */
+        public ArrayList<BiolandMeasurement> getMeasurements(long aFrom, long aTo) {
+            return toBiolandMeasurements(mStore.getMeasurements(getDeviceAddress(), aFrom, aTo));
         }
 
         public BiolandInfo getDeviceInfo() {
@@ -106,45 +144,76 @@ public class BiolandService extends BleProfileService implements BiolandCallback
     private final LocalBinder mBinder = new BiolandBinder();
 
     public void onCountdownReceived(int aCount) {
-        final Intent broadcast = new Intent(BROADCAST_COUNTDOWN);
-        broadcast.putExtra(EXTRA_COUNTDOWN,aCount);
-        LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
+        mEvents.postCountdown(aCount);
     }
     /**
      * Called by BiolandManager when all measurements were received.
      */
     public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements) {
+        final String device = getDeviceAddress();
+        /* Copied, the protocol may reuse the list once this returns. */
+        final ArrayList<BiolandMeasurement> measurements = new ArrayList<>(aMeasurements);
+        mStoreExecutor.execute(() -> store(device, measurements));
+    }
 
-        mMeasurements.addAll(aMeasurements);
-
-        final Intent broadcast = new Intent(BROADCAST_MEASUREMENT);
-        LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
+    /* Runs on mStoreExecutor. */
+    private void store(String device, ArrayList<BiolandMeasurement> aMeasurements) {
+        /* Store them before anything else, the ones already stored are skipped. */
+        List<StoredMeasurement> stored = new ArrayList<>(aMeasurements.size());
+        for (BiolandMeasurement measurement : aMeasurements) {
+            stored.add(new StoredMeasurement(device, measurement.mId, measurement.mDate.getTime(), measurement.mGlucose, 0));
+        }
+        int added = mStore.add(stored);
+
+        /* Subscribers get everything not delivered yet right away, otherwise it waits for getMeasurements(). */
+        synchronized (mDeliveryLock) {
+            mUndelivered += added;
+            if(mUndelivered>0 && mEvents.hasSubscribers()) {
+                List<StoredMeasurement> undelivered = mStore.getMeasurementsAfter(device, lastPostedRow(device));
+                mUndelivered = 0;
+                if(undelivered.size()>0) {
+                    final long row = undelivered.get(undelivered.size()-1).mRowId;
+                    mPostedRows.put(device, row);
+                    mEvents.postMeasurements(toBiolandMeasurements(undelivered), () -> onDelivered(device, row));
+                }
+            }
+        }
 
-        if(!bound) {
+        if(!bound && added>0) {
             wakeUpScreen();
             updateNotification(R.string.notification_new_measurements_message,true,true);
         }
     }
 
+    /* Rows up to this one were delivered or are on their way. Called holding mDeliveryLock. */
+    private long lastPostedRow(String device) {
+        long delivered = mDeliveredRows.load(device);
+        Long posted = mPostedRows.get(device);
+        return posted == null ? delivered : Math.max(delivered, posted);
+    }
+
+    /* Runs on the executor of the subscriber that got the batch ending at aRowId. */
+    private void onDelivered(String device, long aRowId) {
+        synchronized (mDeliveryLock) {
+            if(aRowId > mDeliveredRows.load(device))
+                mDeliveredRows.save(device, aRowId);
+        }
+    }
+
     /**
      * Called by BiolandManager when device information is received..
      */
     public void onDeviceInfoReceived(BiolandInfo aInfo) {
         mInfo = aInfo;
 
-        final Intent broadcast = new Intent(BROADCAST_INFORMATION);
-        broadcast.putExtra(EXTRA_BATTERY_CAPACITY,aInfo.batteryCapacity);
-        broadcast.putExtra(EXTRA_SERIAL_NUMBER,aInfo.serialNumber);
-        LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
+        mEvents.postInformation(aInfo);
     }
 
     /**
      * Called by BiolandManager when an error has occured in the communication with the device.
      */
     public void onProtocolError(String aMessage) {
-        final Intent broadcast = new Intent(BROADCAST_COMM_FAILED);
-        broadcast.putExtra(EXTRA_ERROR_MSG,aMessage);
-        LocalBroadcastManager.getInstance(this).sendBroadcast(broadcast);
+        mEvents.postError(aMessage);
     }
 
 
@@ -158,6 +227,16 @@ public class BiolandService extends BleProfileService implements BiolandCallback
         return mManager = new BiolandManager(this);
     }
 
+    @Override
+    protected String getSyncModel() {
+        return BiolandManager.MODEL;
+    }
+
+    @Override
+    protected void onSyncTraceStarted(@NonNull final SyncTrace trace) {
+        mManager.setSyncTrace(trace);
+    }
+
     @Override
     protected boolean shouldAutoConnect() {
         return true;
@@ -166,6 +245,9 @@ public class BiolandService extends BleProfileService implements BiolandCallback
     @Override
     public void onCreate() {
         super.onCreate();
+        mStore = MeasurementStore.getInstance(this);
+        mDeliveredRows = new DeliveredRowStore(this);
+        mStoreExecutor = Executors.newSingleThreadExecutor();
 
         /* Receive disconnect action.*/
         registerReceiver(disconnectActionBroadcastReceiver, new IntentFilter(ACTION_DISCONNECT));
@@ -184,6 +266,8 @@ public class BiolandService extends BleProfileService implements BiolandCallback
         stopForegroundService();
         unregisterReceiver(disconnectActionBroadcastReceiver);
         //unregisterReceiver(intentBroadcastReceiver);
+        // Measurements already received are still stored
+        mStoreExecutor.shutdown();
         super.onDestroy();
     }
 
@@ -210,7 +294,11 @@ public class BiolandService extends BleProfileService implements BiolandCallback
        super.onLinkLossOccurred(device);
 
         Log.d(TAG,"Link loss ocurred");
-        if(!bound && mMeasurements.size()==0) {
+        boolean delivered;
+        synchronized (mDeliveryLock) {
+            delivered = mUndelivered==0;
+        }
+        if(!bound && delivered) {
             updateNotification(R.string.notification_waiting);
         }
     }
@@ -255,6 +343,14 @@ public class BiolandService extends BleProfileService implements BiolandCallback
 
 
 
+    private static ArrayList<BiolandMeasurement> toBiolandMeasurements(List<StoredMeasurement> aStored) {
+        ArrayList<BiolandMeasurement> measurements = new ArrayList<>(aStored.size());
+        for (StoredMeasurement stored : aStored) {
+            measurements.add(new BiolandMeasurement(stored.mGlucose, new Date(stored.mTime), stored.mRecordId));
+        }
+        return measurements;
+    }
+
     /**
      * Sets the service as a foreground service
      */
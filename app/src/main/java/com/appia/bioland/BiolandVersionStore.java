@@ -0,0 +1,44 @@
+package com.appia.bioland;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.appia.bioland.protocols.ProtocolVersionStore;
+import com.appia.bioland.protocols.Version;
+
+/**
+ * Keeps the protocol version of every Bioland glucometer in the shared preferences, keyed by its
+ * Bluetooth address.
+ */
+public class BiolandVersionStore implements ProtocolVersionStore {
+
+    private final static String PREFERENCES_NAME = "bioland_protocol_versions";
+
+    private final SharedPreferences mPreferences;
+
+    public BiolandVersionStore(final Context context) {
+        mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public Version load(String aDevice) {
+        String version = mPreferences.getString(aDevice, null);
+        if (version == null)
+            return null;
+        try {
+            return Version.valueOf(version);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void save(String aDevice, Version aVersion) {
+        mPreferences.edit().putString(aDevice, aVersion.get()).apply();
+    }
+
+    @Override
+    public void clear(String aDevice) {
+        mPreferences.edit().remove(aDevice).apply();
+    }
+}
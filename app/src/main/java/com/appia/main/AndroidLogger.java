@@ -0,0 +1,32 @@
+package com.appia.main;
+
+import android.util.Log;
+
+import com.appia.bioland.BuildConfig;
+import com.appia.common.Logger;
+
+/**
+ * Writes the logs of the protocol module to logcat, debug logs only in debug builds.
+ */
+public class AndroidLogger implements Logger {
+
+    @Override
+    public void d(String aTag, String aMessage) {
+        Log.d(aTag, aMessage);
+    }
+
+    @Override
+    public void w(String aTag, String aMessage) {
+        Log.w(aTag, aMessage);
+    }
+
+    @Override
+    public void e(String aTag, String aMessage) {
+        Log.e(aTag, aMessage);
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return BuildConfig.DEBUG;
+    }
+}
@@ -2,10 +2,7 @@ package com.appia.main;
 
 import android.animation.Animator;
 import android.bluetooth.BluetoothDevice;
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,26 +13,28 @@ import android.view.animation.LinearInterpolator;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.ListView;
-import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
 import android.util.Log;
 import android.animation.ObjectAnimator;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import java.util.UUID;
+import java.util.List;
 import java.util.Locale;
-import java.util.ArrayList;
 import java.text.DateFormat;
 
 import com.appia.bioland.BiolandInfo;
+import com.appia.bioland.BiolandHistory;
 import com.appia.bioland.BiolandMeasurement;
 import com.appia.bioland.R;
 import com.appia.Ble.BleProfileService;
+import com.appia.Ble.EventBus;
 import com.appia.Ble.BleProfileServiceReadyActivity;
 import com.appia.bioland.BiolandManager;
 import com.appia.bioland.BiolandService;
+import com.appia.storage.MeasurementHistory;
 
 // TODO The GlucoseActivity should be rewritten to use the service approach, like other do.
 public class BiolandActivity extends BleProfileServiceReadyActivity<BiolandService.BiolandBinder> {
@@ -60,17 +59,6 @@ public class BiolandActivity extends BleProfileServiceReadyActivity<BiolandServi
 		setGUI();
 	}
 
-	@Override
-	protected void onInitialize(final Bundle savedInstanceState) {
-		LocalBroadcastManager.getInstance(this).registerReceiver(broadcastReceiver, makeIntentFilter());
-	}
-
-	@Override
-	protected void onDestroy() {
-		super.onDestroy();
-		LocalBroadcastManager.getInstance(this).unregisterReceiver(broadcastReceiver);
-	}
-
 	private void setGUI() {
 
 		// Measurements units
@@ -90,8 +78,7 @@ public class BiolandActivity extends BleProfileServiceReadyActivity<BiolandServi
 		mListView = findViewById(R.id.list_view);
 
 		// Measurement array adapter
-		mMeasArray = new MeasurementsArrayAdapter(this,R.layout.measurement_item);
-		mMeasArray.setNotifyOnChange(true);
+		mMeasArray = new MeasurementsArrayAdapter(this);
 		mListView.setAdapter(mMeasArray);
 	}
 
@@ -105,6 +92,7 @@ public class BiolandActivity extends BleProfileServiceReadyActivity<BiolandServi
 
 		// Store binder
 		mBinder = binder;
+		mBinder.subscribe(serviceEvents, this::runOnUiThread);
 
 		// Update gui
 		onMeasurementsReceived();
@@ -112,6 +100,8 @@ public class BiolandActivity extends BleProfileServiceReadyActivity<BiolandServi
 
 	@Override
 	protected void onServiceUnbound() {
+		if(mBinder!=null)
+			mBinder.unsubscribe(serviceEvents);
 		mBinder = null;
 		// TODO: update gui??
 	}
@@ -157,30 +147,31 @@ public class BiolandActivity extends BleProfileServiceReadyActivity<BiolandServi
 		return BiolandManager.BIOLAND_SERVICE_UUID;
 	}
 
+	/**
+	 * Reads the measurements the service received while the activity was not subscribed.
+	 */
 	public void onMeasurementsReceived() {
 		runOnUiThread(() -> {
 			if(mBinder!=null) {
-				progressBar.setVisibility(View.INVISIBLE);
-				ArrayList<BiolandMeasurement> newMeasurements = mBinder.getMeasurements();
-				if (newMeasurements != null && newMeasurements.size()>0) {
-					mMeasArray.addAll(newMeasurements);
-					for(int i=0; i<newMeasurements.size(); i++){
-						Log.d(TAG,"Measurement: " + newMeasurements.get(i));
-					}
-				}
+				onMeasurementsReceived(mBinder.getMeasurements());
 			}
 		});
 	}
 
-	public void onInformationReceived() {
+	public void onMeasurementsReceived(List<BiolandMeasurement> newMeasurements) {
+		progressBar.setVisibility(View.INVISIBLE);
+		if (newMeasurements != null && newMeasurements.size()>0) {
+			mMeasArray.addAll(newMeasurements);
+			for(int i=0; i<newMeasurements.size(); i++){
+				Log.d(TAG,"Measurement: " + newMeasurements.get(i));
+			}
+		}
+	}
+
+	public void onInformationReceived(BiolandInfo info) {
 		// TODO: Show device information
-		runOnUiThread(() -> {
-					if(mBinder!=null) {
-						BiolandInfo info = mBinder.getDeviceInfo();
-						Log.d(TAG,"Device information receivec: " + info.batteryCapacity + "% battery left");
-						batteryLevelView.setText(info.batteryCapacity+"%");
-					}
-		});
+		Log.d(TAG,"Device information receivec: " + info.batteryCapacity + "% battery left");
+		batteryLevelView.setText(info.batteryCapacity+"%");
 	}
 
 	public void onCountdownReceived(int count) {
@@ -238,44 +229,35 @@ public class BiolandActivity extends BleProfileServiceReadyActivity<BiolandServi
 //
 //	}
 	/**
-	 * Receive broadcast messages from the service
+	 * Receives the events of the service, on the UI thread
 	 */
-	private final BroadcastReceiver broadcastReceiver = new BroadcastReceiver() {
+	private final EventBus.Subscriber<BiolandMeasurement, BiolandInfo> serviceEvents = new EventBus.Subscriber<BiolandMeasurement, BiolandInfo>() {
 		@Override
-		public void onReceive(final Context context, final Intent intent) {
-			final String action = intent.getAction();
+		public void onCountdown(int aCount) {
+			Log.d(TAG,"Countdown " + aCount);
+			onCountdownReceived(aCount);
+		}
 
-			if (BiolandService.BROADCAST_MEASUREMENT.equals(action)) {
-				Log.d(TAG,"Broadcast measurement received! Binder is: " + mBinder);
-				onMeasurementsReceived();
-			}
-			else if (BiolandService.BROADCAST_COUNTDOWN.equals(action)) {
-				int count = intent.getIntExtra(BiolandService.EXTRA_COUNTDOWN,0);
-				Log.d(TAG,"Countdown " + count);
-				onCountdownReceived(count);
-			}
-			else if(BiolandService.BROADCAST_INFORMATION.equals(action)) {
-				Log.d(TAG,"Broadcast information received! Binder is: " + mBinder);
-				mBatteryCapacity = intent.getIntExtra(BiolandService.EXTRA_BATTERY_CAPACITY,0);
-				mSerialNumber = intent.getByteArrayExtra(BiolandService.EXTRA_SERIAL_NUMBER);
-				onInformationReceived();
-			}
-			else if(BiolandService.BROADCAST_COMM_FAILED.equals(action)) {
-				Log.d(TAG,"Broadcast communication failed received! Binder is: " + mBinder);
-				String msg = intent.getStringExtra(BiolandService.EXTRA_ERROR_MESSAGE);
-				showToast("Error: " + msg);
-			}
+		@Override
+		public void onMeasurements(List<BiolandMeasurement> aMeasurements) {
+			Log.d(TAG,"Measurements received! Binder is: " + mBinder);
+			onMeasurementsReceived(aMeasurements);
 		}
-	};
 
-	private static IntentFilter makeIntentFilter() {
-		final IntentFilter intentFilter = new IntentFilter();
-		intentFilter.addAction(BiolandService.BROADCAST_COUNTDOWN);
-		intentFilter.addAction(BiolandService.BROADCAST_MEASUREMENT);
-		intentFilter.addAction(BiolandService.BROADCAST_INFORMATION);
-		intentFilter.addAction(BiolandService.BROADCAST_COMM_FAILED);
-		return intentFilter;
-	}
+		@Override
+		public void onInformation(BiolandInfo aInfo) {
+			Log.d(TAG,"Information received! Binder is: " + mBinder);
+			mBatteryCapacity = aInfo.batteryCapacity;
+			mSerialNumber = aInfo.serialNumber;
+			onInformationReceived(aInfo);
+		}
+
+		@Override
+		public void onError(String aMessage) {
+			Log.d(TAG,"Communication failed! Binder is: " + mBinder);
+			showToast("Error: " + aMessage);
+		}
+	};
 
 	@Override
 	protected Class<? extends BleProfileService> getServiceClass() {
@@ -284,17 +266,41 @@ public class BiolandActivity extends BleProfileServiceReadyActivity<BiolandServi
 
 
 
-	public class MeasurementsArrayAdapter extends ArrayAdapter<BiolandMeasurement> {
+	/**
+	 * Shows the measurements received, newest first. They are kept in a MeasurementHistory and
+	 * only the visible ones are built as BiolandMeasurements.
+	 */
+	public class MeasurementsArrayAdapter extends BaseAdapter {
 		private static final String TAG = "MeasurementsArrayAdapter";
-		private Context mContext;
+		private final MeasurementHistory mHistory = new MeasurementHistory();
 		private LayoutInflater mInflater;
 
-		public MeasurementsArrayAdapter(Context aContext, int aResource) {
-			super(aContext,aResource);
-			mContext = aContext;
+		public MeasurementsArrayAdapter(Context aContext) {
 			mInflater = LayoutInflater.from(aContext);
 		}
 
+		public void addAll(List<BiolandMeasurement> aMeasurements) {
+			for (BiolandMeasurement measurement : aMeasurements) {
+				BiolandHistory.add(mHistory, measurement);
+			}
+			notifyDataSetChanged();
+		}
+
+		@Override
+		public int getCount() {
+			return mHistory.size();
+		}
+
+		@Override
+		public BiolandMeasurement getItem(int aPosition) {
+			return BiolandHistory.get(mHistory, mHistory.size() - 1 - aPosition);
+		}
+
+		@Override
+		public long getItemId(int aPosition) {
+			return aPosition;
+		}
+
 		@Override
 		public View getView(int aPosition, View aConvertView, ViewGroup aParent) {
 
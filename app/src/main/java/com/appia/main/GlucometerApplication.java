@@ -0,0 +1,17 @@
+package com.appia.main;
+
+import android.app.Application;
+
+import com.appia.common.Log;
+
+/**
+ * Sends the logs of the protocol module to logcat before any service starts.
+ */
+public class GlucometerApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Log.setLogger(new AndroidLogger());
+    }
+}
@@ -5,36 +5,35 @@ import android.animation.Animator;
 import android.animation.ObjectAnimator;
 import android.annotation.SuppressLint;
 import android.bluetooth.BluetoothDevice;
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.animation.LinearInterpolator;
-import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
 import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import com.appia.Ble.BleProfileService;
+import com.appia.Ble.EventBus;
 import com.appia.Ble.BleProfileServiceReadyActivity;
 import com.appia.onetouch.OnetouchInfo;
 import com.appia.onetouch.OnetouchManager;
+import com.appia.onetouch.OnetouchHistory;
 import com.appia.onetouch.OnetouchMeasurement;
 import com.appia.onetouch.OnetouchService;
+import com.appia.storage.MeasurementHistory;
 import com.appia.bioland.R;
 
 import java.text.DateFormat;
-import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
 
@@ -60,17 +59,6 @@ public class OnetouchActivity extends BleProfileServiceReadyActivity<OnetouchSer
 		setGUI();
 	}
 
-	@Override
-	protected void onInitialize(final Bundle savedInstanceState) {
-		LocalBroadcastManager.getInstance(this).registerReceiver(broadcastReceiver, makeIntentFilter());
-	}
-
-	@Override
-	protected void onDestroy() {
-		super.onDestroy();
-		LocalBroadcastManager.getInstance(this).unregisterReceiver(broadcastReceiver);
-	}
-
 	private void setGUI() {
 
 		// Measurements units
@@ -90,8 +78,7 @@ public class OnetouchActivity extends BleProfileServiceReadyActivity<OnetouchSer
 		mListView = findViewById(R.id.list_view);
 
 		// Measurement array adapter
-		mMeasArray = new MeasurementsArrayAdapter(this,R.layout.measurement_item);
-		mMeasArray.setNotifyOnChange(true);
+		mMeasArray = new MeasurementsArrayAdapter(this);
 		mListView.setAdapter(mMeasArray);
 	}
 
@@ -105,6 +92,7 @@ public class OnetouchActivity extends BleProfileServiceReadyActivity<OnetouchSer
 
 		// Store binder
 		mBinder = binder;
+		mBinder.subscribe(serviceEvents, this::runOnUiThread);
 
 		// Update gui
 		onMeasurementsReceived();
@@ -112,6 +100,8 @@ public class OnetouchActivity extends BleProfileServiceReadyActivity<OnetouchSer
 
 	@Override
 	protected void onServiceUnbound() {
+		if(mBinder!=null)
+			mBinder.unsubscribe(serviceEvents);
 		mBinder = null;
 		// TODO: update gui??
 	}
@@ -157,31 +147,31 @@ public class OnetouchActivity extends BleProfileServiceReadyActivity<OnetouchSer
 		return null;//OnetouchManager.ONETOUCH_SERVICE_UUID;
 	}
 
+	/**
+	 * Reads the measurements the service received while the activity was not subscribed.
+	 */
 	public void onMeasurementsReceived() {
 		runOnUiThread(() -> {
 			if(mBinder!=null) {
-				progressBar.setVisibility(View.INVISIBLE);
-				ArrayList<OnetouchMeasurement> newMeasurements = mBinder.getMeasurements();
-				if (newMeasurements != null && newMeasurements.size()>0) {
-					//Collections.reverse(newMeasurements);
-					for(int i=0; i<newMeasurements.size(); i++){
-						mMeasArray.insert(newMeasurements.get(i),0);
-						Log.d(TAG,"Measurement: " + newMeasurements.get(i));
-					}
-				}
+				onMeasurementsReceived(mBinder.getMeasurements());
 			}
 		});
 	}
 
-	public void onInformationReceived() {
+	public void onMeasurementsReceived(List<OnetouchMeasurement> newMeasurements) {
+		progressBar.setVisibility(View.INVISIBLE);
+		if (newMeasurements != null && newMeasurements.size()>0) {
+			mMeasArray.addAll(newMeasurements);
+			for(int i=0; i<newMeasurements.size(); i++){
+				Log.d(TAG,"Measurement: " + newMeasurements.get(i));
+			}
+		}
+	}
+
+	public void onInformationReceived(OnetouchInfo info) {
 		// TODO: Show device information
-		runOnUiThread(() -> {
-					if(mBinder!=null) {
-						OnetouchInfo info = mBinder.getDeviceInfo();
-						Log.d(TAG,"Device information receivec: " + info.batteryCapacity + "% battery left");
-						batteryLevelView.setText(info.batteryCapacity+"%");
-					}
-		});
+		Log.d(TAG,"Device information receivec: " + info.batteryCapacity + "% battery left");
+		batteryLevelView.setText(info.batteryCapacity+"%");
 	}
 
 	public void onCountdownReceived(int count) {
@@ -239,44 +229,35 @@ public class OnetouchActivity extends BleProfileServiceReadyActivity<OnetouchSer
 //
 //	}
 	/**
-	 * Receive broadcast messages from the service
+	 * Receives the events of the service, on the UI thread
 	 */
-	private final BroadcastReceiver broadcastReceiver = new BroadcastReceiver() {
+	private final EventBus.Subscriber<OnetouchMeasurement, OnetouchInfo> serviceEvents = new EventBus.Subscriber<OnetouchMeasurement, OnetouchInfo>() {
 		@Override
-		public void onReceive(final Context context, final Intent intent) {
-			final String action = intent.getAction();
+		public void onCountdown(int aCount) {
+			Log.d(TAG,"Countdown " + aCount);
+			onCountdownReceived(aCount);
+		}
 
-			if (OnetouchService.BROADCAST_MEASUREMENT.equals(action)) {
-				Log.d(TAG,"Broadcast measurement received! Binder is: " + mBinder);
-				onMeasurementsReceived();
-			}
-			else if (OnetouchService.BROADCAST_COUNTDOWN.equals(action)) {
-				int count = intent.getIntExtra(OnetouchService.EXTRA_COUNTDOWN,0);
-				Log.d(TAG,"Countdown " + count);
-				onCountdownReceived(count);
-			}
-			else if(OnetouchService.BROADCAST_INFORMATION.equals(action)) {
-				Log.d(TAG,"Broadcast information received! Binder is: " + mBinder);
-				mBatteryCapacity = intent.getIntExtra(OnetouchService.EXTRA_BATTERY_CAPACITY,0);
-				mSerialNumber = intent.getByteArrayExtra(OnetouchService.EXTRA_SERIAL_NUMBER);
-				onInformationReceived();
-			}
-			else if(OnetouchService.BROADCAST_COMM_FAILED.equals(action)) {
-				Log.d(TAG,"Broadcast communication failed received! Binder is: " + mBinder);
-				String msg = intent.getStringExtra(OnetouchService.EXTRA_ERROR_MESSAGE);
-				showToast("Error: " + msg);
-			}
+		@Override
+		public void onMeasurements(List<OnetouchMeasurement> aMeasurements) {
+			Log.d(TAG,"Measurements received! Binder is: " + mBinder);
+			onMeasurementsReceived(aMeasurements);
 		}
-	};
 
-	private static IntentFilter makeIntentFilter() {
-		final IntentFilter intentFilter = new IntentFilter();
-		intentFilter.addAction(OnetouchService.BROADCAST_COUNTDOWN);
-		intentFilter.addAction(OnetouchService.BROADCAST_MEASUREMENT);
-		intentFilter.addAction(OnetouchService.BROADCAST_INFORMATION);
-		intentFilter.addAction(OnetouchService.BROADCAST_COMM_FAILED);
-		return intentFilter;
-	}
+		@Override
+		public void onInformation(OnetouchInfo aInfo) {
+			Log.d(TAG,"Information received! Binder is: " + mBinder);
+			mBatteryCapacity = aInfo.batteryCapacity;
+			mSerialNumber = aInfo.serialNumber;
+			onInformationReceived(aInfo);
+		}
+
+		@Override
+		public void onError(String aMessage) {
+			Log.d(TAG,"Communication failed! Binder is: " + mBinder);
+			showToast("Error: " + aMessage);
+		}
+	};
 
 	@Override
 	protected Class<? extends BleProfileService> getServiceClass() {
@@ -285,17 +266,41 @@ public class OnetouchActivity extends BleProfileServiceReadyActivity<OnetouchSer
 
 
 
-	public class MeasurementsArrayAdapter extends ArrayAdapter<OnetouchMeasurement> {
+	/**
+	 * Shows the measurements received, newest first. They are kept in a MeasurementHistory and
+	 * only the visible ones are built as OnetouchMeasurements.
+	 */
+	public class MeasurementsArrayAdapter extends BaseAdapter {
 		private static final String TAG = "MeasurementsArrayAdapter";
-		private Context mContext;
+		private final MeasurementHistory mHistory = new MeasurementHistory();
 		private LayoutInflater mInflater;
 
-		public MeasurementsArrayAdapter(Context aContext, int aResource) {
-			super(aContext,aResource);
-			mContext = aContext;
+		public MeasurementsArrayAdapter(Context aContext) {
 			mInflater = LayoutInflater.from(aContext);
 		}
 
+		public void addAll(List<OnetouchMeasurement> aMeasurements) {
+			for (OnetouchMeasurement measurement : aMeasurements) {
+				OnetouchHistory.add(mHistory, measurement);
+			}
+			notifyDataSetChanged();
+		}
+
+		@Override
+		public int getCount() {
+			return mHistory.size();
+		}
+
+		@Override
+		public OnetouchMeasurement getItem(int aPosition) {
+			return OnetouchHistory.get(mHistory, mHistory.size() - 1 - aPosition);
+		}
+
+		@Override
+		public long getItemId(int aPosition) {
+			return aPosition;
+		}
+
 		@SuppressLint({"SetTextI18n", "DefaultLocale"})
 		@Override
 		public View getView(int aPosition, View aConvertView, ViewGroup aParent) {
@@ -8,14 +8,17 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.appia.metrics.SyncTrace;
 import com.appia.onetouch.protocol.Protocol;
 import com.appia.onetouch.protocol.ProtocolCallbacks;
+import com.appia.onetouch.protocol.QueuedCursorStore;
 import com.appia.onetouch.OnetouchCallbacks;
 import com.appia.onetouch.protocol.bleuart.Bleuart;
 
 
 import java.util.ArrayList;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import no.nordicsemi.android.ble.BleManager;
 
@@ -28,18 +31,42 @@ public class OnetouchManager extends BleManager<OnetouchCallbacks> implements Pr
 	private final static UUID ONETOUCH_TX_CHARACTERISTIC_UUID = UUID.fromString("af9df7a3-e595-11e3-96b4-0002a5d5c51b");
 
 	private final static String TAG = "OnetouchManager";
+	/** Model the sync metrics are kept under. */
+	public final static String MODEL = "Onetouch Select Plus Flex";
+
+	/** Packet size of the default 23 bytes ATT MTU, used until a larger one is negotiated. */
+	private final static int DEFAULT_PACKET_SIZE = 20;
+	/** MTU requested on connection, the device may agree on a smaller one. */
+	private final static int PREFERRED_MTU = 247;
+	/** ATT header bytes of each notification or write. */
+	private final static int ATT_HEADER_SIZE = 3;
 
 	private BluetoothGattCharacteristic mRxCharacteristic;
 	private BluetoothGattCharacteristic mTxCharacteristic;
 
-	private Protocol mProtocol = new Protocol(this,20);
+	private Protocol mProtocol = new Protocol(this,DEFAULT_PACKET_SIZE);
+	/* Phases and counters of the current sync. */
+	private volatile SyncTrace mTrace = SyncTrace.NONE;
 
 	/**
 	 * Onetouch Manager constructor
 	 * @param context
+	 * @param aStoreExecutor single thread executor the measurements received are stored on. The
+	 *                       sync cursor is written on it too, so it never gets ahead of them.
 	 */
-	OnetouchManager(final Context context) {
+	public OnetouchManager(final Context context, final Executor aStoreExecutor) {
 		super(context);
+		mProtocol.setSyncCursorStore(new QueuedCursorStore(new OnetouchSyncCursorStore(context), aStoreExecutor));
+	}
+
+	/**
+	 * Sets where the phases and counters of the next sync are recorded, by this manager, the
+	 * protocol and Bleuart.
+	 * @param aTrace SyncTrace.NONE to stop tracing
+	 */
+	public void setSyncTrace(@NonNull final SyncTrace aTrace) {
+		mTrace = aTrace;
+		mProtocol.setSyncTrace(aTrace);
 	}
 
 	/**
@@ -74,11 +101,15 @@ public class OnetouchManager extends BleManager<OnetouchCallbacks> implements Pr
 		@Override
 		protected void initialize() {
 			if(isConnected()) {
-				requestMtu(20+3)
+				requestMtu(PREFERRED_MTU)
 						.with((device, mtu) -> {
 							Log.i(TAG, "MTU set to " + mtu);
+							mProtocol.setMaxPacketSize(Math.max(DEFAULT_PACKET_SIZE, mtu - ATT_HEADER_SIZE));
+						})
+						.fail((device, status) -> {
+							log(Log.WARN, "MTU change failed.");
+							mProtocol.setMaxPacketSize(DEFAULT_PACKET_SIZE);
 						})
-						.fail((device, status) -> log(Log.WARN, "MTU change failed."))
 						.enqueue();
 
 				/* Register callback to get data from the device. */
@@ -90,7 +121,7 @@ public class OnetouchManager extends BleManager<OnetouchCallbacks> implements Pr
 				enableNotifications(mTxCharacteristic)
 						.done(device -> {
 							Log.i(TAG, "Onetouch TX characteristic  notifications enabled");
-							mProtocol.getTime();
+							mTrace.mark(SyncTrace.Phase.NOTIFICATIONS_ENABLED);
 						})
 						.fail((device, status) -> {
 							Log.w(TAG, "Onetouch TX characteristic  notifications not enabled");
@@ -125,20 +156,26 @@ public class OnetouchManager extends BleManager<OnetouchCallbacks> implements Pr
 				//else
 			}
 
-			return mRxCharacteristic != null &&
+			final boolean supported = mRxCharacteristic != null &&
 					mTxCharacteristic != null &&
 					(writeRequest || writeCommand);
+			if (supported)
+				mTrace.mark(SyncTrace.Phase.SERVICES_DISCOVERED);
+			return supported;
 		}
 
 		@Override
 		protected void onDeviceReady() {
 			super.onDeviceReady();
-			mProtocol.connect();
+			// Starts the sync, only once the address is known so its cursor is loaded first.
+			mProtocol.connect(getBluetoothDevice().getAddress());
 		}
 
 		@Override
 		protected void onDeviceDisconnected() {
 			mProtocol.disconnect();
+			// The MTU is negotiated again on the next connection.
+			mProtocol.setMaxPacketSize(DEFAULT_PACKET_SIZE);
 			// Release all references.
 			mRxCharacteristic = null;
 			mTxCharacteristic = null;
@@ -156,6 +193,7 @@ public class OnetouchManager extends BleManager<OnetouchCallbacks> implements Pr
 //	}
 
 	public void onProtocolError(String aMessage) {
+		mTrace.fail();
 		mCallbacks.onProtocolError(aMessage);
 	}
 	/**
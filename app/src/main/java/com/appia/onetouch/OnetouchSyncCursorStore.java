@@ -0,0 +1,42 @@
+package com.appia.onetouch;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.appia.onetouch.protocol.SyncCursorStore;
+
+/**
+ * Keeps the sync cursor of every Onetouch glucometer in the shared preferences, keyed by its
+ * Bluetooth address. Each cursor is a single key, so every write replaces it atomically, and it
+ * is committed before returning, so once a batch was delivered its cursor is on disk.
+ */
+public class OnetouchSyncCursorStore implements SyncCursorStore {
+
+    private final static String TAG = "OnetouchSyncCursorStore";
+    private final static String PREFERENCES_NAME = "onetouch_sync_cursors";
+
+    private final SharedPreferences mPreferences;
+
+    public OnetouchSyncCursorStore(final Context context) {
+        mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public int load(String aDevice) {
+        return mPreferences.getInt(aDevice, NO_CURSOR);
+    }
+
+    @Override
+    public void save(String aDevice, int aHighestID) {
+        // commit() rather than apply(), a process death right after the batch must not lose it
+        if (!mPreferences.edit().putInt(aDevice, aHighestID).commit())
+            Log.w(TAG, "Sync cursor of " + aDevice + " could not be written");
+    }
+
+    @Override
+    public void clear(String aDevice) {
+        if (!mPreferences.edit().remove(aDevice).commit())
+            Log.w(TAG, "Sync cursor of " + aDevice + " could not be cleared");
+    }
+}
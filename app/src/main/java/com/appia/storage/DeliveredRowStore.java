@@ -0,0 +1,36 @@
+package com.appia.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Keeps the last row of the MeasurementStore delivered to the application for every glucometer,
+ * keyed by its Bluetooth address, so a restarted service only delivers what arrived since.
+ */
+public class DeliveredRowStore {
+
+    private final static String PREFERENCES_NAME = "delivered_rows";
+
+    private final SharedPreferences mPreferences;
+
+    public DeliveredRowStore(final Context context) {
+        mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the last row delivered of aDevice, 0 if none was or it is null.
+     * @param aDevice
+     */
+    public long load(String aDevice) {
+        if (aDevice == null)
+            return 0;
+        return mPreferences.getLong(aDevice, 0);
+    }
+
+    public void save(String aDevice, long aRowId) {
+        if (aDevice == null)
+            return;
+        // A row lost on a process death is delivered again, the measurements are not lost
+        mPreferences.edit().putLong(aDevice, aRowId).apply();
+    }
+}
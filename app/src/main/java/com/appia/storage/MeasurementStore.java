@@ -0,0 +1,153 @@
+package com.appia.storage;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps every measurement downloaded from the glucometers in a SQLite database, so they survive
+ * the process being killed.
+ *
+ * Rows are only ever appended. A record is identified by the glucometer it came from, its ID
+ * and its time, and a unique index on them makes downloading it again a no-op, so reconnections
+ * can redeliver records freely. The database uses write-ahead logging, so readers don't block
+ * the download and a crash in the middle of one only loses the uncommitted batch.
+ */
+public class MeasurementStore extends SQLiteOpenHelper {
+
+    private final static String DATABASE_NAME = "measurements.db";
+    private final static int DATABASE_VERSION = 1;
+
+    private final static String TABLE = "measurements";
+    private final static String COLUMN_ROW_ID = "_id";
+    private final static String COLUMN_DEVICE = "device";
+    private final static String COLUMN_RECORD_ID = "record_id";
+    private final static String COLUMN_TIME = "time";
+    private final static String COLUMN_GLUCOSE = "glucose";
+    private final static String COLUMN_ERROR = "error";
+
+    private final static String[] COLUMNS = {COLUMN_ROW_ID, COLUMN_DEVICE, COLUMN_RECORD_ID,
+            COLUMN_TIME, COLUMN_GLUCOSE, COLUMN_ERROR};
+
+    private final static String INSERT = "INSERT OR IGNORE INTO " + TABLE + " (" + COLUMN_DEVICE
+            + ", " + COLUMN_RECORD_ID + ", " + COLUMN_TIME + ", " + COLUMN_GLUCOSE + ", "
+            + COLUMN_ERROR + ") VALUES (?, ?, ?, ?, ?)";
+
+    private static MeasurementStore sInstance;
+
+    /**
+     * Returns the store of the application, every service shares the same database.
+     * @param context
+     */
+    public static synchronized MeasurementStore getInstance(final Context context) {
+        if (sInstance == null)
+            sInstance = new MeasurementStore(context.getApplicationContext());
+        return sInstance;
+    }
+
+    private MeasurementStore(final Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + COLUMN_ROW_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_DEVICE + " TEXT NOT NULL, "
+                + COLUMN_RECORD_ID + " TEXT NOT NULL, "
+                + COLUMN_TIME + " INTEGER NOT NULL, "
+                + COLUMN_GLUCOSE + " REAL NOT NULL, "
+                + COLUMN_ERROR + " INTEGER NOT NULL DEFAULT 0, "
+                + "UNIQUE (" + COLUMN_DEVICE + ", " + COLUMN_RECORD_ID + ", " + COLUMN_TIME + "))");
+        db.execSQL("CREATE INDEX " + TABLE + "_by_time ON " + TABLE + " (" + COLUMN_TIME + ")");
+        db.execSQL("CREATE INDEX " + TABLE + "_by_device_time ON " + TABLE + " ("
+                + COLUMN_DEVICE + ", " + COLUMN_TIME + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Only one version so far
+    }
+
+    /**
+     * Appends the measurements in a single transaction, skipping the ones already stored. The
+     * row of each measurement stored is set in it.
+     * @param aMeasurements
+     * @return the number of measurements that were new
+     */
+    public int add(List<StoredMeasurement> aMeasurements) {
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement(INSERT);
+        int added = 0;
+        db.beginTransaction();
+        try {
+            for (StoredMeasurement measurement : aMeasurements) {
+                insert.bindString(1, measurement.mDevice);
+                insert.bindString(2, measurement.mRecordId);
+                insert.bindLong(3, measurement.mTime);
+                insert.bindDouble(4, measurement.mGlucose);
+                insert.bindLong(5, measurement.mErrorID);
+                long row = insert.executeInsert();
+                if (row != -1) {
+                    measurement.mRowId = row;
+                    added++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+        return added;
+    }
+
+    /**
+     * Returns the measurements taken between aFrom and aTo, both included, oldest first.
+     * @param aDevice address of the glucometer, or null for all of them
+     * @param aFrom milliseconds since the epoch
+     * @param aTo milliseconds since the epoch
+     */
+    public List<StoredMeasurement> getMeasurements(String aDevice, long aFrom, long aTo) {
+        String from = Long.toString(aFrom);
+        String to = Long.toString(aTo);
+        if (aDevice == null)
+            return query(COLUMN_TIME + " BETWEEN ? AND ?", new String[]{from, to},
+                    COLUMN_TIME + ", " + COLUMN_ROW_ID);
+        return query(COLUMN_DEVICE + " = ? AND " + COLUMN_TIME + " BETWEEN ? AND ?",
+                new String[]{aDevice, from, to}, COLUMN_TIME + ", " + COLUMN_ROW_ID);
+    }
+
+    /**
+     * Returns the measurements stored after the row aRowId, in the order they were stored. Used
+     * to read only what arrived since the last time.
+     * @param aDevice address of the glucometer, or null for all of them
+     * @param aRowId 0 to read them all
+     */
+    public List<StoredMeasurement> getMeasurementsAfter(String aDevice, long aRowId) {
+        String row = Long.toString(aRowId);
+        if (aDevice == null)
+            return query(COLUMN_ROW_ID + " > ?", new String[]{row}, COLUMN_ROW_ID);
+        return query(COLUMN_DEVICE + " = ? AND " + COLUMN_ROW_ID + " > ?",
+                new String[]{aDevice, row}, COLUMN_ROW_ID);
+    }
+
+    private List<StoredMeasurement> query(String aSelection, String[] aArgs, String aOrder) {
+        List<StoredMeasurement> measurements = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE, COLUMNS, aSelection, aArgs,
+                null, null, aOrder)) {
+            while (cursor.moveToNext()) {
+                StoredMeasurement measurement = new StoredMeasurement(cursor.getString(1),
+                        cursor.getString(2), cursor.getLong(3), cursor.getFloat(4), cursor.getInt(5));
+                measurement.mRowId = cursor.getLong(0);
+                measurements.add(measurement);
+            }
+        }
+        return measurements;
+    }
+}
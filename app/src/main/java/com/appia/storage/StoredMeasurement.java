@@ -0,0 +1,43 @@
+package com.appia.storage;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A measurement as kept in the MeasurementStore, the same for every glucometer.
+ */
+public class StoredMeasurement {
+    public StoredMeasurement(){
+
+    }
+
+    public StoredMeasurement(String aDevice, String aRecordId, long aTime, float aGlucose, int aErrorID) {
+        mDevice = aDevice;
+        mRecordId = aRecordId;
+        mTime = aTime;
+        mGlucose = aGlucose;
+        mErrorID = aErrorID;
+    }
+
+    /** Row of the measurement in the store, 0 until it is stored */
+    public long mRowId;
+
+    /** Bluetooth address of the glucometer */
+    public String mDevice;
+
+    /** ID given to the record by the glucometer */
+    public String mRecordId;
+
+    /** Time of the measurement, in milliseconds since the epoch */
+    public long mTime;
+
+    /** The glucose concentration */
+    public float mGlucose;
+
+    public int mErrorID;
+
+    @NonNull
+    @Override
+    public String toString() {
+        return mGlucose + " @ " + mTime + " from " + mDevice + " #" + mRecordId;
+    }
+}
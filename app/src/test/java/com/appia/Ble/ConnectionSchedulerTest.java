@@ -0,0 +1,110 @@
+package com.appia.Ble;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConnectionSchedulerTest {
+
+    private static class Recorder implements ConnectionScheduler.Listener {
+        final List<String> started = new ArrayList<>();
+        final List<String> givenUp = new ArrayList<>();
+
+        public void onStart(String aDevice, int aAttempt) {
+            started.add(aDevice + "#" + aAttempt);
+        }
+
+        public void onGiveUp(String aDevice) {
+            givenUp.add(aDevice);
+        }
+    }
+
+    @Test
+    public void onlyMaxConcurrentDevicesRunAtOnce() {
+        Recorder recorder = new Recorder();
+        ConnectionScheduler scheduler = new ConnectionScheduler(2, 3, recorder);
+        for (String device : new String[]{"A", "B", "C", "D"})
+            assertTrue(scheduler.enqueue(device));
+        assertFalse(scheduler.enqueue("C"));
+
+        assertEquals(Arrays.asList("A#1", "B#1"), recorder.started);
+        assertEquals(2, scheduler.getRunningCount());
+        assertEquals(2, scheduler.getQueuedCount());
+
+        scheduler.onFinished("B", true);
+        assertEquals(Arrays.asList("A#1", "B#1", "C#1"), recorder.started);
+        // B is done, it may be synced again from its first attempt
+        assertTrue(scheduler.enqueue("B"));
+
+        scheduler.setMaxConcurrent(4);
+        assertEquals(Arrays.asList("A#1", "B#1", "C#1", "D#1", "B#1"), recorder.started);
+    }
+
+    @Test
+    public void failedDevicesWaitTheirTurn() {
+        Recorder recorder = new Recorder();
+        ConnectionScheduler scheduler = new ConnectionScheduler(1, 2, recorder);
+        scheduler.enqueue("A");
+        scheduler.enqueue("B");
+        scheduler.enqueue("C");
+
+        // A failing goes behind the others instead of taking the slot again
+        scheduler.onFinished("A", false);
+        scheduler.onFinished("B", true);
+        scheduler.onFinished("C", true);
+        assertEquals(Arrays.asList("A#1", "B#1", "C#1", "A#2"), recorder.started);
+
+        scheduler.onFinished("A", false);
+        assertEquals(Arrays.asList("A"), recorder.givenUp);
+        assertEquals(0, scheduler.getRunningCount());
+        assertEquals(0, scheduler.getQueuedCount());
+    }
+
+    @Test
+    public void cancelledDevicesFreeTheirSlot() {
+        Recorder recorder = new Recorder();
+        ConnectionScheduler scheduler = new ConnectionScheduler(1, 3, recorder);
+        scheduler.enqueue("A");
+        scheduler.enqueue("B");
+        scheduler.enqueue("C");
+        scheduler.cancel("B");
+        scheduler.cancel("A");
+        assertEquals(Arrays.asList("A#1", "C#1"), recorder.started);
+        assertTrue(scheduler.isRunning("C"));
+        // Finishing a cancelled device changes nothing
+        scheduler.onFinished("A", false);
+        assertEquals(1, scheduler.getRunningCount());
+        assertTrue(recorder.givenUp.isEmpty());
+    }
+
+    @Test
+    public void progressIsAggregated() {
+        SyncProgress progress = new SyncProgress();
+        progress.add("A");
+        progress.add("B");
+        progress.setState("A", SyncProgress.State.CONNECTING);
+        progress.setState("A", SyncProgress.State.SYNCING);
+        progress.addMeasurements("A", 12);
+        progress.setState("A", SyncProgress.State.DONE);
+        progress.setState("B", SyncProgress.State.CONNECTING);
+        progress.setError("B", "Link lost");
+        progress.setState("B", SyncProgress.State.QUEUED);
+        progress.setState("B", SyncProgress.State.CONNECTING);
+        progress.addMeasurements("B", 3);
+
+        assertEquals(Arrays.asList("A", "B"), progress.getDevices());
+        assertEquals(1, progress.count(SyncProgress.State.DONE));
+        assertEquals(2, progress.getAttempts("B"));
+        assertEquals("Link lost", progress.getError("B"));
+        assertEquals(15, progress.getTotalMeasurements());
+        assertFalse(progress.isComplete());
+
+        progress.setState("B", SyncProgress.State.FAILED);
+        assertTrue(progress.isComplete());
+        assertNull(progress.getState("C"));
+    }
+}
@@ -0,0 +1,164 @@
+package com.appia.Ble;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EventBusTest {
+
+    // Runs the queued deliveries when the test says so, like a busy UI thread
+    private static class QueuedExecutor implements java.util.concurrent.Executor {
+        final List<Runnable> queue = new ArrayList<>();
+
+        public void execute(Runnable aTask) {
+            queue.add(aTask);
+        }
+
+        void runAll() {
+            while (!queue.isEmpty())
+                queue.remove(0).run();
+        }
+    }
+
+    private static class Recorder implements EventBus.Subscriber<String, String> {
+        final List<Integer> countdowns = new ArrayList<>();
+        final List<List<String>> batches = new ArrayList<>();
+        final List<String> infos = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        final CountDownLatch batchReceived = new CountDownLatch(1);
+
+        public void onCountdown(int aCount) {
+            countdowns.add(aCount);
+        }
+
+        public void onMeasurements(List<String> aMeasurements) {
+            batches.add(aMeasurements);
+            batchReceived.countDown();
+        }
+
+        public void onInformation(String aInfo) {
+            infos.add(aInfo);
+        }
+
+        public void onError(String aMessage) {
+            errors.add(aMessage);
+        }
+    }
+
+    @Test
+    public void burstsCollapseToTheLatestValue() {
+        EventBus<String, String> bus = new EventBus<>(null, 0);
+        QueuedExecutor executor = new QueuedExecutor();
+        Recorder recorder = new Recorder();
+        bus.subscribe(recorder, executor);
+
+        for (int count = 5; count >= 0; count--)
+            bus.postCountdown(count);
+        bus.postInformation("old");
+        bus.postInformation("new");
+        bus.postError("first");
+        bus.postError("second");
+        assertEquals(1, executor.queue.size());
+
+        executor.runAll();
+        assertEquals(Arrays.asList(0), recorder.countdowns);
+        assertEquals(Arrays.asList("new"), recorder.infos);
+        // Errors are never coalesced
+        assertEquals(Arrays.asList("first", "second"), recorder.errors);
+    }
+
+    @Test
+    public void batchesWithinTheWindowAreMerged() throws InterruptedException {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            EventBus<String, String> bus = new EventBus<>(timer, 200);
+            Recorder recorder = new Recorder();
+            bus.subscribe(recorder, Runnable::run);
+
+            List<String> batch = new ArrayList<>(Arrays.asList("a", "b"));
+            bus.postMeasurements(batch);
+            // The bus copies the batch, the service may reuse its list
+            batch.clear();
+            batch.add("c");
+            bus.postMeasurements(batch);
+            assertTrue(recorder.batches.isEmpty());
+
+            assertTrue(recorder.batchReceived.await(5, TimeUnit.SECONDS));
+            assertEquals(1, recorder.batches.size());
+            assertEquals(Arrays.asList("a", "b", "c"), recorder.batches.get(0));
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void batchesAreDeliveredRightAwayWithoutWindow() {
+        EventBus<String, String> bus = new EventBus<>(null, 0);
+        Recorder recorder = new Recorder();
+        bus.subscribe(recorder, Runnable::run);
+        bus.postMeasurements(Arrays.asList("a"));
+        bus.postMeasurements(new ArrayList<String>());
+        bus.postMeasurements(Arrays.asList("b"));
+        assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("b")), recorder.batches);
+    }
+
+    @Test
+    public void unsubscribedSubscribersGetNothingElse() {
+        EventBus<String, String> bus = new EventBus<>(null, 0);
+        QueuedExecutor executor = new QueuedExecutor();
+        Recorder recorder = new Recorder();
+        bus.subscribe(recorder, executor);
+        assertTrue(bus.hasSubscribers());
+
+        bus.postCountdown(3);
+        bus.unsubscribe(recorder);
+        bus.postCountdown(2);
+        executor.runAll();
+        assertFalse(bus.hasSubscribers());
+        assertTrue(recorder.countdowns.isEmpty());
+    }
+
+    @Test
+    public void deliveryIsAcknowledgedOnlyOnceDelivered() {
+        EventBus<String, String> bus = new EventBus<>(null, 0);
+        QueuedExecutor first = new QueuedExecutor();
+        QueuedExecutor second = new QueuedExecutor();
+        Recorder recorder = new Recorder();
+        Recorder other = new Recorder();
+        bus.subscribe(recorder, first);
+        bus.subscribe(other, second);
+        final List<String> acks = new ArrayList<>();
+
+        bus.postMeasurements(Arrays.asList("a"), () -> acks.add("a"));
+        assertTrue(acks.isEmpty());
+        second.runAll();
+        first.runAll();
+        // Once, by the first subscriber that got it
+        assertEquals(Arrays.asList("a"), acks);
+        assertEquals(1, recorder.batches.size());
+        assertEquals(1, other.batches.size());
+    }
+
+    @Test
+    public void droppedBatchesAreNotAcknowledged() {
+        EventBus<String, String> bus = new EventBus<>(null, 0);
+        QueuedExecutor executor = new QueuedExecutor();
+        Recorder recorder = new Recorder();
+        bus.subscribe(recorder, executor);
+        final List<String> acks = new ArrayList<>();
+
+        bus.postMeasurements(Arrays.asList("a"), () -> acks.add("a"));
+        bus.unsubscribe(recorder);
+        executor.runAll();
+        assertTrue(recorder.batches.isEmpty());
+        assertTrue(acks.isEmpty());
+    }
+}
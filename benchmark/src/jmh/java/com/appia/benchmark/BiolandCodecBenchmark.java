@@ -0,0 +1,75 @@
+package com.appia.benchmark;
+
+import com.appia.bioland.protocols.PacketEncoder;
+import com.appia.bioland.protocols.Protocol;
+import com.appia.bioland.protocols.ProtocolV32;
+import com.appia.bioland.protocols.RequestClock;
+import com.appia.bioland.protocols.Version;
+import com.appia.bioland.simulator.BiolandMeter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per packet paths of the Bioland protocols, on the packets of V3.2: telling which packet was
+ * received, decoding it with its checksum, and stamping the time on a request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BiolandCodecBenchmark {
+
+    private byte[] result;
+    private byte[] info;
+    private Protocol.AppPacket request;
+    private RequestClock clock;
+
+    @Setup
+    public void setUp() {
+        BiolandMeter meter = new BiolandMeter(Version.V3_2);
+        meter.addRecords(1);
+        result = meter.resultPacket(0);
+        info = meter.infoPacket();
+        request = new ProtocolV32.AppDataPacket(Calendar.getInstance());
+        clock = new RequestClock();
+    }
+
+    @Benchmark
+    public int classifyResult() {
+        return ProtocolV32.CLASSIFIER.classify(result);
+    }
+
+    // Builds the result packet, checksum included, and reads its fields
+    @Benchmark
+    public int parseResult() throws Protocol.IllegalLengthException, Protocol.IllegalContentException {
+        ProtocolV32.ResultPacketV32 packet = new ProtocolV32.ResultPacketV32(result);
+        return packet.getGlucose() + packet.getYear() + packet.getMonth() + packet.getDay()
+                + packet.getHour() + packet.getMin();
+    }
+
+    @Benchmark
+    public Object parseInfo() throws Protocol.IllegalLengthException, Protocol.IllegalContentException {
+        return new ProtocolV32.InfoPacketV32(info).getSeriesNumber();
+    }
+
+    // Checksum of a result packet
+    @Benchmark
+    public int checksum() {
+        return PacketEncoder.checksum(result, result.length - 1);
+    }
+
+    // Writes the current time on a request before sending it
+    @Benchmark
+    public byte[] stampRequest() {
+        clock.stamp(request);
+        return request.to_bytes();
+    }
+}
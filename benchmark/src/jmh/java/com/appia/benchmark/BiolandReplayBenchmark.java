@@ -0,0 +1,99 @@
+package com.appia.benchmark;
+
+import com.appia.bioland.BiolandInfo;
+import com.appia.bioland.BiolandMeasurement;
+import com.appia.bioland.protocols.Protocol;
+import com.appia.bioland.protocols.ProtocolCallbacks;
+import com.appia.bioland.protocols.ProtocolV31;
+import com.appia.bioland.protocols.ProtocolV32;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the sessions of CommunicatorV31Test and CommunicatorV32Test through the protocol: an
+ * info packet, the countdown, nine results and the end packet. Scores are per packet received.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BiolandReplayBenchmark {
+
+    private final static int PACKETS = 16;
+
+    private final static byte[] INFO_V31 = {(byte)0x55, (byte)0x0f, (byte)0x00, (byte)0x2a, (byte)0x03, (byte)0x02, (byte)0x27, (byte)0x00, (byte)0x11, (byte)0x80, (byte)0x06, (byte)0x00, (byte)0x33, (byte)0x0a, (byte)0x92};
+    private final static byte[] INFO_V32 = {(byte)0x55, (byte)0x12, (byte)0x00, (byte)0x20, (byte)0x03, (byte)0x32, (byte)0x02, (byte)0x00, (byte)0x11, (byte)0x22, (byte)0x33, (byte)0x44, (byte)0x55, (byte)0x66, (byte)0x77, (byte)0x88, (byte)0x99, (byte)0xbd};
+
+    private static class Sink implements ProtocolCallbacks {
+        int sent;
+        int measurements;
+        public void sendData(byte[] data) { sent++; }
+        public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements) { measurements += aMeasurements.size(); }
+        public void onDeviceInfoReceived(BiolandInfo aInfo) {}
+        public void onProtocolError(String aMessage) { throw new IllegalStateException(aMessage); }
+        public void onCountdownReceived(int value) {}
+    }
+
+    private Sink sink;
+    private Protocol v31;
+    private Protocol v32;
+    private byte[][] sessionV31;
+    private byte[][] sessionV32;
+
+    @Setup
+    public void setUp() {
+        sink = new Sink();
+        v31 = new ProtocolV31(sink);
+        v31.testing_mode = true;
+        v32 = new ProtocolV32(sink);
+        v32.testing_mode = true;
+        sessionV31 = session(INFO_V31);
+        sessionV32 = session(INFO_V32);
+    }
+
+    // Packets received after connecting, in the order of the tests
+    private static byte[][] session(byte[] aInfo) {
+        byte[][] packets = new byte[PACKETS][];
+        int i = 0;
+        packets[i++] = aInfo;
+        for (int countdown = 4; countdown >= 0; countdown--)
+            packets[i++] = new byte[]{(byte)0x55, (byte)0x06, (byte)0x02, (byte)0x00, (byte)countdown, (byte)(0x55+0x06+0x02+countdown+2)};
+        packets[i++] = new byte[]{(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x19, (byte)0x00, (byte)0x12, (byte)0x00, (byte)0xa6};
+        packets[i++] = new byte[]{(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x19, (byte)0x00, (byte)0xc3, (byte)0x02, (byte)0x59};
+        packets[i++] = new byte[]{(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x19, (byte)0x00, (byte)0x12, (byte)0x00, (byte)0xa6};
+        packets[i++] = new byte[]{(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x18, (byte)0x00, (byte)0xa8, (byte)0x00, (byte)0x3b};
+        while (i < PACKETS - 1)
+            packets[i++] = new byte[]{(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x17, (byte)0x00, (byte)0xb1, (byte)0x00, (byte)0x43};
+        packets[i] = new byte[]{(byte)0x55, (byte)0x05, (byte)0x05, (byte)0x00, (byte)0x61};
+        return packets;
+    }
+
+    private int replay(Protocol aProtocol, byte[][] aSession) {
+        aProtocol.connect();
+        for (byte[] packet : aSession)
+            aProtocol.onDataReceived(packet);
+        aProtocol.disconnect();
+        return sink.measurements;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PACKETS)
+    public int replayV31() {
+        return replay(v31, sessionV31);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PACKETS)
+    public int replayV32() {
+        return replay(v32, sessionV32);
+    }
+}
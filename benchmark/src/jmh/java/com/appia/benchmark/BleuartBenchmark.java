@@ -0,0 +1,76 @@
+package com.appia.benchmark;
+
+import com.appia.onetouch.protocol.bleuart.Bleuart;
+import com.appia.onetouch.protocol.bleuart.BleuartCallbacks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fragmentation and reassembly of a whole packet by Bleuart, ACKs included, at the smallest
+ * packet size and at the one of a 185 bytes MTU.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BleuartBenchmark implements BleuartCallbacks {
+
+    @Param({"20", "182"})
+    public int maxPacketSize;
+
+    // A record read by index, and a packet as long as the Protocol sends
+    @Param({"24", "200"})
+    public int packetLength;
+
+    private Bleuart sender;
+    private Bleuart receiver;
+    private byte[] packet;
+    private byte[][] fragments;
+    private byte[][] acks;
+    private long sink;
+
+    @Setup
+    public void setUp() {
+        sender = new Bleuart(this, maxPacketSize);
+        receiver = new Bleuart(this, maxPacketSize);
+        packet = new byte[packetLength];
+        for (int i = 0; i < packetLength; i++)
+            packet[i] = (byte) i;
+        fragments = Frames.fragment(packet, maxPacketSize);
+        acks = Frames.acks(fragments.length);
+    }
+
+    @Benchmark
+    public long fragment() {
+        sender.sendPacket(packet);
+        for (byte[] ack : acks)
+            sender.onDataReceived(ack);
+        return sink;
+    }
+
+    @Benchmark
+    public long reassemble() {
+        for (byte[] fragment : fragments)
+            receiver.onDataReceived(fragment);
+        return sink;
+    }
+
+    @Override
+    public void sendData(byte[] aBytes) {
+        sink += aBytes.length;
+    }
+
+    @Override
+    public void onPacketReceived(ByteBuffer aPacket, int aCrc) {
+        sink += aPacket.limit() + aCrc;
+    }
+}
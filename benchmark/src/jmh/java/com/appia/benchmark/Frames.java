@@ -0,0 +1,72 @@
+package com.appia.benchmark;
+
+import com.appia.onetouch.protocol.Protocol;
+
+/**
+ * Builds the bytes the Onetouch meter sends, as they reach the phone, so the benchmarks only
+ * measure the side of the phone.
+ */
+final class Frames {
+
+    // Start, length, request mark, response mark, end and CRC
+    private final static int RESPONSE_OVERHEAD = 8;
+
+    private Frames() {
+    }
+
+    /**
+     * Wraps a payload in the envelope of a response, with its CRC-16.
+     * @param aPayload
+     */
+    static byte[] response(byte[] aPayload) {
+        int length = aPayload.length + RESPONSE_OVERHEAD;
+        byte[] packet = new byte[length];
+        packet[0] = 0x02;
+        packet[1] = (byte) length;
+        packet[2] = (byte) (length >> 8);
+        packet[3] = 0x04;
+        packet[4] = 0x06;
+        System.arraycopy(aPayload, 0, packet, 5, aPayload.length);
+        packet[length - 3] = 0x03;
+        Protocol.appendCRC16(packet, length - 2);
+        return packet;
+    }
+
+    // Payload of the record at index 7, as read by index
+    static byte[] recordByIndex() {
+        return new byte[]{0x07, 0x00, 0x00, 0x2A, 0x00, 0x10, 0x32, 0x54, 0x26,
+                0x7B, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00};
+    }
+
+    /**
+     * Splits a packet in Bleuart fragments of at most aMaxPacketSize bytes, header included.
+     * @param aPacket
+     * @param aMaxPacketSize
+     */
+    static byte[][] fragment(byte[] aPacket, int aMaxPacketSize) {
+        int payload = aMaxPacketSize - 1;
+        int count = fragments(aPacket.length, aMaxPacketSize);
+        byte[][] fragments = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            int offset = i * payload;
+            int length = Math.min(payload, aPacket.length - offset);
+            byte[] fragment = new byte[length + 1];
+            fragment[0] = (byte) ((i == 0 ? 0x00 : 0x40) | (count - i));
+            System.arraycopy(aPacket, offset, fragment, 1, length);
+            fragments[i] = fragment;
+        }
+        return fragments;
+    }
+
+    // ACKs of a packet sent in aCount fragments, in the order they arrive
+    static byte[][] acks(int aCount) {
+        byte[][] acks = new byte[aCount][];
+        for (int i = 0; i < aCount; i++)
+            acks[i] = new byte[]{(byte) (0x80 | (aCount - i))};
+        return acks;
+    }
+
+    static int fragments(int aLength, int aMaxPacketSize) {
+        return (aLength + aMaxPacketSize - 2) / (aMaxPacketSize - 1);
+    }
+}
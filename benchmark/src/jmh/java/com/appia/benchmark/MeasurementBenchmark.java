@@ -0,0 +1,74 @@
+package com.appia.benchmark;
+
+import com.appia.bioland.BiolandHistory;
+import com.appia.bioland.BiolandMeasurement;
+import com.appia.onetouch.OnetouchMeasurement;
+import com.appia.storage.MeasurementHistory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the measurements handed to the application, one per record received, and keeping
+ * a history of them as objects or as rows of a MeasurementHistory. With the gc profiler, the
+ * bytes allocated per operation of the history benchmarks bound the memory each one keeps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MeasurementBenchmark {
+
+    private final static int HISTORY_ROWS = 1000;
+    private final static long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private String biolandId;
+    private long epochMillis;
+    private BiolandMeasurement[] received;
+
+    @Setup
+    public void setUp() {
+        biolandId = "[85, 12, 3, 20, 5, 12, 8, 0, 30, 0, 99, 0]";
+        epochMillis = 1589272200000L;
+        received = new BiolandMeasurement[HISTORY_ROWS];
+        for (int i = 0; i < HISTORY_ROWS; i++)
+            received[i] = new BiolandMeasurement((70 + i % 200) / 18f, new Date(epochMillis + i * HOUR_MILLIS), biolandId);
+    }
+
+    // As the Bioland Protocol does for each result packet
+    @Benchmark
+    public BiolandMeasurement newBiolandMeasurement() {
+        return new BiolandMeasurement(5.5f, 2020, 5, 12, 8, 30, biolandId);
+    }
+
+    // As the Onetouch Protocol does for each record
+    @Benchmark
+    public OnetouchMeasurement newOnetouchMeasurement() {
+        return new OnetouchMeasurement(123, new Date(epochMillis), Integer.toString(42), 0);
+    }
+
+    // The history as the activities kept it before, a list of the received objects
+    @Benchmark
+    public ArrayList<BiolandMeasurement> objectHistory() {
+        ArrayList<BiolandMeasurement> history = new ArrayList<>();
+        for (BiolandMeasurement measurement : received)
+            history.add(new BiolandMeasurement(measurement.mGlucose, measurement.mDate, measurement.mId));
+        return history;
+    }
+
+    @Benchmark
+    public MeasurementHistory columnHistory() {
+        MeasurementHistory history = new MeasurementHistory();
+        for (BiolandMeasurement measurement : received)
+            BiolandHistory.add(history, measurement);
+        return history;
+    }
+}
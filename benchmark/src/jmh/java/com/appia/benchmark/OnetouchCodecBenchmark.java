@@ -0,0 +1,109 @@
+package com.appia.benchmark;
+
+import com.appia.onetouch.OnetouchMeasurement;
+import com.appia.onetouch.protocol.Protocol;
+import com.appia.onetouch.protocol.ProtocolCallbacks;
+import com.appia.onetouch.protocol.RecordView;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per packet paths of the Onetouch Protocol: the CRC, building and fragmenting a request, and
+ * reassembling and checking a response before it is decoded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OnetouchCodecBenchmark implements ProtocolCallbacks {
+
+    @Param({"20", "182"})
+    public int maxPacketSize;
+
+    private Protocol protocol;
+    private byte[] response;
+    private ByteBuffer responseView;
+    private byte[][] responseFragments;
+    // ACKs of a request by index, 12 bytes long
+    private byte[][] requestAcks;
+    private final RecordView record = new RecordView();
+    private long sink;
+
+    @Setup
+    public void setUp() {
+        protocol = new Protocol(this, maxPacketSize);
+        response = Frames.response(Frames.recordByIndex());
+        responseView = ByteBuffer.wrap(response).order(ByteOrder.LITTLE_ENDIAN);
+        responseFragments = Frames.fragment(response, maxPacketSize);
+        requestAcks = Frames.acks(Frames.fragments(12, maxPacketSize));
+    }
+
+    // CRC-16 of a record read by index
+    @Benchmark
+    public int crc() {
+        return Protocol.computeCRC(response, 0, response.length - 2);
+    }
+
+    // Same CRC computed one bit at a time, as the Protocol did before the table, for reference
+    @Benchmark
+    public int crcBitwise() {
+        int crc = 0xFFFF;
+        for (int i = 0; i < response.length - 2; ++i) {
+            crc ^= response[i] << 8;
+            for (int j = 0; j < 8; ++j) {
+                crc = (crc & 0x8000) > 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return crc & 0xFFFF;
+    }
+
+    // Builds a request by index, sends its fragments and takes their ACKs
+    @Benchmark
+    public long requestByIndex() {
+        protocol.getMeasurementsByIndex(7);
+        for (byte[] ack : requestAcks)
+            protocol.onDataReceived(ack);
+        return sink;
+    }
+
+    // Reassembles a record, acknowledging every fragment, and checks its CRC and length
+    @Benchmark
+    public long receiveResponse() {
+        for (byte[] fragment : responseFragments)
+            protocol.onDataReceived(fragment);
+        return sink;
+    }
+
+    // Reads the fields of a record from the received packet
+    @Benchmark
+    public int decodeRecord() {
+        record.readByIndex(responseView, 5);
+        return record.value + record.id + record.time;
+    }
+
+    @Override
+    public void sendData(byte[] bytes) {
+        sink += bytes.length;
+    }
+
+    @Override
+    public void onMeasurementsReceived(ArrayList<OnetouchMeasurement> aMeasurements) {
+        sink += aMeasurements.size();
+    }
+
+    @Override
+    public void onProtocolError(String aMessage) {
+        throw new IllegalStateException(aMessage);
+    }
+}
@@ -0,0 +1,118 @@
+package com.appia.benchmark;
+
+import com.appia.bioland.BiolandInfo;
+import com.appia.bioland.BiolandMeasurement;
+import com.appia.bioland.protocols.Protocol;
+import com.appia.bioland.protocols.ProtocolCallbacks;
+import com.appia.bioland.protocols.ProtocolV1;
+import com.appia.bioland.protocols.ProtocolV2;
+import com.appia.bioland.protocols.Version;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparing and parsing protocol versions, done to pick the Protocol of a glucometer, and the
+ * dispatch of each packet of the sessions of CommunicatorV1Test and CommunicatorV2Test, where
+ * the protocol branches on its version.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VersionBenchmark {
+
+    private Version older;
+    private Version newer;
+    private String text;
+
+    // Info packet, results and end packet of each session
+    private final static int PACKETS_V1 = 5;
+    private final static int PACKETS_V2 = 10;
+
+    private static class Sink implements ProtocolCallbacks {
+        int measurements;
+        public void sendData(byte[] data) {}
+        public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements) { measurements += aMeasurements.size(); }
+        public void onDeviceInfoReceived(BiolandInfo aInfo) {}
+        public void onProtocolError(String aMessage) { throw new IllegalStateException(aMessage); }
+        public void onCountdownReceived(int value) {}
+    }
+
+    private Sink sink;
+    private Protocol v1;
+    private Protocol v2;
+    private byte[][] sessionV1;
+    private byte[][] sessionV2;
+
+    @Setup
+    public void setUp() {
+        older = Version.V3_1;
+        newer = new Version("3.2");
+        text = "3.2";
+
+        sink = new Sink();
+        v1 = new ProtocolV1(sink);
+        v1.testing_mode = true;
+        v2 = new ProtocolV2(sink);
+        v2.testing_mode = true;
+
+        byte[] resultV1 = {(byte)0x55, (byte)0x0e, (byte)0x03, (byte)0x01, (byte)0x02, (byte)0x03, (byte)0x04, (byte)0x05, (byte)0x00, (byte)0x11, (byte)0x22, (byte)0x86, (byte)0x22, (byte)0x00};
+        sessionV1 = new byte[][]{
+                {(byte)0x55, (byte)0x10, (byte)0x00, (byte)0x01, (byte)0x02, (byte)0x03, (byte)0x04, (byte)0x05, (byte)0x06, (byte)0x07, (byte)0x11, (byte)0x22, (byte)0x33, (byte)0x92, (byte)0x22, (byte)0x33},
+                resultV1, resultV1, resultV1,
+                {(byte)0x55, (byte)0x06, (byte)0x04, (byte)0x61, (byte)0x00, (byte)0x00}};
+
+        byte[] resultV2 = {(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x17, (byte)0x00, (byte)0xb1, (byte)0x00, (byte)0x43};
+        sessionV2 = new byte[][]{
+                {(byte)0x55, (byte)0x0f, (byte)0x00, (byte)0x2a, (byte)0x03, (byte)0x02, (byte)0x27, (byte)0x00, (byte)0x11, (byte)0x80, (byte)0x06, (byte)0x00, (byte)0x33, (byte)0x0a, (byte)0x90},
+                {(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x19, (byte)0x00, (byte)0xc3, (byte)0x02, (byte)0x59},
+                {(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x19, (byte)0x00, (byte)0x12, (byte)0x00, (byte)0xa6},
+                {(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x18, (byte)0x00, (byte)0xa8, (byte)0x00, (byte)0x3b},
+                resultV2, resultV2, resultV2, resultV2, resultV2,
+                {(byte)0x55, (byte)0x05, (byte)0x05, (byte)0x00, (byte)0x61}};
+    }
+
+    // Requests the measurements and feeds the packets of the session to onDataReceived
+    private int dispatch(Protocol aProtocol, byte[][] aSession) {
+        aProtocol.requestMeasurements();
+        for (byte[] packet : aSession)
+            aProtocol.onDataReceived(packet);
+        return sink.measurements;
+    }
+
+    @Benchmark
+    public int compareTo() {
+        return older.compareTo(newer);
+    }
+
+    @Benchmark
+    public boolean equalsKnown() {
+        return newer.equals(Version.V3_2);
+    }
+
+    @Benchmark
+    public Version valueOf() {
+        return Version.valueOf(text);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PACKETS_V1)
+    public int dispatchV1() {
+        return dispatch(v1, sessionV1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PACKETS_V2)
+    public int dispatchV2() {
+        return dispatch(v2, sessionV2);
+    }
+}
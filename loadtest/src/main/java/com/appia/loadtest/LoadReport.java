@@ -0,0 +1,130 @@
+package com.appia.loadtest;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Outcome of a LoadTest run: how many sessions synced, how fast, and what they cost in heap and
+ * threads. Sessions are added from the event loops as they end.
+ */
+public class LoadReport {
+
+    private final LoadTest.Model model;
+    // Sync time of every session, failed ones included, in the order they ended
+    private final long[] syncMs;
+    private int ended;
+    private int failed;
+    private String firstError;
+    private long retries;
+
+    private long elapsedMs;
+    private long heapPerSession;
+    private long threadsStarted;
+    private int peakThreads;
+
+    public LoadReport(LoadTest.Model aModel, int aSessions){
+        model = aModel;
+        syncMs = new long[aSessions];
+    }
+
+    public LoadTest.Model getModel(){
+        return model;
+    }
+
+    // Called once per session when it ends
+    public synchronized void add(boolean aCompleted, long aSyncMs, int aRetries, String aError){
+        syncMs[ended++] = aSyncMs;
+        retries += aRetries;
+        if(!aCompleted){
+            failed++;
+            if(firstError == null)
+                firstError = aError;
+        }
+    }
+
+    public synchronized int getSessions(){
+        return ended;
+    }
+
+    public synchronized int getFailed(){
+        return failed;
+    }
+
+    // Error of the first session that failed, null if none did
+    public synchronized String getFirstError(){
+        return firstError;
+    }
+
+    // Requests sent again by the protocols, over every session
+    public synchronized long getRetries(){
+        return retries;
+    }
+
+    /**
+     * Sync time below which aPercentile of the sessions ended, by nearest rank.
+     * @param aPercentile from 0 to 100
+     */
+    public synchronized long getSyncMs(double aPercentile){
+        if(ended == 0)
+            return 0;
+        long[] sorted = Arrays.copyOf(syncMs, ended);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(aPercentile / 100 * ended);
+        return sorted[Math.max(0, Math.min(ended, rank) - 1)];
+    }
+
+    public synchronized double getSessionsPerSecond(){
+        return elapsedMs == 0 ? 0 : ended * 1000.0 / elapsedMs;
+    }
+
+    public synchronized long getElapsedMs(){
+        return elapsedMs;
+    }
+
+    synchronized void setElapsedMs(long aElapsedMs){
+        elapsedMs = aElapsedMs;
+    }
+
+    // Heap held by each running session after a GC, simulated meter included, in bytes
+    public synchronized long getHeapPerSession(){
+        return heapPerSession;
+    }
+
+    synchronized void setHeapPerSession(long aBytes){
+        heapPerSession = aBytes;
+    }
+
+    // Threads started by the JVM during the run, event loops excluded
+    public synchronized long getThreadsStarted(){
+        return threadsStarted;
+    }
+
+    synchronized void setThreadsStarted(long aThreads){
+        threadsStarted = aThreads;
+    }
+
+    // Most threads alive at once during the run
+    public synchronized int getPeakThreads(){
+        return peakThreads;
+    }
+
+    synchronized void setPeakThreads(int aThreads){
+        peakThreads = aThreads;
+    }
+
+    @Override
+    public synchronized String toString(){
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%-8s %d sessions, %d failed in %.1f s, %.1f sessions/s%n",
+                model, ended, failed, elapsedMs / 1000.0, getSessionsPerSecond()));
+        text.append(String.format(Locale.ROOT, "         sync p50 %d ms, p99 %d ms, max %d ms%n",
+                getSyncMs(50), getSyncMs(99), getSyncMs(100)));
+        text.append(String.format(Locale.ROOT, "         retries %d, %.2f per session%n",
+                retries, ended == 0 ? 0.0 : (double) retries / ended));
+        text.append(String.format(Locale.ROOT, "         heap %.1f KB per session, %d threads started, %d peak%n",
+                heapPerSession / 1024.0, threadsStarted, peakThreads));
+        if(firstError != null)
+            text.append("         first error: ").append(firstError).append(String.format("%n"));
+        return text.toString();
+    }
+}
@@ -0,0 +1,273 @@
+package com.appia.loadtest;
+
+import com.appia.bioland.protocols.Version;
+import com.appia.bioland.simulator.BiolandMeter;
+import com.appia.bioland.simulator.BiolandSimulation;
+import com.appia.onetouch.simulator.OnetouchMeter;
+import com.appia.onetouch.simulator.OnetouchSimulation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs thousands of sync sessions at once, each one a Protocol talking to its own simulated
+ * meter, as a gateway serving many glucometers would.
+ *
+ * The sessions run as tasks on a few single thread event loops, a session always on the same one,
+ * so the threads they cost are the ones the protocols start themselves, such as the scheduler the
+ * Bioland protocols share. Bioland sessions go through the four protocol versions in turn. Every
+ * session has its own meter with the same records.
+ *
+ * Usage: LoadTest [--model bioland|onetouch|both] [--sessions N] [--concurrency N] [--loops N]
+ *        [--records N] [--latency-ms N] [--drop-rate P] [--countdown-ms N] [--packet-size N]
+ *        [--timeout-ms N] [--max-failures N] [--max-p99-ms N]
+ *
+ * It exits with 1 when more sessions than --max-failures failed, or the p99 sync time of a model
+ * went over --max-p99-ms, so it can guard against regressions.
+ */
+public class LoadTest {
+
+    public enum Model {
+        BIOLAND,
+        ONETOUCH
+    }
+
+    private final static Version[] BIOLAND_VERSIONS = {Version.V1_0, Version.V2_0, Version.V3_1, Version.V3_2};
+
+    private int sessions = 2000;
+    private int concurrency = 500;
+    private int loops = Runtime.getRuntime().availableProcessors();
+    private int records = 20;
+    private int latencyMs = 5;
+    private double dropRate;
+    private int countdownIntervalMs = 10;
+    private int maxPacketSize = 20;
+    private long timeoutMs = 60000;
+
+    // Sessions run in total
+    public LoadTest setSessions(int aSessions){
+        sessions = aSessions;
+        return this;
+    }
+
+    // Sessions running at once
+    public LoadTest setConcurrency(int aConcurrency){
+        concurrency = aConcurrency;
+        return this;
+    }
+
+    // Event loop threads the sessions are spread over
+    public LoadTest setLoops(int aLoops){
+        loops = aLoops;
+        return this;
+    }
+
+    // Records stored in each meter
+    public LoadTest setRecords(int aRecords){
+        records = aRecords;
+        return this;
+    }
+
+    public LoadTest setLatencyMs(int aLatencyMs){
+        latencyMs = aLatencyMs;
+        return this;
+    }
+
+    // Probability of losing each Bioland request, the Onetouch link does not drop packets
+    public LoadTest setDropRate(double aDropRate){
+        dropRate = aDropRate;
+        return this;
+    }
+
+    // Time between the timing packets of Bioland V3.x, the real meters take a second
+    public LoadTest setCountdownIntervalMs(int aIntervalMs){
+        countdownIntervalMs = aIntervalMs;
+        return this;
+    }
+
+    // Onetouch BLE packet size, header included
+    public LoadTest setMaxPacketSize(int aMaxPacketSize){
+        maxPacketSize = aMaxPacketSize;
+        return this;
+    }
+
+    // Longest time a single session may take
+    public LoadTest setTimeoutMs(long aTimeoutMs){
+        timeoutMs = aTimeoutMs;
+        return this;
+    }
+
+    /**
+     * Runs every session of a model and waits for them to end.
+     * @param aModel
+     */
+    public LoadReport run(Model aModel) throws InterruptedException {
+        final LoadReport report = new LoadReport(aModel, sessions);
+        final Semaphore slots = new Semaphore(concurrency);
+        final CountDownLatch ended = new CountDownLatch(sessions);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        ScheduledThreadPoolExecutor[] eventLoops = createEventLoops();
+        long heapBefore = usedHeapAfterGc();
+        threads.resetPeakThreadCount();
+        long threadsBefore = threads.getTotalStartedThreadCount();
+        long start = System.nanoTime();
+        try {
+            for(int i = 0; i < sessions; i++){
+                slots.acquire();
+                SessionEnd end = new SessionEnd() {
+                    @Override
+                    public void onEnd(boolean aCompleted, long aSyncMs, int aRetries, String aError) {
+                        report.add(aCompleted, aSyncMs, aRetries, aError);
+                        slots.release();
+                        ended.countDown();
+                    }
+                };
+                ScheduledThreadPoolExecutor loop = eventLoops[i % eventLoops.length];
+                if(aModel == Model.BIOLAND)
+                    startBioland(i, loop, end);
+                else
+                    startOnetouch(loop, end);
+
+                // Every slot was taken once, measure what the running sessions hold
+                if(i + 1 == Math.min(concurrency, sessions)){
+                    long heap = usedHeapAfterGc() - heapBefore;
+                    int running = concurrency - slots.availablePermits();
+                    report.setHeapPerSession(running == 0 ? 0 : Math.max(0, heap) / running);
+                }
+            }
+            ended.await();
+            report.setElapsedMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            report.setThreadsStarted(threads.getTotalStartedThreadCount() - threadsBefore);
+            report.setPeakThreads(threads.getPeakThreadCount());
+        } finally {
+            for(ScheduledThreadPoolExecutor loop : eventLoops)
+                loop.shutdownNow();
+        }
+        return report;
+    }
+
+    // Told by a session of either model when it ends, on its event loop
+    private interface SessionEnd {
+        void onEnd(boolean aCompleted, long aSyncMs, int aRetries, String aError);
+    }
+
+    private void startBioland(int aSession, ScheduledThreadPoolExecutor aLoop, final SessionEnd aEnd){
+        BiolandMeter meter = new BiolandMeter(BIOLAND_VERSIONS[aSession % BIOLAND_VERSIONS.length]);
+        meter.addRecords(records);
+        new BiolandSimulation(meter, aLoop)
+                .setLatencyMs(latencyMs)
+                .setDropRate(dropRate)
+                .setCountdownIntervalMs(countdownIntervalMs)
+                .setSeed(aSession)
+                .start(timeoutMs, new BiolandSimulation.Listener() {
+                    @Override
+                    public void onFinished(BiolandSimulation.Result aResult) {
+                        aEnd.onEnd(aResult.completed, aResult.durationMs, aResult.retries, aResult.error);
+                    }
+                });
+    }
+
+    private void startOnetouch(ScheduledThreadPoolExecutor aLoop, final SessionEnd aEnd){
+        OnetouchMeter meter = new OnetouchMeter(maxPacketSize);
+        meter.addRecords(records);
+        new OnetouchSimulation(meter, aLoop)
+                .setMaxPacketSize(maxPacketSize)
+                .setLatencyMs(latencyMs)
+                .start(timeoutMs, new OnetouchSimulation.Listener() {
+                    @Override
+                    public void onFinished(OnetouchSimulation.Result aResult) {
+                        // Records read again after they went missing from the bulk window
+                        int retries = aResult.readsByIndex + aResult.readsById - aResult.measurements.size();
+                        aEnd.onEnd(aResult.completed, aResult.durationMs, Math.max(0, retries), aResult.error);
+                    }
+                });
+    }
+
+    private ScheduledThreadPoolExecutor[] createEventLoops(){
+        ScheduledThreadPoolExecutor[] eventLoops = new ScheduledThreadPoolExecutor[Math.max(1, loops)];
+        for(int i = 0; i < eventLoops.length; i++){
+            final String name = "LoadTestLoop-" + i;
+            eventLoops[i] = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = Executors.defaultThreadFactory().newThread(r);
+                    thread.setName(name);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            // Every session schedules a timeout that is almost always cancelled
+            eventLoops[i].setRemoveOnCancelPolicy(true);
+            // Start the thread now, so it is not counted as one started by the sessions
+            eventLoops[i].prestartAllCoreThreads();
+        }
+        return eventLoops;
+    }
+
+    private static long usedHeapAfterGc(){
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadTest test = new LoadTest();
+        List<Model> models = new ArrayList<>();
+        int maxFailures = 0;
+        long maxP99Ms = 0;
+        try {
+            String model = "both";
+            for(int i = 0; i < args.length; i++){
+                String option = args[i];
+                if(i + 1 >= args.length)
+                    throw new IllegalArgumentException("Missing the value of " + option);
+                String value = args[++i];
+                switch(option){
+                    case "--model": model = value; break;
+                    case "--sessions": test.setSessions(Integer.parseInt(value)); break;
+                    case "--concurrency": test.setConcurrency(Integer.parseInt(value)); break;
+                    case "--loops": test.setLoops(Integer.parseInt(value)); break;
+                    case "--records": test.setRecords(Integer.parseInt(value)); break;
+                    case "--latency-ms": test.setLatencyMs(Integer.parseInt(value)); break;
+                    case "--drop-rate": test.setDropRate(Double.parseDouble(value)); break;
+                    case "--countdown-ms": test.setCountdownIntervalMs(Integer.parseInt(value)); break;
+                    case "--packet-size": test.setMaxPacketSize(Integer.parseInt(value)); break;
+                    case "--timeout-ms": test.setTimeoutMs(Long.parseLong(value)); break;
+                    case "--max-failures": maxFailures = Integer.parseInt(value); break;
+                    case "--max-p99-ms": maxP99Ms = Long.parseLong(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            if(model.equals("bioland") || model.equals("both"))
+                models.add(Model.BIOLAND);
+            if(model.equals("onetouch") || model.equals("both"))
+                models.add(Model.ONETOUCH);
+            if(models.isEmpty())
+                throw new IllegalArgumentException("Unknown model " + model);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LoadTest [--model bioland|onetouch|both] [--sessions N] [--concurrency N]"
+                    + " [--loops N] [--records N] [--latency-ms N] [--drop-rate P] [--countdown-ms N]"
+                    + " [--packet-size N] [--timeout-ms N] [--max-failures N] [--max-p99-ms N]");
+            System.exit(2);
+        }
+
+        boolean passed = true;
+        for(Model model : models){
+            LoadReport report = test.run(model);
+            System.out.print(report);
+            if(report.getFailed() > maxFailures || (maxP99Ms > 0 && report.getSyncMs(99) > maxP99Ms))
+                passed = false;
+        }
+        System.exit(passed ? 0 : 1);
+    }
+}
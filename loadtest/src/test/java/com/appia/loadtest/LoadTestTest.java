@@ -0,0 +1,61 @@
+package com.appia.loadtest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadTestTest {
+
+    private static LoadTest smallLoad() {
+        return new LoadTest()
+                .setSessions(40)
+                .setConcurrency(10)
+                .setLoops(2)
+                .setRecords(5)
+                .setLatencyMs(1)
+                .setCountdownIntervalMs(1)
+                .setTimeoutMs(20000);
+    }
+
+    @Test
+    public void everyBiolandSessionSyncs() throws InterruptedException {
+        LoadReport report = smallLoad().run(LoadTest.Model.BIOLAND);
+
+        assertEquals(40, report.getSessions());
+        assertEquals(report.getFirstError(), 0, report.getFailed());
+        assertEquals(0, report.getRetries());
+        assertTrue(report.getSyncMs(50) <= report.getSyncMs(99));
+        assertTrue(report.getSessionsPerSecond() > 0);
+    }
+
+    @Test
+    public void everyOnetouchSessionSyncs() throws InterruptedException {
+        LoadReport report = smallLoad().setMaxPacketSize(20).run(LoadTest.Model.ONETOUCH);
+
+        assertEquals(40, report.getSessions());
+        assertEquals(report.getFirstError(), 0, report.getFailed());
+        assertEquals(0, report.getRetries());
+        assertTrue(report.getSyncMs(50) <= report.getSyncMs(99));
+    }
+
+    @Test
+    public void droppedRequestsAreRetried() throws InterruptedException {
+        LoadReport report = smallLoad().setDropRate(0.1).run(LoadTest.Model.BIOLAND);
+
+        assertEquals(report.getFirstError(), 0, report.getFailed());
+        assertTrue(report.getRetries() > 0);
+    }
+
+    @Test
+    public void percentilesByNearestRank() {
+        LoadReport report = new LoadReport(LoadTest.Model.BIOLAND, 100);
+        for (int i = 100; i >= 1; i--)
+            report.add(true, i, 0, null);
+
+        assertEquals(50, report.getSyncMs(50));
+        assertEquals(99, report.getSyncMs(99));
+        assertEquals(100, report.getSyncMs(100));
+        assertEquals(1, report.getSyncMs(0));
+    }
+}
@@ -0,0 +1,125 @@
+package com.appia.bioland;
+
+import com.appia.storage.MeasurementHistory;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Keeps BiolandMeasurements in a MeasurementHistory and builds them back from its rows.
+ *
+ * The ID of a Bioland measurement is the result packet it came from, which is its time and
+ * glucose plus the packet length and the retain byte. Those two are kept in the record ID of the
+ * row, and the month and day bytes as sent by the meter in its flags, as a month of 12 or a day
+ * past the end of the month would roll over in the time of the row. The rest of the ID is
+ * rebuilt from the other columns.
+ */
+public final class BiolandHistory {
+
+    // Record ID of the measurements whose ID is not a result packet
+    public final static int NO_ID = -1;
+
+    // Layout of the ID, see Protocol.ResultPacket
+    private final static int ID_LENGTH = 12;
+    private final static int ID_START_CODE = 0;
+    private final static int ID_PACKET_LENGTH = 1;
+    private final static int ID_CATEGORY = 2;
+    private final static int ID_YEAR = 3;
+    private final static int ID_MONTH = 4;
+    private final static int ID_DAY = 5;
+    private final static int ID_HOUR = 6;
+    private final static int ID_MIN = 8;
+    private final static int ID_RETAIN = 9;
+    private final static int ID_GLUCOSE = 10;
+
+    private final static byte START_CODE = 0x55;
+    private final static byte RESULT_CATEGORY = 0x03;
+
+    // The glucometer sends mg/dL, the measurements are in mmol/L
+    private final static float MGDL_PER_MMOL = 18;
+
+    private BiolandHistory() {
+    }
+
+    /**
+     * Adds aMeasurement to aHistory.
+     * @return the row of the measurement
+     */
+    public static int add(MeasurementHistory aHistory, BiolandMeasurement aMeasurement) {
+        int mgdl = Math.round(aMeasurement.mGlucose * MGDL_PER_MMOL);
+        byte[] id = parseId(aMeasurement.mId);
+        return aHistory.add(aMeasurement.mDate.getTime(), mgdl, recordIdOf(id), flagsOf(id));
+    }
+
+    /**
+     * Builds the measurement of a row.
+     * @param aHistory
+     * @param aRow
+     */
+    public static BiolandMeasurement get(MeasurementHistory aHistory, int aRow) {
+        int mgdl = aHistory.getMgdl(aRow);
+        Date date = new Date(aHistory.getEpochMillis(aRow));
+        int recordId = aHistory.getRecordId(aRow);
+        String id = recordId == NO_ID ? null : idOf(date, mgdl, recordId, aHistory.getFlags(aRow));
+        return new BiolandMeasurement(mgdl / MGDL_PER_MMOL, date, id);
+    }
+
+    // Bytes of an ID, null if it isn't a result packet
+    static byte[] parseId(String aId) {
+        if (aId == null || !aId.startsWith("[") || !aId.endsWith("]"))
+            return null;
+        String[] bytes = aId.substring(1, aId.length() - 1).split(", ");
+        if (bytes.length != ID_LENGTH)
+            return null;
+        byte[] id = new byte[ID_LENGTH];
+        try {
+            for (int i = 0; i < ID_LENGTH; i++)
+                id[i] = Byte.parseByte(bytes[i]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (id[ID_START_CODE] != START_CODE || id[ID_CATEGORY] != RESULT_CATEGORY)
+            return null;
+        return id;
+    }
+
+    // Packet length and retain byte of an ID, NO_ID if it isn't a result packet
+    static int recordIdOf(byte[] aId) {
+        if (aId == null)
+            return NO_ID;
+        return ((aId[ID_PACKET_LENGTH] & 0xff) << 8) | (aId[ID_RETAIN] & 0xff);
+    }
+
+    // Month and day bytes of an ID, 0 if it isn't a result packet
+    static int flagsOf(byte[] aId) {
+        if (aId == null)
+            return 0;
+        return ((aId[ID_MONTH] & 0xff) << 8) | (aId[ID_DAY] & 0xff);
+    }
+
+    // Rebuilds the ID as Protocol writes it
+    static String idOf(Date aDate, int aMgdl, int aRecordId, int aFlags) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(aDate);
+        byte[] id = new byte[ID_LENGTH];
+        id[ID_START_CODE] = START_CODE;
+        id[ID_PACKET_LENGTH] = (byte) (aRecordId >> 8);
+        id[ID_CATEGORY] = RESULT_CATEGORY;
+        // The month and day went into the date leniently, so the year may have rolled over
+        // with them, it rolls over the same from the year of the date
+        Calendar sent = (Calendar) cal.clone();
+        sent.set(Calendar.MONTH, (aFlags >> 8) & 0xff);
+        sent.set(Calendar.DAY_OF_MONTH, aFlags & 0xff);
+        int rolled = sent.get(Calendar.YEAR) - cal.get(Calendar.YEAR);
+        id[ID_YEAR] = (byte) (cal.get(Calendar.YEAR) - rolled - 2000);
+        id[ID_MONTH] = (byte) (aFlags >> 8);
+        id[ID_DAY] = (byte) aFlags;
+        id[ID_HOUR] = (byte) cal.get(Calendar.HOUR_OF_DAY);
+        id[ID_MIN] = (byte) cal.get(Calendar.MINUTE);
+        id[ID_RETAIN] = (byte) aRecordId;
+        id[ID_GLUCOSE] = (byte) aMgdl;
+        id[ID_GLUCOSE + 1] = (byte) (aMgdl >> 8);
+        return Arrays.toString(id);
+    }
+}
@@ -20,7 +20,9 @@ public class BiolandMeasurement {
         mDay = aDay;
         mHour = aHour;
         mMin = aMin;
+        // Cleared so the seconds are 0 and the date is the same every time the record is downloaded
         Calendar cal = Calendar.getInstance();
+        cal.clear();
         cal.set(Calendar.YEAR, aYear);
         cal.set(Calendar.MONTH, aMonth);
         cal.set(Calendar.DAY_OF_MONTH, aDay);
@@ -29,6 +31,18 @@ public class BiolandMeasurement {
         mDate = cal.getTime();
         mId = aId;
     }
+    public BiolandMeasurement(float aGlucose, Date aDate, String aId) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(aDate);
+        mGlucose = aGlucose;
+        mYear = cal.get(Calendar.YEAR);
+        mMonth = cal.get(Calendar.MONTH);
+        mDay = cal.get(Calendar.DAY_OF_MONTH);
+        mHour = cal.get(Calendar.HOUR_OF_DAY);
+        mMin = cal.get(Calendar.MINUTE);
+        mDate = aDate;
+        mId = aId;
+    }
     /** The glucose concentration */
     public float mGlucose;
 
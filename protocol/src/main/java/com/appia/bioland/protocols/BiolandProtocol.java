@@ -1,6 +1,6 @@
 package com.appia.bioland.protocols;
 
-import android.util.Log;
+import com.appia.common.Log;
 
 import com.appia.bioland.BiolandInfo;
 import com.appia.bioland.BiolandMeasurement;
@@ -20,6 +20,10 @@ public class BiolandProtocol {
     public final static String PROTOCOL_BAD_CHECKSUM = "Bioland Protocol bad checksum";
     public final static String PROTOCOL_BAD_LENGTH  = "Bioland protocol bad length";
 
+    /* Requests sent to the device, parsed once. */
+    private final static byte[] DATA_READ_PACKET = hexStringToByteArray("5A0A031005020F213BEB");
+    private final static byte[] INFO_READ_PACKET = hexStringToByteArray("5A0A001005020F213BE8");
+
     /**
      * Protocol constructor receives the interface with upper layer.
      * @param aCallbacks
@@ -37,7 +41,7 @@ public class BiolandProtocol {
             mBusy=true;
             /* DATA READ PACKET */
             Log.d(TAG, " Data packet sent.");
-            mMessage = hexStringToByteArray("5A0A031005020F213BEB");
+            mMessage = DATA_READ_PACKET;
             mRetriesCount = 1;
             mMeasurements = new ArrayList<>();
 
@@ -61,7 +65,7 @@ public class BiolandProtocol {
             mBusy=true;
             /* INFO READ PACKET */
             Log.d(TAG, " Info packet sent.");
-            mMessage = hexStringToByteArray("5A0A001005020F213BE8");
+            mMessage = INFO_READ_PACKET;
             mRetriesCount = 1;
 
             mTimer = new Timer();
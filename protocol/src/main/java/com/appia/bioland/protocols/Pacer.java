@@ -0,0 +1,106 @@
+package com.appia.bioland.protocols;
+
+import java.util.Random;
+
+/**
+ * Decides how long the protocol waits between requests, learning it from the glucometer.
+ *
+ * The gap before each measurement request shrinks a quarter of the way to its floor on every
+ * answer, and doubles when a request has to be retried, which also raises the floor to the gap
+ * that was too short. The floor decays slowly, in case the retry was just a lost packet.
+ * Retries wait for the smoothed response latency plus four deviations, as TCP does, doubled on
+ * every attempt with a random jitter so the meter is not hit in lockstep.
+ */
+public class Pacer {
+
+    // Bounds of the gap between an answer and the next request
+    public final static int MIN_GAP_MS = 10;
+    public final static int MAX_GAP_MS = 1000;
+    // Bounds of the wait before retrying a request
+    public final static int MIN_RETRY_DELAY_MS = 250;
+    public final static int MAX_RETRY_DELAY_MS = 2 * Protocol.RETRY_DELAY_MS;
+
+    private final Random random;
+
+    private int gapMs;
+    private int floorMs;
+    // Smoothed latency and deviation, 0 until the first answer
+    private int latencyMs;
+    private int deviationMs;
+
+    public Pacer(){
+        this(new Random());
+    }
+
+    public Pacer(Random aRandom){
+        random = aRandom;
+        gapMs = Protocol.DELAY_AFTER_RECEIVED;
+        floorMs = MIN_GAP_MS;
+    }
+
+    // Gap to wait after an answer before sending the next request
+    public synchronized int getGapMs(){
+        return gapMs;
+    }
+
+    // Shortest gap that is still known to work
+    public synchronized int getFloorMs(){
+        return floorMs;
+    }
+
+    // Smoothed response latency, 0 if nothing was measured yet
+    public synchronized int getLatencyMs(){
+        return latencyMs;
+    }
+
+    /**
+     * Returns how long to wait for an answer before retrying.
+     * @param aAttempt number of times the request was sent, starting at 1
+     */
+    public synchronized int getRetryDelayMs(int aAttempt){
+        long delay = latencyMs == 0 ? Protocol.RETRY_DELAY_MS : latencyMs + 4L * deviationMs;
+        delay = Math.max(MIN_RETRY_DELAY_MS, Math.min(Protocol.RETRY_DELAY_MS, delay));
+        delay <<= Math.min(Math.max(aAttempt - 1, 0), 4);
+        // The jitter only adds up to a quarter, retries never come sooner than the meter needs
+        delay += random.nextInt((int) (delay / 4) + 1);
+        return (int) Math.min(MAX_RETRY_DELAY_MS, delay);
+    }
+
+    /**
+     * Called when the glucometer answered a request on its first attempt. Answers to retried
+     * requests are not measured, it is not known which attempt they answer.
+     * @param aLatencyMs time between the request and the answer
+     */
+    public synchronized void onAnswer(long aLatencyMs){
+        int sample = (int) Math.max(0, Math.min(Integer.MAX_VALUE / 8, aLatencyMs));
+        if(latencyMs == 0){
+            latencyMs = Math.max(1, sample);
+            deviationMs = sample / 2;
+        } else {
+            deviationMs += (Math.abs(latencyMs - sample) - deviationMs) / 4;
+            latencyMs = Math.max(1, latencyMs + (sample - latencyMs) / 8);
+        }
+        // A retry may have been a lost packet, let the floor go down slowly again
+        floorMs -= (floorMs - MIN_GAP_MS) / 32;
+        gapMs -= (gapMs - floorMs) / 4;
+    }
+
+    // Called when a request had to be retried, the gap before it was too short
+    public synchronized void onRetry(){
+        floorMs = Math.min(MAX_GAP_MS, Math.max(floorMs, gapMs));
+        gapMs = Math.min(MAX_GAP_MS, gapMs * 2);
+    }
+
+    /**
+     * Starts from the values learnt on a previous session.
+     * @param aGapMs
+     * @param aFloorMs
+     * @param aLatencyMs 0 if unknown
+     */
+    public synchronized void restore(int aGapMs, int aFloorMs, int aLatencyMs){
+        floorMs = Math.max(MIN_GAP_MS, Math.min(MAX_GAP_MS, aFloorMs));
+        gapMs = Math.max(floorMs, Math.min(MAX_GAP_MS, aGapMs));
+        latencyMs = Math.max(0, aLatencyMs);
+        deviationMs = latencyMs / 2;
+    }
+}
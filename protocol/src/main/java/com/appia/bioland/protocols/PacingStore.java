@@ -0,0 +1,20 @@
+package com.appia.bioland.protocols;
+
+/**
+ * Remembers the pacing learnt for each glucometer model, so the next session starts tuned.
+ */
+public interface PacingStore {
+
+    /**
+     * Restores into aPacer the values saved for aModel, leaves it untouched if there are none.
+     * @param aModel model of the glucometer, see Protocol.getPacingModel
+     * @param aPacer
+     */
+    void load(String aModel, Pacer aPacer);
+
+    /**
+     * @param aModel model of the glucometer, see Protocol.getPacingModel
+     * @param aPacer
+     */
+    void save(String aModel, Pacer aPacer);
+}
@@ -0,0 +1,136 @@
+package com.appia.bioland.protocols;
+
+import java.util.Arrays;
+
+/**
+ * Decides which packet the glucometer sent from its start code, length and category bytes and
+ * its checksum, without building any packet. Each protocol version registers the packets it can
+ * receive, indexed by category, with a Builder, and malformed input is reported as a negative
+ * result code. A classifier can't be changed once built, so the ones of each version are shared.
+ */
+public class PacketClassifier {
+
+    // Kinds of packets sent by the glucometer
+    public final static int INFO = 0;
+    public final static int TIMING = 1;
+    public final static int RESULT = 2;
+    public final static int END = 3;
+
+    // Result codes of malformed packets
+    public final static int ERROR_TOO_SHORT = -1;
+    public final static int ERROR_START_CODE = -2;
+    public final static int ERROR_CATEGORY = -3;
+    public final static int ERROR_LENGTH = -4;
+    public final static int ERROR_CHECKSUM = -5;
+
+    private final static byte DEVICE_START_CODE = 0x55;
+    private final static int HEADER_LENGTH = 3;
+    private final static int MAX_CATEGORY = 0x0F;
+    private final static int NONE = -1;
+
+    // Kind and length of the packet of each category, NONE if not sent in this version
+    private final int[] mKinds = new int[MAX_CATEGORY + 1];
+    private final int[] mLengths = new int[MAX_CATEGORY + 1];
+    // Checksum of the packet of each category, null if it has none
+    private final Checksum[] mChecksums = new Checksum[MAX_CATEGORY + 1];
+
+    /**
+     * Verifies the checksum of a packet whose layout was already checked.
+     */
+    public interface Checksum {
+        boolean matches(byte[] raw);
+    }
+
+    private PacketClassifier(Builder aBuilder) {
+        System.arraycopy(aBuilder.mKinds, 0, mKinds, 0, mKinds.length);
+        System.arraycopy(aBuilder.mLengths, 0, mLengths, 0, mLengths.length);
+        System.arraycopy(aBuilder.mChecksums, 0, mChecksums, 0, mChecksums.length);
+    }
+
+    /**
+     * Registers the packets of a version and builds its classifier.
+     */
+    public static class Builder {
+        private final int[] mKinds = new int[MAX_CATEGORY + 1];
+        private final int[] mLengths = new int[MAX_CATEGORY + 1];
+        private final Checksum[] mChecksums = new Checksum[MAX_CATEGORY + 1];
+
+        public Builder() {
+            Arrays.fill(mKinds, NONE);
+        }
+
+        /**
+         * Registers a packet sent by the glucometer.
+         * @param aCategory category byte of the packet
+         * @param aKind INFO, TIMING, RESULT or END
+         * @param aLength length of the packet, checksum included
+         * @return this builder, to chain the packets of a version
+         */
+        public Builder add(int aCategory, int aKind, int aLength) {
+            return add(aCategory, aKind, aLength, null);
+        }
+
+        /**
+         * Registers a packet sent by the glucometer that ends with a checksum.
+         * @param aCategory category byte of the packet
+         * @param aKind INFO, TIMING, RESULT or END
+         * @param aLength length of the packet, checksum included
+         * @param aChecksum verifies the checksum of the packet
+         * @return this builder, to chain the packets of a version
+         */
+        public Builder add(int aCategory, int aKind, int aLength, Checksum aChecksum) {
+            mKinds[aCategory] = aKind;
+            mLengths[aCategory] = aLength;
+            mChecksums[aCategory] = aChecksum;
+            return this;
+        }
+
+        /**
+         * Returns a classifier of the packets registered so far, later ones don't change it.
+         */
+        public PacketClassifier build() {
+            return new PacketClassifier(this);
+        }
+    }
+
+    /**
+     * Returns the kind of packet received, or a negative error code. The checksum is verified
+     * here too, so a packet is only built once it is known to be valid.
+     * @param raw
+     */
+    public int classify(byte[] raw) {
+        if (raw.length < HEADER_LENGTH)
+            return ERROR_TOO_SHORT;
+        if (raw[0] != DEVICE_START_CODE)
+            return ERROR_START_CODE;
+        int category = raw[2] & 0xFF;
+        if (category > MAX_CATEGORY || mKinds[category] == NONE)
+            return ERROR_CATEGORY;
+        int length = mLengths[category];
+        if (raw.length != length || (raw[1] & 0xFF) != length)
+            return ERROR_LENGTH;
+        Checksum checksum = mChecksums[category];
+        if (checksum != null && !checksum.matches(raw))
+            return ERROR_CHECKSUM;
+        return mKinds[category];
+    }
+
+    /**
+     * Returns a readable description of a packet kind or result code.
+     * @param aCode
+     */
+    public static String describe(int aCode) {
+        switch (aCode) {
+            case INFO: return "Info packet";
+            case TIMING: return "Timing packet";
+            case RESULT: return "Result packet";
+            case END: return "End packet";
+            case ERROR_TOO_SHORT: return "Packet shorter than its header";
+            case ERROR_START_CODE: return "StartCode must be 0x55";
+            case ERROR_CATEGORY: return "Unknown packet category";
+            case ERROR_LENGTH: return "Wrong packet length";
+            case ERROR_CHECKSUM: return "Checksum Does Not Match";
+            default: return "Unknown result " + aCode;
+        }
+    }
+}
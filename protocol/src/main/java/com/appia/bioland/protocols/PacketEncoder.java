@@ -0,0 +1,77 @@
+package com.appia.bioland.protocols;
+
+import java.util.Calendar;
+
+/**
+ * Writes the requests sent to the glucometer straight into their final array. The header is
+ * left as it is, and the date fields and the checksum are written after it in one pass, so a
+ * request can be encoded again into the same array.
+ */
+public final class PacketEncoder {
+
+    // Added to the sum of the bytes of every checksum
+    final static int CHECKSUM_OFFSET = 2;
+    // Start code, length and category
+    public final static int HEADER_LENGTH = 3;
+    // Year, month, day, hour and minute, the second follows if the request has room for it
+    private final static int DATE_FIELDS = 5;
+
+    private PacketEncoder(){
+    }
+
+    /**
+     * Writes the date and the checksum of a request whose header is already in aOut.
+     * @param aOut array of the request, as long as the packet
+     * @param aChecksumLength bytes of the checksum at the end of the request
+     * @param calendar date sent to the glucometer
+     * @return the sum behind the checksum, to patch the request later
+     */
+    public static int encode(byte[] aOut, int aChecksumLength, Calendar calendar){
+        int end = aOut.length - aChecksumLength;
+        int sum = CHECKSUM_OFFSET;
+        for (int i=0; i<HEADER_LENGTH; i++){
+            sum += aOut[i]&0xff;
+        }
+        sum += put(aOut, HEADER_LENGTH, calendar.get(Calendar.YEAR)-2000);
+        sum += put(aOut, HEADER_LENGTH+1, calendar.get(Calendar.MONTH));
+        sum += put(aOut, HEADER_LENGTH+2, calendar.get(Calendar.DAY_OF_MONTH));
+        sum += put(aOut, HEADER_LENGTH+3, calendar.get(Calendar.HOUR_OF_DAY));
+        sum += put(aOut, HEADER_LENGTH+4, calendar.get(Calendar.MINUTE));
+        if (end > HEADER_LENGTH+DATE_FIELDS)
+            sum += put(aOut, HEADER_LENGTH+DATE_FIELDS, calendar.get(Calendar.SECOND));
+        writeChecksum(aOut, end, aChecksumLength, sum);
+        return sum;
+    }
+
+    /**
+     * Returns the checksum of the first aLength bytes, before it is cut to its length.
+     * @param raw
+     * @param aLength
+     */
+    public static int checksum(byte[] raw, int aLength){
+        int sum = CHECKSUM_OFFSET;
+        for (int i=0; i<aLength; i++){
+            sum += raw[i]&0xff;
+        }
+        return sum;
+    }
+
+    // Writes the sum at aOffset, little endian, in aLength bytes
+    static void writeChecksum(byte[] aOut, int aOffset, int aLength, int aSum){
+        for (int i=0; i<aLength; i++){
+            aOut[aOffset+i] = (byte) ((aSum>>(8*i))&0xff);
+        }
+    }
+
+    // Writes a field again and returns how much the checksum changes
+    static int patch(byte[] aOut, int aOffset, int aValue){
+        int previous = aOut[aOffset]&0xff;
+        return put(aOut, aOffset, aValue) - previous;
+    }
+
+    // Writes a field and returns what it adds to the checksum
+    private static int put(byte[] aOut, int aOffset, int aValue){
+        aOut[aOffset] = (byte) aValue;
+        return aOut[aOffset]&0xff;
+    }
+}
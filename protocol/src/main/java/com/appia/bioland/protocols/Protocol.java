@@ -0,0 +1,763 @@
+package com.appia.bioland.protocols;
+
+import com.appia.bioland.BiolandInfo;
+import com.appia.bioland.BiolandMeasurement;
+import com.appia.common.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import com.appia.common.Log;
+import com.appia.metrics.SyncTrace;
+
+public abstract class Protocol {
+
+    private final static String TAG = "Protocol";
+    // Abstracts serial communication
+    private ProtocolCallbacks protocolCallbacks;
+
+
+    private List<ResultPacket> resultPackets = new ArrayList<>();
+
+    // Contains the current protocol version
+    protected Version version;
+
+    // Capabilities of the protocol version, set by each subclass
+    public final static int HAS_TIMING_PACKETS = 1;     // Sends the countdown before a measurement
+    public final static int HAS_HANDSHAKE = 1 << 1;     // Accepts the handshake packet
+    public final static int HAS_SERIAL_NUMBER = 1 << 2; // Info packet has a serial number, not a rolling code
+    public final static int CHECKSUM_3_BYTES = 1 << 3;  // Checksums are 3 bytes long instead of 1
+    protected int capabilities;
+
+    // All protocols have the following states.
+    public enum State {DISCONNECTED, WAITING_INFO_PACKET, WAITING_MEASUREMENT,WAITING_RESULT_OR_END_PACKET};
+    public State state;
+    public boolean testing_mode;
+
+    private int retries_on_current_packet;
+    final static public int MAX_RETRIES = 5;
+    // Starting delays, the Pacer adapts them to each glucometer
+    final static public int RETRY_DELAY_MS = 1000;
+    final static public int DELAY_AFTER_RECEIVED = 100;
+
+    // One thread runs the retries of every connected device, each protocol only keeps a token
+    final static ScheduledThreadPoolExecutor scheduler = createScheduler();
+    private ScheduledFuture<?> pendingSend;
+    // Incremented whenever the pending send is cancelled, so a send already running is dropped
+    private volatile int sendToken;
+    private final Semaphore mutex = new Semaphore(1);
+
+    // Learns the delays between requests, kept per model by the pacing store
+    private final Pacer pacer = new Pacer();
+    private PacingStore pacingStore;
+    private String pacingModel;
+    // When the last request was sent, 0 once it was answered
+    private long requestSentAt;
+
+    // Time source of this device, see setClock
+    private volatile Clock time = Clock.SYSTEM;
+    // Writes the time on the requests of this device
+    private final RequestClock clock = new RequestClock();
+    // Requests built once per connection and stamped with the time before every send
+    private AppPacket infoRequest;
+    private AppPacket measRequest;
+
+    // Tells which packet was received, filled in by each version
+    private final PacketClassifier classifier;
+
+    // Phases and counters of the current sync
+    private volatile SyncTrace trace = SyncTrace.NONE;
+
+    // This class abstracts the protocol from the User
+    public Protocol(ProtocolCallbacks aCallbacks){
+        protocolCallbacks = aCallbacks;
+        state = State.DISCONNECTED;
+        classifier = build_classifier();
+    }
+
+    /**
+     * Changes where this protocol reads the time from, for the answer times and for the date
+     * written on the requests. Clock.SYSTEM unless a simulation sets another one.
+     */
+    public void setClock(Clock aClock){
+        time = aClock;
+        clock.setClock(aClock);
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler(){
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = Executors.defaultThreadFactory().newThread(r);
+                thread.setName("BiolandProtocol");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // Retries are cancelled on almost every packet, don't keep them queued until they expire
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    public Version getVersion(){
+        return version;
+    }
+
+    public Pacer getPacer(){
+        return pacer;
+    }
+
+    public void setPacingStore(PacingStore aStore){
+        pacingStore = aStore;
+    }
+
+    // Where the phases and counters of the sync are recorded, SyncTrace.NONE if not traced
+    public void setSyncTrace(SyncTrace aTrace){
+        trace = aTrace;
+    }
+
+    // Model of the connected glucometer for the pacing store, null until the info packet arrives
+    public String getPacingModel(){
+        return pacingModel;
+    }
+
+    // Returns true if this protocol version has all the given capabilities
+    public boolean hasCapability(int aCapabilities){
+        return (capabilities & aCapabilities) == aCapabilities;
+    }
+
+    // Function to be called when the device connected
+    public void connect(){
+        if(state == State.DISCONNECTED){
+            state = State.WAITING_INFO_PACKET;
+            retries_on_current_packet = 0;
+            sendPacket();
+        }
+    }
+
+    // Starts the communication from an info packet already received, used when the version was
+    // negotiated with the device before creating this protocol
+    public void attach(byte[] infoPacket){
+        if(state == State.DISCONNECTED){
+            state = State.WAITING_INFO_PACKET;
+            retries_on_current_packet = 0;
+            onDataReceived(infoPacket);
+        }
+    }
+
+    // Function to be called when the device disconnects
+    public void disconnect() {
+        // Cancel any pending schedules
+        cancelPendingSend();
+        // Set state to disconnected
+        state = State.DISCONNECTED;
+        resultPackets.clear();
+        requestSentAt = 0;
+    }
+
+
+    // This function starts the communication, must be used if the protocol is <3.1
+    public boolean requestMeasurements(){
+        // This is not supported for version 3.1 or higher
+        if(hasCapability(HAS_TIMING_PACKETS))
+            return false;
+
+        // Acquire mutex not to step over send
+        if(!lock())
+            return false;
+        // Start communication requesting information packet
+        send(infoRequest());
+        state = State.WAITING_INFO_PACKET;
+
+        // Reset protocol variables
+        retries_on_current_packet = 0;
+        scheduleSend(pacer.getRetryDelayMs(1));
+
+        unlock();
+        return true;
+    }
+
+
+
+
+    // This function should be called when a bluetooth packet is received
+    public void onDataReceived(byte[] bytes){
+        // Aquire mutex not to step on send function
+        if(!lock())
+            return;
+        // Cancel any pending schedules
+        cancelPendingSend();
+        measureLatency();
+        trace.received(bytes.length);
+
+        // Decide once which packet was received
+        int kind = classifier.classify(bytes);
+        DevicePacket packet = decode(kind, bytes);
+        countError(kind);
+
+        switch (state){
+            //If disconnected nothing to be done
+            case DISCONNECTED:
+
+                break;
+            // If waiting for an Information packet
+            case WAITING_INFO_PACKET:
+                switch (kind){
+                    case PacketClassifier.INFO:
+                        handleInfoPacket((InfoPacket) packet);
+                        break;
+                    // This code onwards was defined after extensive testing on the BIOLAND G-500
+                    // Sometimes has unreliable behavior
+                    case PacketClassifier.TIMING:
+                        // This situation occurs when the BIOLAND responds during the current
+                        // countdown 4->3->2->1
+
+                        // Get timing from packet
+                        protocolCallbacks.onCountdownReceived(packet.get(TIMING_COUNTDOWN));
+                        // Change to timing
+                        state = State.WAITING_MEASUREMENT;
+                        break;
+                    case PacketClassifier.RESULT:
+                        // This situation occurs when the BIOLAND responds to the info packet during
+                        // countdown 1-> 0
+
+                        // Add it to the current results
+                        resultPackets.add((ResultPacket) packet);
+                        trace.record();
+
+                        // Next state should be to ask for all saved measurements
+                        state = State.WAITING_RESULT_OR_END_PACKET;
+
+                        // Request new measurement
+                        scheduleSendPacket();
+                        break;
+                    case PacketClassifier.END:
+                        // This situation was observed has to be handled
+
+                        // Wait for a measurement
+                        state = State.WAITING_MEASUREMENT;
+                        break;
+                    default:
+                        // No known packet was received
+                        protocolCallbacks.onProtocolError("Received an unknown packet");
+                        state = State.WAITING_MEASUREMENT;
+                }
+                break;
+            case WAITING_MEASUREMENT:
+                if(kind == PacketClassifier.TIMING){
+                    // Get timing from packet
+                    byte countdown = packet.get(TIMING_COUNTDOWN);
+                    protocolCallbacks.onCountdownReceived(countdown);
+                    if(countdown == 0){
+                        state = State.WAITING_RESULT_OR_END_PACKET;
+                    }
+                } else {
+                    protocolCallbacks.onProtocolError(describeUnexpected(kind, "timing packet"));
+//                    Log.e(TAG,"Wrong packet received waiting timing packet!");
+                }
+                break;
+            case WAITING_RESULT_OR_END_PACKET:
+                if(kind == PacketClassifier.RESULT){
+                    // Add the packet to current results
+                    resultPackets.add((ResultPacket) packet);
+                    trace.record();
+
+                    // Request new measurement
+                    scheduleSendPacket();
+                } else if(kind == PacketClassifier.END){
+                    savePacing();
+                    // Notify the application of the received measurements
+                    if(resultPackets.size()>0) {
+                        // Create the application representation of the measurements
+                        ArrayList<BiolandMeasurement> arr = new ArrayList<>();
+                        for (int i = 0; i < resultPackets.size(); i++) {
+
+                            ResultPacket p = resultPackets.get(i);
+                            // Years in the packets start on year 2000
+                            arr.add(new BiolandMeasurement(p.getGlucose()/(float)18,
+                                    (2000 + p.getYear()),
+                                    p.getMonth(),
+                                    p.getDay(),
+                                    p.getHour(),
+                                    p.getMin(),
+                                    Arrays.toString(p.getVariablesInByteArray())));
+                        }
+                        // Notify application
+                        protocolCallbacks.onMeasurementsReceived(arr);
+                        resultPackets.clear();
+                    }
+                    // Wait for a new measurement
+                    state = State.WAITING_MEASUREMENT;
+                } else {
+                    protocolCallbacks.onProtocolError(describeUnexpected(kind, "result or end packet"));
+//                    Log.e(TAG,"Wrong packet received waiting result or end packet!");
+                }
+                break;
+        }
+
+        retries_on_current_packet=0;
+        unlock();
+    }
+
+    // Builds the packet classified as aKind, null for the error codes. The classifier already
+    // checked the layout and the checksum, the packets built are views that don't check them again
+    private DevicePacket decode(int aKind, byte[] raw){
+        switch (aKind) {
+            case PacketClassifier.INFO:
+                return build_info_packet(raw);
+            case PacketClassifier.TIMING:
+                return build_timing_packet(raw);
+            case PacketClassifier.RESULT:
+                return build_result_packet(raw);
+            case PacketClassifier.END:
+                return build_end_packet(raw);
+            default:
+                return null;
+        }
+    }
+
+    private static String describeUnexpected(int aKind, String aExpected){
+        return PacketClassifier.describe(aKind) + " received waiting " + aExpected;
+    }
+
+    // Reads the device information and decides how to go on depending on the version
+    private void handleInfoPacket(InfoPacket infoPacket){
+        trace.mark(SyncTrace.Phase.INFO_RECEIVED);
+        // Build application information with available data
+        BiolandInfo info = new BiolandInfo();
+        info.protocolVersion = infoPacket.getVersionCode() & 0xff;
+
+        // Start from the delays learnt with this model, before requesting the measurements
+        pacingModel = version.get() + "/" + (infoPacket.getVersionCode() & 0xff);
+        if(pacingStore != null)
+            pacingStore.load(pacingModel, pacer);
+
+        fill_device_info(infoPacket, info);
+
+        // Notify application
+        protocolCallbacks.onDeviceInfoReceived(info);
+        // If version has timing broadcasts wait for them
+        if(hasCapability(HAS_TIMING_PACKETS))
+            state = State.WAITING_MEASUREMENT;
+        // else request measurements
+        else{
+            state = State.WAITING_RESULT_OR_END_PACKET;
+            scheduleSendPacket();
+        }
+    }
+
+    // Sends the next request after the gap chosen by the pacer
+    private void scheduleSendPacket(){
+        // During testing only one thread has to be used
+        if(!testing_mode)
+            scheduleSend(pacer.getGapMs());
+        else
+            sendPacket();
+    }
+
+    // Runs sendPacket after aDelay milliseconds, replacing the pending one if any
+    private void scheduleSend(int aDelay){
+        cancelPendingSend();
+        final int token = sendToken;
+        pendingSend = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if(!lock())
+                    return;
+                // Skip it if it was cancelled while waiting for the mutex
+                if(token == sendToken)
+                    doSendPacket();
+                unlock();
+            }
+        }, aDelay, TimeUnit.MILLISECONDS);
+    }
+
+    // Returns the information request stamped with the current time, built on first use
+    private byte[] infoRequest(){
+        if(infoRequest == null)
+            infoRequest = build_get_info_packet(Calendar.getInstance());
+        clock.stamp(infoRequest);
+        return infoRequest.to_bytes();
+    }
+
+    // Returns the measurement request stamped with the current time, built on first use
+    private byte[] measRequest(){
+        if(measRequest == null)
+            measRequest = build_get_meas_packet(Calendar.getInstance());
+        clock.stamp(measRequest);
+        return measRequest.to_bytes();
+    }
+
+    // Sends a request and starts timing its answer
+    private void send(byte[] aRequest){
+        protocolCallbacks.sendData(aRequest);
+        trace.sent(aRequest.length);
+        requestSentAt = time.nanoTime();
+    }
+
+    // Counts the packets that could not be decoded
+    private void countError(int aKind){
+        if(aKind == PacketClassifier.ERROR_CHECKSUM)
+            trace.count(SyncTrace.Counter.CRC_ERRORS);
+        else if(aKind == PacketClassifier.ERROR_LENGTH || aKind == PacketClassifier.ERROR_TOO_SHORT)
+            trace.count(SyncTrace.Counter.LENGTH_ERRORS);
+    }
+
+    // Feeds the pacer with the latency of the request just answered, unless it was retried
+    private void measureLatency(){
+        if(requestSentAt == 0)
+            return;
+        if(retries_on_current_packet <= 1)
+            pacer.onAnswer(TimeUnit.NANOSECONDS.toMillis(time.nanoTime() - requestSentAt));
+        requestSentAt = 0;
+    }
+
+    private void savePacing(){
+        if(pacingStore != null && pacingModel != null)
+            pacingStore.save(pacingModel, pacer);
+    }
+
+    private void cancelPendingSend(){
+        sendToken++;
+        if(pendingSend != null){
+            pendingSend.cancel(false);
+            pendingSend = null;
+        }
+    }
+
+    // During testing only one thread is used, so the mutex is not needed
+    private boolean lock(){
+        if(testing_mode)
+            return true;
+        try {
+            mutex.acquire();
+            return true;
+        }catch (java.lang.InterruptedException a){
+            return false;
+        }
+    }
+
+    private void unlock(){
+        if(!testing_mode)
+            mutex.release(1);
+    }
+
+    // This function sends the packet
+    public void sendPacket(){
+        // Aquire mutex not to step on receive function
+        if(!lock())
+            return;
+        doSendPacket();
+        unlock();
+    }
+
+    private void doSendPacket(){
+
+        // If i haven't retried the max number of tries
+        if (retries_on_current_packet<MAX_RETRIES){
+
+            // The meter was not ready for the last measurement request, slow down
+            if(retries_on_current_packet > 0 && state == State.WAITING_RESULT_OR_END_PACKET)
+                pacer.onRetry();
+            if(retries_on_current_packet > 0)
+                trace.count(SyncTrace.Counter.RETRIES);
+            retries_on_current_packet++;
+
+            switch (state){
+                // Request information packet
+                case WAITING_INFO_PACKET:
+
+                    // Send the information request with current date
+                    send(infoRequest());
+
+                    // Retry with backoff if it is not answered
+                    if(!testing_mode)
+                        scheduleSend(pacer.getRetryDelayMs(retries_on_current_packet));
+                    break;
+
+                // Request measurement packet
+                case WAITING_RESULT_OR_END_PACKET:
+                    // Send the measurement request with current date
+                    send(measRequest());
+                    // Retry with backoff if it is not answered
+                    if(!testing_mode)
+                        scheduleSend(pacer.getRetryDelayMs(retries_on_current_packet));
+                    break;
+
+
+            }
+
+        } else {
+            // If the max number of retries was reached, stop and mark communication as error.
+            retries_on_current_packet = 0;
+            // Assume the device disconected
+            disconnect();
+            protocolCallbacks.onProtocolError("Max retries reached on current state");
+        }
+    }
+
+    // Offsets of the header, the same in every packet of every version
+    final static int START_CODE = 0;
+    final static int PACKET_LENGTH = 1;
+    final static int PACKET_CATEGORY = 2;
+    // Offset of the countdown in timing packets
+    final static int TIMING_COUNTDOWN = 4;
+
+    // Define all class of packets in protocols, abstracting the version of the protocol.
+    // Packets are views over a single array, their fields are read at fixed offsets when needed.
+    static public class ProtocolPacket{
+        final byte[] raw;
+
+        ProtocolPacket(byte[] aRaw){
+            raw = aRaw;
+        }
+
+        public byte getStartCode(){
+            return raw[START_CODE];
+        }
+
+        public byte getPacketLength(){
+            return raw[PACKET_LENGTH];
+        }
+
+        public byte getPacketCategory(){
+            return raw[PACKET_CATEGORY];
+        }
+
+        // Returns the byte at aOffset
+        public byte get(int aOffset){
+            return raw[aOffset];
+        }
+
+        // Returns true if the one byte checksum at aOffset matches the bytes before it
+        protected boolean checksumMatches(int aOffset){
+            return checksumMatches(aOffset, aOffset);
+        }
+
+        // Returns true if the one byte checksum at aOffset matches the first aLength bytes
+        protected boolean checksumMatches(int aLength, int aOffset){
+            return checksumMatches(raw, aLength, aOffset);
+        }
+
+        // Same as above on a packet not built yet, for the classifiers
+        static boolean checksumMatches(byte[] raw, int aLength, int aOffset){
+            byte checksum = (byte) PacketEncoder.checksum(raw, aLength);
+            //Double check for inconsistency in documentation
+            return checksum == raw[aOffset] || (byte)(checksum+2) == raw[aOffset];
+        }
+
+        // Reads aCount bytes at aOffset as a little endian number
+        protected int readLittleEndian(int aOffset, int aCount){
+            return readLittleEndian(raw, aOffset, aCount);
+        }
+
+        static int readLittleEndian(byte[] raw, int aOffset, int aCount){
+            int value = 0;
+            for (int i=0; i<aCount; i++){
+                value |= (raw[aOffset+i]&0xff) << (8*i);
+            }
+            return value;
+        }
+
+        // Copies aCount bytes at aOffset, for fields kept by the application
+        protected byte[] copyOf(int aOffset, int aCount){
+            return Arrays.copyOfRange(raw, aOffset, aOffset+aCount);
+        }
+    }
+
+    static public class DevicePacket extends ProtocolPacket{
+        // View over a packet the classifier returned aKind for, which already checked its
+        // layout and checksum, so nothing is checked again
+        DevicePacket(byte[] raw_packet, int aKind){
+            super(raw_packet);
+        }
+
+        public DevicePacket(byte[] raw_packet)  throws IllegalContentException, IllegalLengthException {
+            super(raw_packet);
+            if(raw_packet.length<3)
+                throw new IllegalLengthException("Packet length must be bigger than 3");
+        }
+    }
+
+    static public class InfoPacket extends DevicePacket{
+        final static int VERSION_CODE = 3;
+        final static int CLIENT_CODE = 4;
+
+        public byte getVersionCode(){
+            return raw[VERSION_CODE];
+        }
+
+        public byte getClientCode(){
+            return raw[CLIENT_CODE];
+        }
+
+        InfoPacket(byte[] raw, int aKind){
+            super(raw, aKind);
+        }
+
+        public InfoPacket(byte[] raw) throws IllegalLengthException, IllegalContentException {
+            super(raw);
+        }
+    }
+
+    static public class ResultPacket extends DevicePacket{
+        final static int YEAR = 3;
+        final static int MONTH = 4;
+        final static int DAY = 5;
+        final static int HOUR = 6;
+        final static int MIN = 7;
+        final static int RETAIN = 8;
+        final static int GLUCOSE = 9;
+
+        // Years start on 2000
+        public int getYear(){
+            return raw[YEAR]&0xff;
+        }
+
+        public int getMonth(){
+            return raw[MONTH]&0xff;
+        }
+
+        public int getDay(){
+            return raw[DAY]&0xff;
+        }
+
+        public int getHour(){
+            return raw[HOUR]&0xff;
+        }
+
+        public int getMin(){
+            return raw[MIN]&0xff;
+        }
+
+        //Returns glucose in mg/dL
+        public int getGlucose(){
+            return readLittleEndian(GLUCOSE, 2);
+        }
+
+        // Returns the fields before the checksum as the measurement IDs have always been built,
+        // with an empty byte between the hour and the minutes
+        protected byte[] getVariablesInByteArray(){
+            byte[] bytes = new byte[12];
+            System.arraycopy(raw, 0, bytes, 0, MIN);
+            System.arraycopy(raw, MIN, bytes, MIN+1, GLUCOSE+2-MIN);
+            return bytes;
+        }
+
+        ResultPacket(byte[] raw, int aKind){
+            super(raw, aKind);
+        }
+
+        public ResultPacket(byte[] raw) throws IllegalLengthException, IllegalContentException {
+            super(raw);
+            if (raw.length < GLUCOSE+2)
+                throw new IllegalLengthException("Packet length must be at least 11");
+            if (getStartCode() != (byte)0x55)
+                throw new IllegalContentException("StartCode must be 0x55");
+            if (getPacketCategory() != (byte)0x03)
+                throw new IllegalContentException("PacketCategory must be 0x03");
+        }
+    }
+
+    static public class AppPacket extends ProtocolPacket{
+        final static int MINUTE = PacketEncoder.HEADER_LENGTH+4;
+        final static int SECOND = PacketEncoder.HEADER_LENGTH+5;
+
+        private final int checksumLength;
+        // Sum behind the checksum, so the time can be patched without adding everything again
+        private int sum;
+        // Hour of the RequestClock the date was written in, -1 if never stamped
+        int generation = -1;
+
+        // Builds the request, the date takes the room between the header and the checksum
+        protected AppPacket(byte aStartCode, byte aLength, byte aCategory, int aChecksumLength, Calendar calendar){
+            super(new byte[aLength]);
+            checksumLength = aChecksumLength;
+            raw[START_CODE] = aStartCode;
+            raw[PACKET_LENGTH] = aLength;
+            raw[PACKET_CATEGORY] = aCategory;
+            encode(calendar);
+        }
+
+        // Writes the date and the checksum again, keeping the same array
+        public void encode(Calendar calendar){
+            sum = PacketEncoder.encode(raw, checksumLength, calendar);
+        }
+
+        // Writes only the minutes, the seconds if the request has them, and the checksum
+        void patchTime(int aMinute, int aSecond){
+            int checksumOffset = raw.length-checksumLength;
+            sum += PacketEncoder.patch(raw, MINUTE, aMinute);
+            if(SECOND < checksumOffset)
+                sum += PacketEncoder.patch(raw, SECOND, aSecond);
+            PacketEncoder.writeChecksum(raw, checksumOffset, checksumLength, sum);
+        }
+
+        // Returns the array of the packet itself, it must not be modified
+        public byte[] to_bytes(){
+            return raw;
+        }
+    }
+
+    // Defines builders for different packets allowing different protocols to override them.
+    // The packets received are only built once classified, so they are built as views
+    protected PacketClassifier build_classifier(){
+        return new PacketClassifier.Builder().build();
+    }
+
+    protected abstract AppPacket build_get_info_packet(Calendar calendar);
+
+    protected abstract AppPacket build_get_meas_packet(Calendar calendar);
+
+    // Copies the fields of the info packet of this version into the application information
+    protected void fill_device_info(InfoPacket infoPacket, BiolandInfo info){
+    }
+
+    protected byte[] build_handshake_packet(){
+        return new byte[0];
+    }
+
+    // The classifier of a version without timing packets never returns TIMING
+    protected DevicePacket build_timing_packet(byte[] raw){
+        throw new IllegalStateException("Protocol"+version+" does not support timing packet");
+    }
+
+    protected InfoPacket build_info_packet(byte[] raw){
+        return new InfoPacket(raw, PacketClassifier.INFO);
+    }
+
+    protected ResultPacket build_result_packet(byte[] raw){
+        return new ResultPacket(raw, PacketClassifier.RESULT);
+    }
+
+    protected DevicePacket build_end_packet(byte[] raw){
+        return new DevicePacket(raw, PacketClassifier.END);
+    }
+
+    // Define of own exceptions used for error checking
+    static public class IllegalLengthException extends Exception{
+        String error;
+        public String toString() {
+            return "IllegalLength[" + error + "]";
+        }
+        IllegalLengthException(String s){
+            error = s;
+        }
+    }
+    static public class IllegalContentException extends Exception{
+        String error;
+
+        public String toString() {
+            return "IllegalContent[" + error + "]";
+        }
+        IllegalContentException(String s){
+            error = s;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.appia.bioland.protocols;
+
+import com.appia.common.Clock;
+import com.appia.common.Log;
+
+import com.appia.bioland.BiolandInfo;
+import com.appia.bioland.BiolandMeasurement;
+import com.appia.metrics.SyncTrace;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds out which protocol version the glucometer speaks before creating the Protocol.
+ *
+ * Without a known version, the info request of V3.x and V2 and the one of V1 are sent in turn
+ * until a valid info packet arrives. Its length and version code tell the version, and that
+ * packet is handed to the new Protocol, which goes on from there. The version is stored per
+ * device, so the next connections create the right Protocol straight away.
+ *
+ * The version code does not always tell V2 from V3.1, some V3.1 meters report a V2 one. A V2
+ * meter never sends timing packets, so when the V2 Protocol gets one after the info packet, the
+ * meter is taken as V3.1: a V3.1 Protocol takes over from that info packet and the version
+ * stored is corrected.
+ */
+public class ProtocolNegotiator implements ProtocolCallbacks {
+
+    private final static String TAG = "ProtocolNegotiator";
+
+    // Info packets of 15 bytes are sent by V2 and V3.1, told apart by their version code when
+    // it is a V3.1 one, else by the timing packets that follow
+    private final static int VERSION_CODE_V31 = 0x31;
+    // Each dialect gets as many probes as a Protocol gets retries
+    private final static int MAX_PROBES = 2 * Protocol.MAX_RETRIES;
+
+    private final ProtocolCallbacks protocolCallbacks;
+    private final ProtocolVersionStore versionStore;
+    private PacingStore pacingStore;
+    private SyncTrace trace = SyncTrace.NONE;
+    private Clock time = Clock.SYSTEM;
+    // Writes the time on the probes of this device
+    private final RequestClock clock = new RequestClock();
+    public boolean testing_mode;
+
+    private volatile String device;
+    private Protocol protocol;
+    private boolean probing;
+    private int probes;
+    private ScheduledFuture<?> pendingProbe;
+    // Info requests of V3.x/V2 and of V1, stamped with the time before every probe
+    private final Protocol.AppPacket probeV3 = new ProtocolV32.AppInfoPacket(Calendar.getInstance());
+    private final Protocol.AppPacket probeV1 = new ProtocolV1.AppReplyPacket(Calendar.getInstance());
+    // Used from the protocol callbacks, which can't take this lock
+    private volatile boolean usingStoredVersion;
+    private volatile boolean infoReceived;
+    // Last info packet of the V2 Protocol, handed to a V3.1 one if timing packets follow it
+    private byte[] infoPacketV2;
+
+    public ProtocolNegotiator(ProtocolCallbacks aCallbacks, ProtocolVersionStore aStore){
+        protocolCallbacks = aCallbacks;
+        versionStore = aStore;
+    }
+
+    // Handed to every protocol created, so each model keeps its pacing between sessions
+    public synchronized void setPacingStore(PacingStore aStore){
+        pacingStore = aStore;
+    }
+
+    // Time source of the probes and of every protocol created, Clock.SYSTEM unless a simulation sets another one
+    public synchronized void setClock(Clock aClock){
+        time = aClock;
+        clock.setClock(aClock);
+        if(protocol != null)
+            protocol.setClock(aClock);
+    }
+
+    // Where the phases and counters of the sync are recorded, the probes included
+    public synchronized void setSyncTrace(SyncTrace aTrace){
+        trace = aTrace;
+        if(protocol != null)
+            protocol.setSyncTrace(aTrace);
+    }
+
+    // Function to be called when the device connected
+    public synchronized void connect(String aDevice){
+        disconnect();
+        device = aDevice;
+        infoReceived = false;
+        infoPacketV2 = null;
+        Version stored = (versionStore != null && device != null) ? versionStore.load(device) : null;
+        if(stored != null){
+            Log.d(TAG, "Using protocol " + stored + " stored for " + device);
+            usingStoredVersion = true;
+            protocol = createProtocol(stored);
+            protocol.connect();
+        } else {
+            usingStoredVersion = false;
+            probing = true;
+            probes = 0;
+            sendProbe();
+        }
+    }
+
+    // Function to be called when the device disconnects
+    public synchronized void disconnect(){
+        cancelProbe();
+        if(protocol != null){
+            protocol.disconnect();
+            protocol = null;
+        }
+    }
+
+    // Returns the negotiated protocol, null while negotiating
+    public synchronized Protocol getProtocol(){
+        return protocol;
+    }
+
+    public synchronized boolean requestMeasurements(){
+        return protocol != null && protocol.requestMeasurements();
+    }
+
+    // This function should be called when a bluetooth packet is received
+    public synchronized void onDataReceived(byte[] bytes){
+        if(protocol != null){
+            if(protocol.getVersion().equals(Version.V2_0)){
+                if(ProtocolV2.CLASSIFIER.classify(bytes) == PacketClassifier.INFO)
+                    infoPacketV2 = bytes.clone();
+                else if(infoPacketV2 != null && ProtocolV31.CLASSIFIER.classify(bytes) == PacketClassifier.TIMING)
+                    fallBackToV31();
+            }
+            protocol.onDataReceived(bytes);
+            return;
+        }
+        if(!probing)
+            return;
+        Version version = versionOf(bytes);
+        if(version == null){
+            // Timing or result packets sent before the meter answered, keep asking
+            trace.received(bytes.length);
+            Log.d(TAG, "Packet ignored while negotiating the protocol version");
+            return;
+        }
+        Log.d(TAG, "Negotiated protocol " + version);
+        cancelProbe();
+        if(versionStore != null && device != null)
+            versionStore.save(device, version);
+        protocol = createProtocol(version);
+        if(version.equals(Version.V2_0))
+            infoPacketV2 = bytes.clone();
+        protocol.attach(bytes);
+    }
+
+    // Replaces the V2 Protocol by a V3.1 one that goes on from the same info packet
+    private void fallBackToV31(){
+        Log.w(TAG, "Timing packet received using protocol V2, switching to V3.1");
+        protocol.disconnect();
+        if(versionStore != null && device != null)
+            versionStore.save(device, Version.V3_1);
+        usingStoredVersion = false;
+        protocol = createProtocol(Version.V3_1);
+        protocol.attach(infoPacketV2);
+        infoPacketV2 = null;
+    }
+
+    // Sends the next info request, alternating between V3.x/V2 and V1
+    public synchronized void sendProbe(){
+        if(!probing)
+            return;
+        if(probes >= MAX_PROBES){
+            cancelProbe();
+            protocolCallbacks.onProtocolError("Protocol version could not be negotiated");
+            return;
+        }
+        Protocol.AppPacket probe = probes % 2 == 0 ? probeV3 : probeV1;
+        clock.stamp(probe);
+        byte[] bytes = probe.to_bytes();
+        protocolCallbacks.sendData(bytes);
+        trace.sent(bytes.length);
+        if(probes > 0)
+            trace.count(SyncTrace.Counter.RETRIES);
+        probes++;
+
+        if(!testing_mode)
+            pendingProbe = Protocol.scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    sendProbe();
+                }
+            }, Protocol.RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelProbe(){
+        probing = false;
+        if(pendingProbe != null){
+            pendingProbe.cancel(false);
+            pendingProbe = null;
+        }
+    }
+
+    private Protocol createProtocol(Version aVersion){
+        Protocol created;
+        if(aVersion.equals(Version.V1_0))
+            created = new ProtocolV1(this);
+        else if(aVersion.equals(Version.V2_0))
+            created = new ProtocolV2(this);
+        else if(aVersion.equals(Version.V3_1))
+            created = new ProtocolV31(this);
+        else
+            created = new ProtocolV32(this);
+        created.testing_mode = testing_mode;
+        created.setPacingStore(pacingStore);
+        created.setSyncTrace(trace);
+        created.setClock(time);
+        return created;
+    }
+
+    /**
+     * Returns the version of the protocol that sent a valid info packet, or null if it is not one.
+     * @param raw
+     */
+    public static Version versionOf(byte[] raw){
+        // The classifiers verify the checksum, no packet is built
+        if(ProtocolV32.CLASSIFIER.classify(raw) == PacketClassifier.INFO)
+            return Version.V3_2;
+        if(ProtocolV1.CLASSIFIER.classify(raw) == PacketClassifier.INFO)
+            return Version.V1_0;
+        if(ProtocolV2.CLASSIFIER.classify(raw) == PacketClassifier.INFO){
+            // Same layout and checksum in V2 and V3.1, a V3.1 meter reporting a lower version
+            // code is found out by its timing packets
+            return (raw[3] & 0xff) >= VERSION_CODE_V31 ? Version.V3_1 : Version.V2_0;
+        }
+        return null;
+    }
+
+    /**********************************************************************************************/
+    /*                                    Protocol callbacks                                      */
+
+    public void sendData(final byte[] bytes){
+        protocolCallbacks.sendData(bytes);
+    }
+
+    public void onCountdownReceived(int aValue){
+        protocolCallbacks.onCountdownReceived(aValue);
+    }
+
+    public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements){
+        protocolCallbacks.onMeasurementsReceived(aMeasurements);
+    }
+
+    public void onDeviceInfoReceived(BiolandInfo aInfo){
+        infoReceived = true;
+        protocolCallbacks.onDeviceInfoReceived(aInfo);
+    }
+
+    public void onProtocolError(String aMessage){
+        // The stored version may be wrong if the meter never answered, negotiate it next time
+        if(usingStoredVersion && !infoReceived && versionStore != null && device != null){
+            Log.w(TAG, "No answer using the stored protocol version, forgetting it");
+            versionStore.clear(device);
+        }
+        protocolCallbacks.onProtocolError(aMessage);
+    }
+}
@@ -0,0 +1,186 @@
+package com.appia.bioland.protocols;
+
+import com.appia.bioland.BiolandInfo;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+public class ProtocolV1 extends Protocol {
+    // This class implements the protocol V1 of communication with the Bioland G-500
+    public ProtocolV1(ProtocolCallbacks aCallbacks){
+        super(aCallbacks);
+        version = Version.V1_0;
+        capabilities = HAS_SERIAL_NUMBER | CHECKSUM_3_BYTES;
+    }
+
+    // Packets sent by the glucometer in protocol V1, by category
+    public final static PacketClassifier CLASSIFIER = new PacketClassifier.Builder()
+            .add(0x00, PacketClassifier.INFO, 16, InfoPacketV1::checksumMatches)
+            .add(0x03, PacketClassifier.RESULT, 14, ResultPacketV1::checksumMatches)
+            .add(0x04, PacketClassifier.END, 6, EndPacket::checksumMatches)
+            .build();
+
+    // Define the packets of the protocol V1
+    static public class AppReplyPacket extends AppPacket{
+        public AppReplyPacket(Calendar now){
+            super((byte)0x5A, (byte)0x0B, (byte)0x05, 3, now);
+        }
+
+    }
+
+    static public class AppTerminationPacket extends AppPacket{
+        public AppTerminationPacket(Calendar now){
+            super((byte)0x5A, (byte)0x0B, (byte)0x06, 3, now);
+        }
+    }
+
+    static public class InfoPacketV1 extends InfoPacket{
+        final static int MODEL_CODE = 5;
+        final static int TYPE_CODE = 6;
+        final static int USER_ID = 7;
+        final static int PRODUCTION_YEAR = 8;
+        final static int PRODUCTION_MONTH = 9;
+        final static int SERIAL_NUMBER = 10;
+        final static int CHECKSUM = 13;
+
+        public byte getProductionYear(){
+            return raw[PRODUCTION_YEAR];
+        }
+
+        public byte getProductionMonth(){
+            return raw[PRODUCTION_MONTH];
+        }
+
+        public byte[] getSerialNumber(){
+            return copyOf(SERIAL_NUMBER, 3);
+        }
+
+        // Also used by the classifier, before the packet is built
+        public static boolean checksumMatches(byte[] raw){
+            //Cannot use calculate checksum of parent as in this protocol the checksum is calculated
+            //different: the serial number is added as a number
+            int big = PacketEncoder.checksum(raw, SERIAL_NUMBER) - PacketEncoder.CHECKSUM_OFFSET;
+            big += readLittleEndian(raw, SERIAL_NUMBER, 3);
+            return big == readLittleEndian(raw, CHECKSUM, 3);
+        }
+
+        InfoPacketV1(byte[] raw, int aKind){
+            super(raw, aKind);
+        }
+
+        public InfoPacketV1(byte[] raw) throws IllegalContentException, IllegalLengthException {
+            super(raw);
+            if (raw.length != 16)
+                throw new IllegalLengthException("Packet length must be 16");
+
+            if (getStartCode() != 0x55)
+                throw new IllegalContentException("StartCode must be 0x55");
+
+            if (getPacketLength() != 0x10)
+                throw new IllegalContentException("PacketLength must be 0x10");
+
+            if (getPacketCategory() != 0x00)
+                throw new IllegalContentException("PacketCategory must be 0x00");
+
+            if(!checksumMatches(raw))
+                throw new IllegalContentException("Checksum Does Not Match");
+        }
+    }
+
+    static public class ResultPacketV1 extends ResultPacket{
+        final static int CHECKSUM = 11;
+
+        public static boolean checksumMatches(byte[] raw){
+            //Cannot use calculate checksum of parent as in this protocol the checksum is calculated
+            //different: the glucose is added as a number
+            int big = PacketEncoder.checksum(raw, GLUCOSE) - PacketEncoder.CHECKSUM_OFFSET;
+            big += readLittleEndian(raw, GLUCOSE, 2);
+            return big == readLittleEndian(raw, CHECKSUM, 3);
+        }
+
+        ResultPacketV1(byte[] raw, int aKind){
+            super(raw, aKind);
+        }
+
+        public ResultPacketV1(byte[] raw) throws IllegalLengthException, IllegalContentException {
+            super(raw);
+
+            if (raw.length != 14)
+                throw new IllegalLengthException("Packet length must be 14");
+            if (getPacketLength() != 0x0E)
+                throw new IllegalContentException("PacketLength must be 0x0E");
+
+            if(!checksumMatches(raw))
+                throw new IllegalContentException("Checksum Does Not Match");
+        }
+    }
+
+    static public class EndPacket extends DevicePacket{
+        final static int CHECKSUM = 3;
+
+        public static boolean checksumMatches(byte[] raw){
+            return (PacketEncoder.checksum(raw, CHECKSUM)&0xffffff) == readLittleEndian(raw, CHECKSUM, 3);
+        }
+
+        EndPacket(byte[] raw, int aKind){
+            super(raw, aKind);
+        }
+
+        public EndPacket(byte[] raw) throws IllegalLengthException, IllegalContentException {
+            super(raw);
+            if (raw.length != 6)
+                throw new IllegalLengthException("Packet length must be 6");
+            if (getStartCode() != 0x55)
+                throw new IllegalContentException("StartCode must be 0x55");
+            if (getPacketLength() != 0x06)
+                throw new IllegalContentException("PacketLength must be 0x06");
+            if (getPacketCategory() != 0x04)
+                throw new IllegalContentException("PacketCategory must be 0x04");
+
+            if(!checksumMatches(raw))
+                throw new IllegalContentException("Checksum Does Not Match");
+        }
+    }
+
+    // Override the set of functions that allow the FSM on the general protocol to use protocol V1.
+    @Override
+    protected AppPacket build_get_info_packet(Calendar calendar){
+        return new AppReplyPacket(calendar);
+    }
+
+    @Override
+    protected AppPacket build_get_meas_packet(Calendar calendar){
+        return new AppReplyPacket(calendar);
+    }
+
+    @Override
+    protected InfoPacket build_info_packet(byte[] raw){
+        return new InfoPacketV1(raw, PacketClassifier.INFO);
+    }
+
+    @Override
+    protected ResultPacket build_result_packet(byte[] raw){
+        return new ResultPacketV1(raw, PacketClassifier.RESULT);
+    }
+
+    @Override
+    protected DevicePacket build_end_packet(byte[] raw){
+        return new EndPacket(raw, PacketClassifier.END);
+    }
+
+    @Override
+    protected PacketClassifier build_classifier(){
+        return CLASSIFIER;
+    }
+
+    @Override
+    protected void fill_device_info(InfoPacket infoPacket, BiolandInfo info){
+        // Read production date
+        InfoPacketV1 v1_info_packet = (InfoPacketV1) infoPacket;
+        info.productionDate = new GregorianCalendar();
+        info.productionDate.set(v1_info_packet.getProductionYear(),v1_info_packet.getProductionMonth(),0);
+    }
+}
@@ -0,0 +1,175 @@
+package com.appia.bioland.protocols;
+
+import com.appia.bioland.BiolandInfo;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+public class ProtocolV2 extends Protocol{
+    // This class implements the protocol V2 of communication with the Bioland G-500
+    public ProtocolV2(ProtocolCallbacks aCallbacks){
+        super(aCallbacks);
+        version = Version.V2_0;
+        capabilities = 0;
+    }
+
+    // Packets sent by the glucometer in protocol V2, by category
+    public final static PacketClassifier CLASSIFIER = new PacketClassifier.Builder()
+            .add(0x00, PacketClassifier.INFO, 15, InfoPacketV2::checksumMatches)
+            .add(0x03, PacketClassifier.RESULT, 12, ResultPacketV2::checksumMatches)
+            .add(0x05, PacketClassifier.END, 5, EndPacket::checksumMatches)
+            .build();
+
+    // Define the packets of the protocol V2
+    static public class AppPacketV2 extends AppPacket{
+        // Requests of this version carry the seconds, the date fills 6 bytes
+        public AppPacketV2(byte aCategory, Calendar calendar){
+            super((byte)0x5A, (byte)0x0A, aCategory, 1, calendar);
+        }
+    }
+
+    static public class AppInfoPacket extends AppPacketV2{
+        public AppInfoPacket(Calendar now){
+            super((byte)0x00, now);
+        }
+    }
+
+    static public class AppDataPacket extends AppPacketV2{
+        public AppDataPacket(Calendar now){
+            super((byte)0x03, now);
+        }
+    }
+
+    static public class InfoPacketV2 extends InfoPacket{
+        final static int MODEL_CODE = 5;
+        final static int TYPE_CODE = 6;
+        final static int RETAIN = 7;
+        final static int BATTERY_CAPACITY = 8;
+        final static int ROLLING_CODE = 9;
+        final static int CHECKSUM = 14;
+
+        public byte getBatteryCapacity(){
+            return raw[BATTERY_CAPACITY];
+        }
+
+        public byte[] getRollingCode(){
+            return copyOf(ROLLING_CODE, 5);
+        }
+
+        // Also used by the classifier, before the packet is built
+        public static boolean checksumMatches(byte[] raw){
+            return checksumMatches(raw, CHECKSUM, CHECKSUM);
+        }
+
+        InfoPacketV2(byte[] raw, int aKind){
+            super(raw, aKind);
+        }
+
+        public InfoPacketV2(byte[] raw) throws IllegalContentException, IllegalLengthException {
+            super(raw);
+            if (raw.length != 15)
+                throw new IllegalLengthException("Packet length must be 15");
+            if (getStartCode() != 0x55)
+                throw new IllegalContentException("StartCode must be 0x55");
+            if (getPacketLength() != 0x0F)
+                throw new IllegalContentException("PacketLength must be 0x0F");
+            if (getPacketCategory() != 0x00)
+                throw new IllegalContentException("PacketCategory must be 0x00");
+
+            if(!checksumMatches(raw))
+                throw new IllegalContentException("Checksum Does Not Match");
+        }
+    }
+
+    static public class ResultPacketV2 extends ResultPacket {
+        final static int CHECKSUM = 11;
+
+        public static boolean checksumMatches(byte[] raw){
+            return checksumMatches(raw, CHECKSUM, CHECKSUM);
+        }
+
+        ResultPacketV2(byte[] raw, int aKind){
+            super(raw, aKind);
+        }
+
+        public ResultPacketV2(byte[] raw) throws IllegalLengthException, IllegalContentException {
+            super(raw);
+            if (raw.length != 12)
+                throw new IllegalLengthException("Packet length must be 12");
+            if (getPacketLength() != (byte)0x0C)
+                throw new IllegalContentException("PacketLength must be 0x0C");
+
+            if(!checksumMatches(raw))
+                throw new IllegalContentException("Checksum Does Not Match");
+        }
+    }
+
+    static public class EndPacket extends DevicePacket{
+        final static int RETAIN = 3;
+        final static int CHECKSUM = 4;
+
+        public static boolean checksumMatches(byte[] raw){
+            return checksumMatches(raw, CHECKSUM, CHECKSUM);
+        }
+
+        EndPacket(byte[] raw, int aKind){
+            super(raw, aKind);
+        }
+
+        public EndPacket(byte[] raw) throws IllegalLengthException, IllegalContentException {
+            super(raw);
+            if (raw.length != 5)
+                throw new IllegalLengthException("Packet length must be 5");
+            if (getStartCode() != (byte)0x55)
+                throw new IllegalContentException("StartCode must be 0x55");
+            if (getPacketLength() != (byte)0x05)
+                throw new IllegalContentException("PacketLength must be 0x05");
+            if (getPacketCategory() != (byte)0x05)
+                throw new IllegalContentException("PacketCategory must be 0x05");
+
+            if(!checksumMatches(raw))
+                throw new IllegalContentException("Checksum Does Not Match");
+        }
+    }
+
+    // Override the set of functions that allow the FSM on the general protocol to use protocol V2.
+    @Override
+    protected AppPacket build_get_info_packet(Calendar calendar){
+        return new AppInfoPacket(calendar);
+    }
+
+    @Override
+    protected AppPacket build_get_meas_packet(Calendar calendar){
+        return new AppDataPacket(calendar);
+    }
+
+    @Override
+    protected InfoPacket build_info_packet(byte[] raw){
+        return new InfoPacketV2(raw, PacketClassifier.INFO);
+    }
+
+    @Override
+    protected ResultPacket build_result_packet(byte[] raw){
+        return new ResultPacketV2(raw, PacketClassifier.RESULT);
+    }
+
+    @Override
+    protected DevicePacket build_end_packet(byte[] raw){
+        return new EndPacket(raw, PacketClassifier.END);
+    }
+
+    @Override
+    protected PacketClassifier build_classifier(){
+        return CLASSIFIER;
+    }
+
+    @Override
+    protected void fill_device_info(InfoPacket infoPacket, BiolandInfo info){
+        // Take rolling code as serial and read battery capacity
+        InfoPacketV2 v2_info_packet = (InfoPacketV2) infoPacket;
+        info.batteryCapacity = v2_info_packet.getBatteryCapacity();
+        info.serialNumber = v2_info_packet.getRollingCode();
+    }
+}
@@ -0,0 +1,215 @@
+package com.appia.bioland.protocols;
+
+import com.appia.bioland.BiolandInfo;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+public class ProtocolV32 extends Protocol {
+    // This class implements the protocol V3.2 of communication with the Bioland G-500
+    public ProtocolV32(ProtocolCallbacks aCallbacks){
+        super(aCallbacks);
+        version = Version.V3_2;
+        capabilities = HAS_TIMING_PACKETS | HAS_HANDSHAKE | HAS_SERIAL_NUMBER;
+    }
+
+    // Packets sent by the glucometer in protocol V3.2, by category
+    public final static PacketClassifier CLASSIFIER = new PacketClassifier.Builder()
+            .add(0x00, PacketClassifier.INFO, 18, InfoPacketV32::checksumMatches)
+            .add(0x02, PacketClassifier.TIMING, 6)
+            .add(0x03, PacketClassifier.RESULT, 12, ResultPacketV32::checksumMatches)
+            .add(0x05, PacketClassifier.END, 5, EndPacket::checksumMatches)
+            .build();
+
+    // Define the packets of the protocol V3.2
+    static public class AppPacketV32 extends AppPacket{
+        // Requests of this version carry the seconds, the date fills 6 bytes
+        public AppPacketV32(byte aCategory, Calendar calendar){
+            super((byte)0x5A, (byte)0x0A, aCategory, 1, calendar);
+        }
+    }
+
+    static public class AppInfoPacket extends AppPacketV32{
+        public AppInfoPacket(Calendar now){
+            super((byte)0x00, now);
+        }
+    }
+
+    static public class AppDataPacket extends AppPacketV32{
+        public AppDataPacket(Calendar now){
+            super((byte)0x03, now);
+        }
+    }
+
+    static public class AppHandshakePacket{
+        byte[] packet;
+        public AppHandshakePacket(){
+            packet = new byte[4];
+            packet[0]=0x5a;
+            packet[1]=0x04;
+            packet[2]=0x09;
+            packet[3]=0x67;
+        }
+        public byte[] to_bytes(){
+            return packet;
+        }
+    }
+
+    static public class InfoPacketV32 extends InfoPacket{
+        final static int BATTERY_CAPACITY = 5;
+        final static int MODEL_CODE = 6;
+        final static int TYPE_CODE = 7;
+        final static int SERIES_NUMBER = 8;
+        final static int CHECKSUM = 17;
+
+        public byte getBatteryCapacity(){
+            return raw[BATTERY_CAPACITY];
+        }
+
+        public byte[] getSeriesNumber(){
+            return copyOf(SERIES_NUMBER, 9);
+        }
+
+        // Also used by the classifier, before the packet is built
+        public static boolean checksumMatches(byte[] raw){
+            return checksumMatches(raw, CHECKSUM, CHECKSUM);
+        }
+
+        InfoPacketV32(byte[] raw, int aKind){
+            super(raw, aKind);
+        }
+
+        public InfoPacketV32(byte[] raw) throws IllegalContentException, IllegalLengthException {
+            super(raw);
+            if (raw.length != 18)
+                throw new IllegalLengthException("Packet length must be 18");
+            if (getStartCode() != 0x55)
+                throw new IllegalContentException("StartCode must be 0x55");
+            if (getPacketLength() != 0x12)
+                throw new IllegalContentException("PacketLength must be 0x12");
+            if (getPacketCategory() != 0x00)
+                throw new IllegalContentException("PacketCategory must be 0x00");
+
+            if(!checksumMatches(raw))
+                throw new IllegalContentException("Checksum Does Not Match");
+        }
+    }
+
+    static public class TimingPacket extends DevicePacket{
+        final static int RETAIN = 3;
+        final static int SECOND = 4;
+
+        TimingPacket(byte[] raw, int aKind){
+            super(raw, aKind);
+        }
+
+        public TimingPacket(byte[] raw) throws IllegalLengthException, IllegalContentException {
+            super(raw);
+            if(raw.length!=6)
+                throw new IllegalLengthException("Packet length must be 6");
+            if (getStartCode() != 0x55)
+                throw new IllegalContentException("StartCode must be 0x55");
+            if (getPacketLength() != 0x06)
+                throw new IllegalContentException("PacketLength must be 0x06");
+            if (getPacketCategory() != 0x02)
+                throw new IllegalContentException("PacketCategory must be 0x02");
+        }
+    }
+
+    static public class ResultPacketV32 extends ResultPacket {
+        final static int CHECKSUM = 11;
+
+        public static boolean checksumMatches(byte[] raw){
+            return checksumMatches(raw, CHECKSUM, CHECKSUM);
+        }
+
+        ResultPacketV32(byte[] raw, int aKind){
+            super(raw, aKind);
+        }
+
+        public ResultPacketV32(byte[] raw) throws IllegalLengthException, IllegalContentException {
+            super(raw);
+            if (raw.length != 12)
+                throw new IllegalLengthException("Packet length must be 12");
+            if (getPacketLength() != (byte)0x0C)
+                throw new IllegalContentException("PacketLength must be 0x0C");
+
+            if(!checksumMatches(raw))
+                throw new IllegalContentException("Checksum Does Not Match");
+        }
+    }
+
+    static public class EndPacket extends DevicePacket{
+        final static int RETAIN = 3;
+        final static int CHECKSUM = 4;
+
+        public static boolean checksumMatches(byte[] raw){
+            // Unlike V2, the retain byte is not part of the checksum
+            return checksumMatches(raw, RETAIN, CHECKSUM);
+        }
+
+        EndPacket(byte[] raw, int aKind){
+            super(raw, aKind);
+        }
+
+        public EndPacket(byte[] raw) throws IllegalLengthException, IllegalContentException {
+            super(raw);
+            if (raw.length != 5)
+                throw new IllegalLengthException("Packet length must be 5");
+            if (getStartCode() != (byte)0x55)
+                throw new IllegalContentException("StartCode must be 0x55");
+            if (getPacketLength() != (byte)0x05)
+                throw new IllegalContentException("PacketLength must be 0x05");
+            if (getPacketCategory() != (byte)0x05)
+                throw new IllegalContentException("PacketCategory must be 0x05");
+
+            if(!checksumMatches(raw))
+                throw new IllegalContentException("Checksum Does Not Match");
+        }
+    }
+
+    // Override the set of functions that allow the FSM on the general protocol to use protocol V3.2.
+    @Override
+    protected AppPacket build_get_info_packet(Calendar calendar){
+        return new AppInfoPacket(calendar);
+    }
+
+    @Override
+    protected DevicePacket build_timing_packet(byte[] raw){
+        return new TimingPacket(raw, PacketClassifier.TIMING);
+    }
+
+    @Override
+    protected AppPacket build_get_meas_packet(Calendar calendar){
+        return new AppDataPacket(calendar);
+    }
+
+    @Override
+    protected InfoPacket build_info_packet(byte[] raw){
+        return new InfoPacketV32(raw, PacketClassifier.INFO);
+    }
+
+    @Override
+    protected ResultPacket build_result_packet(byte[] raw){
+        return new ResultPacketV32(raw, PacketClassifier.RESULT);
+    }
+
+    @Override
+    protected DevicePacket build_end_packet(byte[] raw){
+        return new EndPacket(raw, PacketClassifier.END);
+    }
+
+    @Override
+    protected PacketClassifier build_classifier(){
+        return CLASSIFIER;
+    }
+
+    @Override
+    protected void fill_device_info(InfoPacket infoPacket, BiolandInfo info){
+        // Read battery and serial number
+        InfoPacketV32 v32_info_packet = (InfoPacketV32) infoPacket;
+        info.batteryCapacity = v32_info_packet.getBatteryCapacity();
+        info.serialNumber = v32_info_packet.getSeriesNumber();
+    }
+}
@@ -0,0 +1,26 @@
+package com.appia.bioland.protocols;
+
+/**
+ * Remembers the protocol version negotiated with each glucometer, so the next connection can
+ * skip the negotiation.
+ */
+public interface ProtocolVersionStore {
+
+    /**
+     * Returns the version negotiated with aDevice, or null if unknown.
+     * @param aDevice address of the glucometer
+     */
+    Version load(String aDevice);
+
+    /**
+     * @param aDevice address of the glucometer
+     * @param aVersion
+     */
+    void save(String aDevice, Version aVersion);
+
+    /**
+     * Forgets the version of aDevice, so it is negotiated again on the next connection.
+     * @param aDevice address of the glucometer
+     */
+    void clear(String aDevice);
+}
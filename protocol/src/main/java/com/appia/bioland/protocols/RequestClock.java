@@ -0,0 +1,74 @@
+package com.appia.bioland.protocols;
+
+import com.appia.common.Clock;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stamps the current time on prebuilt requests without a Calendar on every send.
+ *
+ * The wall clock is read once per hour; within the hour the time is the start of the hour plus
+ * the monotonic time elapsed since then, so only the minutes, the seconds and the checksum of a
+ * request have to be written again. Requests stamped in an older hour get their whole date.
+ */
+public class RequestClock {
+
+    private final static long NANOS_PER_HOUR = TimeUnit.HOURS.toNanos(1);
+    private final static long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private Clock time;
+    // Start of the current hour, in the wall clock and in Clock.nanoTime()
+    private final Calendar hourStart = Calendar.getInstance();
+    private long hourStartNanos;
+    // Changes every time the wall clock is read
+    private int generation = -1;
+    // Set when the clock changed, the hour has to be found again
+    private boolean forceRead;
+
+    public RequestClock(){
+        this(Clock.SYSTEM);
+    }
+
+    public RequestClock(Clock aTime){
+        time = aTime;
+    }
+
+    /**
+     * Changes where the time is read from, the wall clock is read again on the next stamp.
+     */
+    public synchronized void setClock(Clock aTime){
+        time = aTime;
+        forceRead = true;
+    }
+
+    /**
+     * Writes the current time on aPacket.
+     * @param aPacket request built by the protocol, reused between sends
+     */
+    public synchronized void stamp(Protocol.AppPacket aPacket){
+        long now = time.nanoTime();
+        if(forceRead || generation < 0 || now - hourStartNanos >= NANOS_PER_HOUR || now < hourStartNanos)
+            readWallClock(now);
+        if(aPacket.generation != generation){
+            aPacket.encode(hourStart);
+            aPacket.generation = generation;
+        }
+        int seconds = (int) ((now - hourStartNanos) / (1000 * NANOS_PER_MILLI));
+        aPacket.patchTime(seconds / 60, seconds % 60);
+    }
+
+    // Finds where the current hour started, the only place a Calendar is used
+    private void readWallClock(long aNow){
+        forceRead = false;
+        hourStart.setTimeInMillis(time.currentTimeMillis());
+        long millisOfHour = (hourStart.get(Calendar.MINUTE) * 60L + hourStart.get(Calendar.SECOND)) * 1000L
+                + hourStart.get(Calendar.MILLISECOND);
+        hourStart.set(Calendar.MINUTE, 0);
+        hourStart.set(Calendar.SECOND, 0);
+        hourStart.set(Calendar.MILLISECOND, 0);
+        hourStartNanos = aNow - millisOfHour * NANOS_PER_MILLI;
+        // Stays positive, -1 is kept for packets never stamped
+        generation = (generation + 1) & Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,91 @@
+package com.appia.bioland.protocols;
+
+public class Version implements Comparable<Version> {
+
+    // Versions of the protocols implemented, use these instead of parsing them again
+    public final static Version V1_0 = new Version("1.0");
+    public final static Version V2_0 = new Version("2.0");
+    public final static Version V3_1 = new Version("3.1");
+    public final static Version V3_2 = new Version("3.2");
+
+    // Up to 3 components of 10 bits each are packed in an int, the first one in the highest bits
+    private final static int MAX_PARTS = 3;
+    private final static int PART_BITS = 10;
+    private final static int MAX_PART = (1 << PART_BITS) - 1;
+
+    private final String version;
+    private final int packed;
+
+    public final String get() {
+        return this.version;
+    }
+
+    public Version(String version) {
+        if(version == null)
+            throw new IllegalArgumentException("Version can not be null");
+        this.version = version;
+        this.packed = pack(version);
+    }
+
+    /**
+     * Returns the constant of a known version, or parses a new one.
+     * @param version
+     */
+    public static Version valueOf(String version) {
+        Version parsed = new Version(version);
+        for (Version known : new Version[]{V1_0, V2_0, V3_1, V3_2}) {
+            if (known.packed == parsed.packed)
+                return known;
+        }
+        return parsed;
+    }
+
+    // Parses "major[.minor[.patch]]", missing components are 0 so "3" equals "3.0"
+    private static int pack(String version) {
+        int packed = 0;
+        int parts = 0;
+        int part = 0;
+        boolean digits = false;
+        for (int i = 0; i <= version.length(); i++) {
+            char c = i < version.length() ? version.charAt(i) : '.';
+            if (c >= '0' && c <= '9') {
+                part = part * 10 + (c - '0');
+                if (part > MAX_PART)
+                    throw new IllegalArgumentException("Invalid version format");
+                digits = true;
+            } else if (c == '.' && digits && parts < MAX_PARTS) {
+                packed |= part << (PART_BITS * (MAX_PARTS - 1 - parts));
+                parts++;
+                part = 0;
+                digits = false;
+            } else {
+                throw new IllegalArgumentException("Invalid version format");
+            }
+        }
+        return packed;
+    }
+
+    @Override public int compareTo(Version that) {
+        if(that == null)
+            return 1;
+        return Integer.compare(this.packed, that.packed);
+    }
+
+    @Override public boolean equals(Object that) {
+        if(this == that)
+            return true;
+        if(that == null)
+            return false;
+        if(this.getClass() != that.getClass())
+            return false;
+        return this.packed == ((Version) that).packed;
+    }
+
+    @Override public int hashCode() {
+        return packed;
+    }
+
+    @Override public String toString() {
+        return version;
+    }
+}
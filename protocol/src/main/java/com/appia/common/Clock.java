@@ -0,0 +1,25 @@
+package com.appia.common;
+
+/**
+ * Time source of the protocols, so the simulator and the tests can run them on a fake clock.
+ */
+public interface Clock {
+
+    // Monotonic time, only differences between two calls mean something
+    long nanoTime();
+
+    // Wall clock, milliseconds since the epoch
+    long currentTimeMillis();
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+}
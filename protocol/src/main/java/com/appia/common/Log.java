@@ -0,0 +1,51 @@
+package com.appia.common;
+
+/**
+ * Static logging used by the protocols, with the same calls as android.util.Log so the code
+ * reads the same on both sides. Nothing is written until a Logger is installed.
+ */
+public final class Log {
+
+    private final static Logger NONE = new Logger() {
+        @Override
+        public void d(String aTag, String aMessage) {}
+
+        @Override
+        public void w(String aTag, String aMessage) {}
+
+        @Override
+        public void e(String aTag, String aMessage) {}
+
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+    };
+
+    private static volatile Logger logger = NONE;
+
+    private Log() {}
+
+    /**
+     * Sets where logs are written, null to drop them.
+     */
+    public static void setLogger(Logger aLogger) {
+        logger = aLogger == null ? NONE : aLogger;
+    }
+
+    public static void d(String aTag, String aMessage) {
+        logger.d(aTag, aMessage);
+    }
+
+    public static void w(String aTag, String aMessage) {
+        logger.w(aTag, aMessage);
+    }
+
+    public static void e(String aTag, String aMessage) {
+        logger.e(aTag, aMessage);
+    }
+
+    public static boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+}
@@ -0,0 +1,16 @@
+package com.appia.common;
+
+/**
+ * Where the protocols write their logs. The app installs one that forwards to android.util.Log,
+ * tests and JVM tools can keep the default that drops everything.
+ */
+public interface Logger {
+    void d(String aTag, String aMessage);
+
+    void w(String aTag, String aMessage);
+
+    void e(String aTag, String aMessage);
+
+    // True when extra logs, like whole packets, should be built and written
+    boolean isDebugEnabled();
+}
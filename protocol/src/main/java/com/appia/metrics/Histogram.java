@@ -0,0 +1,168 @@
+package com.appia.metrics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Distribution of non negative values in log-linear buckets: exact below 4, then 4 buckets per
+ * power of two, so a percentile is off by 25% at most. Not thread safe, SyncMetrics guards it.
+ */
+public class Histogram {
+
+    private final static int SUB_BUCKET_BITS = 2;
+    private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values up to Long.MAX_VALUE
+    private final static int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min;
+    private long max;
+
+    // Negative values are taken as 0
+    public void record(long aValue){
+        long value = Math.max(0, aValue);
+        buckets[bucketOf(value)]++;
+        if(count == 0 || value < min)
+            min = value;
+        if(value > max)
+            max = value;
+        count++;
+        sum += value;
+    }
+
+    public long getCount(){
+        return count;
+    }
+
+    public long getSum(){
+        return sum;
+    }
+
+    public long getMin(){
+        return min;
+    }
+
+    public long getMax(){
+        return max;
+    }
+
+    public double getMean(){
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the value below which aPercentile of the values fall, the highest value of its
+     * bucket but never more than the maximum. 0 if empty.
+     * @param aPercentile from 0 to 100
+     */
+    public long getPercentile(double aPercentile){
+        if(count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(aPercentile / 100 * count));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += buckets[i];
+            if(seen >= rank)
+                return Math.max(min, Math.min(max, highestOf(i)));
+        }
+        return max;
+    }
+
+    public Histogram copy(){
+        Histogram copy = new Histogram();
+        copy.add(this);
+        return copy;
+    }
+
+    // Adds every value of aOther
+    public void add(Histogram aOther){
+        if(aOther.count == 0)
+            return;
+        for(int i = 0; i < BUCKETS; i++)
+            buckets[i] += aOther.buckets[i];
+        min = count == 0 ? aOther.min : Math.min(min, aOther.min);
+        max = Math.max(max, aOther.max);
+        count += aOther.count;
+        sum += aOther.sum;
+    }
+
+    // Writes the non empty buckets only, as gaps from the previous one
+    void writeTo(DataOutput aOut) throws IOException {
+        MetricsSnapshot.writeVarLong(aOut, count);
+        if(count == 0)
+            return;
+        MetricsSnapshot.writeVarLong(aOut, sum);
+        MetricsSnapshot.writeVarLong(aOut, min);
+        MetricsSnapshot.writeVarLong(aOut, max);
+        int used = 0;
+        for(long bucket : buckets){
+            if(bucket != 0)
+                used++;
+        }
+        MetricsSnapshot.writeVarLong(aOut, used);
+        int previous = -1;
+        for(int i = 0; i < BUCKETS; i++){
+            if(buckets[i] == 0)
+                continue;
+            MetricsSnapshot.writeVarLong(aOut, i - previous);
+            MetricsSnapshot.writeVarLong(aOut, buckets[i]);
+            previous = i;
+        }
+    }
+
+    static Histogram readFrom(DataInput aIn) throws IOException {
+        Histogram histogram = new Histogram();
+        histogram.count = MetricsSnapshot.readVarLong(aIn);
+        if(histogram.count == 0)
+            return histogram;
+        histogram.sum = MetricsSnapshot.readVarLong(aIn);
+        histogram.min = MetricsSnapshot.readVarLong(aIn);
+        histogram.max = MetricsSnapshot.readVarLong(aIn);
+        long used = MetricsSnapshot.readVarLong(aIn);
+        int index = -1;
+        for(long i = 0; i < used; i++){
+            index += (int) MetricsSnapshot.readVarLong(aIn);
+            if(index < 0 || index >= BUCKETS)
+                throw new IOException("Histogram bucket " + index + " out of range");
+            histogram.buckets[index] = MetricsSnapshot.readVarLong(aIn);
+        }
+        return histogram;
+    }
+
+    @Override
+    public boolean equals(Object aOther){
+        if(!(aOther instanceof Histogram))
+            return false;
+        Histogram other = (Histogram) aOther;
+        return count == other.count && sum == other.sum && min == other.min && max == other.max
+                && Arrays.equals(buckets, other.buckets);
+    }
+
+    @Override
+    public int hashCode(){
+        return Arrays.hashCode(buckets);
+    }
+
+    private static int bucketOf(long aValue){
+        if(aValue < SUB_BUCKETS)
+            return (int) aValue;
+        int exponent = 63 - Long.numberOfLeadingZeros(aValue);
+        int sub = (int) (aValue >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + sub;
+    }
+
+    // Highest value that falls in aBucket
+    private static long highestOf(int aBucket){
+        if(aBucket < SUB_BUCKETS)
+            return aBucket;
+        int exponent = (aBucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        long sub = (aBucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long lowest = (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return lowest + width - 1;
+    }
+}
@@ -0,0 +1,203 @@
+package com.appia.metrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Copy of the sync metrics at some point, per glucometer model, that can be queried or dumped.
+ *
+ * The dump is compact: the magic "SM", the format version, and for each model its name, the
+ * syncs, the failed ones and a histogram per phase and per counter. Numbers are written as
+ * unsigned varints and histograms only keep their non empty buckets, so a model takes a few
+ * hundred bytes.
+ */
+public class MetricsSnapshot {
+
+    private final static int MAGIC = ('S' << 8) | 'M';
+    private final static int FORMAT_VERSION = 1;
+
+    // Metrics of the syncs of one model
+    public static class Model {
+        private final String name;
+        private int syncs;
+        private int failed;
+        private final Histogram[] phases = new Histogram[SyncTrace.Phase.values().length];
+        private final Histogram[] counters = new Histogram[SyncTrace.Counter.values().length];
+
+        Model(String aName){
+            name = aName;
+            for(int i = 0; i < phases.length; i++)
+                phases[i] = new Histogram();
+            for(int i = 0; i < counters.length; i++)
+                counters[i] = new Histogram();
+        }
+
+        public String getName(){
+            return name;
+        }
+
+        // Syncs ended, failed ones included
+        public int getSyncs(){
+            return syncs;
+        }
+
+        public int getFailed(){
+            return failed;
+        }
+
+        /**
+         * Returns the milliseconds from the connection to aPhase, of the syncs that reached it.
+         */
+        public Histogram getPhase(SyncTrace.Phase aPhase){
+            return phases[aPhase.ordinal()];
+        }
+
+        /**
+         * Returns the value of aCounter in each sync, its sum is the total of every sync.
+         */
+        public Histogram getCounter(SyncTrace.Counter aCounter){
+            return counters[aCounter.ordinal()];
+        }
+
+        void add(SyncTrace aTrace){
+            syncs++;
+            if(aTrace.isFailed())
+                failed++;
+            for(SyncTrace.Phase phase : SyncTrace.Phase.values()){
+                long ms = aTrace.getMs(phase);
+                if(ms >= 0)
+                    phases[phase.ordinal()].record(ms);
+            }
+            for(SyncTrace.Counter counter : SyncTrace.Counter.values())
+                counters[counter.ordinal()].record(aTrace.get(counter));
+        }
+
+        Model copy(){
+            Model copy = new Model(name);
+            copy.syncs = syncs;
+            copy.failed = failed;
+            for(int i = 0; i < phases.length; i++)
+                copy.phases[i] = phases[i].copy();
+            for(int i = 0; i < counters.length; i++)
+                copy.counters[i] = counters[i].copy();
+            return copy;
+        }
+    }
+
+    private final LinkedHashMap<String, Model> models = new LinkedHashMap<>();
+
+    MetricsSnapshot(){
+    }
+
+    void put(Model aModel){
+        models.put(aModel.getName(), aModel);
+    }
+
+    // Names of the models with syncs, in the order they first synced
+    public List<String> getModels(){
+        return new ArrayList<>(models.keySet());
+    }
+
+    // Returns the metrics of a model, null if it never synced
+    public Model getModel(String aName){
+        return models.get(aName);
+    }
+
+    public void writeTo(OutputStream aOut) throws IOException {
+        DataOutputStream out = new DataOutputStream(aOut);
+        out.writeShort(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        writeVarLong(out, models.size());
+        for(Model model : models.values()){
+            out.writeUTF(model.name);
+            writeVarLong(out, model.syncs);
+            writeVarLong(out, model.failed);
+            writeVarLong(out, model.phases.length);
+            for(Histogram phase : model.phases)
+                phase.writeTo(out);
+            writeVarLong(out, model.counters.length);
+            for(Histogram counter : model.counters)
+                counter.writeTo(out);
+        }
+        out.flush();
+    }
+
+    public byte[] toByteArray(){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeTo(bytes);
+        } catch (IOException e) {
+            // Not thrown by a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a dump written by writeTo. Phases and counters added by a later version are skipped.
+     * @param aIn
+     */
+    public static MetricsSnapshot readFrom(InputStream aIn) throws IOException {
+        DataInputStream in = new DataInputStream(aIn);
+        if(in.readUnsignedShort() != MAGIC)
+            throw new IOException("Not a metrics dump");
+        int version = in.readUnsignedByte();
+        if(version != FORMAT_VERSION)
+            throw new IOException("Unknown metrics dump version " + version);
+        MetricsSnapshot snapshot = new MetricsSnapshot();
+        long count = readVarLong(in);
+        for(long i = 0; i < count; i++){
+            Model model = new Model(in.readUTF());
+            model.syncs = (int) readVarLong(in);
+            model.failed = (int) readVarLong(in);
+            readHistograms(in, model.phases);
+            readHistograms(in, model.counters);
+            snapshot.put(model);
+        }
+        return snapshot;
+    }
+
+    public static MetricsSnapshot fromByteArray(byte[] aBytes) throws IOException {
+        return readFrom(new ByteArrayInputStream(aBytes));
+    }
+
+    private static void readHistograms(DataInput aIn, Histogram[] aInto) throws IOException {
+        long count = readVarLong(aIn);
+        for(long i = 0; i < count; i++){
+            Histogram histogram = Histogram.readFrom(aIn);
+            if(i < aInto.length)
+                aInto[(int) i] = histogram;
+        }
+    }
+
+    // Seven bits per byte, the lowest first, the high bit set on every byte but the last
+    static void writeVarLong(DataOutput aOut, long aValue) throws IOException {
+        long value = aValue;
+        while((value & ~0x7FL) != 0){
+            aOut.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        aOut.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput aIn) throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7){
+            int b = aIn.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
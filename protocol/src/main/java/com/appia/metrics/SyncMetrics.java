@@ -0,0 +1,69 @@
+package com.appia.metrics;
+
+import com.appia.common.Clock;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Collects the SyncTrace of every sync, adding its phase times and counters to the histograms of
+ * its glucometer model. Safe to use from any thread.
+ */
+public class SyncMetrics {
+
+    // Shared by every service of the application
+    private final static SyncMetrics sDefault = new SyncMetrics();
+
+    private final Clock clock;
+    private final LinkedHashMap<String, MetricsSnapshot.Model> models = new LinkedHashMap<>();
+
+    public SyncMetrics(){
+        this(Clock.SYSTEM);
+    }
+
+    /**
+     * @param aClock time source of the traces begun here
+     */
+    public SyncMetrics(Clock aClock){
+        clock = aClock;
+    }
+
+    public static SyncMetrics getDefault(){
+        return sDefault;
+    }
+
+    /**
+     * Starts the trace of a sync, when the connection is requested.
+     * @param aModel model of the glucometer
+     */
+    public SyncTrace begin(String aModel){
+        if(aModel == null)
+            throw new IllegalArgumentException("The model of a sync can't be null");
+        return new SyncTrace(aModel, clock);
+    }
+
+    // Adds a trace to the histograms of its model, once, whether the sync failed or not
+    public void end(SyncTrace aTrace){
+        if(!aTrace.end())
+            return;
+        synchronized (this){
+            MetricsSnapshot.Model model = models.get(aTrace.getModel());
+            if(model == null){
+                model = new MetricsSnapshot.Model(aTrace.getModel());
+                models.put(aTrace.getModel(), model);
+            }
+            model.add(aTrace);
+        }
+    }
+
+    // Copies the metrics collected so far
+    public synchronized MetricsSnapshot snapshot(){
+        MetricsSnapshot snapshot = new MetricsSnapshot();
+        for(MetricsSnapshot.Model model : models.values())
+            snapshot.put(model.copy());
+        return snapshot;
+    }
+
+    public synchronized void reset(){
+        models.clear();
+    }
+}
@@ -0,0 +1,146 @@
+package com.appia.metrics;
+
+import com.appia.common.Clock;
+
+/**
+ * Timeline and counters of a single sync with a glucometer, from the connection to the last
+ * record. The service starts it, the manager, the protocol and Bleuart fill it from their own
+ * threads, and SyncMetrics adds it to the histograms of its model once the sync ends.
+ */
+public class SyncTrace {
+
+    // Reached in this order by a sync that goes well, a failed one stops anywhere
+    public enum Phase {
+        CONNECT,
+        SERVICES_DISCOVERED,
+        NOTIFICATIONS_ENABLED,
+        // First answer about the device: the info packet of Bioland, the time of Onetouch
+        INFO_RECEIVED,
+        FIRST_RECORD,
+        LAST_RECORD
+    }
+
+    public enum Counter {
+        // Requests sent again, and Bioland version probes after the first one
+        RETRIES,
+        CRC_ERRORS,
+        LENGTH_ERRORS,
+        // Bleuart ACKs with the wrong number, or with nothing being sent
+        WRONG_ACKS,
+        BYTES_SENT,
+        BYTES_RECEIVED,
+        // BLE packets written and notified, ACKs only count as bytes
+        FRAGMENTS_SENT,
+        FRAGMENTS_RECEIVED,
+        RECORDS
+    }
+
+    // Given where no sync is being traced, records nothing
+    public final static SyncTrace NONE = new SyncTrace(null, Clock.SYSTEM);
+
+    private final static long NOT_REACHED = -1;
+
+    private final Clock clock;
+    private final boolean enabled;
+    private final String model;
+    private final long start;
+    // Nanoseconds from CONNECT to each phase, NOT_REACHED until then
+    private final long[] phases = new long[Phase.values().length];
+    private final long[] counters = new long[Counter.values().length];
+    private boolean failed;
+    private boolean ended;
+
+    public SyncTrace(String aModel){
+        this(aModel, Clock.SYSTEM);
+    }
+
+    /**
+     * Starts the trace, marking CONNECT.
+     * @param aModel model of the glucometer, the histograms are kept per model
+     * @param aClock time source of the phases
+     */
+    public SyncTrace(String aModel, Clock aClock){
+        clock = aClock;
+        enabled = aModel != null;
+        model = aModel;
+        start = aClock.nanoTime();
+        for(int i = 0; i < phases.length; i++)
+            phases[i] = NOT_REACHED;
+        phases[Phase.CONNECT.ordinal()] = 0;
+    }
+
+    public String getModel(){
+        return model;
+    }
+
+    // Marks a phase as reached now, unless it already was
+    public synchronized void mark(Phase aPhase){
+        if(enabled && phases[aPhase.ordinal()] == NOT_REACHED)
+            phases[aPhase.ordinal()] = clock.nanoTime() - start;
+    }
+
+    // A record was received, the first one marks FIRST_RECORD and every one moves LAST_RECORD
+    public synchronized void record(){
+        if(!enabled)
+            return;
+        long now = clock.nanoTime() - start;
+        if(phases[Phase.FIRST_RECORD.ordinal()] == NOT_REACHED)
+            phases[Phase.FIRST_RECORD.ordinal()] = now;
+        phases[Phase.LAST_RECORD.ordinal()] = now;
+        counters[Counter.RECORDS.ordinal()]++;
+    }
+
+    public void count(Counter aCounter){
+        add(aCounter, 1);
+    }
+
+    public synchronized void add(Counter aCounter, long aAmount){
+        if(enabled)
+            counters[aCounter.ordinal()] += aAmount;
+    }
+
+    // A BLE packet of aBytes was written
+    public synchronized void sent(int aBytes){
+        if(enabled){
+            counters[Counter.FRAGMENTS_SENT.ordinal()]++;
+            counters[Counter.BYTES_SENT.ordinal()] += aBytes;
+        }
+    }
+
+    // A BLE packet of aBytes was notified
+    public synchronized void received(int aBytes){
+        if(enabled){
+            counters[Counter.FRAGMENTS_RECEIVED.ordinal()]++;
+            counters[Counter.BYTES_RECEIVED.ordinal()] += aBytes;
+        }
+    }
+
+    // The sync gave up, it is still added to the histograms
+    public synchronized void fail(){
+        failed = true;
+    }
+
+    public synchronized boolean isFailed(){
+        return failed;
+    }
+
+    /**
+     * Returns the milliseconds from CONNECT to aPhase, -1 if it was not reached.
+     */
+    public synchronized long getMs(Phase aPhase){
+        long nanos = phases[aPhase.ordinal()];
+        return nanos == NOT_REACHED ? NOT_REACHED : nanos / 1000000;
+    }
+
+    public synchronized long get(Counter aCounter){
+        return counters[aCounter.ordinal()];
+    }
+
+    // Returns true the first time only, so a sync ended twice is added once
+    synchronized boolean end(){
+        if(!enabled || ended)
+            return false;
+        ended = true;
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package com.appia.onetouch;
+
+import com.appia.storage.MeasurementHistory;
+
+import java.util.Date;
+
+/**
+ * Keeps OnetouchMeasurements in a MeasurementHistory and builds them back from its rows. The
+ * glucometer numbers its records, so the ID is kept as a number, and the error code of the record
+ * goes in the flags.
+ */
+public final class OnetouchHistory {
+
+    // Record ID of the measurements whose ID is not a number
+    public final static int NO_ID = -1;
+
+    private OnetouchHistory() {
+    }
+
+    /**
+     * Adds aMeasurement to aHistory.
+     * @return the row of the measurement
+     */
+    public static int add(MeasurementHistory aHistory, OnetouchMeasurement aMeasurement) {
+        return aHistory.add(aMeasurement.mDate.getTime(), Math.round(aMeasurement.mGlucose),
+                recordIdOf(aMeasurement.mId), aMeasurement.mErrorID);
+    }
+
+    /**
+     * Builds the measurement of a row.
+     * @param aHistory
+     * @param aRow
+     */
+    public static OnetouchMeasurement get(MeasurementHistory aHistory, int aRow) {
+        int recordId = aHistory.getRecordId(aRow);
+        // The error is a 16 bit field of the record, read signed
+        return new OnetouchMeasurement(aHistory.getMgdl(aRow),
+                new Date(aHistory.getEpochMillis(aRow)),
+                recordId == NO_ID ? null : Integer.toString(recordId),
+                (short) aHistory.getFlags(aRow));
+    }
+
+    static int recordIdOf(String aId) {
+        try {
+            return aId == null ? NO_ID : Integer.parseInt(aId);
+        } catch (NumberFormatException e) {
+            return NO_ID;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.appia.onetouch.protocol;
+
+/**
+ * CRC-16/CCITT (polynomial 0x1021, initial value 0xFFFF, no reflection) used to protect the
+ * Onetouch packets.
+ *
+ * The checksum is computed one byte at a time with a precomputed table, and it can be updated
+ * incrementally, so a packet can be checked while its fragments are still arriving.
+ */
+public class Crc16 {
+
+    private final static int POLYNOMIAL = 0x1021;
+    private final static int INITIAL_VALUE = 0xFFFF;
+
+    private final static int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < TABLE.length; i++) {
+            int crc = i << 8;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+            }
+            TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    private int mCrc = INITIAL_VALUE;
+
+    /**
+     * Restarts the computation, discarding all the bytes fed so far.
+     */
+    public void reset() {
+        mCrc = INITIAL_VALUE;
+    }
+
+    /**
+     * Feeds one byte into the checksum.
+     * @param aByte
+     */
+    public void update(byte aByte) {
+        mCrc = ((mCrc << 8) ^ TABLE[((mCrc >>> 8) ^ aByte) & 0xFF]) & 0xFFFF;
+    }
+
+    /**
+     * Feeds aLength bytes of aBytes, starting at aOffset, into the checksum.
+     */
+    public void update(byte[] aBytes, int aOffset, int aLength) {
+        mCrc = update(mCrc, aBytes, aOffset, aLength);
+    }
+
+    /**
+     * Returns the checksum of all the bytes fed since the last reset.
+     */
+    public int getValue() {
+        return mCrc;
+    }
+
+    /**
+     * Computes the checksum of aLength bytes of aBytes starting at aOffset in one go.
+     */
+    public static int compute(byte[] aBytes, int aOffset, int aLength) {
+        return update(INITIAL_VALUE, aBytes, aOffset, aLength);
+    }
+
+    private static int update(int aCrc, byte[] aBytes, int aOffset, int aLength) {
+        int crc = aCrc;
+        for (int i = aOffset; i < aOffset + aLength; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ aBytes[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+}
@@ -0,0 +1,764 @@
+package com.appia.onetouch.protocol;
+
+import com.appia.common.Clock;
+import com.appia.common.Log;
+import com.appia.metrics.SyncTrace;
+
+import com.appia.onetouch.OnetouchMeasurement;
+import com.appia.onetouch.protocol.bleuart.Bleuart;
+import com.appia.onetouch.protocol.bleuart.BleuartCallbacks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class Protocol implements BleuartCallbacks {
+
+    private final static String TAG = "OneTouchProtocol";
+
+    // Abstracts serial communication
+    private ProtocolCallbacks protocolCallbacks;
+
+    private final static int PACKET_INITIAL_BYTE = 1; // Always 0x02
+    private final static int PACKET_LENGTH_BYTES = 2; // 16 bit packet length (little endian)
+    private final static int PACKET_PAYLOAD_BEGIN_BYTE_A = 1; // Always 0x04 before payload
+    private final static int PACKET_PAYLOAD_BEGIN_BYTE_B = 1; // Always 0x06 before payload when receiving
+    private final static int PACKET_PAYLOAD_END_BYTE = 1; // Always 0x03 after payload
+    private final static int PACKET_CRC_BYTES = 2; // 16 bit checksum (little endian)
+
+    private final static int PACKET_PAYLOAD_BEGIN = PACKET_INITIAL_BYTE +
+                                                    PACKET_LENGTH_BYTES +
+                                                    PACKET_PAYLOAD_BEGIN_BYTE_A +
+                                                    PACKET_PAYLOAD_BEGIN_BYTE_B;
+
+    private final static int PROTOCOL_OVERHEAD =    PACKET_INITIAL_BYTE +
+                                                    PACKET_LENGTH_BYTES +
+                                                    PACKET_PAYLOAD_BEGIN_BYTE_A +
+                                                    PACKET_PAYLOAD_BEGIN_BYTE_B +
+                                                    PACKET_PAYLOAD_END_BYTE +
+                                                    PACKET_CRC_BYTES;
+
+    private final static int PROTOCOL_SENDING_OVERHEAD =    PACKET_INITIAL_BYTE +
+                                                            PACKET_LENGTH_BYTES +
+                                                            PACKET_PAYLOAD_BEGIN_BYTE_A +
+                                                            PACKET_PAYLOAD_END_BYTE +
+                                                            PACKET_CRC_BYTES;
+
+    private final static int DEVICE_TIME_OFFSET = 946684799; // Year 2000 UNIX time
+
+    /* Persists mHighestMeasID of each glucometer between connections. */
+    private SyncCursorStore mCursorStore;
+    private String mDevice;
+
+    private short mHighestMeasIndex = 0;
+    /* ID of the latest record delivered to the application, only advanced once it was. */
+    private short mHighestMeasID = 0;
+    /* ID of the latest record read in the current batch. */
+    private short mHighestStoredMeasID = 0;
+    /* Highest ID on the glucometer, the delta by ID is read up to it. */
+    private short mTargetMeasID = 0;
+    private boolean mSynced = false;
+
+    /* Bulk sync: up to mBulkSyncWindow requests by index are kept in flight. */
+    public final static int DEFAULT_BULK_SYNC_WINDOW = 4;
+    private int mBulkSyncWindow = DEFAULT_BULK_SYNC_WINDOW;
+    /* Next index to be delivered to the application, records go from the oldest to index 0. */
+    private int mExpectedIndex;
+    /* Next index to be requested. */
+    private int mNextIndex;
+    /* Records received ahead of mExpectedIndex, stored at index % mBulkSyncWindow. */
+    private OnetouchMeasurement[] mWindowRecords;
+    private short[] mWindowIDs;
+    private boolean[] mWindowRetried;
+    /* True while the records are read by index, highest ID among the ones read so far. */
+    private boolean mReadingByIndex;
+    private short mBatchHighestID;
+
+    /* A request not answered within the timeout is sent again, up to MAX_TIMEOUTS times in a row. */
+    public final static int DEFAULT_REQUEST_TIMEOUT_MS = 2000;
+    public final static int MAX_TIMEOUTS = 3;
+    /* One thread runs the timeouts of every protocol that doesn't set its own scheduler. */
+    private final static ScheduledThreadPoolExecutor sScheduler = createScheduler();
+    private ScheduledExecutorService mScheduler = sScheduler;
+    private int mRequestTimeoutMs = DEFAULT_REQUEST_TIMEOUT_MS;
+    private ScheduledFuture<?> mTimeout;
+    /* Incremented whenever the timeout is cancelled, so one already running is dropped. */
+    private int mTimeoutToken;
+    private int mTimeouts;
+    /* When the last answer was received, the timeout counts from it. */
+    private long mLastAnswerNs;
+    /* True while an answer is expected. */
+    private boolean mAwaiting;
+    /* Last request sent, sent again if its answer times out. */
+    private byte[] mLastRequest;
+
+    ArrayList<OnetouchMeasurement> mMeasurements  = new ArrayList<>();
+
+    public enum State {
+        IDLE,
+        WAITING_TIME,
+        WAITING_HIGHEST_ID,
+        WAITING_OLDEST_INDEX,
+        WAITING_MEASUREMENT,
+        WAITING_LOW_LIMIT_SET,
+        WAITING_LOW_LIMIT_GET,
+        WAITING_HIGH_LIMIT_SET,
+        WAITING_HIGH_LIMIT_GET
+    };
+
+    private Bleuart mBleUart;
+    private State mState;
+    /* Reused to decode every received record. */
+    private final RecordView mRecord = new RecordView();
+    private Clock mClock = Clock.SYSTEM;
+    /* Phases and counters of the current sync. */
+    private SyncTrace mTrace = SyncTrace.NONE;
+
+
+    // This class abstracts the protocol from the User
+    public Protocol(ProtocolCallbacks aCallbacks, int aMaxPacketSize){
+        protocolCallbacks = aCallbacks;
+        mState = State.IDLE;
+        mBleUart = new Bleuart(this, aMaxPacketSize);
+    }
+
+    /**
+     * Changes where the time written on the glucometer is read from.
+     * @param aClock Clock.SYSTEM unless a simulation sets another one
+     */
+    public void setClock(Clock aClock){
+        mClock = aClock;
+    }
+
+    /**
+     * Sets where the phases and counters of the sync are recorded, Bleuart's included.
+     * @param aTrace SyncTrace.NONE if the sync is not traced
+     */
+    public void setSyncTrace(SyncTrace aTrace){
+        mTrace = aTrace;
+        mBleUart.setSyncTrace(aTrace);
+    }
+
+    void getStoredMeasurements(){
+        getOldestRecordIndex();
+    }
+
+    /**
+     * Sets the maximum size of the BLE packets, usually the negotiated MTU minus 3. Applied
+     * between transactions.
+     * @param aMaxPacketSize
+     */
+    public void setMaxPacketSize(int aMaxPacketSize){
+        mBleUart.setMaxPacketSize(aMaxPacketSize);
+    }
+
+    /**
+     * Sets where the ID of the latest record delivered is stored after each batch. When a cursor
+     * is found on connection, only the records stored after it are requested.
+     * @param aStore
+     */
+    public void setSyncCursorStore(SyncCursorStore aStore){
+        mCursorStore = aStore;
+    }
+
+    /**
+     * Sets how many records by index may be requested before the previous ones are received
+     * during a full sync. A window of 1 requests them one at a time. Takes effect on the next sync.
+     * @param aWindow
+     */
+    public void setBulkSyncWindow(int aWindow){
+        if(aWindow < 1){
+            throw new IllegalArgumentException("Bulk sync window must be at least 1");
+        }
+        mBulkSyncWindow = aWindow;
+    }
+
+    /**
+     * Sets how long an answer is waited for before the request is sent again. Records by index
+     * still missing are all requested again, and after MAX_TIMEOUTS in a row onProtocolError is
+     * called.
+     * @param aTimeoutMs
+     */
+    public void setRequestTimeoutMs(int aTimeoutMs){
+        if(aTimeoutMs < 1){
+            throw new IllegalArgumentException("Request timeout must be at least 1 ms");
+        }
+        mRequestTimeoutMs = aTimeoutMs;
+    }
+
+    /**
+     * Runs the timeouts on aScheduler instead of the thread shared by every protocol, for example
+     * on the thread that already calls this protocol.
+     * @param aScheduler
+     */
+    public void setScheduler(ScheduledExecutorService aScheduler){
+        mScheduler = aScheduler;
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler(){
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = Executors.defaultThreadFactory().newThread(r);
+                thread.setName("OnetouchProtocol");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**********************************************************************************************/
+    /*                                      Bleuart Callbacks                                     */
+
+    /**
+     * Called by Bleuart protocol when a packet is received.
+     * @param aBytes read only view of the packet, only valid during the call
+     * @param aCrc CRC computed by Bleuart while the packet was received
+     */
+    public void onPacketReceived(ByteBuffer aBytes, int aCrc){
+        try {
+            // The payload is decoded in place, straight from the received packet.
+            int payloadLength = checkPacket(aBytes, aCrc);
+            if(Log.isDebugEnabled()) {
+                Log.d(TAG, "Packet received: " + bytesToHex(aBytes, PACKET_PAYLOAD_BEGIN, payloadLength));
+            }
+            // An answer, the handlers tell whether another one is expected
+            mLastAnswerNs = mClock.nanoTime();
+            mTimeouts = 0;
+            mAwaiting = false;
+            switch (mState) {
+                case WAITING_TIME:
+                    if (payloadLength == 4) { // Time get response
+                        handleTimeGet(computeUnixTime(aBytes.getInt(PACKET_PAYLOAD_BEGIN)));
+                    } else if (payloadLength == 0) { // Time set response (empty)
+                        handleTimeSet();
+                    }
+                    else{
+                        Log.e(TAG, "Unexpected payload waiting for time request!");
+                    }
+                    break;
+                case WAITING_HIGHEST_ID:
+                    if (payloadLength == 4) {
+                        int highestID = aBytes.getInt(PACKET_PAYLOAD_BEGIN);
+                        handleHighestRecordID((short)highestID);
+                    }
+                    else{
+                        Log.e(TAG, "Unexpected payload waiting for highest record ID!");
+                    }
+                    break;
+                case WAITING_OLDEST_INDEX:
+                    if (payloadLength == 2) {
+                        short recordCount = aBytes.getShort(PACKET_PAYLOAD_BEGIN);
+                        handleTotalRecordCount(recordCount);
+                    }
+                    else{
+                        Log.e(TAG, "Unexpected payload waiting for total record request!");
+                    }
+                    break;
+                case WAITING_MEASUREMENT:
+                    if (payloadLength == RecordView.BY_ID_PAYLOAD_LENGTH) {
+                        mRecord.readById(aBytes, PACKET_PAYLOAD_BEGIN);
+                        handleMeasurementByID(mRecord);
+                    }
+                    else if(payloadLength == 0){
+                        // Measurement was not found! Indicate with a null record
+                        handleMeasurementByID(null);
+                    }
+                    else if (payloadLength == RecordView.BY_INDEX_PAYLOAD_LENGTH) {
+                        mRecord.readByIndex(aBytes, PACKET_PAYLOAD_BEGIN);
+                        handleMeasurementByIndex(mRecord);
+                    }
+
+                    break;
+            }
+            if(mReadingByIndex && mExpectedIndex > mNextIndex){
+                // Records requested by index are still on their way
+                mAwaiting = true;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Called by Bleuart protocol to send bytes over ble
+     * @param aBytes
+     */
+    public void sendData(byte[] aBytes){
+        protocolCallbacks.sendData(aBytes);
+    }
+    /**********************************************************************************************/
+    /**
+     * Called by the lower layer when a ble data is received
+     * @param bytes
+     */
+    public synchronized void onDataReceived(byte[] bytes){
+        // Forward data to the bleuart protocol.
+        mBleUart.onDataReceived(bytes);
+    }
+    /**********************************************************************************************/
+
+    // Function to be called when the device connected
+    public void connect(){
+        connect(null);
+    }
+
+    /**
+     * Function to be called when the device connected.
+     * @param aDevice address of the glucometer, used to load its sync cursor
+     */
+    public synchronized void connect(String aDevice){
+        if(mState == State.IDLE){
+            mDevice = aDevice;
+            loadSyncCursor();
+            mTimeouts = 0;
+            getTime();
+        }
+    }
+
+    // Function to be called when the device disconnects
+    public synchronized void disconnect() {
+        cancelTimeout();
+        mAwaiting = false;
+        // Drop any half sent or received packet
+        mBleUart.reset();
+        // Records read and not delivered are requested again on the next connection
+        mMeasurements.clear();
+        mReadingByIndex = false;
+        // Set state to disconnected
+        mState = State.IDLE;
+    }
+
+    public void getTime(){
+        sendRequest(buildPacket(new byte[]{0x20,0x02}), State.WAITING_TIME);
+    }
+
+    public void setTime(){
+        long currTime = computeSystemTime();
+        sendRequest(buildPacket(new byte[]{0x20,
+                0x01,
+                (byte)((currTime&0x000000FF)),
+                (byte)((currTime&0x0000FF00)>>8),
+                (byte)((currTime&0x00FF0000)>>16),
+                (byte)((currTime&0xFF000000)>>24)
+        }), State.WAITING_TIME);
+    }
+
+    public void getHighLimit(){
+        sendRequest(buildPacket(new byte[]{0x0A,0x02,0x0A}), State.WAITING_HIGH_LIMIT_GET);
+    }
+
+    public void setHighLimit(short high){
+        sendRequest(buildPacket(new byte[]{0x0A,0x01,0x0A,
+                (byte)((high&0x00FF)),
+                (byte)((high&0xFF00)>>8),
+                    0x00,
+                    0x00}), State.WAITING_HIGH_LIMIT_SET);
+    }
+
+    public void getLowLimit(){
+        sendRequest(buildPacket(new byte[]{0x0A,0x02,0x09}), State.WAITING_LOW_LIMIT_GET);
+    }
+
+    public void setLowLimit(short low){
+        sendRequest(buildPacket(new byte[]{0x0A,0x01,0x09,
+                (byte)((low&0x00FF)),
+                (byte)((low&0xFF00)>>8),
+                0x00,
+                0x00}), State.WAITING_LOW_LIMIT_SET);
+    }
+
+    public void getHighestRecordID(){
+        sendRequest(buildPacket(new byte[]{0x0A,0x02,0x06}), State.WAITING_HIGHEST_ID);
+    }
+
+    public void getOldestRecordIndex(){
+        sendRequest(buildPacket(new byte[]{0x27,0x00}), State.WAITING_OLDEST_INDEX);
+    }
+
+    public void getMeasurementsByIndex(int index){
+        sendRequest(buildPacket(new byte[]{0x31,0x02,
+                (byte) (index&0x00FF),
+                (byte) ((index&0xFF00)>>8),
+                0x00,}), State.WAITING_MEASUREMENT);
+    }
+
+    public void getMeasurementsById(int id){
+        sendRequest(buildPacket(new byte[]{
+                (byte) 0xB3,
+                (byte) (id&0x00FF),
+                (byte) ((id&0xFF00)>>8)}), State.WAITING_MEASUREMENT);
+    }
+
+    /* Sends a request and waits for its answer, the timeout is started if it isn't running. */
+    private void sendRequest(byte[] aPacket, State aState){
+        mLastRequest = aPacket;
+        mBleUart.sendPacket(aPacket);
+        mState = aState;
+        if(!mAwaiting){
+            mAwaiting = true;
+            mLastAnswerNs = mClock.nanoTime();
+        }
+        if(mTimeout == null){
+            scheduleTimeout(mRequestTimeoutMs);
+        }
+    }
+
+    private void scheduleTimeout(long aDelayMs){
+        final int token = mTimeoutToken;
+        mTimeout = mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                onTimeout(token);
+            }
+        }, aDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelTimeout(){
+        mTimeoutToken++;
+        if(mTimeout != null){
+            mTimeout.cancel(false);
+            mTimeout = null;
+        }
+    }
+
+    /*
+     * Runs on the scheduler. A single timeout is kept running while answers are expected, it is
+     * pushed back by every answer instead of being cancelled and scheduled again on each one.
+     */
+    private synchronized void onTimeout(int aToken){
+        if(aToken != mTimeoutToken){
+            return;
+        }
+        mTimeout = null;
+        if(!mAwaiting || mState == State.IDLE){
+            return;
+        }
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(mClock.nanoTime() - mLastAnswerNs);
+        if(waitedMs < mRequestTimeoutMs){
+            scheduleTimeout(mRequestTimeoutMs - waitedMs);
+            return;
+        }
+        if(++mTimeouts > MAX_TIMEOUTS){
+            Log.e(TAG, "No answer from the glucometer after " + MAX_TIMEOUTS + " attempts.");
+            mBleUart.reset();
+            mAwaiting = false;
+            mState = State.IDLE;
+            protocolCallbacks.onProtocolError("No answer from the glucometer.");
+            return;
+        }
+        // Whatever was half sent or received is stale by now, an ACK may have been lost
+        mBleUart.reset();
+        mLastAnswerNs = mClock.nanoTime();
+        if(mReadingByIndex && mState == State.WAITING_MEASUREMENT){
+            for(int index = mExpectedIndex; index > mNextIndex; index--){
+                int slot = index % mBulkSyncWindow;
+                if(mWindowRecords[slot] == null){
+                    Log.w(TAG, "Measurement " + index + " timed out, requesting it again.");
+                    mWindowRetried[slot] = true;
+                    mTrace.count(SyncTrace.Counter.RETRIES);
+                    getMeasurementsByIndex(index);
+                }
+            }
+        }
+        else{
+            Log.w(TAG, "No answer waiting in state " + mState + ", sending the request again.");
+            mTrace.count(SyncTrace.Counter.RETRIES);
+            mBleUart.sendPacket(mLastRequest);
+        }
+        if(mTimeout == null){
+            scheduleTimeout(mRequestTimeoutMs);
+        }
+    }
+
+    private void handleTimeGet(long aSeconds){
+        mTrace.mark(SyncTrace.Phase.INFO_RECEIVED);
+        Log.d(TAG, "Glucometer time is: "+ new Date(1000*aSeconds).toString());
+        Log.d(TAG, "System time is: "+ new Date(mClock.currentTimeMillis()).toString());
+        setTime();
+    }
+
+    private void handleTimeSet(){
+        Log.d(TAG, "Time has been set!");
+        if(!mSynced) {
+            getOldestRecordIndex();
+        }
+        else{
+            getHighestRecordID();
+        }
+    }
+
+    private void handleTotalRecordCount(short aRecordCount) {
+        Log.d(TAG, "Total records stored on Glucometer: " + aRecordCount);
+        mHighestMeasIndex = aRecordCount;
+        if(aRecordCount <= 0){
+            mSynced = true;
+            saveSyncCursor();
+            getHighestRecordID();
+            return;
+        }
+        // After getting the number of stored measurements, start from the oldest one!
+        if(mWindowRecords == null || mWindowRecords.length != mBulkSyncWindow){
+            mWindowRecords = new OnetouchMeasurement[mBulkSyncWindow];
+            mWindowIDs = new short[mBulkSyncWindow];
+            mWindowRetried = new boolean[mBulkSyncWindow];
+        }
+        mExpectedIndex = aRecordCount-1;
+        mNextIndex = aRecordCount-1;
+        mBatchHighestID = 0;
+        mReadingByIndex = true;
+        requestNextIndexes();
+    }
+
+    /* Keeps up to mBulkSyncWindow requests by index in flight. */
+    private void requestNextIndexes(){
+        while(mNextIndex >= 0 && mExpectedIndex - mNextIndex < mBulkSyncWindow){
+            int slot = mNextIndex % mBulkSyncWindow;
+            mWindowRecords[slot] = null;
+            mWindowRetried[slot] = false;
+            getMeasurementsByIndex(mNextIndex);
+            mNextIndex--;
+        }
+    }
+
+    private void handleHighestRecordID(short aRecordID) {
+        Log.d(TAG, "Highest record ID: " + aRecordID);
+        if(aRecordID < mHighestMeasID) {
+            // The memory was erased or this is another glucometer, read it all again.
+            Log.w(TAG, "Highest record ID went back from " + mHighestMeasID + ", syncing again.");
+            mHighestMeasID = 0;
+            mHighestStoredMeasID = 0;
+            mSynced = false;
+            if(mCursorStore != null && mDevice != null){
+                mCursorStore.clear(mDevice);
+            }
+            getOldestRecordIndex();
+        }
+        else if(aRecordID > mHighestMeasID) {
+            // mHighestMeasID only moves once the records were delivered
+            mHighestStoredMeasID = mHighestMeasID;
+            mTargetMeasID = aRecordID;
+            Log.d(TAG, "There are " + (mTargetMeasID - mHighestStoredMeasID) + " new records!");
+            getMeasurementsById(mHighestStoredMeasID+1);
+        }
+        else{
+            Log.d(TAG, "Measurements are up to date!");
+            // Enqueue timer to poll new measurements?
+        }
+    }
+
+    private void handleMeasurementByID(RecordView aRecord){
+        // Update latest ID
+        mHighestStoredMeasID++;
+
+        if(aRecord != null) { // If measurement was found..
+            long measTime = computeUnixTime(aRecord.time);
+            if(Log.isDebugEnabled()) {
+                Log.d(TAG, "Measurement - Value: " + aRecord.value +
+                        " Time: " + new Date(1000 * measTime).toString() +
+                        " Error: " + aRecord.error);
+            }
+            Date date = new Date(1000*measTime);
+            mMeasurements.add(new OnetouchMeasurement(aRecord.value, date, Integer.toString(mHighestStoredMeasID),aRecord.error));
+            mTrace.record();
+        }
+        else{
+            Log.d(TAG, "Measurement with ID: " + mHighestStoredMeasID + " was not found!");
+        }
+
+        if(mHighestStoredMeasID < mTargetMeasID){
+            Log.d(TAG, "Requesting next measurement, ID: "+ (mHighestStoredMeasID+1));
+            getMeasurementsById(mHighestStoredMeasID+1);
+        }
+        else{
+            Log.d(TAG, "Measurement up to date!");
+            // Notify application
+            protocolCallbacks.onMeasurementsReceived(mMeasurements);
+            mMeasurements.clear();
+            mHighestMeasID = mTargetMeasID;
+            saveSyncCursor();
+            // Start timer to poll for new measurements??
+        }
+    }
+
+    private void handleMeasurementByIndex(RecordView aRecord){
+        long measTime = computeUnixTime(aRecord.time);
+        short measIndex = aRecord.index;
+        if(Log.isDebugEnabled()) {
+            Log.d(TAG, "Measurement " + measIndex + " |" +
+                    " Value: " + aRecord.value +
+                    " Time: " + new Date(1000 * measTime).toString() +
+                    " ID:" + aRecord.id);
+        }
+
+        // Only indexes requested and not received yet are accepted.
+        if(measIndex > mExpectedIndex || measIndex <= mNextIndex){
+            Log.w(TAG, "Measurement " + measIndex + " was not expected, ignoring it.");
+            return;
+        }
+        int slot = measIndex % mBulkSyncWindow;
+        if(mWindowRecords[slot] != null){
+            Log.w(TAG, "Measurement " + measIndex + " was received twice, ignoring it.");
+            return;
+        }
+        Date date = new Date(1000*measTime);
+        mWindowRecords[slot] = new OnetouchMeasurement(aRecord.value,date,Integer.toString(aRecord.id));
+        mWindowIDs[slot] = aRecord.id;
+        mTrace.record();
+
+        // Requests are answered in order, so any older record still missing was lost. Ask again.
+        for(int index = mExpectedIndex; index > measIndex; index--){
+            int missing = index % mBulkSyncWindow;
+            if(mWindowRecords[missing] == null && !mWindowRetried[missing]){
+                Log.w(TAG, "Measurement " + index + " was lost, requesting it again.");
+                mWindowRetried[missing] = true;
+                mTrace.count(SyncTrace.Counter.RETRIES);
+                getMeasurementsByIndex(index);
+            }
+        }
+
+        // Deliver the records in order, from the oldest one to the latest one.
+        while(mExpectedIndex > mNextIndex && mWindowRecords[mExpectedIndex % mBulkSyncWindow] != null){
+            int next = mExpectedIndex % mBulkSyncWindow;
+            mBatchHighestID = (short) Math.max(mWindowIDs[next],mBatchHighestID);
+            mMeasurements.add(mWindowRecords[next]);
+            mWindowRecords[next] = null;
+            mExpectedIndex--;
+        }
+
+        if(mExpectedIndex < 0){ // The latest measurement
+            // Notify application
+            protocolCallbacks.onMeasurementsReceived(mMeasurements);
+            mMeasurements.clear();
+            mReadingByIndex = false;
+            // Update latest ID
+            mHighestMeasID = (short) Math.max(mBatchHighestID,mHighestMeasID);
+            mHighestStoredMeasID = mHighestMeasID;
+            mSynced = true;
+            saveSyncCursor();
+            getHighestRecordID();
+            // Start timer to poll for new measurements??
+        }
+        else{
+            requestNextIndexes();
+        }
+    }
+
+    /*
+     * Resumes from the stored cursor, if any, so only the delta by ID is requested. Without one
+     * the whole memory is read, whatever a previous connection of this protocol left behind.
+     */
+    private void loadSyncCursor(){
+        if(mCursorStore == null){
+            return;
+        }
+        int highestID = mDevice == null ? SyncCursorStore.NO_CURSOR : mCursorStore.load(mDevice);
+        if(highestID != SyncCursorStore.NO_CURSOR){
+            Log.d(TAG, "Resuming sync after record ID " + highestID);
+            mHighestMeasID = (short) highestID;
+            mHighestStoredMeasID = (short) highestID;
+            mSynced = true;
+        }
+        else{
+            mHighestMeasID = 0;
+            mHighestStoredMeasID = 0;
+            mSynced = false;
+        }
+    }
+
+    /* Called once a batch was delivered to the application. */
+    private void saveSyncCursor(){
+        if(mCursorStore != null && mDevice != null){
+            mCursorStore.save(mDevice, mHighestMeasID);
+        }
+    }
+
+    private static byte[] buildPacket(byte[] payload){
+        int N = payload.length;
+        int packetLength = PROTOCOL_SENDING_OVERHEAD + N;
+        byte[] packet = new byte[packetLength];
+        packet[0] = (byte) 0x02;
+        packet[1] = (byte) packetLength;
+        packet[2] = (byte) 0x00;
+        packet[3] = (byte) 0x04;
+        System.arraycopy(payload,0,packet,4,N);
+        packet[4+N] = (byte) 0x03;
+        appendCRC16(packet,packetLength-2);
+        return packet;
+    }
+
+    /**
+     * Checks the CRC and length of a received packet.
+     * @return the length of the payload, which begins at PACKET_PAYLOAD_BEGIN
+     */
+    private int checkPacket(ByteBuffer packet, int computedCRC) throws Exception {
+        int length = packet.limit();
+        if(length < PROTOCOL_OVERHEAD){
+            mTrace.count(SyncTrace.Counter.LENGTH_ERRORS);
+            throw new Exception("Bad Length! Received only " + length + " bytes.");
+        }
+        int receivedCRC = extractCRC(packet);
+        if(receivedCRC==computedCRC){
+            if(length == extractLength(packet)){
+                return length-PROTOCOL_OVERHEAD;
+            }
+            else {
+                mTrace.count(SyncTrace.Counter.LENGTH_ERRORS);
+                throw new Exception("Bad Length! Received " + length + " bytes but should have been " + extractLength(packet));
+            }
+        }
+        else{
+            mTrace.count(SyncTrace.Counter.CRC_ERRORS);
+            throw new Exception("Bad CRC! Expected " + Integer.toHexString(computedCRC) +
+                    " but got " + Integer.toHexString(receivedCRC) + ".");
+        }
+    }
+
+    private static long computeUnixTime(int sysTime){
+        return DEVICE_TIME_OFFSET + (long) sysTime;
+    }
+    private int computeSystemTime(){
+        return (int)(mClock.currentTimeMillis()/1000)-DEVICE_TIME_OFFSET;
+    }
+
+    public static int computeCRC(byte[] data, int offset, int length) {
+        if (data == null || offset < 0 || offset > data.length - 1 || offset + length > data.length) {
+            return 0;
+        }
+
+        return Crc16.compute(data, offset, length);
+    }
+
+    private static int extractCRC(ByteBuffer data){
+        return data.getShort(data.limit()-2)&0xFFFF;
+    }
+    private static int extractLength(ByteBuffer data){
+        return data.getShort(1)&0xFFFF;
+    }
+
+    public static void appendCRC16(byte[] data, int length){
+        int crc = computeCRC(data,0,length);
+        data[length] = (byte) ((crc&0x00FF));
+        data[length+1]   = (byte) ((crc&0xFF00)>>8);
+    }
+
+    private final static char[] hexArray = "0123456789ABCDEF".toCharArray();
+    private static String bytesToHex(ByteBuffer bytes, int offset, int length) {
+        char[] hexChars = new char[length * 2];
+        for ( int j = 0; j < length; j++ ) {
+            int v = bytes.get(offset + j) & 0xFF;
+            hexChars[j * 2] = hexArray[v >>> 4];
+            hexChars[j * 2 + 1] = hexArray[v & 0x0F];
+        }
+        return new String(hexChars);
+    }
+}
@@ -11,7 +11,8 @@ import java.util.ArrayList;
 public interface ProtocolCallbacks {
 
     /**
-     *
+     * Sends bytes to the device. The array is reused once this returns, so it must be copied if
+     * it is kept.
      * @param bytes
      */
     void sendData(final byte[] bytes);
@@ -0,0 +1,42 @@
+package com.appia.onetouch.protocol;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Writes the sync cursors of another store on the executor that stores the measurements.
+ *
+ * The Protocol saves the cursor of a batch right after onMeasurementsReceived returns. If the
+ * application only queues the batch to be stored, the cursor could reach the disk first, and a
+ * process death in between would skip the batch for good. Queued on the same single thread
+ * executor, after the batch, the cursor is written once the batch is stored. Loads read the
+ * other store directly, a cursor still queued only makes the next sync read some records again.
+ */
+public class QueuedCursorStore implements SyncCursorStore {
+
+    private final SyncCursorStore mStore;
+    private final Executor mExecutor;
+
+    /**
+     * @param aStore where the cursors are kept
+     * @param aExecutor runs its tasks one at a time in order, the measurements are stored on it
+     */
+    public QueuedCursorStore(SyncCursorStore aStore, Executor aExecutor) {
+        mStore = aStore;
+        mExecutor = aExecutor;
+    }
+
+    @Override
+    public int load(String aDevice) {
+        return mStore.load(aDevice);
+    }
+
+    @Override
+    public void save(final String aDevice, final int aHighestID) {
+        mExecutor.execute(() -> mStore.save(aDevice, aHighestID));
+    }
+
+    @Override
+    public void clear(final String aDevice) {
+        mExecutor.execute(() -> mStore.clear(aDevice));
+    }
+}
@@ -0,0 +1,63 @@
+package com.appia.onetouch.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable view of a measurement record. The fields are read straight from the received packet
+ * at fixed offsets, so decoding a record does not allocate anything.
+ */
+public class RecordView {
+
+    /* Payload of a record read by index (16 bytes). */
+    public final static int BY_INDEX_PAYLOAD_LENGTH = 16;
+    private final static int BY_INDEX_INDEX_OFFSET = 0;
+    private final static int BY_INDEX_ID_OFFSET = 3;
+    private final static int BY_INDEX_TIME_OFFSET = 5;
+    private final static int BY_INDEX_VALUE_OFFSET = 9;
+    private final static int BY_INDEX_ERROR_OFFSET = 13;
+
+    /* Payload of a record read by ID (11 bytes). */
+    public final static int BY_ID_PAYLOAD_LENGTH = 11;
+    private final static int BY_ID_TIME_OFFSET = 0;
+    private final static int BY_ID_VALUE_OFFSET = 4;
+    private final static int BY_ID_ERROR_OFFSET = 9;
+
+    /** Index of the record, 0 is the latest one. Only present when read by index. */
+    public short index;
+    /** Record ID. Only present when read by index. */
+    public short id;
+    /** Glucometer time of the record, seconds since year 2000. */
+    public int time;
+    /** Glucose value in mg/dL. */
+    public short value;
+    /**
+     * Error code of the record. When read by index this is the 16 bit field at offset 13, whose
+     * meaning is not confirmed yet.
+     */
+    public short error;
+
+    /**
+     * Reads a record received as response to a request by index.
+     * @param aFrame the received packet, in little endian order
+     * @param aPayloadOffset position of the payload within aFrame
+     */
+    public void readByIndex(ByteBuffer aFrame, int aPayloadOffset) {
+        index = aFrame.getShort(aPayloadOffset + BY_INDEX_INDEX_OFFSET);
+        id = aFrame.getShort(aPayloadOffset + BY_INDEX_ID_OFFSET);
+        time = aFrame.getInt(aPayloadOffset + BY_INDEX_TIME_OFFSET);
+        value = aFrame.getShort(aPayloadOffset + BY_INDEX_VALUE_OFFSET);
+        error = aFrame.getShort(aPayloadOffset + BY_INDEX_ERROR_OFFSET);
+    }
+
+    /**
+     * Reads a record received as response to a request by ID. The ID is not echoed by the
+     * glucometer, so index and id are left untouched.
+     * @param aFrame the received packet, in little endian order
+     * @param aPayloadOffset position of the payload within aFrame
+     */
+    public void readById(ByteBuffer aFrame, int aPayloadOffset) {
+        time = aFrame.getInt(aPayloadOffset + BY_ID_TIME_OFFSET);
+        value = aFrame.getShort(aPayloadOffset + BY_ID_VALUE_OFFSET);
+        error = aFrame.getShort(aPayloadOffset + BY_ID_ERROR_OFFSET);
+    }
+}
@@ -0,0 +1,30 @@
+package com.appia.onetouch.protocol;
+
+/**
+ * Persists, for each glucometer, the ID of the latest record delivered to the application, so a
+ * new connection only has to ask for the records stored after it.
+ */
+public interface SyncCursorStore {
+
+    /** Returned by load when nothing was stored for the device. */
+    int NO_CURSOR = -1;
+
+    /**
+     * Returns the ID of the latest record delivered from aDevice, or NO_CURSOR.
+     * @param aDevice address of the glucometer
+     */
+    int load(String aDevice);
+
+    /**
+     * Stores the ID of the latest record delivered from aDevice, replacing the previous one.
+     * @param aDevice address of the glucometer
+     * @param aHighestID
+     */
+    void save(String aDevice, int aHighestID);
+
+    /**
+     * Forgets the cursor of aDevice, so the next sync reads the whole memory again.
+     * @param aDevice address of the glucometer
+     */
+    void clear(String aDevice);
+}
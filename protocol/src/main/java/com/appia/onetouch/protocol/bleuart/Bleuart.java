@@ -0,0 +1,276 @@
+package com.appia.onetouch.protocol.bleuart;
+
+import com.appia.common.Log;
+import com.appia.metrics.SyncTrace;
+
+import com.appia.onetouch.protocol.Crc16;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ *
+ */
+public class Bleuart {
+
+    public Bleuart(BleuartCallbacks aCallbacks, int aMaxPacketSize){
+        mCallbacks = aCallbacks;
+        mTxState = State.IDLE;
+        mRxState = State.IDLE;
+        for(int i=0; i<mAckPool.length; i++){
+            mAckPool[i] = new byte[]{(byte)(HEADER_ACK_PACKET|i)};
+        }
+        applyMaxPacketSize(aMaxPacketSize);
+    }
+
+    /**
+     * Changes the maximum size of the fragments, header included, usually to the negotiated
+     * MTU minus 3. If a packet is being sent or received, the change is applied once it finishes.
+     * @param aMaxPacketSize
+     */
+    public void setMaxPacketSize(int aMaxPacketSize) {
+        if(aMaxPacketSize <= BLEUART_HEADER_SIZE){
+            throw new IllegalArgumentException("Packet size must be larger than the header");
+        }
+        if(mTxState == State.IDLE && mRxState == State.IDLE){
+            applyMaxPacketSize(aMaxPacketSize);
+        }
+        else{
+            mPendingMaxPacketSize = aMaxPacketSize;
+        }
+    }
+
+    private void applyMaxPacketSize(int aMaxPacketSize) {
+        mPendingMaxPacketSize = 0;
+        if(mRxBuffer != null && aMaxPacketSize-BLEUART_HEADER_SIZE == mMaxPayloadSize){
+            return;
+        }
+        Log.d(TAG, "Max packet size set to " + aMaxPacketSize);
+        mMaxPayloadSize = aMaxPacketSize-BLEUART_HEADER_SIZE;
+
+        /* A packet can't be longer than the maximum number of fragments the header allows. */
+        mRxBuffer = new byte[mMaxPayloadSize*MAX_FRAGMENTS];
+        mRxView = ByteBuffer.wrap(mRxBuffer).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        mFragmentPool = new byte[aMaxPacketSize+1][];
+    }
+
+    /* Applies a packet size change requested during the last transaction. */
+    private void applyPendingMaxPacketSize() {
+        if(mPendingMaxPacketSize != 0 && mTxState == State.IDLE && mRxState == State.IDLE){
+            applyMaxPacketSize(mPendingMaxPacketSize);
+        }
+    }
+
+    /**
+     * Sets where the fragments, ACKs and bytes are counted.
+     * @param aTrace SyncTrace.NONE if the sync is not traced
+     */
+    public void setSyncTrace(SyncTrace aTrace) {
+        mTrace = aTrace;
+    }
+
+    /**
+     * This function sends a packet of bytes to the device. Transmission and reception are
+     * independent, so a packet can be sent while another one is being received. If a packet is
+     * still being sent, this one is queued and sent as soon as the previous one is acknowledged.
+     */
+    public void sendPacket(byte[] aBytes) {
+        if(mTxState != State.IDLE){
+            mTxQueue.add(aBytes);
+            return;
+        }
+
+        /* Compute the number of packets needed in the transaction. */
+        int nPackets = (aBytes.length + mMaxPayloadSize - 1) / mMaxPayloadSize;
+        if(nPackets > MAX_FRAGMENTS){
+            Log.e(TAG,"Packet of " + aBytes.length + " bytes needs more than " + MAX_FRAGMENTS + " fragments, dropping it.");
+            return;
+        }
+        mTxState = State.SENDING;
+        mTxPackets = nPackets;
+
+        mTxData = aBytes;
+        mTxOffset = 0;
+
+        buildAndSendFragment(true);
+    }
+
+    /**
+     * Drops any packet being sent or received, as well as the queued ones.
+     */
+    public void reset() {
+        mTxQueue.clear();
+        mTxData = null;
+        mRxLength = 0;
+        mTxState = State.IDLE;
+        mRxState = State.IDLE;
+        applyPendingMaxPacketSize();
+    }
+
+    /**
+     * This function should be called by the upper layer when a bluetooth packet is received
+     */
+    public void onDataReceived(byte[] aBytes){
+        if(aBytes.length==1 && headerIs(aBytes[0],HEADER_ACK_PACKET)){
+            mTrace.add(SyncTrace.Counter.BYTES_RECEIVED, 1);
+            handleAckReceived(aBytes[0]&0x0F);
+            return;
+        }
+        mTrace.received(aBytes.length);
+        if(headerIs(aBytes[0],HEADER_FIRST_PACKET)) {
+            if(mRxState == State.RECEIVING){
+                Log.e(TAG,"New packet received while " + mRxPackets + " fragments were still missing.");
+            }
+            mRxPackets = aBytes[0]&0x0F;
+
+            Log.d(TAG, "Receiving 1 of " + mRxPackets);
+
+            mRxLength = 0;
+            mRxCrc.reset();
+            mRxCrcLength = 0;
+
+            handleDataReceived(aBytes);
+        }
+        else if(headerIs(aBytes[0],HEADER_FRAG_PACKET)) {
+            int remainingPackets = aBytes[0]&0x0F;
+            if(mRxState == State.RECEIVING && remainingPackets==mRxPackets){
+                handleDataReceived(aBytes);
+            }
+            else{
+                Log.e(TAG,"Wrong packet number!. Expecting " + mRxPackets + " but " + remainingPackets + " received.");
+            }
+        }
+        else{
+            Log.e(TAG,"Wrong header code!. Received " + (aBytes[0]&0xF0) + ".");
+        }
+    }
+
+    private void handleAckReceived(int aAck){
+        if(mTxState != State.SENDING){
+            Log.e(TAG,"ACK " + aAck + " received but nothing was being sent.");
+            mTrace.count(SyncTrace.Counter.WRONG_ACKS);
+            return;
+        }
+        if(aAck != mTxPackets){
+            Log.e(TAG,"Wrong ACK number!. Expecting " + mTxPackets + " but " + aAck + " received.");
+            mTrace.count(SyncTrace.Counter.WRONG_ACKS);
+            return;
+        }
+        mTxPackets--;
+        if(mTxPackets==0){
+            mTxData = null;
+            mTxState = State.IDLE;
+            Log.d(TAG,"SENDING -> IDLE.");
+            applyPendingMaxPacketSize();
+            if(!mTxQueue.isEmpty()){
+                sendPacket(mTxQueue.poll());
+            }
+        }
+        else{
+            buildAndSendFragment(false);
+        }
+    }
+
+    private void buildAndSendFragment(boolean aFirstPacket) {
+        int nBytesToSend = BLEUART_HEADER_SIZE + Math.min(mMaxPayloadSize, mTxData.length - mTxOffset);
+        byte[] bytesToSend = mFragmentPool[nBytesToSend];
+        if(bytesToSend == null){
+            bytesToSend = new byte[nBytesToSend];
+            mFragmentPool[nBytesToSend] = bytesToSend;
+        }
+        bytesToSend[0] =  (byte)(0x0F&mTxPackets);
+        bytesToSend[0] |= aFirstPacket ? (byte)0x00 : (byte)0x40;
+        System.arraycopy(mTxData,mTxOffset,bytesToSend,BLEUART_HEADER_SIZE,nBytesToSend-BLEUART_HEADER_SIZE);
+        mTxOffset += nBytesToSend-BLEUART_HEADER_SIZE;
+        mCallbacks.sendData(bytesToSend);
+        mTrace.sent(nBytesToSend);
+    }
+
+    private void handleDataReceived(byte[] aBytes){
+        int length = aBytes.length-BLEUART_HEADER_SIZE;
+        if(mRxLength+length > mRxBuffer.length){
+            Log.e(TAG,"Packet longer than " + mRxBuffer.length + " bytes, dropping it.");
+            mRxState = State.IDLE;
+            return;
+        }
+        System.arraycopy(aBytes,BLEUART_HEADER_SIZE,mRxBuffer,mRxLength,length);
+        mRxLength += length;
+        updateRxCrc();
+
+        mCallbacks.sendData(mAckPool[0x0F&mRxPackets]);
+        mTrace.add(SyncTrace.Counter.BYTES_SENT, 1);
+
+        mRxPackets--;
+
+        if(mRxPackets>0){
+            Log.d(TAG, mRxPackets + " remaining.");
+            mRxState = State.RECEIVING;
+        }
+        else{
+            Log.d(TAG, mRxLength + " bytes received");
+            mRxState = State.IDLE;
+            mRxView.limit(mRxLength).position(0);
+            mCallbacks.onPacketReceived(mRxView, mRxCrc.getValue());
+            applyPendingMaxPacketSize();
+        }
+    }
+
+    /**
+     * Feeds the received bytes into the packet CRC. The last two bytes received so far are held
+     * back, because once the last fragment arrives they are the CRC of the packet itself.
+     */
+    private void updateRxCrc(){
+        int end = mRxLength-CRC_SIZE;
+        if(end > mRxCrcLength){
+            mRxCrc.update(mRxBuffer,mRxCrcLength,end-mRxCrcLength);
+            mRxCrcLength = end;
+        }
+    }
+
+    /* Check if the header of the packet is the specified one. */
+    private boolean headerIs(byte aHeader, byte aHeaderType){
+        return (aHeader&(byte)0xF0)==aHeaderType;
+    }
+
+    private final static byte HEADER_FIRST_PACKET = (byte)0x00;
+    private final static byte HEADER_FRAG_PACKET = (byte)0x40;
+    private final static byte HEADER_ACK_PACKET = (byte)0x80;
+
+    private final static String TAG = "BleuartProtocol";
+    private final static int BLEUART_HEADER_SIZE = 1;
+    /* The fragment count is sent in 4 bits. */
+    private final static int MAX_FRAGMENTS = 15;
+    /* Interface with upper layer. */
+    private BleuartCallbacks mCallbacks;
+    /* Counts the traffic of the current sync. */
+    private SyncTrace mTrace = SyncTrace.NONE;
+    /* Packet being sent and position of the next fragment. */
+    private byte[] mTxData;
+    private int mTxOffset;
+    /* Packets waiting for the current one to be sent. */
+    private final ArrayDeque<byte[]> mTxQueue = new ArrayDeque<>();
+    /* Fragments sent so far, by length. Only one is in flight at a time. */
+    private byte[][] mFragmentPool;
+    /* ACKs, by number of remaining fragments. */
+    private final byte[][] mAckPool = new byte[MAX_FRAGMENTS+1][];
+    /* Packet being received and read only view passed to the upper layer. */
+    private byte[] mRxBuffer;
+    private ByteBuffer mRxView;
+    private int mRxLength;
+    /* CRC of the packet being received, updated as the fragments arrive. */
+    private final static int CRC_SIZE = 2;
+    private final Crc16 mRxCrc = new Crc16();
+    private int mRxCrcLength;
+    /* Packet counters for TX and RX */
+    private int mTxPackets;
+    private int mRxPackets;
+    /* Maximum amount of bytes sent in one packet, without the header */
+    private int mMaxPayloadSize;
+    /* Size to switch to once the current transaction finishes, 0 if none. */
+    private int mPendingMaxPacketSize;
+
+    private enum State {IDLE,SENDING,RECEIVING};
+    private State mTxState;
+    private State mRxState;
+}
@@ -0,0 +1,25 @@
+package com.appia.onetouch.protocol.bleuart;
+
+
+import java.nio.ByteBuffer;
+
+/**
+ * This interface is called by the bleuart protocol and must be implemented by the class which uses
+ * the protocol.
+ */
+public interface BleuartCallbacks {
+
+    /**
+     * Sends a fragment or an ACK. The array is reused by Bleuart once this returns, so it must be
+     * copied if it is kept.
+     * @param aBytes
+     */
+    void sendData(byte[] aBytes);
+    /**
+     * Called when all the fragments of a packet were received.
+     * @param aPacket read only, little endian view of the reassembled packet, from position 0 to
+     *                its limit. It is reused for the next packet, so it is only valid during the call
+     * @param aCrc CRC-16 of all but the last two bytes of the packet, computed while receiving
+     */
+    void onPacketReceived(ByteBuffer aPacket, int aCrc);
+}
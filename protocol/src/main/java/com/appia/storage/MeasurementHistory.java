@@ -0,0 +1,132 @@
+package com.appia.storage;
+
+import java.util.Arrays;
+
+/**
+ * History of the measurements of a glucometer kept in parallel primitive arrays, one per field,
+ * instead of one object per measurement.
+ *
+ * A row costs 16 bytes: the time, the glucose in mg/dL, the record ID given by the glucometer
+ * and its flags. Rows are kept sorted by time, so a range of dates is found with a binary
+ * search, and the arrays grow a chunk of rows at a time. Measurements objects are only built
+ * when a row is read, by the adapter of each glucometer.
+ *
+ * Not thread safe, it is meant to be used from the thread showing the history.
+ */
+public class MeasurementHistory {
+
+    // Rows added every time the arrays are full
+    final static int CHUNK_ROWS = 256;
+
+    // Largest glucose that fits in a row, in mg/dL
+    public final static int MAX_MGDL = Short.MAX_VALUE;
+
+    private long[] epochMillis = new long[0];
+    private short[] mgdl = new short[0];
+    private int[] recordId = new int[0];
+    private short[] flags = new short[0];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a measurement after the ones with the same time.
+     * @param aEpochMillis time of the measurement, in milliseconds since the epoch
+     * @param aMgdl glucose in mg/dL, clamped to [0, MAX_MGDL]
+     * @param aRecordId ID given by the glucometer
+     * @param aFlags error or status of the measurement, 0 if none. Only 16 bits are kept.
+     * @return the row of the measurement
+     */
+    public int add(long aEpochMillis, int aMgdl, int aRecordId, int aFlags) {
+        if (size == epochMillis.length)
+            grow();
+        // Glucometers send their records in order, so most of them go at the end
+        int row = size;
+        if (size > 0 && epochMillis[size - 1] > aEpochMillis) {
+            row = indexAfter(aEpochMillis);
+            int moved = size - row;
+            System.arraycopy(epochMillis, row, epochMillis, row + 1, moved);
+            System.arraycopy(mgdl, row, mgdl, row + 1, moved);
+            System.arraycopy(recordId, row, recordId, row + 1, moved);
+            System.arraycopy(flags, row, flags, row + 1, moved);
+        }
+        epochMillis[row] = aEpochMillis;
+        mgdl[row] = (short) Math.max(0, Math.min(MAX_MGDL, aMgdl));
+        recordId[row] = aRecordId;
+        flags[row] = (short) aFlags;
+        size++;
+        return row;
+    }
+
+    public long getEpochMillis(int aRow) {
+        checkRow(aRow);
+        return epochMillis[aRow];
+    }
+
+    public int getMgdl(int aRow) {
+        checkRow(aRow);
+        return mgdl[aRow];
+    }
+
+    public int getRecordId(int aRow) {
+        checkRow(aRow);
+        return recordId[aRow];
+    }
+
+    public int getFlags(int aRow) {
+        checkRow(aRow);
+        return flags[aRow] & 0xffff;
+    }
+
+    /**
+     * Returns the first row taken at aEpochMillis or later, size() if there is none.
+     * @param aEpochMillis milliseconds since the epoch
+     */
+    public int indexOf(long aEpochMillis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochMillis[mid] < aEpochMillis)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Returns how many measurements were taken between aFrom and aTo, both included. They are
+     * the rows from indexOf(aFrom) on.
+     */
+    public int count(long aFrom, long aTo) {
+        if (aTo < aFrom)
+            return 0;
+        int to = aTo == Long.MAX_VALUE ? size : indexOf(aTo + 1);
+        return to - indexOf(aFrom);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // First row taken after aEpochMillis, so equal times keep the order they were added in
+    private int indexAfter(long aEpochMillis) {
+        return aEpochMillis == Long.MAX_VALUE ? size : indexOf(aEpochMillis + 1);
+    }
+
+    private void grow() {
+        int capacity = epochMillis.length + CHUNK_ROWS;
+        epochMillis = Arrays.copyOf(epochMillis, capacity);
+        mgdl = Arrays.copyOf(mgdl, capacity);
+        recordId = Arrays.copyOf(recordId, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    private void checkRow(int aRow) {
+        if (aRow < 0 || aRow >= size)
+            throw new IndexOutOfBoundsException("Row " + aRow + " of " + size);
+    }
+}
@@ -0,0 +1,58 @@
+package com.appia.bioland;
+
+import com.appia.storage.MeasurementHistory;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class BiolandHistoryTest {
+
+    @Test
+    public void measurementsAreRebuiltWithTheirId() {
+        // Result of 2021-03-14 09:26 (month as sent by the meter), 342 mg/dL, retain byte 7
+        String id = "[85, 11, 3, 21, 3, 14, 9, 0, 26, 7, 86, 1]";
+        BiolandMeasurement measurement = new BiolandMeasurement(342 / (float) 18,
+                2021, 3, 14, 9, 26, id);
+
+        MeasurementHistory history = new MeasurementHistory();
+        int row = BiolandHistory.add(history, measurement);
+        BiolandMeasurement rebuilt = BiolandHistory.get(history, row);
+
+        assertEquals(id, rebuilt.mId);
+        assertEquals(measurement.mGlucose, rebuilt.mGlucose, 1e-6);
+        assertEquals(measurement.mDate, rebuilt.mDate);
+        assertEquals(2021, rebuilt.mYear);
+        assertEquals(26, rebuilt.mMin);
+    }
+
+    @Test
+    public void monthAndDayThatRollOverAreKept() {
+        // Month 12 and day 31 as sent by the meter, the date of the measurement rolls over to
+        // the next year
+        String december = "[85, 11, 3, 21, 12, 31, 9, 0, 26, 7, 86, 1]";
+        // Day 30 of month 1, past the end of February
+        String february = "[85, 11, 3, 21, 1, 30, 9, 0, 26, 7, 86, 1]";
+
+        MeasurementHistory history = new MeasurementHistory();
+        int row = BiolandHistory.add(history, new BiolandMeasurement(342 / (float) 18,
+                2021, 12, 31, 9, 26, december));
+        assertEquals(december, BiolandHistory.get(history, row).mId);
+
+        row = BiolandHistory.add(history, new BiolandMeasurement(342 / (float) 18,
+                2021, 1, 30, 9, 26, february));
+        assertEquals(february, BiolandHistory.get(history, row).mId);
+    }
+
+    @Test
+    public void measurementsWithoutPacketIdKeepNoId() {
+        BiolandMeasurement measurement = new BiolandMeasurement(5.5f, new Date(0), "NADA");
+        MeasurementHistory history = new MeasurementHistory();
+        BiolandHistory.add(history, measurement);
+        assertEquals(BiolandHistory.NO_ID, history.getRecordId(0));
+        assertNull(BiolandHistory.get(history, 0).mId);
+        assertEquals(99, history.getMgdl(0));
+    }
+}
@@ -6,10 +6,13 @@ import com.appia.bioland.protocols.ProtocolCallbacks;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
 
 public class CommunicatorV32Test {
     public class SerialCommunicatorTesterPasive implements ProtocolCallbacks{
@@ -135,4 +138,46 @@ public class CommunicatorV32Test {
         assertEquals(protocol.state, Protocol.State.DISCONNECTED);
     }
 
+    private static class Collector implements ProtocolCallbacks {
+        final ArrayList<BiolandMeasurement> received = new ArrayList<>();
+        public void sendData(byte[] data){}
+        public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements){
+            received.addAll(aMeasurements);
+        }
+        public void onDeviceInfoReceived(BiolandInfo aInfo){}
+        public void onProtocolError(String aMessage){
+            fail(aMessage);
+        }
+        public void onCountdownReceived(int value){}
+    }
+
+    // Downloads a single result, as after connecting to the glucometer again
+    private static BiolandMeasurement download() {
+        Collector collector = new Collector();
+        Protocol protocol = new ProtocolV32(collector);
+        protocol.testing_mode = true;
+        protocol.connect();
+        protocol.onDataReceived(new byte[]{(byte)0x55, (byte)0x12, (byte)0x00, (byte)0x20, (byte)0x03, (byte)0x32, (byte)0x02, (byte)0x00, (byte)0x11, (byte)0x22, (byte)0x33, (byte)0x44, (byte)0x55, (byte)0x66, (byte)0x77, (byte)0x88, (byte)0x99,(byte)0xbd});
+        for (int countdown = 4; countdown >= 0; countdown--)
+            protocol.onDataReceived(new byte[]{(byte)0x55, (byte)0x06, (byte)0x02, (byte)0x00, (byte)countdown, (byte)(0x55+0x06+0x02+countdown+2)});
+        protocol.onDataReceived(new byte[]{(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x19, (byte)0x00, (byte)0x12, (byte)0x00, (byte)0xa6});
+        protocol.onDataReceived(new byte[]{(byte)0x55, (byte)0x05, (byte)0x05, (byte)0x00, (byte)0x61});
+        protocol.disconnect();
+        assertEquals(1, collector.received.size());
+        return collector.received.get(0);
+    }
+
+    @Test
+    public void resultDownloadedTwiceIsStoredOnce() throws InterruptedException {
+        // Measurements are unique by device, ID and time in the MeasurementStore
+        Set<String> rows = new HashSet<>();
+        BiolandMeasurement first = download();
+        rows.add("device " + first.mId + " " + first.mDate.getTime());
+        // The clock moves on between the downloads
+        Thread.sleep(1100);
+        BiolandMeasurement second = download();
+        rows.add("device " + second.mId + " " + second.mDate.getTime());
+        assertEquals(1, rows.size());
+        assertEquals(0, first.mDate.getTime() % 60000);
+    }
 }
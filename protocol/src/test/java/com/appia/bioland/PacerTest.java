@@ -0,0 +1,116 @@
+package com.appia.bioland;
+
+import com.appia.bioland.protocols.Pacer;
+import com.appia.bioland.protocols.PacingStore;
+import com.appia.bioland.protocols.Protocol;
+import com.appia.bioland.protocols.ProtocolCallbacks;
+import com.appia.bioland.protocols.ProtocolV2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PacerTest {
+
+    private final static byte[] INFO_V2 = {(byte)0x55, (byte)0x0f, (byte)0x00, (byte)0x2a, (byte)0x03, (byte)0x02, (byte)0x27, (byte)0x00, (byte)0x11, (byte)0x80, (byte)0x06, (byte)0x00, (byte)0x33, (byte)0x0a, (byte)0x90};
+    private final static byte[] RESULT_V2 = {(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x19, (byte)0x00, (byte)0xc3, (byte)0x02, (byte)0x59};
+    private final static byte[] END_V2 = {(byte)0x55, (byte)0x05, (byte)0x05, (byte)0x00, (byte)0x61};
+
+    private static class Silent implements ProtocolCallbacks {
+        public void sendData(byte[] data) {}
+        public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements) {}
+        public void onDeviceInfoReceived(BiolandInfo aInfo) {}
+        public void onProtocolError(String aMessage) {}
+        public void onCountdownReceived(int value) {}
+    }
+
+    private static class MemoryStore implements PacingStore {
+        final Map<String, int[]> saved = new HashMap<>();
+        public void load(String aModel, Pacer aPacer) {
+            int[] values = saved.get(aModel);
+            if (values != null)
+                aPacer.restore(values[0], values[1], values[2]);
+        }
+        public void save(String aModel, Pacer aPacer) {
+            saved.put(aModel, new int[]{aPacer.getGapMs(), aPacer.getFloorMs(), aPacer.getLatencyMs()});
+        }
+    }
+
+    @Test
+    public void gapShrinksTowardFloor() {
+        Pacer pacer = new Pacer(new Random(1));
+        assertEquals(Protocol.DELAY_AFTER_RECEIVED, pacer.getGapMs());
+        for (int i = 0; i < 50; i++)
+            pacer.onAnswer(40);
+        assertTrue(pacer.getGapMs() < 15);
+        assertTrue(pacer.getGapMs() >= Pacer.MIN_GAP_MS);
+        assertEquals(40, pacer.getLatencyMs());
+    }
+
+    @Test
+    public void retryDoublesGapAndRaisesFloor() {
+        Pacer pacer = new Pacer(new Random(1));
+        for (int i = 0; i < 10; i++)
+            pacer.onAnswer(40);
+        int gap = pacer.getGapMs();
+        pacer.onRetry();
+        assertEquals(2 * gap, pacer.getGapMs());
+        assertEquals(gap, pacer.getFloorMs());
+
+        // It does not go below the gap that failed
+        for (int i = 0; i < 10; i++)
+            pacer.onAnswer(40);
+        assertTrue(pacer.getGapMs() >= gap);
+    }
+
+    @Test
+    public void retryDelaysBackOffWithJitter() {
+        Pacer pacer = new Pacer(new Random(1));
+        // Nothing measured yet, start from the fixed delay
+        int first = pacer.getRetryDelayMs(1);
+        assertTrue(first >= Protocol.RETRY_DELAY_MS && first <= Pacer.MAX_RETRY_DELAY_MS);
+
+        for (int i = 0; i < 20; i++)
+            pacer.onAnswer(60);
+        int previous = 0;
+        for (int attempt = 1; attempt <= Protocol.MAX_RETRIES; attempt++) {
+            int delay = pacer.getRetryDelayMs(attempt);
+            assertTrue(delay >= Pacer.MIN_RETRY_DELAY_MS);
+            assertTrue(delay <= Pacer.MAX_RETRY_DELAY_MS);
+            assertTrue(delay >= previous);
+            previous = delay;
+        }
+        assertTrue(pacer.getRetryDelayMs(1) < Protocol.RETRY_DELAY_MS);
+    }
+
+    @Test
+    public void pacingIsKeptPerModel() {
+        MemoryStore store = new MemoryStore();
+        Protocol protocol = new ProtocolV2(new Silent());
+        protocol.testing_mode = true;
+        protocol.setPacingStore(store);
+        protocol.requestMeasurements();
+        protocol.onDataReceived(INFO_V2);
+        for (int i = 0; i < 20; i++)
+            protocol.onDataReceived(RESULT_V2);
+        protocol.onDataReceived(END_V2);
+
+        assertEquals("2.0/42", protocol.getPacingModel());
+        int[] saved = store.saved.get("2.0/42");
+        assertTrue(saved[0] < Protocol.DELAY_AFTER_RECEIVED);
+
+        // The next session starts with the learnt gap
+        Protocol next = new ProtocolV2(new Silent());
+        next.testing_mode = true;
+        next.setPacingStore(store);
+        next.requestMeasurements();
+        next.onDataReceived(INFO_V2);
+        assertEquals(saved[0], next.getPacer().getGapMs());
+    }
+}
@@ -0,0 +1,119 @@
+package com.appia.bioland;
+
+import com.appia.bioland.protocols.PacketClassifier;
+import com.appia.bioland.protocols.Protocol;
+import com.appia.bioland.protocols.ProtocolV1;
+import com.appia.bioland.protocols.ProtocolV2;
+import com.appia.bioland.protocols.ProtocolV31;
+import com.appia.bioland.protocols.ProtocolV32;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PacketClassifierTest {
+
+    // Packets sent by a V3.2 glucometer, as in CommunicatorV32Test
+    private final static byte[] INFO_V32 = {(byte)0x55, (byte)0x12, (byte)0x00, (byte)0x20, (byte)0x03, (byte)0x32, (byte)0x02, (byte)0x00, (byte)0x11, (byte)0x22, (byte)0x33, (byte)0x44, (byte)0x55, (byte)0x66, (byte)0x77, (byte)0x88, (byte)0x99, (byte)0xbd};
+    private final static byte[] TIMING = {(byte)0x55, (byte)0x06, (byte)0x02, (byte)0x00, (byte)0x04, (byte)0x63};
+    private final static byte[] RESULT = {(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x19, (byte)0x00, (byte)0x12, (byte)0x00, (byte)0xa6};
+    private final static byte[] END = {(byte)0x55, (byte)0x05, (byte)0x05, (byte)0x00, (byte)0x61};
+
+    @Test
+    public void packetsOfEachVersionAreClassified() {
+        assertEquals(PacketClassifier.INFO, ProtocolV32.CLASSIFIER.classify(INFO_V32));
+        assertEquals(PacketClassifier.TIMING, ProtocolV32.CLASSIFIER.classify(TIMING));
+        assertEquals(PacketClassifier.RESULT, ProtocolV32.CLASSIFIER.classify(RESULT));
+        assertEquals(PacketClassifier.END, ProtocolV32.CLASSIFIER.classify(END));
+
+        assertEquals(PacketClassifier.TIMING, ProtocolV31.CLASSIFIER.classify(TIMING));
+        assertEquals(PacketClassifier.RESULT, ProtocolV2.CLASSIFIER.classify(RESULT));
+        assertEquals(PacketClassifier.END, ProtocolV2.CLASSIFIER.classify(END));
+
+        byte[] endV1 = {(byte)0x55, (byte)0x06, (byte)0x04, (byte)0x61, (byte)0x00, (byte)0x00};
+        assertEquals(PacketClassifier.END, ProtocolV1.CLASSIFIER.classify(endV1));
+    }
+
+    @Test
+    public void malformedPacketsAreReported() {
+        assertEquals(PacketClassifier.ERROR_TOO_SHORT, ProtocolV32.CLASSIFIER.classify(new byte[]{0x55, 0x05}));
+        assertEquals(PacketClassifier.ERROR_START_CODE, ProtocolV32.CLASSIFIER.classify(new byte[16]));
+        // V2 and V1 glucometers don't send timing packets
+        assertEquals(PacketClassifier.ERROR_CATEGORY, ProtocolV2.CLASSIFIER.classify(TIMING));
+        assertEquals(PacketClassifier.ERROR_CATEGORY, ProtocolV1.CLASSIFIER.classify(TIMING));
+        assertEquals(PacketClassifier.ERROR_CATEGORY, ProtocolV32.CLASSIFIER.classify(new byte[]{0x55, 0x05, (byte)0xF5, 0x00, 0x00}));
+        // V1 result packets are longer
+        assertEquals(PacketClassifier.ERROR_LENGTH, ProtocolV1.CLASSIFIER.classify(RESULT));
+        // V3.1 info packets are shorter
+        assertEquals(PacketClassifier.ERROR_LENGTH, ProtocolV31.CLASSIFIER.classify(INFO_V32));
+        // Length byte not matching the packet
+        byte[] end = END.clone();
+        end[1] = 0x06;
+        assertEquals(PacketClassifier.ERROR_LENGTH, ProtocolV32.CLASSIFIER.classify(end));
+    }
+
+    @Test
+    public void wrongChecksumsAreReported() {
+        byte[] result = RESULT.clone();
+        result[result.length - 1]++;
+        assertEquals(PacketClassifier.ERROR_CHECKSUM, ProtocolV32.CLASSIFIER.classify(result));
+        assertEquals(PacketClassifier.ERROR_CHECKSUM, ProtocolV31.CLASSIFIER.classify(result));
+        assertEquals(PacketClassifier.ERROR_CHECKSUM, ProtocolV2.CLASSIFIER.classify(result));
+        // The V3.x end packet leaves the retain byte out of the checksum, V2 does not
+        byte[] end = END.clone();
+        end[3] = 0x01;
+        assertEquals(PacketClassifier.ERROR_CHECKSUM, ProtocolV2.CLASSIFIER.classify(end));
+        assertEquals(PacketClassifier.END, ProtocolV32.CLASSIFIER.classify(end));
+        // V1 checksums take three bytes
+        byte[] endV1 = {(byte)0x55, (byte)0x06, (byte)0x04, (byte)0x61, (byte)0x00, (byte)0x01};
+        assertEquals(PacketClassifier.ERROR_CHECKSUM, ProtocolV1.CLASSIFIER.classify(endV1));
+        // Timing packets have no checksum
+        byte[] timing = TIMING.clone();
+        timing[timing.length - 1]++;
+        assertEquals(PacketClassifier.TIMING, ProtocolV32.CLASSIFIER.classify(timing));
+    }
+
+    // V2 end packet whose retain byte brings the checksum to aSum
+    private static byte[] endV2(int aSum, int aChecksum) {
+        return new byte[]{(byte)0x55, (byte)0x05, (byte)0x05, (byte)(aSum - 0x61), (byte)aChecksum};
+    }
+
+    private static boolean accepted(byte[] raw) {
+        try {
+            new ProtocolV2.EndPacket(raw);
+            return true;
+        } catch (Protocol.IllegalLengthException | Protocol.IllegalContentException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void offByTwoChecksumsWrapToAByte() {
+        // The exact checksum and the one two above it are accepted, 0x80 and 0x81 wrap to
+        // negative bytes and must still match
+        assertTrue(accepted(endV2(0x7E, 0x7E)));
+        assertTrue(accepted(endV2(0x7E, 0x80)));
+        assertTrue(accepted(endV2(0x7F, 0x7F)));
+        assertTrue(accepted(endV2(0x7F, 0x81)));
+
+        assertFalse(accepted(endV2(0x7E, 0x7F)));
+        assertFalse(accepted(endV2(0x7E, 0x81)));
+        assertFalse(accepted(endV2(0x7F, 0x80)));
+        assertFalse(accepted(endV2(0x7F, 0x7E)));
+        assertEquals(PacketClassifier.END, ProtocolV2.CLASSIFIER.classify(endV2(0x7E, 0x80)));
+        assertEquals(PacketClassifier.ERROR_CHECKSUM, ProtocolV2.CLASSIFIER.classify(endV2(0x7F, 0x80)));
+    }
+
+    @Test
+    public void builtClassifiersDoNotChange() {
+        PacketClassifier.Builder builder = new PacketClassifier.Builder()
+                .add(0x05, PacketClassifier.END, 5, ProtocolV32.EndPacket::checksumMatches);
+        PacketClassifier classifier = builder.build();
+        builder.add(0x02, PacketClassifier.TIMING, 6);
+        assertEquals(PacketClassifier.END, classifier.classify(END));
+        assertEquals(PacketClassifier.ERROR_CATEGORY, classifier.classify(TIMING));
+        assertEquals(PacketClassifier.TIMING, builder.build().classify(TIMING));
+    }
+}
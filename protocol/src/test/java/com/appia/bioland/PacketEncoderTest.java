@@ -0,0 +1,130 @@
+package com.appia.bioland;
+
+import com.appia.bioland.protocols.Protocol;
+import com.appia.bioland.protocols.ProtocolCallbacks;
+import com.appia.bioland.protocols.ProtocolV1;
+import com.appia.bioland.protocols.ProtocolV2;
+import com.appia.bioland.protocols.ProtocolV32;
+import com.appia.bioland.protocols.RequestClock;
+import com.appia.common.Clock;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PacketEncoderTest {
+
+    private final static byte[] RESULT_V2 = {(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x19, (byte)0x00, (byte)0xc3, (byte)0x02, (byte)0x59};
+
+    // 2016-06-02 15:33:59, Calendar months start on 0
+    private static Calendar date() {
+        return new GregorianCalendar(2016, 5, 2, 15, 33, 59);
+    }
+
+    @Test
+    public void requestWithSeconds() {
+        byte[] expected = {(byte)0x5A, (byte)0x0A, (byte)0x03, (byte)0x10, (byte)0x05, (byte)0x02, (byte)0x0F, (byte)0x21, (byte)0x3B, (byte)0xEB};
+        assertArrayEquals(expected, new ProtocolV2.AppDataPacket(date()).to_bytes());
+        assertArrayEquals(expected, new ProtocolV32.AppDataPacket(date()).to_bytes());
+    }
+
+    @Test
+    public void requestWithThreeByteChecksum() {
+        // 5A+0B+05+10+05+02+0F+21+2 = 0xB3
+        byte[] expected = {(byte)0x5A, (byte)0x0B, (byte)0x05, (byte)0x10, (byte)0x05, (byte)0x02, (byte)0x0F, (byte)0x21, (byte)0xB3, (byte)0x00, (byte)0x00};
+        assertArrayEquals(expected, new ProtocolV1.AppReplyPacket(date()).to_bytes());
+    }
+
+    @Test
+    public void encodingAgainKeepsTheArray() {
+        Protocol.AppPacket packet = new ProtocolV32.AppInfoPacket(Calendar.getInstance());
+        byte[] bytes = packet.to_bytes();
+        packet.encode(date());
+        assertSame(bytes, packet.to_bytes());
+        assertArrayEquals(new ProtocolV32.AppInfoPacket(date()).to_bytes(), bytes);
+    }
+
+    @Test
+    public void stampedRequestsMatchTheCalendar() {
+        RequestClock clock = new RequestClock();
+        Protocol.AppPacket withSeconds = new ProtocolV32.AppDataPacket(date());
+        Protocol.AppPacket withoutSeconds = new ProtocolV1.AppReplyPacket(date());
+        byte[] bytes = withSeconds.to_bytes();
+        for (int i = 0; i < 3; i++) {
+            // Try again if the second changed in between
+            clock.stamp(withSeconds);
+            clock.stamp(withoutSeconds);
+            Calendar now = Calendar.getInstance();
+            if (Arrays.equals(new ProtocolV32.AppDataPacket(now).to_bytes(), withSeconds.to_bytes())
+                    && Arrays.equals(new ProtocolV1.AppReplyPacket(now).to_bytes(), withoutSeconds.to_bytes()))
+                break;
+            assertTrue("Stamped requests differ from the calendar", i < 2);
+        }
+        assertSame(bytes, withSeconds.to_bytes());
+    }
+
+    // Clock stopped at aDate
+    private static Clock stoppedAt(final Calendar aDate) {
+        return new Clock() {
+            public long nanoTime() { return 0; }
+            public long currentTimeMillis() { return aDate.getTimeInMillis(); }
+        };
+    }
+
+    private static class Sent implements ProtocolCallbacks {
+        byte[] last;
+        public void sendData(byte[] data) { last = data.clone(); }
+        public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements) {}
+        public void onDeviceInfoReceived(BiolandInfo aInfo) {}
+        public void onProtocolError(String aMessage) {}
+        public void onCountdownReceived(int value) {}
+    }
+
+    @Test
+    public void eachProtocolStampsItsOwnClock() {
+        Calendar other = new GregorianCalendar(2021, 11, 31, 23, 10, 0);
+        Sent a = new Sent();
+        Sent b = new Sent();
+        Protocol protocolA = new ProtocolV32(a);
+        Protocol protocolB = new ProtocolV32(b);
+        protocolA.testing_mode = true;
+        protocolB.testing_mode = true;
+        protocolA.setClock(stoppedAt(date()));
+        protocolB.setClock(stoppedAt(other));
+        protocolA.connect();
+        protocolB.connect();
+        assertArrayEquals(new ProtocolV32.AppInfoPacket(date()).to_bytes(), a.last);
+        assertArrayEquals(new ProtocolV32.AppInfoPacket(other).to_bytes(), b.last);
+        protocolA.disconnect();
+        protocolB.disconnect();
+    }
+
+    @Test
+    public void measurementIdKeepsItsFormat() {
+        final ArrayList<BiolandMeasurement> received = new ArrayList<>();
+        Protocol protocol = new ProtocolV2(new ProtocolCallbacks() {
+            public void sendData(byte[] data) {}
+            public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements) { received.addAll(aMeasurements); }
+            public void onDeviceInfoReceived(BiolandInfo aInfo) {}
+            public void onProtocolError(String aMessage) {}
+            public void onCountdownReceived(int value) {}
+        });
+        protocol.testing_mode = true;
+        protocol.requestMeasurements();
+        protocol.onDataReceived(new byte[]{(byte)0x55, (byte)0x0f, (byte)0x00, (byte)0x2a, (byte)0x03, (byte)0x02, (byte)0x27, (byte)0x00, (byte)0x11, (byte)0x80, (byte)0x06, (byte)0x00, (byte)0x33, (byte)0x0a, (byte)0x90});
+        protocol.onDataReceived(RESULT_V2);
+        protocol.onDataReceived(new byte[]{(byte)0x55, (byte)0x05, (byte)0x05, (byte)0x00, (byte)0x61});
+
+        assertEquals(1, received.size());
+        // The byte between the hour and the minutes is always 0
+        assertEquals("[85, 12, 3, 14, 1, 1, 5, 0, 25, 0, -61, 2]", received.get(0).mId);
+    }
+}
@@ -0,0 +1,180 @@
+package com.appia.bioland;
+
+import com.appia.bioland.protocols.ProtocolCallbacks;
+import com.appia.bioland.protocols.ProtocolNegotiator;
+import com.appia.bioland.protocols.ProtocolV1;
+import com.appia.bioland.protocols.ProtocolV2;
+import com.appia.bioland.protocols.ProtocolV31;
+import com.appia.bioland.protocols.ProtocolV32;
+import com.appia.bioland.protocols.ProtocolVersionStore;
+import com.appia.bioland.protocols.Version;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProtocolNegotiatorTest {
+
+    private final static String DEVICE = "00:11:22:33:44:55";
+    private final static byte[] INFO_V1 = {(byte)0x55, (byte)0x10, (byte)0x00, (byte)0x01, (byte)0x02, (byte)0x03, (byte)0x04, (byte)0x05, (byte)0x06, (byte)0x07, (byte)0x11, (byte)0x22, (byte)0x33, (byte)0x92, (byte)0x22, (byte)0x33};
+    private final static byte[] INFO_V2 = {(byte)0x55, (byte)0x0f, (byte)0x00, (byte)0x2a, (byte)0x03, (byte)0x02, (byte)0x27, (byte)0x00, (byte)0x11, (byte)0x80, (byte)0x06, (byte)0x00, (byte)0x33, (byte)0x0a, (byte)0x90};
+    // Sent by a V3.1 meter in CommunicatorV31Test, with the version code of a V2 one
+    private final static byte[] INFO_V31 = {(byte)0x55, (byte)0x0f, (byte)0x00, (byte)0x2a, (byte)0x03, (byte)0x02, (byte)0x27, (byte)0x00, (byte)0x11, (byte)0x80, (byte)0x06, (byte)0x00, (byte)0x33, (byte)0x0a, (byte)0x92};
+    private final static byte[] INFO_V32 = {(byte)0x55, (byte)0x12, (byte)0x00, (byte)0x20, (byte)0x03, (byte)0x32, (byte)0x02, (byte)0x00, (byte)0x11, (byte)0x22, (byte)0x33, (byte)0x44, (byte)0x55, (byte)0x66, (byte)0x77, (byte)0x88, (byte)0x99, (byte)0xbd};
+
+    private static class Recorder implements ProtocolCallbacks {
+        final ArrayList<byte[]> sent = new ArrayList<>();
+        final ArrayList<String> errors = new ArrayList<>();
+        final ArrayList<BiolandMeasurement> measurements = new ArrayList<>();
+        BiolandInfo info;
+        public void sendData(byte[] data) { sent.add(data.clone()); }
+        public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements) { measurements.addAll(aMeasurements); }
+        public void onDeviceInfoReceived(BiolandInfo aInfo) { info = aInfo; }
+        public void onProtocolError(String aMessage) { errors.add(aMessage); }
+        public void onCountdownReceived(int value) {}
+    }
+
+    private static class MemoryStore implements ProtocolVersionStore {
+        final Map<String, Version> versions = new HashMap<>();
+        public Version load(String aDevice) { return versions.get(aDevice); }
+        public void save(String aDevice, Version aVersion) { versions.put(aDevice, aVersion); }
+        public void clear(String aDevice) { versions.remove(aDevice); }
+    }
+
+    private static ProtocolNegotiator negotiator(Recorder aRecorder, MemoryStore aStore) {
+        ProtocolNegotiator negotiator = new ProtocolNegotiator(aRecorder, aStore);
+        negotiator.testing_mode = true;
+        return negotiator;
+    }
+
+    @Test
+    public void versionOfInfoPackets() {
+        assertEquals(Version.V1_0, ProtocolNegotiator.versionOf(INFO_V1));
+        assertEquals(Version.V2_0, ProtocolNegotiator.versionOf(INFO_V2));
+        assertEquals(Version.V3_2, ProtocolNegotiator.versionOf(INFO_V32));
+
+        byte[] corrupted = INFO_V32.clone();
+        corrupted[corrupted.length - 1]++;
+        assertNull(ProtocolNegotiator.versionOf(corrupted));
+        assertNull(ProtocolNegotiator.versionOf(new byte[]{(byte)0x55, (byte)0x06, (byte)0x02, (byte)0x00, (byte)0x04, (byte)0x63}));
+    }
+
+    @Test
+    public void probesAlternateBetweenDialects() {
+        Recorder recorder = new Recorder();
+        ProtocolNegotiator negotiator = negotiator(recorder, new MemoryStore());
+        negotiator.connect(DEVICE);
+        negotiator.sendProbe();
+        negotiator.sendProbe();
+
+        assertEquals(3, recorder.sent.size());
+        assertEquals(0x5A, recorder.sent.get(0)[0]);
+        assertEquals(0x00, recorder.sent.get(0)[2]);
+        assertEquals(0x5A, recorder.sent.get(1)[0]);
+        assertEquals(0x05, recorder.sent.get(1)[2]);
+        assertEquals(0x00, recorder.sent.get(2)[2]);
+        assertNull(negotiator.getProtocol());
+    }
+
+    @Test
+    public void negotiatesAndStoresVersion() {
+        Recorder recorder = new Recorder();
+        MemoryStore store = new MemoryStore();
+        ProtocolNegotiator negotiator = negotiator(recorder, store);
+        negotiator.connect(DEVICE);
+        negotiator.sendProbe();
+        negotiator.onDataReceived(INFO_V1);
+
+        assertTrue(negotiator.getProtocol() instanceof ProtocolV1);
+        assertEquals(Version.V1_0, store.load(DEVICE));
+        assertEquals(Version.V1_0, negotiator.getProtocol().getVersion());
+        assertTrue(recorder.info != null);
+        assertEquals(0, recorder.errors.size());
+    }
+
+    @Test
+    public void storedVersionSkipsProbing() {
+        Recorder recorder = new Recorder();
+        MemoryStore store = new MemoryStore();
+        store.save(DEVICE, Version.V2_0);
+        ProtocolNegotiator negotiator = negotiator(recorder, store);
+        negotiator.connect(DEVICE);
+
+        assertTrue(negotiator.getProtocol() instanceof ProtocolV2);
+        assertEquals(1, recorder.sent.size());
+        negotiator.onDataReceived(INFO_V2);
+        assertTrue(recorder.info != null);
+    }
+
+    @Test
+    public void failedStoredVersionIsForgotten() {
+        Recorder recorder = new Recorder();
+        MemoryStore store = new MemoryStore();
+        store.save(DEVICE, Version.V3_2);
+        ProtocolNegotiator negotiator = negotiator(recorder, store);
+        negotiator.connect(DEVICE);
+        assertTrue(negotiator.getProtocol() instanceof ProtocolV32);
+
+        negotiator.onProtocolError("No answer");
+        assertNull(store.load(DEVICE));
+        assertEquals(1, recorder.errors.size());
+    }
+
+    @Test
+    public void givesUpAfterMaxProbes() {
+        Recorder recorder = new Recorder();
+        ProtocolNegotiator negotiator = negotiator(recorder, new MemoryStore());
+        negotiator.connect(DEVICE);
+        for (int i = 0; i < 20; i++)
+            negotiator.sendProbe();
+        assertEquals(1, recorder.errors.size());
+        assertNull(negotiator.getProtocol());
+    }
+
+    // Countdown, one result and the end packet, as a V3.1 meter sends them after its info packet
+    private static void receiveMeasurement(ProtocolNegotiator aNegotiator) {
+        for (int countdown = 4; countdown >= 0; countdown--)
+            aNegotiator.onDataReceived(new byte[]{(byte)0x55, (byte)0x06, (byte)0x02, (byte)0x00, (byte)countdown, (byte)(0x55+0x06+0x02+countdown+2)});
+        aNegotiator.onDataReceived(new byte[]{(byte)0x55, (byte)0x0c, (byte)0x03, (byte)0x0e, (byte)0x01, (byte)0x01, (byte)0x05, (byte)0x19, (byte)0x00, (byte)0x12, (byte)0x00, (byte)0xa6});
+        aNegotiator.onDataReceived(new byte[]{(byte)0x55, (byte)0x05, (byte)0x05, (byte)0x00, (byte)0x61});
+    }
+
+    @Test
+    public void timingPacketsAfterV2InfoSwitchToV31() {
+        Recorder recorder = new Recorder();
+        MemoryStore store = new MemoryStore();
+        ProtocolNegotiator negotiator = negotiator(recorder, store);
+        negotiator.connect(DEVICE);
+        negotiator.onDataReceived(INFO_V31);
+        // The version code is the one of V2
+        assertTrue(negotiator.getProtocol() instanceof ProtocolV2);
+
+        receiveMeasurement(negotiator);
+        assertTrue(negotiator.getProtocol() instanceof ProtocolV31);
+        assertEquals(Version.V3_1, store.load(DEVICE));
+        assertEquals(1, recorder.measurements.size());
+        assertEquals(0, recorder.errors.size());
+    }
+
+    @Test
+    public void storedV2IsCorrectedByTimingPackets() {
+        Recorder recorder = new Recorder();
+        MemoryStore store = new MemoryStore();
+        store.save(DEVICE, Version.V2_0);
+        ProtocolNegotiator negotiator = negotiator(recorder, store);
+        negotiator.connect(DEVICE);
+        negotiator.onDataReceived(INFO_V31);
+
+        receiveMeasurement(negotiator);
+        assertTrue(negotiator.getProtocol() instanceof ProtocolV31);
+        assertEquals(Version.V3_1, store.load(DEVICE));
+        assertEquals(1, recorder.measurements.size());
+        assertEquals(0, recorder.errors.size());
+    }
+}
@@ -0,0 +1,64 @@
+package com.appia.bioland;
+
+import com.appia.bioland.protocols.Protocol;
+import com.appia.bioland.protocols.ProtocolCallbacks;
+import com.appia.bioland.protocols.ProtocolV32;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProtocolSchedulerTest {
+
+    private final static byte[] INFO = {(byte)0x55, (byte)0x12, (byte)0x00, (byte)0x20, (byte)0x03, (byte)0x32, (byte)0x02, (byte)0x00, (byte)0x11, (byte)0x22, (byte)0x33, (byte)0x44, (byte)0x55, (byte)0x66, (byte)0x77, (byte)0x88, (byte)0x99, (byte)0xbd};
+    private final static byte[] TIMING = {(byte)0x55, (byte)0x06, (byte)0x02, (byte)0x00, (byte)0x04, (byte)0x63};
+
+    private static class Counter implements ProtocolCallbacks {
+        volatile int sent;
+        public void sendData(byte[] data) { sent++; }
+        public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements) {}
+        public void onDeviceInfoReceived(BiolandInfo aInfo) {}
+        public void onProtocolError(String aMessage) {}
+        public void onCountdownReceived(int value) {}
+    }
+
+    @Test
+    public void retryIsCancelledByReceivedPacket() throws InterruptedException {
+        Counter a = new Counter();
+        Counter b = new Counter();
+        Protocol protocolA = new ProtocolV32(a);
+        Protocol protocolB = new ProtocolV32(b);
+        protocolA.connect();
+        protocolB.connect();
+        assertEquals(1, a.sent);
+        assertEquals(1, b.sent);
+
+        // Only the device that answered stops asking for the info packet
+        protocolA.onDataReceived(INFO);
+        Thread.sleep(Protocol.RETRY_DELAY_MS + Protocol.RETRY_DELAY_MS / 2);
+        assertEquals(1, a.sent);
+        assertEquals(2, b.sent);
+
+        protocolA.disconnect();
+        protocolB.disconnect();
+        Thread.sleep(Protocol.RETRY_DELAY_MS + Protocol.RETRY_DELAY_MS / 2);
+        assertEquals(2, b.sent);
+    }
+
+    @Test
+    public void noThreadIsCreatedPerPacket() {
+        Counter counter = new Counter();
+        Protocol protocol = new ProtocolV32(counter);
+        protocol.connect();
+        protocol.onDataReceived(INFO);
+        int threads = Thread.activeCount();
+        for (int i = 0; i < 200; i++) {
+            protocol.onDataReceived(TIMING);
+        }
+        assertTrue(Thread.activeCount() <= threads);
+        protocol.disconnect();
+    }
+}
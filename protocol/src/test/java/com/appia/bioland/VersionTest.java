@@ -0,0 +1,77 @@
+package com.appia.bioland;
+
+import com.appia.bioland.protocols.Protocol;
+import com.appia.bioland.protocols.ProtocolCallbacks;
+import com.appia.bioland.protocols.ProtocolV1;
+import com.appia.bioland.protocols.ProtocolV2;
+import com.appia.bioland.protocols.ProtocolV31;
+import com.appia.bioland.protocols.ProtocolV32;
+import com.appia.bioland.protocols.Version;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class VersionTest {
+
+    @Test
+    public void versionsAreOrdered() {
+        assertTrue(Version.V1_0.compareTo(Version.V2_0) < 0);
+        assertTrue(Version.V2_0.compareTo(Version.V3_1) < 0);
+        assertTrue(Version.V3_2.compareTo(Version.V3_1) > 0);
+        assertTrue(new Version("3.10").compareTo(Version.V3_2) > 0);
+        assertTrue(new Version("3.1.1").compareTo(Version.V3_1) > 0);
+        assertEquals(0, new Version("3").compareTo(new Version("3.0")));
+        assertEquals(new Version("3.1"), Version.V3_1);
+        assertEquals(new Version("3.1").hashCode(), Version.V3_1.hashCode());
+        assertEquals("3.2", Version.V3_2.get());
+    }
+
+    @Test
+    public void knownVersionsAreInterned() {
+        assertSame(Version.V3_1, Version.valueOf("3.1"));
+        assertSame(Version.V1_0, Version.valueOf("1"));
+    }
+
+    @Test
+    public void invalidVersionsAreRejected() {
+        for (String invalid : new String[]{"", ".", "3.", ".1", "3..1", "a.1", "3.1-beta", "1.2.3.4", "1024"}) {
+            try {
+                new Version(invalid);
+                assertTrue("Accepted " + invalid, false);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    private static class NoCallbacks implements ProtocolCallbacks {
+        public void sendData(byte[] data) {}
+        public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements) {}
+        public void onDeviceInfoReceived(BiolandInfo aInfo) {}
+        public void onProtocolError(String aMessage) {}
+        public void onCountdownReceived(int value) {}
+    }
+
+    @Test
+    public void capabilitiesMatchVersions() {
+        Protocol v1 = new ProtocolV1(new NoCallbacks());
+        Protocol v2 = new ProtocolV2(new NoCallbacks());
+        Protocol v31 = new ProtocolV31(new NoCallbacks());
+        Protocol v32 = new ProtocolV32(new NoCallbacks());
+        for (Protocol protocol : new Protocol[]{v1, v2, v31, v32}) {
+            // Timing packets were introduced in 3.1
+            assertEquals(protocol.getVersion().compareTo(Version.V3_1) >= 0,
+                    protocol.hasCapability(Protocol.HAS_TIMING_PACKETS));
+        }
+        assertTrue(v1.hasCapability(Protocol.CHECKSUM_3_BYTES));
+        assertFalse(v2.hasCapability(Protocol.CHECKSUM_3_BYTES));
+        assertTrue(v32.hasCapability(Protocol.HAS_TIMING_PACKETS | Protocol.HAS_HANDSHAKE | Protocol.HAS_SERIAL_NUMBER));
+        assertFalse(v31.hasCapability(Protocol.HAS_SERIAL_NUMBER));
+    }
+}
@@ -0,0 +1,179 @@
+package com.appia.metrics;
+
+import com.appia.common.Clock;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SyncMetricsTest {
+
+    /* Clock moved by hand, in milliseconds. */
+    private static class ManualClock implements Clock {
+        long ms;
+
+        @Override
+        public long nanoTime() {
+            return ms * 1000000;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return ms;
+        }
+    }
+
+    /* A sync that reaches every phase aStepMs apart, with aRecords records and aRetries retries. */
+    private static SyncTrace sync(SyncMetrics aMetrics, ManualClock aClock, String aModel, long aStepMs, int aRecords, int aRetries) {
+        SyncTrace trace = aMetrics.begin(aModel);
+        aClock.ms += aStepMs;
+        trace.mark(SyncTrace.Phase.SERVICES_DISCOVERED);
+        aClock.ms += aStepMs;
+        trace.mark(SyncTrace.Phase.NOTIFICATIONS_ENABLED);
+        aClock.ms += aStepMs;
+        trace.mark(SyncTrace.Phase.INFO_RECEIVED);
+        for (int i = 0; i < aRecords; i++) {
+            aClock.ms += aStepMs;
+            trace.record();
+            trace.sent(11);
+            trace.received(24);
+        }
+        trace.add(SyncTrace.Counter.RETRIES, aRetries);
+        return trace;
+    }
+
+    @Test
+    public void phasesAreTimedFromTheConnection() {
+        ManualClock clock = new ManualClock();
+        SyncMetrics metrics = new SyncMetrics(clock);
+        SyncTrace trace = sync(metrics, clock, "Bioland G-500", 10, 3, 0);
+        // Marked again, the first time is kept
+        clock.ms += 100;
+        trace.mark(SyncTrace.Phase.INFO_RECEIVED);
+
+        assertEquals(0, trace.getMs(SyncTrace.Phase.CONNECT));
+        assertEquals(10, trace.getMs(SyncTrace.Phase.SERVICES_DISCOVERED));
+        assertEquals(30, trace.getMs(SyncTrace.Phase.INFO_RECEIVED));
+        assertEquals(40, trace.getMs(SyncTrace.Phase.FIRST_RECORD));
+        assertEquals(60, trace.getMs(SyncTrace.Phase.LAST_RECORD));
+        assertEquals(3, trace.get(SyncTrace.Counter.RECORDS));
+        assertEquals(3, trace.get(SyncTrace.Counter.FRAGMENTS_SENT));
+        assertEquals(72, trace.get(SyncTrace.Counter.BYTES_RECEIVED));
+    }
+
+    @Test
+    public void syncsAreAggregatedPerModel() {
+        ManualClock clock = new ManualClock();
+        SyncMetrics metrics = new SyncMetrics(clock);
+        for (int i = 1; i <= 100; i++)
+            metrics.end(sync(metrics, clock, "Bioland G-500", i, 1, i % 10 == 0 ? 1 : 0));
+        SyncTrace failed = metrics.begin("Onetouch Select Plus Flex");
+        failed.fail();
+        metrics.end(failed);
+        // Ended twice, added once
+        metrics.end(failed);
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getModels().size());
+        MetricsSnapshot.Model bioland = snapshot.getModel("Bioland G-500");
+        assertEquals(100, bioland.getSyncs());
+        assertEquals(0, bioland.getFailed());
+        // Info after 3 steps of 1 to 100 ms
+        Histogram info = bioland.getPhase(SyncTrace.Phase.INFO_RECEIVED);
+        assertEquals(100, info.getCount());
+        assertEquals(3, info.getMin());
+        assertEquals(300, info.getMax());
+        assertTrue(Math.abs(info.getPercentile(50) - 150) <= 150 / 4);
+        assertEquals(10, bioland.getCounter(SyncTrace.Counter.RETRIES).getSum());
+        assertEquals(100, bioland.getCounter(SyncTrace.Counter.RECORDS).getSum());
+
+        MetricsSnapshot.Model onetouch = snapshot.getModel("Onetouch Select Plus Flex");
+        assertEquals(1, onetouch.getSyncs());
+        assertEquals(1, onetouch.getFailed());
+        assertEquals(0, onetouch.getPhase(SyncTrace.Phase.INFO_RECEIVED).getCount());
+        assertNull(snapshot.getModel("Unknown"));
+    }
+
+    @Test
+    public void snapshotIsACopy() {
+        ManualClock clock = new ManualClock();
+        SyncMetrics metrics = new SyncMetrics(clock);
+        metrics.end(sync(metrics, clock, "Bioland G-500", 5, 2, 0));
+        MetricsSnapshot snapshot = metrics.snapshot();
+        metrics.end(sync(metrics, clock, "Bioland G-500", 5, 2, 0));
+
+        assertEquals(1, snapshot.getModel("Bioland G-500").getSyncs());
+        assertEquals(2, metrics.snapshot().getModel("Bioland G-500").getSyncs());
+        metrics.reset();
+        assertEquals(0, metrics.snapshot().getModels().size());
+    }
+
+    @Test
+    public void dumpIsReadBack() throws IOException {
+        ManualClock clock = new ManualClock();
+        SyncMetrics metrics = new SyncMetrics(clock);
+        for (int i = 0; i < 500; i++)
+            metrics.end(sync(metrics, clock, i % 2 == 0 ? "Bioland G-500" : "Onetouch Select Plus Flex", 1 + i * 37 % 900, 1 + i % 30, i % 3));
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        byte[] dump = snapshot.toByteArray();
+        MetricsSnapshot read = MetricsSnapshot.fromByteArray(dump);
+
+        assertEquals(snapshot.getModels(), read.getModels());
+        for (String name : snapshot.getModels()) {
+            MetricsSnapshot.Model expected = snapshot.getModel(name);
+            MetricsSnapshot.Model actual = read.getModel(name);
+            assertEquals(expected.getSyncs(), actual.getSyncs());
+            assertEquals(expected.getFailed(), actual.getFailed());
+            for (SyncTrace.Phase phase : SyncTrace.Phase.values())
+                assertEquals(expected.getPhase(phase), actual.getPhase(phase));
+            for (SyncTrace.Counter counter : SyncTrace.Counter.values())
+                assertEquals(expected.getCounter(counter), actual.getCounter(counter));
+        }
+        // Compact: a few hundred bytes per model, whatever the number of syncs
+        assertTrue(dump.length + " bytes", dump.length < 2 * 1024);
+    }
+
+    @Test
+    public void badDumpIsRejected() {
+        try {
+            MetricsSnapshot.fromByteArray(new byte[]{'X', 'Y', 1, 0});
+            assertTrue("A dump without the magic was read", false);
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void noneRecordsNothing() {
+        SyncMetrics metrics = new SyncMetrics();
+        SyncTrace.NONE.record();
+        SyncTrace.NONE.sent(20);
+        SyncTrace.NONE.mark(SyncTrace.Phase.INFO_RECEIVED);
+        metrics.end(SyncTrace.NONE);
+
+        assertEquals(0, SyncTrace.NONE.get(SyncTrace.Counter.RECORDS));
+        assertEquals(-1, SyncTrace.NONE.getMs(SyncTrace.Phase.INFO_RECEIVED));
+        assertEquals(0, metrics.snapshot().getModels().size());
+    }
+
+    @Test
+    public void histogramPercentilesAreWithinABucket() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(i);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getSum());
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(1000, histogram.getPercentile(100));
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p50 + "", p50 >= 500 && p50 <= 500 * 5 / 4);
+        assertTrue(p99 + "", p99 >= 990 && p99 <= 1000);
+    }
+}
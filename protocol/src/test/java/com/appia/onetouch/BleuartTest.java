@@ -0,0 +1,107 @@
+package com.appia.onetouch;
+
+import com.appia.onetouch.protocol.bleuart.Bleuart;
+import com.appia.onetouch.protocol.bleuart.BleuartCallbacks;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class BleuartTest {
+
+    private static class FragmentCollector implements BleuartCallbacks {
+        final ArrayList<byte[]> sent = new ArrayList<>();
+        public void sendData(byte[] aBytes) {
+            sent.add(aBytes.clone());
+        }
+        public void onPacketReceived(ByteBuffer aPacket, int aCrc) {
+        }
+    }
+
+    private static byte[] packet(int aLength) {
+        byte[] packet = new byte[aLength];
+        for (int i = 0; i < aLength; i++) {
+            packet[i] = (byte) i;
+        }
+        return packet;
+    }
+
+    /* Sends aPacket, acknowledging every fragment, and returns the fragments sent. */
+    private static ArrayList<byte[]> send(Bleuart aBleuart, FragmentCollector aCollector, byte[] aPacket) {
+        aCollector.sent.clear();
+        aBleuart.sendPacket(aPacket);
+        for (int i = 0; i < aCollector.sent.size(); i++) {
+            aBleuart.onDataReceived(new byte[]{(byte) (0x80 | (aCollector.sent.get(i)[0] & 0x0F))});
+        }
+        return new ArrayList<>(aCollector.sent);
+    }
+
+    private static void assertReassembles(byte[] aPacket, ArrayList<byte[]> aFragments) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (int i = 0; i < aFragments.size(); i++) {
+            byte[] fragment = aFragments.get(i);
+            assertEquals((i == 0 ? 0x00 : 0x40) | (aFragments.size() - i), fragment[0] & 0xFF);
+            data.write(fragment, 1, fragment.length - 1);
+        }
+        assertArrayEquals(aPacket, data.toByteArray());
+    }
+
+    @Test
+    public void fragmentsAreFull() {
+        FragmentCollector collector = new FragmentCollector();
+        Bleuart bleuart = new Bleuart(collector, 20);
+        byte[] packet = packet(39);
+        ArrayList<byte[]> fragments = send(bleuart, collector, packet);
+        assertEquals(3, fragments.size());
+        assertEquals(20, fragments.get(0).length);
+        assertEquals(20, fragments.get(1).length);
+        assertEquals(2, fragments.get(2).length);
+        assertReassembles(packet, fragments);
+    }
+
+    @Test
+    public void largerPacketSizeNeedsFewerFragments() {
+        FragmentCollector collector = new FragmentCollector();
+        Bleuart bleuart = new Bleuart(collector, 20);
+        bleuart.setMaxPacketSize(244);
+        byte[] packet = packet(300);
+        ArrayList<byte[]> fragments = send(bleuart, collector, packet);
+        assertEquals(2, fragments.size());
+        assertEquals(244, fragments.get(0).length);
+        assertReassembles(packet, fragments);
+    }
+
+    @Test
+    public void packetSizeChangesBetweenTransactions() {
+        FragmentCollector collector = new FragmentCollector();
+        Bleuart bleuart = new Bleuart(collector, 20);
+        byte[] packet = packet(39);
+        bleuart.sendPacket(packet);
+        bleuart.setMaxPacketSize(100);
+        // The packet being sent keeps its fragment size.
+        bleuart.onDataReceived(new byte[]{(byte) 0x83});
+        bleuart.onDataReceived(new byte[]{(byte) 0x82});
+        bleuart.onDataReceived(new byte[]{(byte) 0x81});
+        assertReassembles(packet, collector.sent);
+        // And the next one uses the new size.
+        ArrayList<byte[]> fragments = send(bleuart, collector, packet);
+        assertEquals(1, fragments.size());
+        assertReassembles(packet, fragments);
+    }
+
+    @Test
+    public void packetNeedingTooManyFragmentsIsDropped() {
+        FragmentCollector collector = new FragmentCollector();
+        Bleuart bleuart = new Bleuart(collector, 20);
+        assertEquals(0, send(bleuart, collector, packet(16 * 19)).size());
+        // The transport is still usable.
+        byte[] packet = packet(15 * 19);
+        ArrayList<byte[]> fragments = send(bleuart, collector, packet);
+        assertEquals(15, fragments.size());
+        assertReassembles(packet, fragments);
+    }
+}
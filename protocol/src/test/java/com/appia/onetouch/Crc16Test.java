@@ -0,0 +1,130 @@
+package com.appia.onetouch;
+
+import com.appia.onetouch.protocol.Crc16;
+import com.appia.onetouch.protocol.Protocol;
+import com.appia.onetouch.protocol.bleuart.Bleuart;
+import com.appia.onetouch.protocol.bleuart.BleuartCallbacks;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Crc16Test {
+
+    // Requests as sent by the application: get time, get highest record ID, get record count,
+    // get record by index 5 and get record by ID 42.
+    private final static byte[][] REQUESTS = {
+            {(byte)0x02, (byte)0x09, (byte)0x00, (byte)0x04, (byte)0x20, (byte)0x02, (byte)0x03, (byte)0xF9, (byte)0xC3},
+            {(byte)0x02, (byte)0x0A, (byte)0x00, (byte)0x04, (byte)0x0A, (byte)0x02, (byte)0x06, (byte)0x03, (byte)0xDE, (byte)0x58},
+            {(byte)0x02, (byte)0x09, (byte)0x00, (byte)0x04, (byte)0x27, (byte)0x00, (byte)0x03, (byte)0x0B, (byte)0x20},
+            {(byte)0x02, (byte)0x0C, (byte)0x00, (byte)0x04, (byte)0x31, (byte)0x02, (byte)0x05, (byte)0x00, (byte)0x00, (byte)0x03, (byte)0xEC, (byte)0xE9},
+            {(byte)0x02, (byte)0x0A, (byte)0x00, (byte)0x04, (byte)0xB3, (byte)0x2A, (byte)0x00, (byte)0x03, (byte)0xB9, (byte)0xDF},
+    };
+
+    // Responses as sent by the glucometer: time, empty (time set) and a record read by index.
+    private final static byte[][] RESPONSES = {
+            {(byte)0x02, (byte)0x0C, (byte)0x00, (byte)0x04, (byte)0x06, (byte)0xE8, (byte)0x03, (byte)0x00, (byte)0x00, (byte)0x03, (byte)0x1A, (byte)0x54},
+            {(byte)0x02, (byte)0x08, (byte)0x00, (byte)0x04, (byte)0x06, (byte)0x03, (byte)0x78, (byte)0xC1},
+            {(byte)0x02, (byte)0x18, (byte)0x00, (byte)0x04, (byte)0x06, (byte)0x05, (byte)0x00, (byte)0x00, (byte)0x2A, (byte)0x00, (byte)0x10, (byte)0x20, (byte)0x30, (byte)0x25, (byte)0x78, (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x03, (byte)0x7C, (byte)0xE0},
+    };
+
+    // Bit by bit implementation the table driven one replaced.
+    private static int referenceCRC(byte[] data, int offset, int length) {
+        int crc = 0xFFFF;
+        for (int i = 0; i < length; ++i) {
+            crc ^= data[offset + i] << 8;
+            for (int j = 0; j < 8; ++j) {
+                crc = (crc & 0x8000) > 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return crc & 0xFFFF;
+    }
+
+    private static int packetCRC(byte[] packet) {
+        return (packet[packet.length-2]&0xFF) | ((packet[packet.length-1]&0xFF)<<8);
+    }
+
+    @Test
+    public void checkValueIsCorrect() {
+        byte[] data = "123456789".getBytes();
+        assertEquals(0x29B1, Crc16.compute(data, 0, data.length));
+    }
+
+    @Test
+    public void goldenPacketsAreCorrect() {
+        for (byte[] packet : REQUESTS) {
+            assertEquals(packetCRC(packet), Protocol.computeCRC(packet, 0, packet.length-2));
+        }
+        for (byte[] packet : RESPONSES) {
+            assertEquals(packetCRC(packet), Protocol.computeCRC(packet, 0, packet.length-2));
+        }
+    }
+
+    @Test
+    public void tableMatchesBitwise() {
+        Random random = new Random(1234);
+        for (int n = 0; n < 200; n++) {
+            byte[] data = new byte[random.nextInt(300)];
+            random.nextBytes(data);
+            assertEquals(referenceCRC(data, 0, data.length), Crc16.compute(data, 0, data.length));
+        }
+    }
+
+    @Test
+    public void incrementalMatchesOneShot() {
+        byte[] packet = RESPONSES[2];
+        int expected = Crc16.compute(packet, 0, packet.length);
+        Crc16 crc = new Crc16();
+        for (int split = 0; split <= packet.length; split++) {
+            crc.reset();
+            crc.update(packet, 0, split);
+            crc.update(packet, split, packet.length - split);
+            assertEquals(expected, crc.getValue());
+        }
+        crc.reset();
+        for (byte b : packet) {
+            crc.update(b);
+        }
+        assertEquals(expected, crc.getValue());
+    }
+
+    private static class PacketCollector implements BleuartCallbacks {
+        byte[] packet;
+        int crc;
+        public void sendData(byte[] aBytes) {
+        }
+        public void onPacketReceived(ByteBuffer aPacket, int aCrc) {
+            packet = new byte[aPacket.remaining()];
+            aPacket.get(packet);
+            crc = aCrc;
+        }
+    }
+
+    @Test
+    public void bleuartComputesCrcWhileReceiving() {
+        byte[] packet = RESPONSES[2];
+        // Every fragment size, so that the CRC ends up split across fragments too.
+        for (int size = 1; size <= packet.length; size++) {
+            PacketCollector collector = new PacketCollector();
+            Bleuart bleuart = new Bleuart(collector, 20);
+            int nFragments = (packet.length + size - 1) / size;
+            if (nFragments > 15) {
+                continue;
+            }
+            for (int i = 0; i < nFragments; i++) {
+                int begin = i * size;
+                int end = Math.min(packet.length, begin + size);
+                byte[] fragment = new byte[1 + end - begin];
+                fragment[0] = (byte) (i == 0 ? nFragments : 0x40 | (nFragments - i));
+                System.arraycopy(packet, begin, fragment, 1, end - begin);
+                bleuart.onDataReceived(fragment);
+            }
+            assertArrayEquals(packet, collector.packet);
+            assertEquals(packetCRC(packet), collector.crc);
+        }
+    }
+}
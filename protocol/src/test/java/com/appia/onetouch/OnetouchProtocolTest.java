@@ -0,0 +1,456 @@
+package com.appia.onetouch;
+
+import com.appia.metrics.SyncTrace;
+import com.appia.onetouch.protocol.Protocol;
+import com.appia.onetouch.protocol.ProtocolCallbacks;
+import com.appia.onetouch.protocol.QueuedCursorStore;
+import com.appia.onetouch.protocol.SyncCursorStore;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class OnetouchProtocolTest {
+
+    /**
+     * Glucometer answering the requests in order. Record index 0 is the latest one, record
+     * at index i has ID nRecords-i. The BLE link is a pair of queues pumped by run(). The
+     * protocol timeouts send from their own thread, so the queue to the meter is a blocking one.
+     */
+    private static class FakeMeter implements ProtocolCallbacks {
+        final Protocol protocol;
+        int nRecords;
+        final LinkedBlockingDeque<byte[]> toMeter = new LinkedBlockingDeque<>();
+        final ArrayDeque<byte[]> toPhone = new ArrayDeque<>();
+        final ArrayList<OnetouchMeasurement> received = new ArrayList<>();
+        /* Indexes and IDs whose response is dropped, once for each time they are listed. */
+        final List<Integer> lose = new ArrayList<>();
+        final List<Integer> loseById = new ArrayList<>();
+        /* How long run() waits for requests sent by a timeout once the link is idle. */
+        long waitMs;
+        int requestsByIndex;
+        int requestsById;
+        /* Most requests by index received and not completely answered at once. */
+        int maxInFlight;
+
+        private ByteArrayOutputStream rxData;
+        private int rxRemaining;
+        private final ArrayDeque<byte[]> txQueue = new ArrayDeque<>();
+        private byte[] txPacket;
+        private int txOffset;
+        private int txRemaining;
+        private int pendingByIndex;
+
+        FakeMeter(int aRecords, int aWindow) {
+            nRecords = aRecords;
+            protocol = new Protocol(this, 20);
+            protocol.setBulkSyncWindow(aWindow);
+        }
+
+        FakeMeter(int aRecords, SyncCursorStore aStore) {
+            this(aRecords, Protocol.DEFAULT_BULK_SYNC_WINDOW);
+            protocol.setSyncCursorStore(aStore);
+        }
+
+        void run() {
+            run(DEVICE);
+        }
+
+        void run(String aDevice) {
+            protocol.connect(aDevice);
+            pump();
+        }
+
+        void pump() {
+            while (true) {
+                while (!toMeter.isEmpty() || !toPhone.isEmpty()) {
+                    if (!toMeter.isEmpty()) {
+                        onMeterData(toMeter.poll());
+                    }
+                    if (!toPhone.isEmpty()) {
+                        protocol.onDataReceived(toPhone.poll());
+                    }
+                }
+                byte[] late;
+                try {
+                    late = toMeter.poll(waitMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (late == null) {
+                    return;
+                }
+                onMeterData(late);
+            }
+        }
+
+        public void sendData(byte[] bytes) {
+            toMeter.add(bytes.clone());
+        }
+
+        public void onMeasurementsReceived(ArrayList<OnetouchMeasurement> aMeasurements) {
+            received.addAll(aMeasurements);
+        }
+
+        public void onProtocolError(String aMessage) {
+            fail(aMessage);
+        }
+
+        private void onMeterData(byte[] aBytes) {
+            int header = aBytes[0] & 0xF0;
+            if (header == 0x80) {
+                txRemaining--;
+                if (txRemaining > 0) {
+                    sendFragment(false);
+                } else {
+                    if (txPacket.length == 24) {
+                        pendingByIndex--;
+                    }
+                    txPacket = null;
+                    if (!txQueue.isEmpty()) {
+                        startSending(txQueue.poll());
+                    }
+                }
+                return;
+            }
+            if (header == 0x00) {
+                rxData = new ByteArrayOutputStream();
+                rxRemaining = aBytes[0] & 0x0F;
+            }
+            rxData.write(aBytes, 1, aBytes.length - 1);
+            toPhone.add(new byte[]{(byte) (0x80 | rxRemaining)});
+            rxRemaining--;
+            if (rxRemaining == 0) {
+                handleRequest(rxData.toByteArray());
+            }
+        }
+
+        private void handleRequest(byte[] aPacket) {
+            int command = aPacket[4] & 0xFF;
+            if (command == 0x20 && aPacket[5] == 0x02) { // Get time
+                respond(new byte[]{0x00, 0x00, 0x00, 0x20});
+            } else if (command == 0x20) { // Set time
+                respond(new byte[0]);
+            } else if (command == 0x27) { // Record count
+                respond(new byte[]{(byte) nRecords, (byte) (nRecords >> 8)});
+            } else if (command == 0x0A) { // Highest record ID
+                respond(new byte[]{(byte) nRecords, (byte) (nRecords >> 8), 0x00, 0x00});
+            } else if (command == 0x31) { // Record by index
+                int index = (aPacket[6] & 0xFF) | ((aPacket[7] & 0xFF) << 8);
+                requestsByIndex++;
+                pendingByIndex++;
+                maxInFlight = Math.max(maxInFlight, pendingByIndex);
+                if (lose.remove(Integer.valueOf(index))) {
+                    pendingByIndex--;
+                    return;
+                }
+                int id = nRecords - index;
+                int value = 100 + id;
+                respond(new byte[]{(byte) index, (byte) (index >> 8), 0x00,
+                        (byte) id, (byte) (id >> 8),
+                        (byte) id, 0x00, 0x00, 0x20,
+                        (byte) value, (byte) (value >> 8), 0x00, 0x00,
+                        0x00, 0x00, 0x00});
+            } else if (command == 0xB3) { // Record by ID
+                int id = (aPacket[5] & 0xFF) | ((aPacket[6] & 0xFF) << 8);
+                requestsById++;
+                if (loseById.remove(Integer.valueOf(id))) {
+                    return;
+                }
+                if (id < 1 || id > nRecords) {
+                    respond(new byte[0]);
+                    return;
+                }
+                int value = 100 + id;
+                respond(new byte[]{(byte) id, 0x00, 0x00, 0x20,
+                        (byte) value, (byte) (value >> 8), 0x00, 0x00, 0x00,
+                        0x00, 0x00});
+            }
+        }
+
+        private void respond(byte[] aPayload) {
+            int length = aPayload.length + 8;
+            byte[] packet = new byte[length];
+            packet[0] = 0x02;
+            packet[1] = (byte) length;
+            packet[2] = (byte) (length >> 8);
+            packet[3] = 0x04;
+            packet[4] = 0x06;
+            System.arraycopy(aPayload, 0, packet, 5, aPayload.length);
+            packet[length - 3] = 0x03;
+            Protocol.appendCRC16(packet, length - 2);
+            if (txPacket == null) {
+                startSending(packet);
+            } else {
+                txQueue.add(packet);
+            }
+        }
+
+        private void startSending(byte[] aPacket) {
+            txPacket = aPacket;
+            txOffset = 0;
+            txRemaining = (aPacket.length + 18) / 19;
+            sendFragment(true);
+        }
+
+        private void sendFragment(boolean aFirst) {
+            int n = Math.min(19, txPacket.length - txOffset);
+            byte[] fragment = new byte[n + 1];
+            fragment[0] = (byte) ((aFirst ? 0x00 : 0x40) | txRemaining);
+            System.arraycopy(txPacket, txOffset, fragment, 1, n);
+            txOffset += n;
+            toPhone.add(fragment);
+        }
+    }
+
+    private final static String DEVICE = "00:11:22:33:44:55";
+
+    private static class MemoryCursorStore implements SyncCursorStore {
+        final Map<String, Integer> cursors = new HashMap<>();
+        public int load(String aDevice) {
+            Integer cursor = cursors.get(aDevice);
+            return cursor == null ? NO_CURSOR : cursor;
+        }
+        public void save(String aDevice, int aHighestID) {
+            cursors.put(aDevice, aHighestID);
+        }
+        public void clear(String aDevice) {
+            cursors.remove(aDevice);
+        }
+    }
+
+    /**
+     * Meter whose measurements are stored on a queue of tasks, as the services do on their store
+     * executor, with the cursor written through a QueuedCursorStore on the same queue.
+     */
+    private static class StoringMeter extends FakeMeter {
+        final ArrayDeque<Runnable> storeQueue = new ArrayDeque<>();
+        final List<OnetouchMeasurement> stored;
+
+        StoringMeter(int aRecords, SyncCursorStore aStore, List<OnetouchMeasurement> aStored) {
+            super(aRecords, Protocol.DEFAULT_BULK_SYNC_WINDOW);
+            stored = aStored;
+            protocol.setSyncCursorStore(new QueuedCursorStore(aStore, storeQueue::add));
+        }
+
+        @Override
+        public void onMeasurementsReceived(ArrayList<OnetouchMeasurement> aMeasurements) {
+            super.onMeasurementsReceived(aMeasurements);
+            final ArrayList<OnetouchMeasurement> measurements = new ArrayList<>(aMeasurements);
+            storeQueue.add(() -> stored.addAll(measurements));
+        }
+    }
+
+    private static void assertInOrder(FakeMeter aMeter) {
+        assertReceived(aMeter, 1);
+    }
+
+    /* Records from aFirstID to the latest one were received in order. */
+    private static void assertReceived(FakeMeter aMeter, int aFirstID) {
+        assertEquals(aMeter.nRecords - aFirstID + 1, aMeter.received.size());
+        for (int i = 0; i < aMeter.received.size(); i++) {
+            OnetouchMeasurement measurement = aMeter.received.get(i);
+            assertEquals(Integer.toString(aFirstID + i), measurement.mId);
+            assertEquals(100 + aFirstID + i, measurement.mGlucose, 0.0);
+        }
+    }
+
+    @Test
+    public void recordsAreReadOneByOne() {
+        FakeMeter meter = new FakeMeter(10, 1);
+        meter.run();
+        assertInOrder(meter);
+        assertEquals(10, meter.requestsByIndex);
+        assertEquals(1, meter.maxInFlight);
+    }
+
+    @Test
+    public void recordsArePipelined() {
+        FakeMeter meter = new FakeMeter(10, 4);
+        meter.run();
+        assertInOrder(meter);
+        assertEquals(10, meter.requestsByIndex);
+        assertEquals(4, meter.maxInFlight);
+    }
+
+    @Test
+    public void lostRecordIsRequestedAgain() {
+        FakeMeter meter = new FakeMeter(10, 4);
+        meter.lose.add(8);
+        meter.lose.add(3);
+        meter.run();
+        assertInOrder(meter);
+        assertEquals(12, meter.requestsByIndex);
+    }
+
+    @Test
+    public void lostRetryIsRequestedAgainAfterTimeout() {
+        FakeMeter meter = new FakeMeter(10, 4);
+        meter.protocol.setRequestTimeoutMs(50);
+        meter.waitMs = 500;
+        // The response to index 8 is lost, and so is the one to its retry
+        meter.lose.add(8);
+        meter.lose.add(8);
+        meter.run();
+        assertInOrder(meter);
+        assertEquals(12, meter.requestsByIndex);
+    }
+
+    @Test
+    public void lostFinalResponseIsRequestedAgain() {
+        MemoryCursorStore store = new MemoryCursorStore();
+        store.save(DEVICE, 10);
+        FakeMeter meter = new FakeMeter(13, store);
+        meter.protocol.setRequestTimeoutMs(50);
+        meter.waitMs = 500;
+        meter.loseById.add(13);
+        meter.run();
+        assertReceived(meter, 11);
+        assertEquals(4, meter.requestsById);
+        assertEquals(Integer.valueOf(13), store.cursors.get(DEVICE));
+    }
+
+    @Test
+    public void recordsNotDeliveredAreRequestedAfterReconnecting() {
+        FakeMeter meter = new FakeMeter(10, 4);
+        meter.run();
+        assertInOrder(meter);
+        meter.protocol.disconnect();
+
+        // Three new records, the link drops while the second one is on its way
+        meter.nRecords = 13;
+        meter.received.clear();
+        meter.loseById.add(12);
+        meter.run();
+        meter.protocol.disconnect();
+        assertEquals(0, meter.received.size());
+
+        meter.run();
+        assertReceived(meter, 11);
+        assertEquals(2 + 3, meter.requestsById);
+    }
+
+    @Test
+    public void syncIsTraced() {
+        FakeMeter meter = new FakeMeter(10, 4);
+        SyncTrace trace = new SyncTrace("Onetouch");
+        meter.protocol.setSyncTrace(trace);
+        meter.lose.add(8);
+        meter.run();
+        assertInOrder(meter);
+
+        assertTrue(trace.getMs(SyncTrace.Phase.INFO_RECEIVED) >= 0);
+        assertTrue(trace.getMs(SyncTrace.Phase.FIRST_RECORD) >= trace.getMs(SyncTrace.Phase.INFO_RECEIVED));
+        assertTrue(trace.getMs(SyncTrace.Phase.LAST_RECORD) >= trace.getMs(SyncTrace.Phase.FIRST_RECORD));
+        assertEquals(10, trace.get(SyncTrace.Counter.RECORDS));
+        assertEquals(1, trace.get(SyncTrace.Counter.RETRIES));
+        assertEquals(0, trace.get(SyncTrace.Counter.CRC_ERRORS));
+        assertEquals(0, trace.get(SyncTrace.Counter.WRONG_ACKS));
+        // Every request fits in a fragment: time get and set, record count, records and highest ID
+        assertEquals(4 + meter.requestsByIndex, trace.get(SyncTrace.Counter.FRAGMENTS_SENT));
+        assertTrue(trace.get(SyncTrace.Counter.FRAGMENTS_RECEIVED) >= 2 * 10);
+        assertTrue(trace.get(SyncTrace.Counter.BYTES_RECEIVED) > trace.get(SyncTrace.Counter.BYTES_SENT));
+    }
+
+    @Test
+    public void emptyMeterIsSynced() {
+        FakeMeter meter = new FakeMeter(0, 4);
+        meter.run();
+        assertEquals(0, meter.received.size());
+        assertEquals(0, meter.requestsByIndex);
+    }
+
+    @Test
+    public void reconnectFetchesOnlyNewRecords() {
+        MemoryCursorStore store = new MemoryCursorStore();
+        FakeMeter first = new FakeMeter(10, store);
+        first.run();
+        assertInOrder(first);
+        assertEquals(Integer.valueOf(10), store.cursors.get(DEVICE));
+
+        // A new protocol, as after the service was restarted.
+        FakeMeter second = new FakeMeter(13, store);
+        second.run();
+        assertReceived(second, 11);
+        assertEquals(0, second.requestsByIndex);
+        assertEquals(3, second.requestsById);
+        assertEquals(Integer.valueOf(13), store.cursors.get(DEVICE));
+    }
+
+    @Test
+    public void managerCallOrderUsesTheCursor() {
+        MemoryCursorStore store = new MemoryCursorStore();
+        store.save(DEVICE, 10);
+        FakeMeter meter = new FakeMeter(13, store);
+        Protocol protocol = meter.protocol;
+
+        // As OnetouchManager does: the MTU is negotiated and the notifications enabled in
+        // initialize() without any request, then onDeviceReady() connects with the address.
+        protocol.setMaxPacketSize(244);
+        assertTrue(meter.toMeter.isEmpty());
+        meter.run(DEVICE);
+        assertReceived(meter, 11);
+        assertEquals(0, meter.requestsByIndex);
+        assertEquals(3, meter.requestsById);
+        assertEquals(Integer.valueOf(13), store.cursors.get(DEVICE));
+
+        // onDeviceDisconnected(), then the same manager connects to a meter without a cursor
+        protocol.disconnect();
+        protocol.setMaxPacketSize(20);
+        meter.received.clear();
+        meter.run("66:77:88:99:AA:BB");
+        assertInOrder(meter);
+        assertEquals(13, meter.requestsByIndex);
+        assertEquals(Integer.valueOf(13), store.cursors.get("66:77:88:99:AA:BB"));
+    }
+
+    @Test
+    public void erasedMeterIsSyncedAgain() {
+        MemoryCursorStore store = new MemoryCursorStore();
+        store.save(DEVICE, 20);
+        FakeMeter meter = new FakeMeter(5, store);
+        meter.run();
+        assertInOrder(meter);
+        assertEquals(Integer.valueOf(5), store.cursors.get(DEVICE));
+    }
+
+    @Test
+    public void cursorIsSavedOnlyAfterTheMeasurementsAreStored() {
+        final ArrayList<OnetouchMeasurement> stored = new ArrayList<>();
+        final List<Integer> storedWhenSaved = new ArrayList<>();
+        MemoryCursorStore store = new MemoryCursorStore() {
+            @Override
+            public void save(String aDevice, int aHighestID) {
+                storedWhenSaved.add(stored.size());
+                super.save(aDevice, aHighestID);
+            }
+        };
+        store.cursors.put(DEVICE, 10);
+        StoringMeter meter = new StoringMeter(13, store, stored);
+        meter.run();
+        assertReceived(meter, 11);
+
+        // The sync is over but nothing was stored yet, so the cursor did not move
+        assertEquals(0, stored.size());
+        assertEquals(Integer.valueOf(10), store.cursors.get(DEVICE));
+
+        while (!meter.storeQueue.isEmpty()) {
+            meter.storeQueue.poll().run();
+        }
+        assertEquals(3, stored.size());
+        assertEquals(Integer.valueOf(13), store.cursors.get(DEVICE));
+        for (int size : storedWhenSaved) {
+            assertEquals(3, size);
+        }
+        assertFalse(storedWhenSaved.isEmpty());
+    }
+}
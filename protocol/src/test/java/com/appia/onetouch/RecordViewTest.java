@@ -0,0 +1,53 @@
+package com.appia.onetouch;
+
+import com.appia.onetouch.protocol.RecordView;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class RecordViewTest {
+
+    // Record 5 (ID 42, value 120 mg/dL) as received when read by index.
+    private final static byte[] BY_INDEX = {(byte)0x02, (byte)0x18, (byte)0x00, (byte)0x04, (byte)0x06,
+            (byte)0x05, (byte)0x00, (byte)0x00, (byte)0x2A, (byte)0x00, (byte)0x10, (byte)0x20, (byte)0x30, (byte)0x25,
+            (byte)0x78, (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x07, (byte)0x00, (byte)0x00,
+            (byte)0x03, (byte)0x00, (byte)0x00};
+
+    // Same record as received when read by ID, with error code 3.
+    private final static byte[] BY_ID = {(byte)0x02, (byte)0x13, (byte)0x00, (byte)0x04, (byte)0x06,
+            (byte)0x10, (byte)0x20, (byte)0x30, (byte)0x25, (byte)0x78, (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x00,
+            (byte)0x03, (byte)0x00,
+            (byte)0x03, (byte)0x00, (byte)0x00};
+
+    private static ByteBuffer view(byte[] packet) {
+        return ByteBuffer.wrap(packet).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void recordByIndexIsDecoded() {
+        RecordView record = new RecordView();
+        record.readByIndex(view(BY_INDEX), 5);
+        assertEquals(5, record.index);
+        assertEquals(42, record.id);
+        assertEquals(0x25302010, record.time);
+        assertEquals(120, record.value);
+        assertEquals(7, record.error);
+    }
+
+    @Test
+    public void recordByIdIsDecoded() {
+        RecordView record = new RecordView();
+        record.readByIndex(view(BY_INDEX), 5);
+        // Reading by ID reuses the view and keeps the index and ID of the previous record.
+        record.readById(view(BY_ID), 5);
+        assertEquals(5, record.index);
+        assertEquals(42, record.id);
+        assertEquals(0x25302010, record.time);
+        assertEquals(120, record.value);
+        assertEquals(3, record.error);
+    }
+}
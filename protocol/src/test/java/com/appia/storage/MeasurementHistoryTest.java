@@ -0,0 +1,80 @@
+package com.appia.storage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MeasurementHistoryTest {
+
+    @Test
+    public void rowsAreKeptSortedByTime() {
+        MeasurementHistory history = new MeasurementHistory();
+        history.add(3000, 90, 3, 0);
+        history.add(1000, 110, 1, 0);
+        history.add(2000, 100, 2, 0);
+        history.add(2000, 105, 4, 7);
+        assertEquals(4, history.size());
+        assertEquals(1000, history.getEpochMillis(0));
+        assertEquals(2000, history.getEpochMillis(1));
+        // Equal times keep the order they were added in
+        assertEquals(2, history.getRecordId(1));
+        assertEquals(4, history.getRecordId(2));
+        assertEquals(105, history.getMgdl(2));
+        assertEquals(7, history.getFlags(2));
+        assertEquals(3000, history.getEpochMillis(3));
+    }
+
+    @Test
+    public void arraysGrowInChunks() {
+        MeasurementHistory history = new MeasurementHistory();
+        int rows = 3 * MeasurementHistory.CHUNK_ROWS + 1;
+        for (int i = rows - 1; i >= 0; i--) {
+            history.add(i * 60000L, i % 400, i, 0);
+        }
+        assertEquals(rows, history.size());
+        for (int i = 0; i < rows; i++) {
+            assertEquals(i * 60000L, history.getEpochMillis(i));
+            assertEquals(i, history.getRecordId(i));
+            assertEquals(i % 400, history.getMgdl(i));
+        }
+    }
+
+    @Test
+    public void rangesAreFoundByTime() {
+        MeasurementHistory history = new MeasurementHistory();
+        for (int i = 0; i < 10; i++) {
+            history.add(i * 10, 100, i, 0);
+        }
+        assertEquals(0, history.indexOf(Long.MIN_VALUE));
+        assertEquals(3, history.indexOf(25));
+        assertEquals(3, history.indexOf(30));
+        assertEquals(10, history.indexOf(91));
+        assertEquals(3, history.count(30, 50));
+        assertEquals(2, history.count(31, 50));
+        assertEquals(10, history.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(0, history.count(50, 30));
+    }
+
+    @Test
+    public void valuesAreClampedToTheirColumns() {
+        MeasurementHistory history = new MeasurementHistory();
+        history.add(0, -5, 0, 0x1ffff);
+        history.add(1, 100000, 0, 1280);
+        assertEquals(0, history.getMgdl(0));
+        assertEquals(0xffff, history.getFlags(0));
+        assertEquals(MeasurementHistory.MAX_MGDL, history.getMgdl(1));
+        assertEquals(1280, history.getFlags(1));
+    }
+
+    @Test
+    public void rowsPastTheEndAreRejected() {
+        MeasurementHistory history = new MeasurementHistory();
+        history.add(0, 100, 0, 0);
+        try {
+            history.getMgdl(1);
+            assertTrue("Read row 1 of 1", false);
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.appia.bioland.simulator;
+
+import com.appia.bioland.BiolandInfo;
+import com.appia.bioland.BiolandMeasurement;
+import com.appia.bioland.protocols.ProtocolCallbacks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands in for the BLE connection between a Protocol and a BiolandMeter.
+ *
+ * It is given to the Protocol as its callbacks: the requests passed to sendData reach the meter,
+ * and its answers come back through the Receiver after the latency set. A dropped request never
+ * reaches the meter, so the Protocol has to retry it. The other callbacks go to the listener.
+ *
+ * Every packet is delivered on the executor, never from inside sendData, as the Protocol holds
+ * its lock while sending. With a single thread executor the packets arrive in order.
+ */
+public class BiolandLink implements ProtocolCallbacks {
+
+    // Where the packets of the meter are delivered, usually Protocol.onDataReceived
+    public interface Receiver {
+        void onDataReceived(byte[] aBytes);
+    }
+
+    // Told when the meter sent its end packet and the receiver handled it
+    public interface EndListener {
+        void onEndDelivered();
+    }
+
+    public final static int DEFAULT_COUNTDOWN_INTERVAL_MS = 1000;
+
+    private final BiolandMeter meter;
+    private final ProtocolCallbacks listener;
+    private final ScheduledExecutorService executor;
+    private volatile Receiver receiver;
+    private volatile EndListener endListener;
+
+    private volatile int latencyMs;
+    private volatile double dropRate;
+    private volatile int countdownIntervalMs = DEFAULT_COUNTDOWN_INTERVAL_MS;
+    private Random random = new Random();
+
+    private int sent;
+    private int dropped;
+    private int delivered;
+    private int retries;
+    // Set while the last request was not answered
+    private boolean awaitingAnswer;
+    private long bytesSent;
+    private long bytesDelivered;
+
+    /**
+     * @param aMeter meter answering the requests
+     * @param aListener gets the callbacks of the Protocol other than sendData, may be null
+     * @param aExecutor delivers the packets, a single thread keeps them in order
+     */
+    public BiolandLink(BiolandMeter aMeter, ProtocolCallbacks aListener, ScheduledExecutorService aExecutor){
+        meter = aMeter;
+        listener = aListener;
+        executor = aExecutor;
+    }
+
+    public void setReceiver(Receiver aReceiver){
+        receiver = aReceiver;
+    }
+
+    public void setEndListener(EndListener aListener){
+        endListener = aListener;
+    }
+
+    // Time between a request and its answer
+    public void setLatencyMs(int aLatencyMs){
+        latencyMs = Math.max(0, aLatencyMs);
+    }
+
+    // Probability of losing each request, from 0 to 1
+    public void setDropRate(double aDropRate){
+        dropRate = Math.max(0, Math.min(1, aDropRate));
+    }
+
+    // Time between two timing packets of the countdown, the meter sends one per second
+    public void setCountdownIntervalMs(int aIntervalMs){
+        countdownIntervalMs = Math.max(0, aIntervalMs);
+    }
+
+    // Seeds the drops, so a session can be repeated
+    public synchronized void setSeed(long aSeed){
+        random = new Random(aSeed);
+    }
+
+    public BiolandMeter getMeter(){
+        return meter;
+    }
+
+    // Requests sent by the protocol, dropped ones included
+    public synchronized int getSent(){
+        return sent;
+    }
+
+    public synchronized int getDropped(){
+        return dropped;
+    }
+
+    // Requests sent again before the previous one was answered, after a drop or a late answer
+    public synchronized int getRetries(){
+        return retries;
+    }
+
+    // Packets of the meter delivered to the receiver
+    public synchronized int getDelivered(){
+        return delivered;
+    }
+
+    public synchronized long getBytesSent(){
+        return bytesSent;
+    }
+
+    public synchronized long getBytesDelivered(){
+        return bytesDelivered;
+    }
+
+    /**********************************************************************************************/
+    /*                                    Protocol callbacks                                      */
+
+    public void sendData(final byte[] bytes){
+        // The protocol reuses the array
+        final byte[] request = Arrays.copyOf(bytes, bytes.length);
+        synchronized (this){
+            sent++;
+            bytesSent += request.length;
+            if(awaitingAnswer)
+                retries++;
+            awaitingAnswer = true;
+            if(random.nextDouble() < dropRate){
+                dropped++;
+                return;
+            }
+        }
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                byte[] answer = meter.answer(request);
+                if(answer == null)
+                    return;
+                synchronized (BiolandLink.this){
+                    awaitingAnswer = false;
+                }
+                deliver(answer);
+                if(meter.takeCountdown())
+                    startCountdown();
+            }
+        }, latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void onCountdownReceived(int aValue){
+        if(listener != null)
+            listener.onCountdownReceived(aValue);
+    }
+
+    public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements){
+        if(listener != null)
+            listener.onMeasurementsReceived(aMeasurements);
+    }
+
+    public void onDeviceInfoReceived(BiolandInfo aInfo){
+        if(listener != null)
+            listener.onDeviceInfoReceived(aInfo);
+    }
+
+    public void onProtocolError(String aMessage){
+        if(listener != null)
+            listener.onProtocolError(aMessage);
+    }
+
+    // Sends the timing packets one interval apart, then pushes the first result
+    private void startCountdown(){
+        int countdown = meter.getCountdown();
+        for(int i = 0; i <= countdown; i++){
+            final int value = countdown - i;
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(meter.timingPacket(value));
+                }
+            }, (long) (i + 1) * countdownIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                deliver(meter.nextRecord());
+            }
+        }, (long) (countdown + 1) * countdownIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void deliver(byte[] aPacket){
+        synchronized (this){
+            delivered++;
+            bytesDelivered += aPacket.length;
+        }
+        Receiver current = receiver;
+        if(current != null)
+            current.onDataReceived(aPacket);
+        EndListener end = endListener;
+        if(end != null && meter.isEndPacket(aPacket))
+            end.onEndDelivered();
+    }
+}
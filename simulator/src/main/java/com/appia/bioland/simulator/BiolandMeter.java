@@ -0,0 +1,337 @@
+package com.appia.bioland.simulator;
+
+import com.appia.bioland.protocols.PacketEncoder;
+import com.appia.bioland.protocols.Version;
+
+import java.util.Arrays;
+
+/**
+ * Device side of the Bioland G-500, for any of the four protocol versions.
+ *
+ * It answers the requests the Protocol sends as the meter does: the info request with its info
+ * packet, and every measurement request with the next stored result, or with the end packet
+ * once all of them were sent. In V3.1 and V3.2 the meter counts down after the info packet and
+ * pushes the first result by itself, BiolandLink sends those packets with the right timing.
+ *
+ * Requests of another version, with a wrong length or checksum, are ignored as the meter does.
+ * Nothing here runs on its own thread, BiolandLink calls it.
+ */
+public class BiolandMeter {
+
+    private final static byte APP_START_CODE = 0x5A;
+    private final static byte DEVICE_START_CODE = 0x55;
+    private final static int CATEGORY_INFO = 0x00;
+    private final static int CATEGORY_DATA = 0x03;
+    // V1 asks for everything with the same reply packet
+    private final static int CATEGORY_REPLY_V1 = 0x05;
+    private final static int CATEGORY_HANDSHAKE = 0x09;
+
+    // Version codes sent in the info packet of each version
+    private final static int VERSION_CODE_V1 = 0x10;
+    private final static int VERSION_CODE_V2 = 0x20;
+    private final static int VERSION_CODE_V31 = 0x31;
+    private final static int VERSION_CODE_V32 = 0x32;
+
+    // Records are kept in parallel arrays, grown in chunks
+    private final static int CHUNK_RECORDS = 256;
+
+    private final Version version;
+    private final boolean v1;
+    private final boolean hasTiming;
+
+    private int countdown = 5;
+    private boolean checksumQuirk;
+    private int batteryCapacity = 80;
+    private final byte[] serialNumber = {0x11, 0x22, 0x33, 0x44, 0x55, 0x66, 0x77, (byte) 0x88, (byte) 0x99};
+
+    // Date of each record as sent, year since 2000, month, day, hour and minute
+    private byte[][] dates = new byte[CHUNK_RECORDS][];
+    private int[] glucose = new int[CHUNK_RECORDS];
+    private int records;
+
+    // Next record to send, and whether the info packet was sent in this session
+    private int cursor;
+    private boolean infoSent;
+    // Set when the info packet of a version with timing packets was sent
+    private boolean countdownPending;
+
+    private int requests;
+    private int rejected;
+
+    /**
+     * @param aVersion one of the versions of Version
+     */
+    public BiolandMeter(Version aVersion){
+        if(!aVersion.equals(Version.V1_0) && !aVersion.equals(Version.V2_0)
+                && !aVersion.equals(Version.V3_1) && !aVersion.equals(Version.V3_2))
+            throw new IllegalArgumentException("Unknown protocol version " + aVersion);
+        version = aVersion;
+        v1 = aVersion.equals(Version.V1_0);
+        hasTiming = aVersion.compareTo(Version.V3_1) >= 0;
+    }
+
+    public Version getVersion(){
+        return version;
+    }
+
+    /**
+     * Sets the first value of the countdown sent before the measurement, in V3.x. The meter
+     * sends every value down to 0.
+     */
+    public synchronized void setCountdown(int aCountdown){
+        countdown = Math.max(0, aCountdown);
+    }
+
+    public synchronized int getCountdown(){
+        return countdown;
+    }
+
+    /**
+     * Writes the one byte checksums 2 higher, as some meters do against the documentation. The
+     * protocols accept both, the 3 byte checksums of V1 are always right.
+     */
+    public synchronized void setChecksumQuirk(boolean aQuirk){
+        checksumQuirk = aQuirk;
+    }
+
+    public synchronized void setBatteryCapacity(int aCapacity){
+        batteryCapacity = aCapacity;
+    }
+
+    /**
+     * Stores a measurement, sent after the ones stored before it.
+     * @param aYear full year, from 2000
+     * @param aMonth as sent by the meter
+     * @param aDay
+     * @param aHour
+     * @param aMinute
+     * @param aMgdl glucose in mg/dL
+     */
+    public synchronized void addRecord(int aYear, int aMonth, int aDay, int aHour, int aMinute, int aMgdl){
+        if(records == glucose.length){
+            dates = Arrays.copyOf(dates, records + CHUNK_RECORDS);
+            glucose = Arrays.copyOf(glucose, records + CHUNK_RECORDS);
+        }
+        dates[records] = new byte[]{(byte) (aYear - 2000), (byte) aMonth, (byte) aDay, (byte) aHour, (byte) aMinute};
+        glucose[records] = aMgdl;
+        records++;
+    }
+
+    /**
+     * Stores aCount measurements taken an hour apart, with glucose values that change from one
+     * to the next. Always the same ones, so sessions can be compared.
+     */
+    public synchronized void addRecords(int aCount){
+        for(int i = 0; i < aCount; i++){
+            int hours = records;
+            addRecord(2020 + hours / (24 * 28 * 12), (hours / (24 * 28)) % 12 + 1, (hours / 24) % 28 + 1,
+                    hours % 24, (hours * 7) % 60, 70 + (hours * 37) % 200);
+        }
+    }
+
+    public synchronized void clearRecords(){
+        records = 0;
+        cursor = 0;
+    }
+
+    public synchronized int getRecordCount(){
+        return records;
+    }
+
+    // Glucose of a stored record, in mg/dL
+    public synchronized int getGlucose(int aIndex){
+        return glucose[aIndex];
+    }
+
+    // Valid requests received
+    public synchronized int getRequests(){
+        return requests;
+    }
+
+    // Requests ignored for their length, checksum or version
+    public synchronized int getRejected(){
+        return rejected;
+    }
+
+    // Forgets the session, as when the meter is turned off
+    public synchronized void reset(){
+        cursor = 0;
+        infoSent = false;
+        countdownPending = false;
+    }
+
+    /**
+     * Returns the answer to a request, or null if the meter doesn't answer it.
+     * @param aRequest packet sent by the Protocol
+     */
+    public synchronized byte[] answer(byte[] aRequest){
+        int category = checkRequest(aRequest);
+        if(category < 0){
+            rejected++;
+            return null;
+        }
+        requests++;
+        if(v1){
+            // The first reply of a session asks for the info packet, the next ones for results
+            if(!infoSent)
+                return infoPacket();
+            return nextRecord();
+        }
+        switch(category){
+            case CATEGORY_INFO:
+                return infoPacket();
+            case CATEGORY_DATA:
+                return nextRecord();
+            default:
+                // The handshake is not answered
+                return null;
+        }
+    }
+
+    /**
+     * Returns true once after the info packet was sent in V3.x, when the countdown has to start.
+     */
+    public synchronized boolean takeCountdown(){
+        boolean pending = countdownPending;
+        countdownPending = false;
+        return pending;
+    }
+
+    /**
+     * Returns the next stored result, or the end packet once all of them were sent. In V3.x the
+     * first one is pushed after the countdown, the rest are answers to requests.
+     */
+    public synchronized byte[] nextRecord(){
+        if(cursor >= records){
+            reset();
+            return endPacket();
+        }
+        return resultPacket(cursor++);
+    }
+
+    // Returns true if aPacket is the end packet of this version
+    public boolean isEndPacket(byte[] aPacket){
+        return aPacket.length > 2 && aPacket[2] == (v1 ? 0x04 : 0x05);
+    }
+
+    // Returns the category of a valid request, -1 if the meter ignores it
+    private int checkRequest(byte[] aRequest){
+        if(aRequest.length < 4 || aRequest[0] != APP_START_CODE || (aRequest[1] & 0xff) != aRequest.length)
+            return -1;
+        int category = aRequest[2] & 0xff;
+        if(category == CATEGORY_HANDSHAKE)
+            return hasTiming && aRequest.length == 4 ? category : -1;
+        if(v1 != (category == CATEGORY_REPLY_V1))
+            return -1;
+        int checksumLength = v1 ? 3 : 1;
+        int sum = PacketEncoder.checksum(aRequest, aRequest.length - checksumLength);
+        for(int i = 0; i < checksumLength; i++){
+            if(aRequest[aRequest.length - checksumLength + i] != (byte) (sum >> (8 * i)))
+                return -1;
+        }
+        return category;
+    }
+
+    /**********************************************************************************************/
+    /*                                    Device packets                                          */
+
+    // Info packet of this version, filled with the battery and serial number set
+    public synchronized byte[] infoPacket(){
+        byte[] packet;
+        if(v1){
+            packet = header(16, 0x00);
+            packet[3] = VERSION_CODE_V1;
+            packet[4] = 0x01;                 // Client code
+            packet[5] = 0x01;                 // Model code
+            packet[6] = 0x01;                 // Type code
+            packet[7] = 0x00;                 // User ID
+            packet[8] = 20;                   // Production year
+            packet[9] = 6;                    // Production month
+            System.arraycopy(serialNumber, 0, packet, 10, 3);
+            // The serial number is added to the checksum as a number
+            int serial = (serialNumber[0] & 0xff) | (serialNumber[1] & 0xff) << 8 | (serialNumber[2] & 0xff) << 16;
+            writeSum(packet, 13, 3, PacketEncoder.checksum(packet, 10) - 2 + serial);
+        } else if(version.equals(Version.V3_2)){
+            packet = header(18, 0x00);
+            packet[3] = VERSION_CODE_V32;
+            packet[4] = 0x01;                 // Client code
+            packet[5] = (byte) batteryCapacity;
+            packet[6] = 0x01;                 // Model code
+            packet[7] = 0x01;                 // Type code
+            System.arraycopy(serialNumber, 0, packet, 8, 9);
+            writeChecksum(packet, 17, 17);
+        } else {
+            packet = header(15, 0x00);
+            packet[3] = (byte) (version.equals(Version.V3_1) ? VERSION_CODE_V31 : VERSION_CODE_V2);
+            packet[4] = 0x01;                 // Client code
+            packet[5] = 0x01;                 // Model code
+            packet[6] = 0x01;                 // Type code
+            packet[7] = 0x00;                 // Retain
+            packet[8] = (byte) batteryCapacity;
+            System.arraycopy(serialNumber, 0, packet, 9, 5);
+            writeChecksum(packet, 14, 14);
+        }
+        infoSent = true;
+        cursor = 0;
+        countdownPending = hasTiming;
+        return packet;
+    }
+
+    // Timing packet sent every second of the countdown, V3.x only
+    public synchronized byte[] timingPacket(int aCountdown){
+        byte[] packet = header(6, 0x02);
+        packet[3] = 0x00;                     // Retain
+        packet[4] = (byte) aCountdown;
+        writeChecksum(packet, 5, 5);
+        return packet;
+    }
+
+    // Result packet of a stored record
+    public synchronized byte[] resultPacket(int aIndex){
+        byte[] packet = header(v1 ? 14 : 12, 0x03);
+        System.arraycopy(dates[aIndex], 0, packet, 3, 5);
+        packet[8] = 0x00;                     // Retain
+        packet[9] = (byte) glucose[aIndex];
+        packet[10] = (byte) (glucose[aIndex] >> 8);
+        if(v1){
+            // The glucose is added to the checksum as a number
+            writeSum(packet, 11, 3, PacketEncoder.checksum(packet, 9) - 2 + glucose[aIndex]);
+        } else {
+            writeChecksum(packet, 11, 11);
+        }
+        return packet;
+    }
+
+    // End packet, sent when there are no more results
+    public synchronized byte[] endPacket(){
+        if(v1){
+            byte[] packet = header(6, 0x04);
+            writeSum(packet, 3, 3, PacketEncoder.checksum(packet, 3));
+            return packet;
+        }
+        byte[] packet = header(5, 0x05);
+        packet[3] = 0x00;                     // Retain
+        // The retain byte is part of the checksum only in V2
+        writeChecksum(packet, hasTiming ? 3 : 4, 4);
+        return packet;
+    }
+
+    private static byte[] header(int aLength, int aCategory){
+        byte[] packet = new byte[aLength];
+        packet[0] = DEVICE_START_CODE;
+        packet[1] = (byte) aLength;
+        packet[2] = (byte) aCategory;
+        return packet;
+    }
+
+    // Writes the one byte checksum of the first aLength bytes at aOffset
+    private void writeChecksum(byte[] aPacket, int aLength, int aOffset){
+        int sum = PacketEncoder.checksum(aPacket, aLength);
+        aPacket[aOffset] = (byte) (checksumQuirk ? sum + 2 : sum);
+    }
+
+    private static void writeSum(byte[] aPacket, int aOffset, int aLength, int aSum){
+        for(int i = 0; i < aLength; i++)
+            aPacket[aOffset + i] = (byte) (aSum >> (8 * i));
+    }
+}
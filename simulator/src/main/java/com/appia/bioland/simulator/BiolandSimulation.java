@@ -0,0 +1,255 @@
+package com.appia.bioland.simulator;
+
+import com.appia.bioland.BiolandInfo;
+import com.appia.bioland.BiolandMeasurement;
+import com.appia.bioland.protocols.Protocol;
+import com.appia.bioland.protocols.ProtocolCallbacks;
+import com.appia.bioland.protocols.ProtocolV1;
+import com.appia.bioland.protocols.ProtocolV2;
+import com.appia.bioland.protocols.ProtocolV31;
+import com.appia.bioland.protocols.ProtocolV32;
+import com.appia.bioland.protocols.Version;
+import com.appia.common.Clock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a whole download from a BiolandMeter through the Protocol of its version, over a
+ * BiolandLink with the latency and drops set, and tells how long it took and how many requests
+ * it needed.
+ */
+public class BiolandSimulation {
+
+    public static class Result {
+        // False if the protocol gave up or the session timed out
+        public boolean completed;
+        public String error;
+        public long durationMs;
+        public BiolandInfo info;
+        public final List<BiolandMeasurement> measurements = new ArrayList<>();
+        public int countdowns;
+        // Requests sent by the protocol, dropped ones included
+        public int requests;
+        public int dropped;
+        // Requests sent again before the previous one was answered
+        public int retries;
+        public long bytesSent;
+        public long bytesReceived;
+
+        // Results downloaded per second
+        public double getRecordsPerSecond(){
+            return durationMs == 0 ? 0 : measurements.size() * 1000.0 / durationMs;
+        }
+    }
+
+    // Told when a session started with start ends
+    public interface Listener {
+        void onFinished(Result aResult);
+    }
+
+    private final BiolandMeter meter;
+    private final ScheduledExecutorService executor;
+    private int latencyMs;
+    private double dropRate;
+    private int countdownIntervalMs = BiolandLink.DEFAULT_COUNTDOWN_INTERVAL_MS;
+    private long seed = 1;
+    private Clock clock = Clock.SYSTEM;
+
+    /**
+     * @param aMeter meter to download from
+     * @param aExecutor runs the link, a single thread keeps the packets in order. Sessions of
+     *                  different meters can share it
+     */
+    public BiolandSimulation(BiolandMeter aMeter, ScheduledExecutorService aExecutor){
+        meter = aMeter;
+        executor = aExecutor;
+    }
+
+    public BiolandSimulation setLatencyMs(int aLatencyMs){
+        latencyMs = aLatencyMs;
+        return this;
+    }
+
+    public BiolandSimulation setDropRate(double aDropRate){
+        dropRate = aDropRate;
+        return this;
+    }
+
+    public BiolandSimulation setCountdownIntervalMs(int aIntervalMs){
+        countdownIntervalMs = aIntervalMs;
+        return this;
+    }
+
+    public BiolandSimulation setSeed(long aSeed){
+        seed = aSeed;
+        return this;
+    }
+
+    // Time source of the protocol of each session, for the dates on its requests and its pacing
+    public BiolandSimulation setClock(Clock aClock){
+        clock = aClock;
+        return this;
+    }
+
+    /**
+     * Connects, downloads every stored result and disconnects.
+     * @param aTimeoutMs longest time to wait for the end packet
+     */
+    public Result run(long aTimeoutMs) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final Result[] finished = new Result[1];
+        start(aTimeoutMs, new Listener() {
+            @Override
+            public void onFinished(Result aResult) {
+                finished[0] = aResult;
+                done.countDown();
+            }
+        });
+        done.await();
+        return finished[0];
+    }
+
+    /**
+     * Connects and downloads every stored result without waiting for it, so a single executor
+     * can run many sessions. The listener is told once, on the executor, after the protocol was
+     * disconnected.
+     * @param aTimeoutMs longest time to wait for the end packet
+     * @param aListener
+     */
+    public void start(long aTimeoutMs, Listener aListener){
+        final Session session = new Session(aListener);
+        final Result result = session.result;
+        session.link = new BiolandLink(meter, new ProtocolCallbacks() {
+            @Override
+            public void sendData(byte[] bytes) {
+            }
+
+            @Override
+            public void onCountdownReceived(int aValue) {
+                synchronized (result){
+                    result.countdowns++;
+                }
+            }
+
+            @Override
+            public void onMeasurementsReceived(ArrayList<BiolandMeasurement> aMeasurements) {
+                synchronized (result){
+                    result.measurements.addAll(aMeasurements);
+                }
+            }
+
+            @Override
+            public void onDeviceInfoReceived(BiolandInfo aInfo) {
+                synchronized (result){
+                    result.info = aInfo;
+                }
+            }
+
+            @Override
+            public void onProtocolError(String aMessage) {
+                synchronized (result){
+                    if(result.error == null)
+                        result.error = aMessage;
+                }
+                // The protocol holds its lock here, disconnect it after
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        session.end(null);
+                    }
+                });
+            }
+        }, executor);
+        BiolandLink link = session.link;
+        link.setLatencyMs(latencyMs);
+        link.setDropRate(dropRate);
+        link.setCountdownIntervalMs(countdownIntervalMs);
+        link.setSeed(seed);
+        link.setEndListener(new BiolandLink.EndListener() {
+            @Override
+            public void onEndDelivered() {
+                session.end(null);
+            }
+        });
+
+        meter.reset();
+        final Protocol protocol = createProtocol(meter.getVersion(), link);
+        protocol.setClock(clock);
+        session.protocol = protocol;
+        link.setReceiver(new BiolandLink.Receiver() {
+            @Override
+            public void onDataReceived(byte[] aBytes) {
+                protocol.onDataReceived(aBytes);
+            }
+        });
+
+        session.start = System.nanoTime();
+        session.timeout = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                session.end("Timed out");
+            }
+        }, aTimeoutMs, TimeUnit.MILLISECONDS);
+        protocol.connect();
+    }
+
+    // State of a session started with start, ended once by the end packet, an error or the timeout
+    private static class Session {
+        final Result result = new Result();
+        final Listener listener;
+        final AtomicBoolean ended = new AtomicBoolean();
+        volatile BiolandLink link;
+        volatile Protocol protocol;
+        volatile ScheduledFuture<?> timeout;
+        volatile long start;
+
+        Session(Listener aListener){
+            listener = aListener;
+        }
+
+        // aError is null unless the session timed out, protocol errors are already in the result
+        void end(String aError){
+            if(!ended.compareAndSet(false, true))
+                return;
+            long duration = System.nanoTime() - start;
+            ScheduledFuture<?> pending = timeout;
+            if(pending != null)
+                pending.cancel(false);
+            protocol.disconnect();
+
+            synchronized (result){
+                if(result.error == null)
+                    result.error = aError;
+                result.completed = result.error == null;
+                result.durationMs = TimeUnit.NANOSECONDS.toMillis(duration);
+                result.requests = link.getSent();
+                result.dropped = link.getDropped();
+                result.retries = link.getRetries();
+                result.bytesSent = link.getBytesSent();
+                result.bytesReceived = link.getBytesDelivered();
+            }
+            listener.onFinished(result);
+        }
+    }
+
+    /**
+     * Creates the Protocol of a version, as the ProtocolNegotiator does once it knows it.
+     * @param aVersion
+     * @param aCallbacks
+     */
+    public static Protocol createProtocol(Version aVersion, ProtocolCallbacks aCallbacks){
+        if(aVersion.equals(Version.V1_0))
+            return new ProtocolV1(aCallbacks);
+        if(aVersion.equals(Version.V2_0))
+            return new ProtocolV2(aCallbacks);
+        if(aVersion.equals(Version.V3_1))
+            return new ProtocolV31(aCallbacks);
+        return new ProtocolV32(aCallbacks);
+    }
+}
@@ -0,0 +1,191 @@
+package com.appia.onetouch.simulator;
+
+import com.appia.onetouch.OnetouchMeasurement;
+import com.appia.onetouch.protocol.ProtocolCallbacks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands in for the BLE connection between an Onetouch Protocol and an OnetouchMeter, in place
+ * of OnetouchManager.sendData.
+ *
+ * It is given to the Protocol as its callbacks. Every fragment or ACK written by either side
+ * reaches the other one after the latency set, on the executor, and is counted. The Protocol
+ * is not thread safe, so everything it does must run on the executor, connect included.
+ */
+public class OnetouchLink implements ProtocolCallbacks {
+
+    // Where the fragments of the meter are delivered, usually Protocol.onDataReceived
+    public interface Receiver {
+        void onDataReceived(byte[] aBytes);
+    }
+
+    // Told when nothing is in flight in either direction, the sync is over or stalled
+    public interface IdleListener {
+        void onIdle();
+    }
+
+    private final OnetouchMeter meter;
+    private final ProtocolCallbacks listener;
+    private final ScheduledExecutorService executor;
+    private volatile Receiver receiver;
+    private volatile IdleListener idleListener;
+    private volatile int latencyMs;
+
+    // Packets scheduled and not delivered yet
+    private int inFlight;
+    private int fragmentsToMeter;
+    private int acksToMeter;
+    private long bytesToMeter;
+    private int fragmentsToPhone;
+    private int acksToPhone;
+    private long bytesToPhone;
+
+    /**
+     * @param aMeter meter answering the requests
+     * @param aListener gets the callbacks of the Protocol other than sendData, may be null
+     * @param aExecutor delivers the packets, it must have a single thread
+     */
+    public OnetouchLink(OnetouchMeter aMeter, ProtocolCallbacks aListener, ScheduledExecutorService aExecutor){
+        meter = aMeter;
+        listener = aListener;
+        executor = aExecutor;
+        meter.setSender(new OnetouchMeter.Sender() {
+            @Override
+            public void sendData(byte[] aBytes) {
+                toPhone(aBytes);
+            }
+        });
+    }
+
+    public void setReceiver(Receiver aReceiver){
+        receiver = aReceiver;
+    }
+
+    public void setIdleListener(IdleListener aListener){
+        idleListener = aListener;
+    }
+
+    // Time for each fragment or ACK to reach the other side
+    public void setLatencyMs(int aLatencyMs){
+        latencyMs = Math.max(0, aLatencyMs);
+    }
+
+    public OnetouchMeter getMeter(){
+        return meter;
+    }
+
+    /**
+     * Runs aTask on the executor as one more packet in flight, so the link is not idle before
+     * it runs. Used to start the Protocol.
+     */
+    public void post(final Runnable aTask){
+        synchronized (this){
+            inFlight++;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                aTask.run();
+                delivered();
+            }
+        });
+    }
+
+    // Fragments of requests sent by the phone
+    public synchronized int getFragmentsToMeter(){
+        return fragmentsToMeter;
+    }
+
+    public synchronized int getAcksToMeter(){
+        return acksToMeter;
+    }
+
+    public synchronized long getBytesToMeter(){
+        return bytesToMeter;
+    }
+
+    // Fragments of responses sent by the meter
+    public synchronized int getFragmentsToPhone(){
+        return fragmentsToPhone;
+    }
+
+    public synchronized int getAcksToPhone(){
+        return acksToPhone;
+    }
+
+    public synchronized long getBytesToPhone(){
+        return bytesToPhone;
+    }
+
+    /**********************************************************************************************/
+    /*                                    Protocol callbacks                                      */
+
+    public void sendData(final byte[] bytes){
+        // Bleuart reuses the array
+        final byte[] packet = Arrays.copyOf(bytes, bytes.length);
+        synchronized (this){
+            if(isAck(packet))
+                acksToMeter++;
+            else
+                fragmentsToMeter++;
+            bytesToMeter += packet.length;
+            inFlight++;
+        }
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                meter.onDataReceived(packet);
+                delivered();
+            }
+        }, latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void onMeasurementsReceived(ArrayList<OnetouchMeasurement> aMeasurements){
+        if(listener != null)
+            listener.onMeasurementsReceived(aMeasurements);
+    }
+
+    public void onProtocolError(String aMessage){
+        if(listener != null)
+            listener.onProtocolError(aMessage);
+    }
+
+    private void toPhone(byte[] aBytes){
+        final byte[] packet = Arrays.copyOf(aBytes, aBytes.length);
+        synchronized (this){
+            if(isAck(packet))
+                acksToPhone++;
+            else
+                fragmentsToPhone++;
+            bytesToPhone += packet.length;
+            inFlight++;
+        }
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Receiver current = receiver;
+                if(current != null)
+                    current.onDataReceived(packet);
+                delivered();
+            }
+        }, latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void delivered(){
+        boolean idle;
+        synchronized (this){
+            idle = --inFlight == 0;
+        }
+        IdleListener current = idleListener;
+        if(idle && current != null)
+            current.onIdle();
+    }
+
+    private static boolean isAck(byte[] aPacket){
+        return aPacket.length == 1 && (aPacket[0] & 0xF0) == 0x80;
+    }
+}
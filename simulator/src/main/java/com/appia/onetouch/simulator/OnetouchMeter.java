@@ -0,0 +1,355 @@
+package com.appia.onetouch.simulator;
+
+import com.appia.common.Clock;
+import com.appia.onetouch.protocol.Protocol;
+import com.appia.onetouch.protocol.bleuart.Bleuart;
+import com.appia.onetouch.protocol.bleuart.BleuartCallbacks;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Device side of the Onetouch Select Plus Flex.
+ *
+ * It speaks the same Bleuart framing as the phone, fragments with their ACKs, and answers the
+ * requests inside the 0x02 ... 0x03 envelope with their CRC-16: time get and set, highest record
+ * ID, record count, records by index and by ID, and the glucose limits. Requests with a wrong
+ * CRC, length or envelope are ignored.
+ *
+ * The records get consecutive IDs from 1. Index 0 is the latest one, and once the memory is full
+ * the oldest ones are overwritten, so asking for their ID gets an empty answer.
+ * Not thread safe, OnetouchLink calls it from a single thread.
+ */
+public class OnetouchMeter implements BleuartCallbacks {
+
+    // Sends fragments and ACKs to the phone
+    public interface Sender {
+        void sendData(byte[] aBytes);
+    }
+
+    // Records kept before the oldest ones are overwritten
+    public final static int DEFAULT_CAPACITY = 500;
+    // Records are sent with IDs and counts as 16 bit numbers
+    public final static int MAX_CAPACITY = Short.MAX_VALUE;
+
+    // Year 2000 in UNIX time, as the Protocol counts it
+    private final static int DEVICE_TIME_OFFSET = 946684799;
+
+    private final static byte STX = 0x02;
+    private final static byte ETX = 0x03;
+    private final static byte REQUEST_MARK = 0x04;
+    private final static byte RESPONSE_MARK = 0x06;
+    // Start, length, request mark, end and CRC
+    private final static int REQUEST_OVERHEAD = 7;
+    private final static int PAYLOAD_BEGIN = 4;
+
+    private final static int COMMAND_TIME = 0x20;
+    private final static int COMMAND_PARAMETER = 0x0A;
+    private final static int COMMAND_RECORD_COUNT = 0x27;
+    private final static int COMMAND_RECORD_BY_INDEX = 0x31;
+    private final static int COMMAND_RECORD_BY_ID = 0xB3;
+    private final static int PARAMETER_HIGHEST_ID = 0x06;
+    private final static int PARAMETER_LOW_LIMIT = 0x09;
+    private final static int PARAMETER_HIGH_LIMIT = 0x0A;
+
+    private final Bleuart bleuart;
+    private Sender sender;
+    private Clock clock = Clock.SYSTEM;
+    // Difference between the meter time and the clock, changed when the phone sets the time
+    private long timeOffsetSeconds;
+
+    // Ring of records, the oldest one at head
+    private int capacity;
+    private int[] times;
+    private short[] values;
+    private short[] errors;
+    private int head;
+    private int count;
+    private int highestId;
+
+    private short lowLimit = 70;
+    private short highLimit = 180;
+
+    private int requests;
+    private int rejected;
+    private int readsByIndex;
+    private int readsById;
+
+    /**
+     * @param aMaxPacketSize size of the BLE packets, header included, as given to the Protocol
+     */
+    public OnetouchMeter(int aMaxPacketSize){
+        bleuart = new Bleuart(this, aMaxPacketSize);
+        setCapacity(DEFAULT_CAPACITY);
+    }
+
+    public void setSender(Sender aSender){
+        sender = aSender;
+    }
+
+    // Time source of the meter clock
+    public void setClock(Clock aClock){
+        clock = aClock;
+    }
+
+    public void setMaxPacketSize(int aMaxPacketSize){
+        bleuart.setMaxPacketSize(aMaxPacketSize);
+    }
+
+    /**
+     * Changes how many records the memory holds, keeping the latest ones.
+     * @param aCapacity from 1 to MAX_CAPACITY
+     */
+    public void setCapacity(int aCapacity){
+        if(aCapacity < 1 || aCapacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY);
+        int kept = Math.min(count, aCapacity);
+        int[] newTimes = new int[aCapacity];
+        short[] newValues = new short[aCapacity];
+        short[] newErrors = new short[aCapacity];
+        for(int i = 0; i < kept; i++){
+            int from = slot(count - kept + i);
+            newTimes[i] = times[from];
+            newValues[i] = values[from];
+            newErrors[i] = errors[from];
+        }
+        capacity = aCapacity;
+        times = newTimes;
+        values = newValues;
+        errors = newErrors;
+        head = 0;
+        count = kept;
+    }
+
+    /**
+     * Stores a measurement as the latest one, with the next ID.
+     * @param aTime meter time of the measurement, seconds since 2000
+     * @param aValue glucose in mg/dL
+     * @param aError error code, 0 if none
+     * @return the ID of the record
+     */
+    public int addRecord(int aTime, int aValue, int aError){
+        if(highestId == Short.MAX_VALUE)
+            throw new IllegalStateException("Record IDs are exhausted, erase the memory");
+        int at;
+        if(count == capacity){
+            at = head;
+            head = (head + 1) % capacity;
+        } else {
+            at = slot(count);
+            count++;
+        }
+        times[at] = aTime;
+        values[at] = (short) aValue;
+        errors[at] = (short) aError;
+        return ++highestId;
+    }
+
+    /**
+     * Stores aCount measurements taken an hour apart, with glucose values that change from one
+     * to the next. Always the same ones, so sessions can be compared.
+     */
+    public void addRecords(int aCount){
+        for(int i = 0; i < aCount; i++){
+            int id = highestId + 1;
+            addRecord(20 * 365 * 24 * 3600 + id * 3600, 70 + (id * 37) % 200, 0);
+        }
+    }
+
+    // Erases the memory, the IDs start again from 1
+    public void erase(){
+        head = 0;
+        count = 0;
+        highestId = 0;
+    }
+
+    public int getRecordCount(){
+        return count;
+    }
+
+    public int getHighestId(){
+        return highestId;
+    }
+
+    // Glucose of the record with aId, in mg/dL
+    public int getValue(int aId){
+        return values[slotOfId(aId)];
+    }
+
+    // Valid requests received
+    public int getRequests(){
+        return requests;
+    }
+
+    // Requests ignored for their CRC, length or envelope
+    public int getRejected(){
+        return rejected;
+    }
+
+    public int getReadsByIndex(){
+        return readsByIndex;
+    }
+
+    public int getReadsById(){
+        return readsById;
+    }
+
+    // Meter time, seconds since 2000
+    public int getTime(){
+        return (int) (clock.currentTimeMillis() / 1000 - DEVICE_TIME_OFFSET + timeOffsetSeconds);
+    }
+
+    // Drops any packet half sent or received, as on a disconnection
+    public void reset(){
+        bleuart.reset();
+    }
+
+    // Called with every fragment or ACK sent by the phone
+    public void onDataReceived(byte[] aBytes){
+        bleuart.onDataReceived(aBytes);
+    }
+
+    /**********************************************************************************************/
+    /*                                      Bleuart Callbacks                                     */
+
+    public void sendData(byte[] aBytes){
+        if(sender != null)
+            sender.sendData(aBytes);
+    }
+
+    public void onPacketReceived(ByteBuffer aPacket, int aCrc){
+        int length = aPacket.limit();
+        if(length < REQUEST_OVERHEAD
+                || aPacket.get(0) != STX
+                || (aPacket.getShort(1) & 0xFFFF) != length
+                || aPacket.get(3) != REQUEST_MARK
+                || aPacket.get(length - 3) != ETX
+                || (aPacket.getShort(length - 2) & 0xFFFF) != aCrc){
+            rejected++;
+            return;
+        }
+        requests++;
+        handleRequest(aPacket, length - REQUEST_OVERHEAD);
+    }
+
+    private void handleRequest(ByteBuffer aPacket, int aPayloadLength){
+        int command = aPacket.get(PAYLOAD_BEGIN) & 0xFF;
+        int operation = aPayloadLength > 1 ? aPacket.get(PAYLOAD_BEGIN + 1) & 0xFF : -1;
+        switch(command){
+            case COMMAND_TIME:
+                if(operation == 0x02){
+                    respond(le(getTime(), 4));
+                } else if(operation == 0x01 && aPayloadLength == 6){
+                    long time = aPacket.getInt(PAYLOAD_BEGIN + 2) & 0xFFFFFFFFL;
+                    timeOffsetSeconds += time - getTime();
+                    respond(new byte[0]);
+                }
+                break;
+            case COMMAND_PARAMETER:
+                handleParameter(aPacket, operation, aPayloadLength);
+                break;
+            case COMMAND_RECORD_COUNT:
+                respond(le(count, 2));
+                break;
+            case COMMAND_RECORD_BY_INDEX:
+                readsByIndex++;
+                respondByIndex(aPacket.getShort(PAYLOAD_BEGIN + 2) & 0xFFFF);
+                break;
+            case COMMAND_RECORD_BY_ID:
+                readsById++;
+                respondById(aPacket.getShort(PAYLOAD_BEGIN + 1) & 0xFFFF);
+                break;
+            default:
+                // Unknown commands are not answered
+                break;
+        }
+    }
+
+    private void handleParameter(ByteBuffer aPacket, int aOperation, int aPayloadLength){
+        int parameter = aPayloadLength > 2 ? aPacket.get(PAYLOAD_BEGIN + 2) & 0xFF : -1;
+        if(aOperation == 0x02){
+            if(parameter == PARAMETER_HIGHEST_ID)
+                respond(le(highestId, 4));
+            else if(parameter == PARAMETER_LOW_LIMIT)
+                respond(le(lowLimit, 4));
+            else if(parameter == PARAMETER_HIGH_LIMIT)
+                respond(le(highLimit, 4));
+        } else if(aOperation == 0x01 && aPayloadLength == 7){
+            short limit = aPacket.getShort(PAYLOAD_BEGIN + 3);
+            if(parameter == PARAMETER_LOW_LIMIT)
+                lowLimit = limit;
+            else if(parameter == PARAMETER_HIGH_LIMIT)
+                highLimit = limit;
+            else
+                return;
+            respond(new byte[0]);
+        }
+    }
+
+    // Record at aIndex, 0 being the latest one
+    private void respondByIndex(int aIndex){
+        if(aIndex >= count){
+            respond(new byte[0]);
+            return;
+        }
+        int at = slot(count - 1 - aIndex);
+        int id = highestId - aIndex;
+        byte[] payload = new byte[16];
+        put(payload, 0, aIndex, 2);
+        put(payload, 3, id, 2);
+        put(payload, 5, times[at], 4);
+        put(payload, 9, values[at], 2);
+        put(payload, 13, errors[at], 2);
+        respond(payload);
+    }
+
+    private void respondById(int aId){
+        int at = slotOfId(aId);
+        if(at < 0){
+            respond(new byte[0]);
+            return;
+        }
+        byte[] payload = new byte[11];
+        put(payload, 0, times[at], 4);
+        put(payload, 4, values[at], 2);
+        put(payload, 9, errors[at], 2);
+        respond(payload);
+    }
+
+    // Wraps the payload in the envelope and sends it through Bleuart
+    private void respond(byte[] aPayload){
+        int length = aPayload.length + REQUEST_OVERHEAD + 1;
+        byte[] packet = new byte[length];
+        packet[0] = STX;
+        put(packet, 1, length, 2);
+        packet[3] = REQUEST_MARK;
+        packet[4] = RESPONSE_MARK;
+        System.arraycopy(aPayload, 0, packet, 5, aPayload.length);
+        packet[length - 3] = ETX;
+        Protocol.appendCRC16(packet, length - 2);
+        bleuart.sendPacket(packet);
+    }
+
+    // Position in the ring of the record aOffset places after the oldest one
+    private int slot(int aOffset){
+        return (head + aOffset) % capacity;
+    }
+
+    // Position in the ring of the record with aId, -1 if it is not kept
+    private int slotOfId(int aId){
+        int index = highestId - aId;
+        if(aId < 1 || index < 0 || index >= count)
+            return -1;
+        return slot(count - 1 - index);
+    }
+
+    private static byte[] le(int aValue, int aLength){
+        byte[] bytes = new byte[aLength];
+        put(bytes, 0, aValue, aLength);
+        return bytes;
+    }
+
+    private static void put(byte[] aOut, int aOffset, int aValue, int aLength){
+        for(int i = 0; i < aLength; i++)
+            aOut[aOffset + i] = (byte) (aValue >> (8 * i));
+    }
+}
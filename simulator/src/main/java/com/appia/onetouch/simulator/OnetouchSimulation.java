@@ -0,0 +1,233 @@
+package com.appia.onetouch.simulator;
+
+import com.appia.onetouch.OnetouchMeasurement;
+import com.appia.onetouch.protocol.Protocol;
+import com.appia.onetouch.protocol.ProtocolCallbacks;
+import com.appia.onetouch.protocol.SyncCursorStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a sync against an OnetouchMeter through the Onetouch Protocol, over an OnetouchLink with
+ * the packet size and latency set, and tells how long it took and how many fragments it needed.
+ *
+ * Without a cursor store, or with no cursor for the device, it is a full sync by index. With a
+ * cursor left by a previous run only the records after it are read, by ID.
+ */
+public class OnetouchSimulation {
+
+    public static class Result {
+        // False if the sync did not finish in time or the protocol reported an error
+        public boolean completed;
+        public String error;
+        public long durationMs;
+        public final List<OnetouchMeasurement> measurements = new ArrayList<>();
+        public int readsByIndex;
+        public int readsById;
+        public int fragmentsToMeter;
+        public int acksToMeter;
+        public long bytesToMeter;
+        public int fragmentsToPhone;
+        public int acksToPhone;
+        public long bytesToPhone;
+
+        // Records downloaded per second
+        public double getRecordsPerSecond(){
+            return durationMs == 0 ? 0 : measurements.size() * 1000.0 / durationMs;
+        }
+    }
+
+    // Told when a session started with start ends
+    public interface Listener {
+        void onFinished(Result aResult);
+    }
+
+    public final static String DEFAULT_DEVICE = "00:00:00:00:00:01";
+
+    private final OnetouchMeter meter;
+    private final ScheduledExecutorService executor;
+    private int maxPacketSize = 20;
+    private int latencyMs;
+    private int bulkSyncWindow = Protocol.DEFAULT_BULK_SYNC_WINDOW;
+    private SyncCursorStore cursorStore;
+    private String device = DEFAULT_DEVICE;
+
+    /**
+     * @param aMeter meter to sync
+     * @param aExecutor runs the link and the protocol, it must have a single thread. Sessions of
+     *                  different meters can share it
+     */
+    public OnetouchSimulation(OnetouchMeter aMeter, ScheduledExecutorService aExecutor){
+        meter = aMeter;
+        executor = aExecutor;
+    }
+
+    // Size of the BLE packets, header included, usually the MTU minus 3
+    public OnetouchSimulation setMaxPacketSize(int aMaxPacketSize){
+        maxPacketSize = aMaxPacketSize;
+        return this;
+    }
+
+    public OnetouchSimulation setLatencyMs(int aLatencyMs){
+        latencyMs = aLatencyMs;
+        return this;
+    }
+
+    public OnetouchSimulation setBulkSyncWindow(int aWindow){
+        bulkSyncWindow = aWindow;
+        return this;
+    }
+
+    // Keeps the sync cursor between runs, for delta syncs
+    public OnetouchSimulation setSyncCursorStore(SyncCursorStore aStore, String aDevice){
+        cursorStore = aStore;
+        device = aDevice;
+        return this;
+    }
+
+    /**
+     * Connects, syncs and disconnects.
+     * @param aTimeoutMs longest time to wait for the link to go idle
+     */
+    public Result run(long aTimeoutMs) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final Result[] finished = new Result[1];
+        start(aTimeoutMs, new Listener() {
+            @Override
+            public void onFinished(Result aResult) {
+                finished[0] = aResult;
+                done.countDown();
+            }
+        });
+        done.await();
+        return finished[0];
+    }
+
+    /**
+     * Connects and syncs without waiting for it, so a single executor can run many sessions. The
+     * listener is told once, on the executor, after the protocol was disconnected.
+     * @param aTimeoutMs longest time to wait for the link to go idle
+     * @param aListener
+     */
+    public void start(long aTimeoutMs, Listener aListener){
+        final Session session = new Session(aListener);
+        final Result result = session.result;
+        session.link = new OnetouchLink(meter, new ProtocolCallbacks() {
+            @Override
+            public void sendData(byte[] bytes) {
+            }
+
+            @Override
+            public void onMeasurementsReceived(ArrayList<OnetouchMeasurement> aMeasurements) {
+                synchronized (result){
+                    result.measurements.addAll(aMeasurements);
+                }
+            }
+
+            @Override
+            public void onProtocolError(String aMessage) {
+                synchronized (result){
+                    if(result.error == null)
+                        result.error = aMessage;
+                }
+                // Called from inside the protocol, disconnect it after
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        session.end(null);
+                    }
+                });
+            }
+        }, executor);
+        OnetouchLink link = session.link;
+        link.setLatencyMs(latencyMs);
+        link.setIdleListener(new OnetouchLink.IdleListener() {
+            @Override
+            public void onIdle() {
+                session.end(null);
+            }
+        });
+
+        final Protocol protocol = new Protocol(link, maxPacketSize);
+        protocol.setBulkSyncWindow(bulkSyncWindow);
+        protocol.setSyncCursorStore(cursorStore);
+        // Its timeouts run on the executor too, the session is cancelled first on the idle link
+        protocol.setScheduler(executor);
+        session.protocol = protocol;
+        link.setReceiver(new OnetouchLink.Receiver() {
+            @Override
+            public void onDataReceived(byte[] aBytes) {
+                protocol.onDataReceived(aBytes);
+            }
+        });
+
+        session.readsByIndex = meter.getReadsByIndex();
+        session.readsById = meter.getReadsById();
+        session.start = System.nanoTime();
+        session.timeout = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                session.end("Timed out");
+            }
+        }, aTimeoutMs, TimeUnit.MILLISECONDS);
+        link.post(new Runnable() {
+            @Override
+            public void run() {
+                meter.reset();
+                meter.setMaxPacketSize(maxPacketSize);
+                protocol.connect(device);
+            }
+        });
+    }
+
+    // State of a session started with start, ended once when the link goes idle, on an error or
+    // on the timeout. Everything but the constructor runs on the executor.
+    private class Session {
+        final Result result = new Result();
+        final Listener listener;
+        boolean ended;
+        OnetouchLink link;
+        Protocol protocol;
+        volatile ScheduledFuture<?> timeout;
+        long start;
+        int readsByIndex;
+        int readsById;
+
+        Session(Listener aListener){
+            listener = aListener;
+        }
+
+        // aError is null unless the session timed out, protocol errors are already in the result
+        void end(String aError){
+            if(ended)
+                return;
+            ended = true;
+            long duration = System.nanoTime() - start;
+            ScheduledFuture<?> pending = timeout;
+            if(pending != null)
+                pending.cancel(false);
+            protocol.disconnect();
+
+            synchronized (result){
+                if(result.error == null)
+                    result.error = aError;
+                result.completed = result.error == null;
+                result.durationMs = TimeUnit.NANOSECONDS.toMillis(duration);
+                result.readsByIndex = meter.getReadsByIndex() - readsByIndex;
+                result.readsById = meter.getReadsById() - readsById;
+                result.fragmentsToMeter = link.getFragmentsToMeter();
+                result.acksToMeter = link.getAcksToMeter();
+                result.bytesToMeter = link.getBytesToMeter();
+                result.fragmentsToPhone = link.getFragmentsToPhone();
+                result.acksToPhone = link.getAcksToPhone();
+                result.bytesToPhone = link.getBytesToPhone();
+            }
+            listener.onFinished(result);
+        }
+    }
+}
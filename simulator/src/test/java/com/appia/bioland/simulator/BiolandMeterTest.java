@@ -0,0 +1,148 @@
+package com.appia.bioland.simulator;
+
+import com.appia.bioland.protocols.Protocol;
+import com.appia.bioland.protocols.ProtocolNegotiator;
+import com.appia.bioland.protocols.ProtocolV1;
+import com.appia.bioland.protocols.ProtocolV2;
+import com.appia.bioland.protocols.ProtocolV31;
+import com.appia.bioland.protocols.ProtocolV32;
+import com.appia.bioland.protocols.Version;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BiolandMeterTest {
+
+    private final static Version[] VERSIONS = {Version.V1_0, Version.V2_0, Version.V3_1, Version.V3_2};
+
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void downloadsEveryRecordInEveryVersion() throws InterruptedException {
+        for (Version version : VERSIONS) {
+            BiolandMeter meter = new BiolandMeter(version);
+            meter.addRecords(20);
+            BiolandSimulation.Result result = new BiolandSimulation(meter, executor)
+                    .setLatencyMs(2)
+                    .setCountdownIntervalMs(1)
+                    .run(10000);
+
+            assertTrue(version + ": " + result.error, result.completed);
+            assertEquals(version.get(), 20, result.measurements.size());
+            for (int i = 0; i < 20; i++)
+                assertEquals(meter.getGlucose(i), Math.round(result.measurements.get(i).mGlucose * 18));
+            // Info request, one request per result after the pushed one in V3.x, and the end
+            int pushed = version.compareTo(Version.V3_1) >= 0 ? 1 : 0;
+            assertEquals(version.get(), 1 + 20 - pushed + 1, result.requests);
+            assertEquals(version.get(), pushed == 1 ? 6 : 0, result.countdowns);
+        }
+    }
+
+    @Test
+    public void endsWithoutRecords() throws InterruptedException {
+        BiolandMeter meter = new BiolandMeter(Version.V2_0);
+        BiolandSimulation.Result result = new BiolandSimulation(meter, executor).run(5000);
+
+        assertTrue(result.error, result.completed);
+        assertEquals(0, result.measurements.size());
+        assertEquals(2, result.requests);
+    }
+
+    @Test
+    public void dropsAreRetried() throws InterruptedException {
+        BiolandMeter meter = new BiolandMeter(Version.V3_2);
+        meter.addRecords(10);
+        meter.setCountdown(1);
+        BiolandSimulation.Result result = new BiolandSimulation(meter, executor)
+                .setLatencyMs(1)
+                .setCountdownIntervalMs(1)
+                .setDropRate(0.2)
+                .setSeed(3)
+                .run(20000);
+
+        assertTrue(result.error, result.completed);
+        assertEquals(10, result.measurements.size());
+        assertTrue(result.dropped > 0);
+        // Only the dropped requests were sent again
+        assertEquals(1 + 9 + 1 + result.dropped, result.requests);
+    }
+
+    @Test
+    public void quirkyChecksumsAreAccepted() throws Protocol.IllegalLengthException, Protocol.IllegalContentException {
+        BiolandMeter meter = new BiolandMeter(Version.V3_2);
+        meter.setChecksumQuirk(true);
+        // The minute takes every value, so does the checksum
+        for (int minute = 0; minute < 256; minute++)
+            meter.addRecord(2020, 1, 1, 0, minute, 100);
+
+        for (int i = 0; i < 256; i++)
+            new ProtocolV32.ResultPacketV32(meter.resultPacket(i));
+        new ProtocolV32.InfoPacketV32(meter.infoPacket());
+        new ProtocolV32.EndPacket(meter.endPacket());
+    }
+
+    @Test
+    public void packetsMatchTheDecoders() throws Protocol.IllegalLengthException, Protocol.IllegalContentException {
+        BiolandMeter v1 = new BiolandMeter(Version.V1_0);
+        v1.addRecords(3);
+        new ProtocolV1.InfoPacketV1(v1.infoPacket());
+        new ProtocolV1.ResultPacketV1(v1.resultPacket(2));
+        new ProtocolV1.EndPacket(v1.endPacket());
+
+        BiolandMeter v2 = new BiolandMeter(Version.V2_0);
+        v2.addRecords(3);
+        new ProtocolV2.InfoPacketV2(v2.infoPacket());
+        new ProtocolV2.ResultPacketV2(v2.resultPacket(2));
+        new ProtocolV2.EndPacket(v2.endPacket());
+
+        BiolandMeter v31 = new BiolandMeter(Version.V3_1);
+        v31.addRecords(3);
+        new ProtocolV31.InfoPacketV31(v31.infoPacket());
+        new ProtocolV31.ResultPacketV31(v31.resultPacket(2));
+        new ProtocolV31.EndPacket(v31.endPacket());
+        new ProtocolV31.TimingPacket(v31.timingPacket(3));
+
+        // The negotiator tells each version from its info packet
+        for (Version version : VERSIONS)
+            assertEquals(version, ProtocolNegotiator.versionOf(new BiolandMeter(version).infoPacket()));
+    }
+
+    @Test
+    public void requestsOfOtherVersionsAreIgnored() {
+        BiolandMeter v1 = new BiolandMeter(Version.V1_0);
+        BiolandMeter v32 = new BiolandMeter(Version.V3_2);
+        byte[] requestV3 = new ProtocolV32.AppInfoPacket(Calendar.getInstance()).to_bytes();
+        byte[] requestV1 = new ProtocolV1.AppReplyPacket(Calendar.getInstance()).to_bytes();
+
+        assertNull(v1.answer(requestV3));
+        assertNull(v32.answer(requestV1));
+        assertEquals(1, v1.getRejected());
+
+        // A wrong checksum is not answered either
+        requestV3[requestV3.length - 1]++;
+        assertNull(v32.answer(requestV3));
+        requestV3[requestV3.length - 1]--;
+        assertEquals(18, v32.answer(requestV3).length);
+        assertEquals(2, v32.getRejected());
+        assertEquals(1, v32.getRequests());
+    }
+}
@@ -0,0 +1,145 @@
+package com.appia.onetouch.simulator;
+
+import com.appia.common.Clock;
+import com.appia.onetouch.OnetouchMeasurement;
+import com.appia.onetouch.protocol.SyncCursorStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OnetouchMeterTest {
+
+    private final static String DEVICE = "00:11:22:33:44:55";
+
+    private static class MemoryCursorStore implements SyncCursorStore {
+        final Map<String, Integer> cursors = new HashMap<>();
+        public int load(String aDevice) {
+            Integer cursor = cursors.get(aDevice);
+            return cursor == null ? NO_CURSOR : cursor;
+        }
+        public void save(String aDevice, int aHighestID) {
+            cursors.put(aDevice, aHighestID);
+        }
+        public void clear(String aDevice) {
+            cursors.remove(aDevice);
+        }
+    }
+
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /* Records from aFirstID to the latest one were received in order. */
+    private static void assertReceived(OnetouchMeter aMeter, OnetouchSimulation.Result aResult, int aFirstID) {
+        assertTrue(aResult.error, aResult.completed);
+        assertEquals(aMeter.getHighestId() - aFirstID + 1, aResult.measurements.size());
+        for (int i = 0; i < aResult.measurements.size(); i++) {
+            OnetouchMeasurement measurement = aResult.measurements.get(i);
+            assertEquals(Integer.toString(aFirstID + i), measurement.mId);
+            assertEquals(aMeter.getValue(aFirstID + i), measurement.mGlucose, 0.0);
+        }
+    }
+
+    @Test
+    public void fullSyncReadsEveryRecord() throws InterruptedException {
+        OnetouchMeter meter = new OnetouchMeter(20);
+        meter.setCapacity(2000);
+        meter.addRecords(1500);
+        OnetouchSimulation.Result result = new OnetouchSimulation(meter, executor).run(20000);
+
+        assertReceived(meter, result, 1);
+        assertEquals(1500, result.readsByIndex);
+        assertEquals(0, result.readsById);
+        // Every fragment is acknowledged
+        assertEquals(result.fragmentsToPhone, result.acksToMeter);
+        assertEquals(result.fragmentsToMeter, result.acksToPhone);
+    }
+
+    @Test
+    public void deltaSyncReadsOnlyNewRecords() throws InterruptedException {
+        MemoryCursorStore store = new MemoryCursorStore();
+        OnetouchMeter meter = new OnetouchMeter(20);
+        meter.addRecords(50);
+        OnetouchSimulation simulation = new OnetouchSimulation(meter, executor).setSyncCursorStore(store, DEVICE);
+        assertReceived(meter, simulation.run(5000), 1);
+        assertEquals(Integer.valueOf(50), store.cursors.get(DEVICE));
+
+        meter.addRecords(5);
+        OnetouchSimulation.Result result = simulation.run(5000);
+        assertReceived(meter, result, 51);
+        assertEquals(0, result.readsByIndex);
+        assertEquals(5, result.readsById);
+    }
+
+    @Test
+    public void largerPacketsNeedFewerFragments() throws InterruptedException {
+        OnetouchMeter meter = new OnetouchMeter(20);
+        meter.addRecords(100);
+        OnetouchSimulation.Result small = new OnetouchSimulation(meter, executor).setMaxPacketSize(20).run(5000);
+        OnetouchSimulation.Result large = new OnetouchSimulation(meter, executor).setMaxPacketSize(182).run(5000);
+
+        assertReceived(meter, small, 1);
+        assertReceived(meter, large, 1);
+        // Records by index take 24 bytes, two fragments of 19 bytes or one of 181
+        assertTrue(small.fragmentsToPhone >= 2 * 100);
+        assertTrue(large.fragmentsToPhone < 100 + 10);
+        assertEquals(small.bytesToPhone - large.bytesToPhone, small.fragmentsToPhone - large.fragmentsToPhone);
+    }
+
+    @Test
+    public void oldestRecordsAreOverwritten() throws InterruptedException {
+        OnetouchMeter meter = new OnetouchMeter(20);
+        meter.setCapacity(10);
+        meter.addRecords(15);
+        assertEquals(10, meter.getRecordCount());
+        assertEquals(15, meter.getHighestId());
+
+        OnetouchSimulation.Result result = new OnetouchSimulation(meter, executor).run(5000);
+        assertReceived(meter, result, 6);
+
+        // Growing the memory keeps the records
+        meter.setCapacity(20);
+        meter.addRecords(1);
+        assertEquals(11, meter.getRecordCount());
+        assertEquals(meter.getValue(6), new OnetouchSimulation(meter, executor).run(5000).measurements.get(0).mGlucose, 0.0);
+    }
+
+    @Test
+    public void timeIsSetOnConnection() throws InterruptedException {
+        OnetouchMeter meter = new OnetouchMeter(20);
+        // The meter clock starts in 1970
+        meter.setClock(new Clock() {
+            @Override
+            public long nanoTime() {
+                return 0;
+            }
+
+            @Override
+            public long currentTimeMillis() {
+                return 0;
+            }
+        });
+        assertTrue(meter.getTime() < 0);
+
+        new OnetouchSimulation(meter, executor).run(5000);
+        long now = System.currentTimeMillis() / 1000 - 946684799;
+        assertTrue(Math.abs(meter.getTime() - now) <= 2);
+    }
+}